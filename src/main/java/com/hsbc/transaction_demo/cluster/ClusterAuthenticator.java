@@ -0,0 +1,146 @@
+package com.hsbc.transaction_demo.cluster;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Authenticates calls between nodes with the shared {@code transaction.cluster.secret}. Every
+ * call carries an HMAC-SHA256 over its method, path and query, sender, timestamp, a nonce and
+ * the hash of its body, so it cannot be forged or altered without the secret. A call is
+ * accepted once, only within {@code signature-validity} of its timestamp, and only from a known
+ * member.
+ * The operator authenticates membership changes with the secret as a bearer token.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+public class ClusterAuthenticator {
+    public static final String TIMESTAMP_HEADER = "X-Cluster-Timestamp";
+    public static final String NONCE_HEADER = "X-Cluster-Nonce";
+    public static final String SIGNATURE_HEADER = "X-Cluster-Signature";
+
+    private final ClusterMembership membership;
+    private final byte[] secret;
+    private final Duration validity;
+    private final Clock clock;
+    // Nonces of accepted calls and when they expire; older calls are rejected by their timestamp
+    private final Map<String, Long> seen = new ConcurrentHashMap<>();
+    private volatile long nextSweep;
+
+    @Autowired
+    public ClusterAuthenticator(ClusterMembership membership, @Value("${transaction.cluster.secret:}") String secret,
+                                @Value("${transaction.cluster.signature-validity:5m}") Duration validity) {
+        this(membership, secret, validity, Clock.systemUTC());
+    }
+
+    /**
+     * @throws IllegalStateException if the secret is blank
+     */
+    ClusterAuthenticator(ClusterMembership membership, String secret, Duration validity, Clock clock) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("transaction.cluster.secret must be set when clustering is enabled");
+        }
+        this.membership = membership;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        this.validity = validity;
+        this.clock = clock;
+    }
+
+    /**
+     * @return how long a signed call may take to arrive; a copy of it arriving later is rejected
+     */
+    public Duration validity() {
+        return validity;
+    }
+
+    /**
+     * @return the headers that authenticate this node's call
+     */
+    public Map<String, String> sign(String method, URI uri, byte[] body) {
+        String timestamp = Long.toString(clock.millis());
+        String nonce = UUID.randomUUID().toString();
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(ClusterClient.FORWARDED_HEADER, membership.self());
+        headers.put(TIMESTAMP_HEADER, timestamp);
+        headers.put(NONCE_HEADER, nonce);
+        headers.put(SIGNATURE_HEADER, signature(method, pathAndQuery(uri), membership.self(), timestamp, nonce, body));
+        return headers;
+    }
+
+    /**
+     * @param pathAndQuery the raw request path, and the raw query after a '?' if there is one
+     * @return whether a known member made this call and it was not accepted before
+     */
+    public boolean verify(String method, String pathAndQuery, String from, String timestamp, String nonce,
+                          String signature, byte[] body) {
+        if (from == null || timestamp == null || nonce == null || signature == null
+                || !membership.isKnown(ClusterMembership.normalize(from))) {
+            return false;
+        }
+        long sent;
+        try {
+            sent = Long.parseLong(timestamp);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long now = clock.millis();
+        if (Math.abs(now - sent) > validity.toMillis()) {
+            return false;
+        }
+        byte[] expected = signature(method, pathAndQuery, from, timestamp, nonce, body).getBytes(StandardCharsets.UTF_8);
+        if (!MessageDigest.isEqual(expected, signature.getBytes(StandardCharsets.UTF_8))) {
+            return false;
+        }
+        forgetExpired(now);
+        return seen.putIfAbsent(nonce, sent + validity.toMillis()) == null;
+    }
+
+    /**
+     * @param authorization the {@code Authorization} header of an operator's request
+     */
+    public boolean isOperator(String authorization) {
+        String prefix = "Bearer ";
+        return authorization != null && authorization.startsWith(prefix) && MessageDigest.isEqual(secret,
+                authorization.substring(prefix.length()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String pathAndQuery(URI uri) {
+        return uri.getRawQuery() == null ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+    }
+
+    private void forgetExpired(long now) {
+        // Sweeping once per window keeps the map to about two windows of calls
+        if (now >= nextSweep) {
+            nextSweep = now + validity.toMillis();
+            seen.values().removeIf(expires -> expires < now);
+        }
+    }
+
+    private String signature(String method, String pathAndQuery, String from, String timestamp, String nonce,
+                             byte[] body) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            String signed = String.join("\n", method, pathAndQuery, from, timestamp, nonce,
+                    Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(body)));
+            return Base64.getEncoder().encodeToString(mac.doFinal(signed.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 is not available", e);
+        }
+    }
+}
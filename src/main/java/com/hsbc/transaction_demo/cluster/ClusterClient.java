@@ -0,0 +1,165 @@
+package com.hsbc.transaction_demo.cluster;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import com.hsbc.transaction_demo.model.Account;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP calls between cluster nodes: forwarded client requests and the internal
+ * {@link ClusterController} endpoints.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+public class ClusterClient {
+    /** Names the node that sent a request, which is never forwarded again */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    /** Credit of a cross-node transfer; {@code transferId} makes retries safe */
+    public record CreditRequest(String transferId, String accountNumber, long amount) {
+    }
+
+    /** Accounts moving to their new owner; {@code handoffId} makes retries safe */
+    public record Handoff(String handoffId, List<Account> accounts) {
+    }
+
+    /** Why a node refused a credit, sent with 409 */
+    public record CreditRejection(Reason reason, String message) {
+    }
+
+    /** Node that owns the account of a credit instead, sent with 421 */
+    public record CreditRedirect(String owner) {
+    }
+
+    /**
+     * The node did not apply the credit and never will, since the account has moved to
+     * {@link #getOwner()}.
+     */
+    public static class CreditMovedException extends IOException {
+        private final String owner;
+
+        public CreditMovedException(String owner, String message) {
+            super(message);
+            this.owner = owner;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+    }
+
+    private final HttpClient http;
+    private final ObjectMapper mapper;
+    private final ClusterAuthenticator authenticator;
+    private final Duration timeout;
+
+    public ClusterClient(ObjectMapper mapper, ClusterAuthenticator authenticator,
+                         @Value("${transaction.cluster.timeout:2s}") Duration timeout) {
+        this.mapper = mapper;
+        this.authenticator = authenticator;
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    public HttpResponse<byte[]> forward(String node, String method, String pathAndQuery,
+                                        Map<String, String> headers, byte[] body) throws IOException {
+        HttpRequest.Builder request = request(node + pathAndQuery, method, body);
+        headers.forEach(request::header);
+        return send(request.build());
+    }
+
+    /**
+     * @throws TransactionException  if the node refused the credit, which then changed nothing
+     * @throws CreditMovedException if the account belongs to another node now
+     * @throws IOException          if the outcome is unknown, or the account may be on its way
+     *                              to the node
+     */
+    public void credit(String node, CreditRequest credit) throws IOException {
+        HttpResponse<byte[]> response = send(json(node + "/internal/cluster/credits", "POST", credit));
+        if (response.statusCode() == 409) {
+            CreditRejection rejection = mapper.readValue(response.body(), CreditRejection.class);
+            throw new TransactionException(rejection.reason(), rejection.message());
+        }
+        if (response.statusCode() == 421) {
+            String owner = mapper.readValue(response.body(), CreditRedirect.class).owner();
+            throw new CreditMovedException(owner, "Account " + credit.accountNumber() + " moved from " + node
+                    + " to " + owner);
+        }
+        expectSuccess(node, response);
+    }
+
+    /**
+     * Hands accounts over to their new owner, which stores them as they are the first time it
+     * gets the handoff.
+     *
+     * @throws IOException if the node may not have stored them
+     */
+    public void sendAccounts(String node, Handoff handoff) throws IOException {
+        expectSuccess(node, send(json(node + "/internal/cluster/accounts", "POST", handoff)));
+    }
+
+    /**
+     * Tells the node it applied these credits for good, so it can stop remembering their ids.
+     */
+    public void forgetCredits(String node, List<String> transferIds) throws IOException {
+        expectSuccess(node, send(json(node + "/internal/cluster/credits/forget", "POST", transferIds)));
+    }
+
+    /**
+     * Tells the node it stored these handoffs for good, so it can stop remembering their ids.
+     */
+    public void forgetHandoffs(String node, List<String> handoffIds) throws IOException {
+        expectSuccess(node, send(json(node + "/internal/cluster/accounts/forget", "POST", handoffIds)));
+    }
+
+    public void announce(String node, List<String> nodes) throws IOException {
+        expectSuccess(node, send(json(node + "/internal/cluster/members", "PUT", nodes)));
+    }
+
+    private HttpRequest.Builder request(String uri, String method, byte[] body) {
+        URI target = URI.create(uri);
+        HttpRequest.Builder request = HttpRequest.newBuilder(target)
+                .timeout(timeout)
+                .method(method, body.length == 0 ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        authenticator.sign(method, target, body).forEach(request::header);
+        return request;
+    }
+
+    private HttpRequest json(String uri, String method, Object body) throws IOException {
+        return request(uri, method, mapper.writeValueAsBytes(body))
+                .header("Content-Type", "application/json")
+                .build();
+    }
+
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+        try {
+            return http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while calling " + request.uri());
+        }
+    }
+
+    private static void expectSuccess(String node, HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Node " + node + " answered " + response.statusCode() + " to " + response.uri());
+        }
+    }
+}
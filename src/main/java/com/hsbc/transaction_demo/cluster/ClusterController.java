@@ -0,0 +1,107 @@
+package com.hsbc.transaction_demo.cluster;
+
+import com.hsbc.transaction_demo.dto.ClusterStateDTO;
+import com.hsbc.transaction_demo.exception.AccountMovedException;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Endpoints the nodes call on each other, plus {@code PUT /members} for the operator to add or
+ * remove nodes.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Tag(name = "Cluster API", description = "Node to node calls and membership changes")
+public class ClusterController {
+    // 421 Misdirected Request, which this Spring version has no constant for
+    private static final int MISDIRECTED_REQUEST = 421;
+
+    private final ClusterMembership membership;
+    private final ClusterRebalancer rebalancer;
+    private final ClusterTransferEngine engine;
+    private final AccountRepository repository;
+
+    @GetMapping("/members")
+    @Operation(summary = "Get this node's view of the cluster")
+    public ResponseEntity<ClusterStateDTO> getMembers() {
+        return ResponseEntity.ok(state(0));
+    }
+
+    @PutMapping("/members")
+    @Operation(summary = "Replace the members, passing the change on to every node and moving accounts to their new owners")
+    public ResponseEntity<ClusterStateDTO> changeMembers(
+            @RequestBody List<String> nodes,
+            @RequestHeader(value = ClusterClient.FORWARDED_HEADER, required = false) String from) {
+        if (nodes.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(state(rebalancer.changeMembers(nodes, from == null)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/credits")
+    @Operation(summary = "Credit the target of a transfer coordinated by another node")
+    public ResponseEntity<?> credit(@RequestBody ClusterClient.CreditRequest credit) {
+        try {
+            engine.receiveCredit(credit);
+            return ResponseEntity.noContent().build();
+        } catch (AccountMovedException e) {
+            return ResponseEntity.status(MISDIRECTED_REQUEST)
+                    .body(new ClusterClient.CreditRedirect(e.getOwner()));
+        } catch (TransactionException e) {
+            if (e.getReason() == TransactionException.Reason.UNAVAILABLE) {
+                // Not refused: the coordinator keeps the credit and sends it again
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(new ClusterClient.CreditRejection(e.getReason(), e.getMessage()));
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(new ClusterClient.CreditRejection(e.getReason(), e.getMessage()));
+        }
+    }
+
+    @PostMapping("/credits/forget")
+    @Operation(summary = "Forget the ids of credits their coordinator will not send again")
+    public ResponseEntity<Void> forgetCredits(@RequestBody List<String> transferIds) {
+        engine.forgetCredits(transferIds);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/accounts")
+    @Operation(summary = "Take over accounts from another node")
+    public ResponseEntity<Void> receiveAccounts(@RequestBody ClusterClient.Handoff handoff) {
+        rebalancer.receiveAccounts(handoff);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/accounts/forget")
+    @Operation(summary = "Forget the ids of handoffs their sender will not send again")
+    public ResponseEntity<Void> forgetHandoffs(@RequestBody List<String> handoffIds) {
+        rebalancer.forgetHandoffs(handoffIds);
+        return ResponseEntity.noContent().build();
+    }
+
+    private ClusterStateDTO state(long moved) {
+        return ClusterStateDTO.builder()
+                .self(membership.self())
+                .nodes(membership.nodes())
+                .accounts(repository.count())
+                .moved(moved)
+                .build();
+    }
+}
@@ -0,0 +1,103 @@
+package com.hsbc.transaction_demo.cluster;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This node's view of the cluster: its own base URL and the ring that maps account numbers to
+ * the nodes owning them. The ring is replaced as a whole when the members change, so a lookup
+ * never sees half of a change.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+public class ClusterMembership {
+    private final String self;
+    private final int virtualNodes;
+    private volatile HashRing ring;
+    // Members of this ring and of every earlier one, so a node just removed can still hand its
+    // accounts over
+    private final Set<String> known = ConcurrentHashMap.newKeySet();
+    // When the members last changed, or 0 if they have not since startup
+    private volatile long changedAt;
+
+    /**
+     * @param nodes base URLs of all members, comma separated, this node included
+     */
+    @Autowired
+    public ClusterMembership(@Value("${transaction.cluster.self:http://localhost:8080}") String self,
+                             @Value("${transaction.cluster.nodes:}") String nodes,
+                             @Value("${transaction.cluster.virtual-nodes:160}") int virtualNodes) {
+        this(self, Arrays.stream(nodes.split(",")).map(String::strip).filter(node -> !node.isEmpty()).toList(),
+                virtualNodes);
+    }
+
+    public ClusterMembership(String self, List<String> nodes, int virtualNodes) {
+        this.self = normalize(self);
+        this.virtualNodes = virtualNodes;
+        this.ring = ringOf(nodes.isEmpty() ? List.of(self) : nodes);
+    }
+
+    public String self() {
+        return self;
+    }
+
+    public List<String> nodes() {
+        return ring.nodes();
+    }
+
+    public String ownerOf(String accountNumber) {
+        return ring.ownerOf(accountNumber);
+    }
+
+    public boolean isKnown(String node) {
+        return known.contains(node);
+    }
+
+    public boolean isLocal(String accountNumber) {
+        return self.equals(ring.ownerOf(accountNumber));
+    }
+
+    /**
+     * @return whether the members changed less than {@code period} ago, so accounts may still
+     *         be on their way to their new owners
+     */
+    public boolean changedWithin(Duration period) {
+        long changed = changedAt;
+        return changed != 0 && System.nanoTime() - changed < period.toNanos();
+    }
+
+    /**
+     * Switches to a ring of {@code nodes}; accounts that now belong elsewhere are moved by
+     * {@link ClusterRebalancer}.
+     *
+     * @throws IllegalArgumentException if this node is not one of them
+     */
+    public void setNodes(List<String> nodes) {
+        this.ring = ringOf(nodes);
+        changedAt = System.nanoTime();
+    }
+
+    private HashRing ringOf(List<String> nodes) {
+        List<String> normalized = nodes.stream().map(ClusterMembership::normalize).toList();
+        if (!normalized.contains(self)) {
+            throw new IllegalArgumentException("Cluster nodes " + normalized + " do not include this node " + self);
+        }
+        HashRing ring = new HashRing(normalized, virtualNodes);
+        known.addAll(ring.nodes());
+        return ring;
+    }
+
+    // A trailing slash would place the same node at different ring points
+    static String normalize(String node) {
+        String stripped = node.strip();
+        return stripped.endsWith("/") ? stripped.substring(0, stripped.length() - 1) : stripped;
+    }
+}
@@ -0,0 +1,334 @@
+package com.hsbc.transaction_demo.cluster;
+
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.journal.JournalGroup;
+import com.hsbc.transaction_demo.journal.JournalParticipant;
+import com.hsbc.transaction_demo.journal.JournalRecord;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.service.AccountJsonCache;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Applies membership changes: switches the ring, tells the other members and hands every
+ * account that now belongs to another node over to it. An account is removed here before it
+ * is sent, so writes racing the move fail with "not found" instead of being lost; until its
+ * new owner has stored it, requests for it are answered with 404.
+ *
+ * <p>The removals are journaled in one group with the handoff that carries the accounts, so
+ * after a crash the accounts are either still here or their handoff is restored and sent
+ * again. A handoff is retried in the background until the new owner acknowledges it; the owner
+ * remembers the handoffs it stored and ignores repeats, which would otherwise overwrite
+ * changes made since, until the sender has recorded the acknowledgement, outlived any copy of
+ * the handoff still in flight and tells it to forget them.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+public class ClusterRebalancer implements JournalParticipant {
+    static final int BATCH_SIZE = 1000;
+
+    private final ClusterMembership membership;
+    private final ClusterClient client;
+    private final AccountRepository repository;
+    private final AccountJsonCache jsonCache;
+    private final Journal journal;
+    private final Duration retryInterval;
+    // One membership change at a time
+    private final ReentrantLock lock = new ReentrantLock();
+    // One incoming handoff at a time, so a repeat cannot slip in while the first is stored
+    private final ReentrantLock receiving = new ReentrantLock();
+    // Handoffs sent from here and not acknowledged yet, by handoff id
+    private final Map<UUID, JournalRecord.AccountsHandedOff> outgoing = new ConcurrentHashMap<>();
+    // Ids of handoffs this node stored, kept across restarts until their sender tells it to
+    // forget them
+    private final Set<UUID> received = ConcurrentHashMap.newKeySet();
+    // Acknowledged handoffs, without their accounts, that the new owners still remember
+    private final ForgetQueue<JournalRecord.AccountsHandedOff> acknowledged;
+    private final ScheduledExecutorService resolver;
+
+    public ClusterRebalancer(ClusterMembership membership, ClusterClient client, ClusterAuthenticator authenticator,
+                             AccountRepository repository, AccountJsonCache jsonCache, Journal journal,
+                             @Value("${transaction.cluster.retry-interval:1s}") Duration retryInterval) {
+        this.membership = membership;
+        this.client = client;
+        this.repository = repository;
+        this.jsonCache = jsonCache;
+        this.journal = journal;
+        this.retryInterval = retryInterval;
+        // Twice the signature validity, in case the new owner's clock is behind
+        this.acknowledged = new ForgetQueue<>(authenticator.validity().multipliedBy(2),
+                JournalRecord.AccountsHandedOff::handoffId, JournalRecord.AccountsHandedOff::node);
+        this.resolver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-handoff-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts retrying once recovery has restored the handoffs still unacknowledged.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        resolver.scheduleWithFixedDelay(this::retryHandoffs, retryInterval.toMillis(), retryInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resolver.shutdownNow();
+        if (!outgoing.isEmpty()) {
+            log.warn("Stopping with {} handoffs unacknowledged, sent again after the restart: {}", outgoing.size(),
+                    outgoing.keySet());
+        }
+    }
+
+    /**
+     * @param announce whether to pass the change on to the other members, old and new; false
+     *                 when it came from one of them
+     * @return the number of accounts handed to other nodes, acknowledged or still being retried
+     */
+    public long changeMembers(List<String> nodes, boolean announce) {
+        lock.lock();
+        try {
+            List<String> previous = membership.nodes();
+            membership.setNodes(nodes);
+            if (announce) {
+                Set<String> others = new LinkedHashSet<>(previous);
+                others.addAll(membership.nodes());
+                others.remove(membership.self());
+                for (String node : others) {
+                    try {
+                        client.announce(node, membership.nodes());
+                    } catch (IOException e) {
+                        log.warn("Could not announce the new members to {}", node, e);
+                    }
+                }
+            }
+            return moveAccounts();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stores accounts handed over by another node as they are, unless this node stored the
+     * same handoff before.
+     */
+    public void receiveAccounts(ClusterClient.Handoff handoff) {
+        UUID handoffId;
+        try {
+            handoffId = UUID.fromString(handoff.handoffId());
+        } catch (IllegalArgumentException e) {
+            throw new TransactionException("Invalid handoff id: " + handoff.handoffId());
+        }
+        receiving.lock();
+        try {
+            if (received.contains(handoffId)) {
+                return;
+            }
+            // The accounts and the handoff id are recovered together or not at all
+            inGroup(() -> {
+                for (Account account : handoff.accounts()) {
+                    repository.save(account);
+                    jsonCache.invalidate(account.getAccountNumber());
+                }
+                journal.append(new JournalRecord.HandoffReceived(handoffId));
+            });
+            received.add(handoffId);
+        } finally {
+            receiving.unlock();
+        }
+        journal.sync();
+    }
+
+    /**
+     * Drops the ids of handoffs whose sender recorded the acknowledgement and will not send them
+     * again.
+     */
+    public void forgetHandoffs(List<String> handoffIds) {
+        List<UUID> ids = new ArrayList<>(handoffIds.size());
+        for (String handoffId : handoffIds) {
+            try {
+                ids.add(UUID.fromString(handoffId));
+            } catch (IllegalArgumentException e) {
+                throw new TransactionException("Invalid handoff id: " + handoffId);
+            }
+        }
+        receiving.lock();
+        try {
+            inGroup(() -> {
+                for (UUID handoffId : ids) {
+                    if (received.remove(handoffId)) {
+                        journal.append(new JournalRecord.HandoffForgotten(handoffId));
+                    }
+                }
+            });
+        } finally {
+            receiving.unlock();
+        }
+        journal.sync();
+    }
+
+    int receivedCount() {
+        return received.size();
+    }
+
+    @Override
+    public boolean restore(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.AccountsHandedOff handoff -> outgoing.put(handoff.handoffId(), handoff);
+            case JournalRecord.HandoffAcknowledged ack -> {
+                JournalRecord.AccountsHandedOff handoff = outgoing.remove(ack.handoffId());
+                if (handoff != null) {
+                    acknowledged.add(withoutAccounts(handoff));
+                }
+            }
+            case JournalRecord.HandoffReceived handoff -> received.add(handoff.handoffId());
+            case JournalRecord.HandoffForgotten forgotten -> received.remove(forgotten.handoffId());
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Stream<JournalRecord> snapshotRecords() {
+        return Stream.of(
+                received.stream().<JournalRecord>map(JournalRecord.HandoffReceived::new),
+                outgoing.values().stream(),
+                acknowledged.records().flatMap(handoff ->
+                        Stream.of(handoff, new JournalRecord.HandoffAcknowledged(handoff.handoffId())))
+        ).flatMap(records -> records);
+    }
+
+    /**
+     * @return the number of handoffs waiting for their new owner
+     */
+    public int pendingHandoffs() {
+        return outgoing.size();
+    }
+
+    private long moveAccounts() {
+        Map<String, List<String>> leaving = new LinkedHashMap<>();
+        String after = null;
+        while (true) {
+            List<Account> page = repository.findAllAfter(after, BATCH_SIZE);
+            for (Account account : page) {
+                String owner = membership.ownerOf(account.getAccountNumber());
+                if (!owner.equals(membership.self())) {
+                    leaving.computeIfAbsent(owner, node -> new ArrayList<>()).add(account.getAccountNumber());
+                }
+            }
+            if (page.size() < BATCH_SIZE) {
+                break;
+            }
+            after = page.get(page.size() - 1).getAccountNumber();
+        }
+
+        long moved = 0;
+        for (Map.Entry<String, List<String>> owner : leaving.entrySet()) {
+            List<String> accountNumbers = owner.getValue();
+            for (int from = 0; from < accountNumbers.size(); from += BATCH_SIZE) {
+                moved += move(owner.getKey(), accountNumbers.subList(from, Math.min(from + BATCH_SIZE, accountNumbers.size())));
+            }
+        }
+        log.info("Moved {} accounts to other nodes, {} remain here", moved, repository.count());
+        return moved;
+    }
+
+    private int move(String node, List<String> accountNumbers) {
+        List<Account> batch = new ArrayList<>(accountNumbers.size());
+        UUID handoffId = UUID.randomUUID();
+        // A flush racing the move can only make the removals durable together with the handoff
+        inGroup(() -> {
+            for (String accountNumber : accountNumbers) {
+                Account removed = repository.removeByAccountNumber(accountNumber);
+                if (removed != null) {
+                    jsonCache.invalidate(accountNumber);
+                    batch.add(removed);
+                }
+            }
+            if (!batch.isEmpty()) {
+                JournalRecord.AccountsHandedOff handoff = new JournalRecord.AccountsHandedOff(handoffId, node, batch);
+                journal.append(handoff);
+                outgoing.put(handoffId, handoff);
+            }
+        });
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        journal.sync();
+        if (!deliver(outgoing.get(handoffId))) {
+            log.warn("Could not hand {} accounts over to {}, retrying in the background", batch.size(), node);
+        }
+        return batch.size();
+    }
+
+    private boolean deliver(JournalRecord.AccountsHandedOff handoff) {
+        if (handoff == null) {
+            // Acknowledged meanwhile by the background retry
+            return true;
+        }
+        try {
+            client.sendAccounts(handoff.node(), new ClusterClient.Handoff(handoff.handoffId().toString(),
+                    handoff.accounts()));
+        } catch (IOException | RuntimeException e) {
+            log.debug("Handoff {} to {} is not acknowledged", handoff.handoffId(), handoff.node(), e);
+            return false;
+        }
+        // Losing this record only sends the handoff once more, which the owner ignores
+        journal.append(new JournalRecord.HandoffAcknowledged(handoff.handoffId()));
+        if (outgoing.remove(handoff.handoffId()) != null) {
+            acknowledged.add(withoutAccounts(handoff));
+        }
+        return true;
+    }
+
+    private static JournalRecord.AccountsHandedOff withoutAccounts(JournalRecord.AccountsHandedOff handoff) {
+        return new JournalRecord.AccountsHandedOff(handoff.handoffId(), handoff.node(), List.of());
+    }
+
+    void retryHandoffs() {
+        for (JournalRecord.AccountsHandedOff handoff : outgoing.values()) {
+            if (deliver(handoff)) {
+                log.info("Handoff of {} accounts to {} was acknowledged", handoff.accounts().size(), handoff.node());
+            }
+        }
+        acknowledged.tellDue(journal::sync, client::forgetHandoffs);
+    }
+
+    private void inGroup(Runnable changes) {
+        JournalGroup group = journal.begin();
+        try {
+            changes.run();
+        } finally {
+            journal.commit(group);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.hsbc.transaction_demo.cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.exception.ErrorResponse;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends requests about one account to the node owning it: {@code /api/accounts/{accountNumber}}
+ * and everything below it, account creation, and transfers, which are run by the owner of the
+ * source account. The request is replayed there as it came in and the answer is passed back.
+ * Everything else, such as listings, batches and transactions by id, is served from this
+ * node's own data. Every response names the node that served it in {@value #NODE_HEADER}.
+ * Forwarded requests and {@code /internal/cluster/**} must be signed by a known member, or come
+ * from the operator with the cluster secret, and are rejected with 401 otherwise.
+ */
+@Slf4j
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+    public static final String NODE_HEADER = "X-Cluster-Node";
+
+    private static final String ACCOUNTS = "/api/accounts";
+    private static final String TRANSACTIONS = "/api/transactions";
+    private static final String INTERNAL = "/internal/cluster";
+    private static final List<String> REQUEST_HEADERS = List.of(
+            "Content-Type", "Accept", "Idempotency-Key", "If-None-Match", "If-Match", "If-Modified-Since");
+    private static final List<String> RESPONSE_HEADERS = List.of(
+            "Content-Type", "ETag", "Last-Modified", "Location", "Cache-Control", NODE_HEADER);
+
+    private final ClusterMembership membership;
+    private final ClusterClient client;
+    private final ClusterAuthenticator authenticator;
+    private final ObjectMapper mapper;
+
+    public ClusterRoutingFilter(ClusterMembership membership, ClusterClient client,
+                                ClusterAuthenticator authenticator, ObjectMapper mapper) {
+        this.membership = membership;
+        this.client = client;
+        this.authenticator = authenticator;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String from = request.getHeader(ClusterClient.FORWARDED_HEADER);
+        if (from != null || path.equals(INTERNAL) || path.startsWith(INTERNAL + "/")) {
+            byte[] body = request.getInputStream().readAllBytes();
+            if (!authenticated(request, path, from, body)) {
+                log.warn("Rejected unauthenticated cluster call {} {} from {}", request.getMethod(), path,
+                        request.getRemoteAddr());
+                error(response, HttpStatus.UNAUTHORIZED, "Cluster call is not authenticated");
+                return;
+            }
+            // Forwarded once already; if the rings disagree for a moment, answer from here
+            serveLocally(new CachedBodyRequest(request, body), response, chain);
+            return;
+        }
+        byte[] body = null;
+        String accountNumber = pathAccountNumber(path);
+        if (accountNumber == null && "POST".equals(request.getMethod())
+                && (path.equals(ACCOUNTS) || path.equals(TRANSACTIONS))) {
+            body = request.getInputStream().readAllBytes();
+            request = new CachedBodyRequest(request, body);
+            accountNumber = bodyAccountNumber(body);
+        }
+        String owner = accountNumber == null ? null : membership.ownerOf(accountNumber);
+        if (owner == null || owner.equals(membership.self())) {
+            serveLocally(request, response, chain);
+            return;
+        }
+        forward(owner, path, request, body == null ? request.getInputStream().readAllBytes() : body, response);
+    }
+
+    // A member's signed call, or the operator's with the secret; the operator never forwards
+    private boolean authenticated(HttpServletRequest request, String path, String from, byte[] body) {
+        if (from == null) {
+            return authenticator.isOperator(request.getHeader("Authorization"));
+        }
+        String pathAndQuery = request.getQueryString() == null ? path : path + "?" + request.getQueryString();
+        return authenticator.verify(request.getMethod(), pathAndQuery, from,
+                request.getHeader(ClusterAuthenticator.TIMESTAMP_HEADER),
+                request.getHeader(ClusterAuthenticator.NONCE_HEADER),
+                request.getHeader(ClusterAuthenticator.SIGNATURE_HEADER), body);
+    }
+
+    private void error(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType("application/json");
+        mapper.writeValue(response.getOutputStream(), new ErrorResponse(status.value(), message, LocalDateTime.now()));
+    }
+
+    private void serveLocally(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        response.setHeader(NODE_HEADER, membership.self());
+        chain.doFilter(request, response);
+    }
+
+    private void forward(String owner, String path, HttpServletRequest request, byte[] body,
+                         HttpServletResponse response) throws IOException {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        String pathAndQuery = request.getQueryString() == null ? path : path + "?" + request.getQueryString();
+        HttpResponse<byte[]> forwarded;
+        try {
+            forwarded = client.forward(owner, request.getMethod(), pathAndQuery, headers, body);
+        } catch (IOException e) {
+            log.warn("Could not forward {} {} to {}", request.getMethod(), pathAndQuery, owner, e);
+            error(response, HttpStatus.BAD_GATEWAY, "Node " + owner + " owning the account is unavailable");
+            return;
+        }
+        response.setStatus(forwarded.statusCode());
+        for (String name : RESPONSE_HEADERS) {
+            forwarded.headers().firstValue(name).ifPresent(value -> response.setHeader(name, value));
+        }
+        response.getOutputStream().write(forwarded.body());
+    }
+
+    // /api/accounts/{accountNumber} and below; "import" is the bulk endpoint, not an account
+    private static String pathAccountNumber(String path) {
+        if (!path.startsWith(ACCOUNTS + "/")) {
+            return null;
+        }
+        int start = ACCOUNTS.length() + 1;
+        int end = path.indexOf('/', start);
+        String segment = path.substring(start, end == -1 ? path.length() : end);
+        if (segment.isEmpty() || segment.equals("import")) {
+            return null;
+        }
+        return UriUtils.decode(segment, StandardCharsets.UTF_8);
+    }
+
+    // The account or transfer source; anything unreadable is left to local validation
+    private String bodyAccountNumber(byte[] body) {
+        try {
+            JsonNode accountNumber = mapper.readTree(body).get("accountNumber");
+            return accountNumber != null && accountNumber.isTextual() ? accountNumber.asText() : null;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Serves a body that was already read to find the account.
+     */
+    static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is in memory, so it is available at once and then fully read
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException | RuntimeException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,473 @@
+package com.hsbc.transaction_demo.cluster;
+
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.exception.AccountMovedException;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import com.hsbc.transaction_demo.exception.TransferInDoubtException;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.journal.JournalGroup;
+import com.hsbc.transaction_demo.journal.JournalParticipant;
+import com.hsbc.transaction_demo.journal.JournalRecord;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.IdempotencyCache;
+import com.hsbc.transaction_demo.service.transfer.AbstractTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Runs transfers whose target account lives on another node, in front of the configured local
+ * engine. The source node coordinates: it debits the source through the local engine, then asks
+ * the target's owner to credit it, and refunds the source if the owner refuses. Every credit
+ * carries a transfer id that the owner journals with the credit, so a credit whose answer was
+ * lost can be sent again, even across restarts, without crediting twice.
+ *
+ * <p>The debit is journaled together with the outstanding credit, and the credit stays
+ * outstanding until it is settled: by the caller's transaction record when the owner confirmed
+ * it at once, or by the refund when it refused. If the owner cannot be reached the transfer is
+ * in doubt: it is recorded as a {@link TransactionStatus#PENDING} transaction whose id is the
+ * transfer id, the caller gets that transaction, and the credit is retried in the background
+ * until the owner applies or refuses it; the transaction then becomes completed, or failed with
+ * the source refunded. Outstanding credits are restored on restart, so a crash at any point
+ * leaves them to be retried rather than lost. Transfers within this node go straight to the
+ * local engine.
+ *
+ * <p>A credit for an account that is being moved is not refused. The old owner, which has
+ * not applied it, names the new one and the credit is sent there instead; the new owner asks
+ * for it again later while the account may still be on its way, up to {@code handoff-grace}
+ * after the members changed.
+ *
+ * <p>The owner remembers the transfer ids it applied only until the coordinator, having
+ * settled the credit and outlived any copy of it still in flight, tells it to forget them.
+ */
+@Slf4j
+@Primary
+@Component
+@ConditionalOnProperty(name = "transaction.cluster.enabled", havingValue = "true")
+public class ClusterTransferEngine implements TransferEngine, JournalParticipant {
+    private final TransferEngine local;
+    private final ClusterMembership membership;
+    private final ClusterClient client;
+    private final TransactionRepository transactions;
+    private final Journal journal;
+    private final Duration retryInterval;
+    private final Duration handoffGrace;
+    // Serializes deliveries of the same credit and answers repeats of recent ones
+    private final IdempotencyCache credits;
+    // Transfer ids of credits this node applied, kept across restarts until their coordinator
+    // tells it to forget them
+    private final Set<UUID> applied = ConcurrentHashMap.newKeySet();
+    // Credits this node debited a source for and has not settled yet, by transfer id
+    private final Map<UUID, JournalRecord.CreditPending> outstanding = new ConcurrentHashMap<>();
+    // Outstanding credits a request thread is still sending; the resolver leaves them alone
+    private final Set<UUID> sending = ConcurrentHashMap.newKeySet();
+    // Credits settled here whose owners still remember them
+    private final ForgetQueue<JournalRecord.CreditPending> settled;
+    private final ScheduledExecutorService resolver;
+
+    /**
+     * @param local the engine selected by {@code transaction.transfer.strategy}, asked for by
+     *              its base class so that this engine is not a candidate
+     */
+    public ClusterTransferEngine(AbstractTransferEngine local, ClusterMembership membership, ClusterClient client,
+                                 ClusterAuthenticator authenticator, TransactionRepository transactions, Journal journal,
+                                 @Value("${transaction.cluster.retry-interval:1s}") Duration retryInterval,
+                                 @Value("${transaction.cluster.handoff-grace:1m}") Duration handoffGrace) {
+        this.local = local;
+        this.membership = membership;
+        this.client = client;
+        this.transactions = transactions;
+        this.journal = journal;
+        this.retryInterval = retryInterval;
+        this.handoffGrace = handoffGrace;
+        this.credits = new IdempotencyCache(100_000, Duration.ofHours(24));
+        // Twice the signature validity, in case the owner's clock is behind
+        this.settled = new ForgetQueue<>(authenticator.validity().multipliedBy(2),
+                JournalRecord.CreditPending::transferId, JournalRecord.CreditPending::node);
+        this.resolver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-credit-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts retrying once recovery has restored the accounts and the outstanding credits.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        resolver.scheduleWithFixedDelay(this::retryInDoubt, retryInterval.toMillis(), retryInterval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void transfer(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        transfer(sourceAccountNumber, targetAccountNumber, amount, null);
+    }
+
+    private void transfer(String sourceAccountNumber, String targetAccountNumber, long amount, UUID transactionId) {
+        String owner = membership.ownerOf(targetAccountNumber);
+        if (membership.self().equals(owner) || sourceAccountNumber.equals(targetAccountNumber) || amount <= 0) {
+            local.transfer(sourceAccountNumber, targetAccountNumber, amount);
+            return;
+        }
+        JournalRecord.CreditPending credit = new JournalRecord.CreditPending(
+                transactionId == null ? UUID.randomUUID() : transactionId,
+                owner, sourceAccountNumber, targetAccountNumber, amount);
+        sending.add(credit.transferId());
+        try {
+            // The debit must survive a restart before another node can act on it, so it cannot
+            // wait for the caller's journal group to commit
+            JournalGroup.runIn(null, () -> inGroup(() -> {
+                debit(sourceAccountNumber, amount);
+                journal.append(credit);
+                outstanding.put(credit.transferId(), credit);
+            }));
+            journal.sync();
+            try {
+                client.credit(owner, request(credit));
+            } catch (TransactionException e) {
+                JournalGroup.runIn(null, () -> settle(credit, e, false));
+                throw e;
+            } catch (IOException e) {
+                log.warn("Credit {} to {} on {} is in doubt, retrying in the background",
+                        credit.transferId(), targetAccountNumber, owner, e);
+                JournalGroup.runIn(null, () -> inGroup(() -> transactions.save(transactionOf(credit))));
+                journal.sync();
+                throw new TransferInDoubtException(credit.transferId(), "Node owning account " + targetAccountNumber
+                        + " did not confirm the credit; transfer " + credit.transferId() + " completes once it does");
+            }
+            // Settled along with the caller's transaction record: if a crash loses that record,
+            // the credit is still outstanding and recovery asks the owner again
+            journal.append(new JournalRecord.CreditSettled(credit.transferId()));
+            outstanding.remove(credit.transferId());
+            settled.add(credit);
+        } finally {
+            sending.remove(credit.transferId());
+        }
+    }
+
+    /**
+     * Batches whose accounts all live here go to the local engine as one batch. Otherwise only
+     * best-effort batches are possible: their transfers run one by one, in order.
+     */
+    @Override
+    public List<String> transferAll(List<Transfer> transfers, boolean atomic) {
+        boolean allLocal = true;
+        for (Transfer transfer : transfers) {
+            allLocal &= transfer.targetAccountNumber() == null || membership.isLocal(transfer.targetAccountNumber());
+        }
+        if (allLocal) {
+            return local.transferAll(transfers, atomic);
+        }
+        List<String> errors = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            if (atomic) {
+                errors.add("Atomic batches cannot include accounts of other nodes");
+                continue;
+            }
+            try {
+                transfer(transfer.sourceAccountNumber(), transfer.targetAccountNumber(), transfer.amount(),
+                        transfer.transactionId());
+                errors.add(null);
+            } catch (TransferInDoubtException e) {
+                errors.add(IN_DOUBT);
+            } catch (TransactionException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    @Override
+    public Account update(String accountNumber, Consumer<Account> mutation) {
+        return local.update(accountNumber, mutation);
+    }
+
+    /**
+     * Second phase of a transfer coordinated by another node. Applying the same transfer id
+     * again only repeats the first outcome.
+     *
+     * @throws AccountMovedException if the account belongs to another node now
+     * @throws TransactionException  if the account does not exist here or would overflow, or
+     *                               with {@link Reason#UNAVAILABLE} if it may still be on its
+     *                               way here
+     */
+    public void receiveCredit(ClusterClient.CreditRequest credit) {
+        UUID transferId;
+        try {
+            transferId = UUID.fromString(credit.transferId());
+        } catch (IllegalArgumentException e) {
+            throw new TransactionException("Invalid transfer id: " + credit.transferId());
+        }
+        TransactionDTO request = TransactionDTO.builder()
+                .targetAccountNumber(credit.accountNumber())
+                .amount(Money.toDecimal(credit.amount()))
+                .build();
+        credits.execute(credit.transferId(), request, () -> {
+            // Applied before this node restarted or the cache forgot it
+            if (applied.contains(transferId)) {
+                return request;
+            }
+            if (credit.amount() <= 0) {
+                throw new TransactionException(Reason.INVALID_AMOUNT, "Amount must be greater than 0");
+            }
+            // The credit and its transfer id are recovered together or not at all
+            inGroup(() -> {
+                try {
+                    local.update(credit.accountNumber(), account -> {
+                        try {
+                            account.setBalance(Math.addExact(account.getBalance(), credit.amount()));
+                        } catch (ArithmeticException e) {
+                            throw new TransactionException(Reason.BALANCE_OVERFLOW, "Target account balance would overflow");
+                        }
+                    });
+                } catch (AccountException e) {
+                    throw missing(credit.accountNumber());
+                }
+                journal.append(new JournalRecord.CreditApplied(transferId));
+            });
+            applied.add(transferId);
+            journal.sync();
+            return request;
+        });
+    }
+
+    /**
+     * Drops the ids of credits whose coordinator settled them and will not send them again.
+     */
+    public void forgetCredits(List<String> transferIds) {
+        List<UUID> ids = new ArrayList<>(transferIds.size());
+        for (String transferId : transferIds) {
+            try {
+                ids.add(UUID.fromString(transferId));
+            } catch (IllegalArgumentException e) {
+                throw new TransactionException("Invalid transfer id: " + transferId);
+            }
+        }
+        inGroup(() -> {
+            for (UUID transferId : ids) {
+                if (applied.remove(transferId)) {
+                    journal.append(new JournalRecord.CreditForgotten(transferId));
+                }
+            }
+        });
+        journal.sync();
+    }
+
+    int appliedCount() {
+        return applied.size();
+    }
+
+    /**
+     * @return the number of credits waiting for the background retry
+     */
+    public int inDoubtCount() {
+        int count = 0;
+        for (UUID transferId : outstanding.keySet()) {
+            if (!sending.contains(transferId)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean restore(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.CreditPending pending -> outstanding.put(pending.transferId(), pending);
+            case JournalRecord.CreditSettled end -> {
+                // A refused credit is queued too; its owner has nothing to forget
+                JournalRecord.CreditPending credit = outstanding.remove(end.transferId());
+                if (credit != null) {
+                    settled.add(credit);
+                }
+            }
+            case JournalRecord.CreditApplied credit -> applied.add(credit.transferId());
+            case JournalRecord.CreditForgotten forgotten -> applied.remove(forgotten.transferId());
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Stream<JournalRecord> snapshotRecords() {
+        return Stream.of(
+                applied.stream().<JournalRecord>map(JournalRecord.CreditApplied::new),
+                outstanding.values().stream(),
+                settled.records().flatMap(credit -> Stream.of(credit, new JournalRecord.CreditSettled(credit.transferId())))
+        ).flatMap(records -> records);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resolver.shutdownNow();
+        if (!outstanding.isEmpty()) {
+            log.warn("Stopping with {} credits in doubt, retried after the restart: {}", outstanding.size(),
+                    outstanding.keySet());
+        }
+    }
+
+    private TransactionException missing(String accountNumber) {
+        String owner = membership.ownerOf(accountNumber);
+        if (!owner.equals(membership.self())) {
+            return new AccountMovedException(owner, "Target account " + accountNumber + " belongs to " + owner);
+        }
+        if (membership.changedWithin(handoffGrace)) {
+            return new TransactionException(Reason.UNAVAILABLE,
+                    "Target account " + accountNumber + " may still be on its way here");
+        }
+        return new TransactionException(Reason.ACCOUNT_NOT_FOUND, "Target account not found: " + accountNumber);
+    }
+
+    private void debit(String accountNumber, long amount) {
+        try {
+            local.update(accountNumber, account -> {
+                if (account.getBalance() < amount) {
+                    throw new TransactionException(Reason.INSUFFICIENT_BALANCE, "Insufficient balance in source account");
+                }
+                account.setBalance(account.getBalance() - amount);
+            });
+        } catch (AccountException e) {
+            throw new TransactionException(Reason.ACCOUNT_NOT_FOUND, "Source account not found: " + accountNumber);
+        }
+    }
+
+    private void refund(String accountNumber, long amount, TransactionException cause) {
+        try {
+            local.update(accountNumber, account -> account.setBalance(account.getBalance() + amount));
+        } catch (RuntimeException e) {
+            // The source was deleted or moved meanwhile
+            log.error("Could not refund {} to {} after a refused credit", amount, accountNumber, e);
+            cause.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Ends an outstanding credit the owner applied, or refused when {@code refusal} is set, in
+     * which case the source is refunded. {@code recorded} credits also bring their transaction
+     * to its final status.
+     */
+    private void settle(JournalRecord.CreditPending credit, TransactionException refusal, boolean recorded) {
+        inGroup(() -> {
+            if (refusal != null) {
+                refund(credit.sourceAccountNumber(), credit.amount(), refusal);
+            }
+            if (recorded) {
+                finish(credit, refusal == null ? TransactionStatus.COMPLETED : TransactionStatus.FAILED);
+            }
+            journal.append(new JournalRecord.CreditSettled(credit.transferId()));
+        });
+        outstanding.remove(credit.transferId());
+        if (refusal == null) {
+            settled.add(credit);
+        }
+        journal.sync();
+    }
+
+    // A crash may have cut the transfer off before its pending transaction was stored
+    private void finish(JournalRecord.CreditPending credit, TransactionStatus status) {
+        while (true) {
+            Transaction current = transactions.findById(credit.transferId()).orElse(null);
+            if (current == null) {
+                Transaction finished = transactionOf(credit);
+                finished.setStatus(status);
+                transactions.save(finished);
+                return;
+            }
+            if (transactions.replace(current,
+                    current.toBuilder().status(status).version(current.getVersion() + 1).build())) {
+                return;
+            }
+        }
+    }
+
+    // The old owner never applies the credit, so sending it to the new owner cannot apply it twice
+    private void redirect(JournalRecord.CreditPending credit, String owner) {
+        JournalRecord.CreditPending moved = new JournalRecord.CreditPending(credit.transferId(), owner,
+                credit.sourceAccountNumber(), credit.targetAccountNumber(), credit.amount());
+        inGroup(() -> {
+            journal.append(moved);
+            outstanding.put(credit.transferId(), moved);
+        });
+        journal.sync();
+    }
+
+    private void inGroup(Runnable changes) {
+        JournalGroup group = journal.begin();
+        try {
+            changes.run();
+        } finally {
+            journal.commit(group);
+        }
+    }
+
+    private static ClusterClient.CreditRequest request(JournalRecord.CreditPending credit) {
+        return new ClusterClient.CreditRequest(credit.transferId().toString(), credit.targetAccountNumber(),
+                credit.amount());
+    }
+
+    private static Transaction transactionOf(JournalRecord.CreditPending credit) {
+        return Transaction.builder()
+                .id(credit.transferId())
+                .accountNumber(credit.sourceAccountNumber())
+                .targetAccountNumber(credit.targetAccountNumber())
+                .amount(Money.toDecimal(credit.amount()))
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.PENDING)
+                .build();
+    }
+
+    void retryInDoubt() {
+        for (JournalRecord.CreditPending credit : outstanding.values()) {
+            if (sending.contains(credit.transferId())) {
+                continue;
+            }
+            try {
+                client.credit(credit.node(), request(credit));
+                log.info("Credit {} was confirmed by {}", credit.transferId(), credit.node());
+                settle(credit, null, true);
+            } catch (TransactionException e) {
+                log.info("Credit {} was refused by {}, refunding", credit.transferId(), credit.node());
+                settle(credit, e, true);
+            } catch (ClusterClient.CreditMovedException e) {
+                log.info("Credit {} moves from {} to {} with its account", credit.transferId(), credit.node(),
+                        e.getOwner());
+                redirect(credit, e.getOwner());
+            } catch (IOException | RuntimeException e) {
+                log.debug("Credit {} is still in doubt", credit.transferId(), e);
+            }
+        }
+        settled.tellDue(journal::sync, client::forgetCredits);
+    }
+}
@@ -0,0 +1,93 @@
+package com.hsbc.transaction_demo.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Requests this node will not send again, waiting to tell the node that got them it can stop
+ * remembering their ids. That node ignores repeats by id, so it may only forget one once no
+ * copy of the request can still reach it: a signed call is rejected after the signature
+ * validity, and {@code delay} should cover that with room for clock skew. Every entry waits
+ * the same delay, so the queue is in due order.
+ *
+ * @param <R> the journal record of a request, which names its id and the node it went to
+ */
+@Slf4j
+final class ForgetQueue<R> {
+    static final int BATCH_SIZE = 1000;
+
+    private record Entry<R>(R record, long due) {
+    }
+
+    @FunctionalInterface
+    interface Teller {
+        void tell(String node, List<String> ids) throws IOException;
+    }
+
+    private final long delayNanos;
+    private final Function<R, UUID> id;
+    private final Function<R, String> node;
+    private final ConcurrentLinkedQueue<Entry<R>> queue = new ConcurrentLinkedQueue<>();
+
+    ForgetQueue(Duration delay, Function<R, UUID> id, Function<R, String> node) {
+        this.delayNanos = delay.toNanos();
+        this.id = id;
+        this.node = node;
+    }
+
+    void add(R record) {
+        queue.offer(new Entry<>(record, System.nanoTime() + delayNanos));
+    }
+
+    int size() {
+        return queue.size();
+    }
+
+    Stream<R> records() {
+        return queue.stream().map(Entry::record);
+    }
+
+    /**
+     * Tells every node about its due ids, a batch at a time. Ids a node could not be told are
+     * queued again and retried on the next call. Only one thread may call this at a time.
+     *
+     * @param beforeTelling makes the end of the requests durable, so a restart cannot send
+     *                      them again after their ids are forgotten
+     */
+    void tellDue(Runnable beforeTelling, Teller teller) {
+        long now = System.nanoTime();
+        Map<String, List<R>> due = new LinkedHashMap<>();
+        Entry<R> head;
+        while ((head = queue.peek()) != null && head.due() - now <= 0) {
+            queue.poll();
+            due.computeIfAbsent(node.apply(head.record()), n -> new ArrayList<>()).add(head.record());
+        }
+        if (due.isEmpty()) {
+            return;
+        }
+        beforeTelling.run();
+        for (Map.Entry<String, List<R>> records : due.entrySet()) {
+            List<R> all = records.getValue();
+            for (int from = 0; from < all.size(); from += BATCH_SIZE) {
+                List<R> batch = all.subList(from, Math.min(from + BATCH_SIZE, all.size()));
+                try {
+                    teller.tell(records.getKey(), batch.stream().map(id).map(UUID::toString).toList());
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Could not tell {} to forget {} ids", records.getKey(), batch.size(), e);
+                    // Already due, so they go out again on the next call
+                    batch.forEach(record -> queue.offer(new Entry<>(record, now)));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.hsbc.transaction_demo.config;
+
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.OffHeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.AccountJsonCache;
+import com.hsbc.transaction_demo.service.IdempotencyCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Repository and cache gauges. They are read when the registry is scraped, so they cost nothing on the
+ * request path; the per-operation meters live in {@link com.hsbc.transaction_demo.metrics.LedgerMetrics}.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder repositoryMetrics(AccountRepository accounts, TransactionRepository transactions) {
+        return registry -> {
+            Gauge.builder("ledger.repository.size", accounts, AccountRepository::count)
+                    .description("Number of stored entries")
+                    .tag("repository", "accounts")
+                    .register(registry);
+            Gauge.builder("ledger.repository.size", transactions, TransactionRepository::count)
+                    .description("Number of stored entries")
+                    .tag("repository", "transactions")
+                    .register(registry);
+            if (transactions instanceof OffHeapTransactionRepository offHeap) {
+                Gauge.builder("ledger.repository.off.heap", offHeap, OffHeapTransactionRepository::offHeapBytes)
+                        .description("Direct memory reserved by the off-heap transaction store")
+                        .baseUnit("bytes")
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder accountJsonCacheMetrics(AccountJsonCache cache) {
+        return registry -> {
+            Gauge.builder("ledger.account.json.cache.size", cache, AccountJsonCache::weight)
+                    .description("Memory held by pre-serialized account JSON")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("ledger.account.json.cache.requests", cache, AccountJsonCache::hits)
+                    .description("Account reads served from the JSON cache or rendered")
+                    .tag("result", "hit")
+                    .register(registry);
+            FunctionCounter.builder("ledger.account.json.cache.requests", cache, AccountJsonCache::misses)
+                    .description("Account reads served from the JSON cache or rendered")
+                    .tag("result", "miss")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder idempotencyCacheMetrics(IdempotencyCache cache) {
+        return registry -> {
+            Gauge.builder("ledger.idempotency.cache.size", cache, IdempotencyCache::size)
+                    .description("Idempotency keys whose transfer is running or remembered")
+                    .register(registry);
+            FunctionCounter.builder("ledger.idempotency.replays", cache, IdempotencyCache::replays)
+                    .description("Transfer requests answered with the outcome of an earlier request with the same key")
+                    .register(registry);
+        };
+    }
+}
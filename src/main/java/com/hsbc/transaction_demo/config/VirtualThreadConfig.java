@@ -0,0 +1,34 @@
+package com.hsbc.transaction_demo.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.util.concurrent.Executors;
+
+/**
+ * With {@code transaction.threads=virtual} every request runs on its own virtual thread instead
+ * of a pooled Tomcat worker, and so does async MVC work on the application task executor.
+ * Blocking in the request path (lock waits, journal fsync, ledger writer hand-off) then parks
+ * the virtual thread and frees its carrier; the request path only uses
+ * {@link java.util.concurrent.locks.ReentrantLock} and friends, never monitors, so it cannot
+ * pin one.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transaction.threads", havingValue = "virtual")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor() {
+        return new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor());
+    }
+}
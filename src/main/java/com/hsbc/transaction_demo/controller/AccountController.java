@@ -1,27 +1,51 @@
 package com.hsbc.transaction_demo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.ImportResultDTO;
+import com.hsbc.transaction_demo.dto.Tagged;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
 import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.service.AccountImportService;
 import com.hsbc.transaction_demo.service.AccountService;
+import com.hsbc.transaction_demo.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @RestController
 @RequestMapping("/api/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Tag(name = "Account API", description = "Account Management API")
 public class AccountController {
     private final AccountService service;
+    private final TransactionService transactionService;
+    private final AccountImportService importService;
+    private final ObjectMapper mapper;
 
     @PostMapping
     @Operation(summary = "Create new account")
@@ -29,11 +53,28 @@ public class AccountController {
         return ResponseEntity.status(201).body(service.createAccount(account));
     }
 
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    @Operation(summary = "Import accounts from newline-delimited JSON, one account per line")
+    public ResponseEntity<ImportResultDTO> importAccounts(InputStream body) throws IOException {
+        return ResponseEntity.ok(importService.importAccounts(body));
+    }
+
+    // Hot read: the body comes pre-serialized from the account JSON cache, and a poll whose
+    // If-None-Match still matches gets a 304 without it
     @GetMapping("/{accountNumber}")
-    @Operation(summary = "Get account by account number")
-    public ResponseEntity<AccountDTO> getAccount(@PathVariable String accountNumber) {
+    @Operation(summary = "Get account by account number, 304 if the ETag in If-None-Match still matches")
+    @ApiResponse(responseCode = "200", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,
+            schema = @Schema(implementation = AccountDTO.class)))
+    public ResponseEntity<byte[]> getAccount(@PathVariable String accountNumber, WebRequest request) {
         try {
-            return ResponseEntity.ok(service.getAccount(accountNumber));
+            Tagged<byte[]> account = service.getAccountJson(accountNumber);
+            if (request.checkNotModified(account.eTag())) {
+                return null;
+            }
+            return ResponseEntity.ok()
+                    .eTag(account.eTag())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(account.body().get());
         } catch (AccountException e) {
             return ResponseEntity.notFound().build();
         }
@@ -41,14 +82,45 @@ public class AccountController {
 
     @GetMapping
     @Operation(summary = "Get all accounts with pagination")
-    public ResponseEntity<Page<AccountDTO>> getAllAccounts(
+    public ResponseEntity<Page<RawValue>> getAllAccounts(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "accountNumber") String sortBy,
             @RequestParam(defaultValue = "asc") String sortDirection) {
         Sort.Direction direction = Sort.Direction.fromString(sortDirection);
         PageRequest pageRequest = PageRequest.of(page, size, Sort.by(direction, sortBy));
-        return ResponseEntity.ok(service.getAllAccounts(pageRequest));
+        return ResponseEntity.ok(service.getAllAccountsJson(pageRequest));
+    }
+
+    // Written on the request thread straight into the response, so an export of any size neither
+    // buffers nor runs into the async request timeout. Exports skip the account JSON cache so
+    // they do not push hot accounts out of it.
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export all accounts as newline-delimited JSON, optionally only those created in [from, to)")
+    public ResponseEntity<Void> exportAccounts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            HttpServletResponse response) throws IOException {
+        // Checked before the first line goes out, while the status can still change
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try (NdjsonWriter out = new NdjsonWriter(mapper, response)) {
+            service.exportAccounts(from, to, out::accept);
+        }
+        return null;
+    }
+
+    @GetMapping("/{accountNumber}/transactions")
+    @Operation(summary = "Get account transaction history with cursor pagination")
+    public ResponseEntity<CursorPageDTO<TransactionDTO>> getAccountTransactions(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        if (!service.accountExists(accountNumber)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(transactionService.getAccountTransactions(accountNumber, cursor, size));
     }
 
     @PutMapping("/{accountNumber}")
@@ -80,7 +152,7 @@ public class AccountController {
             @PathVariable String accountNumber,
             @RequestBody BigDecimal balance) {
         try {
-            if (balance.compareTo(BigDecimal.ZERO) < 0) {
+            if (balance.compareTo(BigDecimal.ZERO) < 0 || balance.stripTrailingZeros().scale() > Money.SCALE) {
                 return ResponseEntity.badRequest().build();
             }
             return ResponseEntity.ok(service.updateBalance(accountNumber, balance));
@@ -0,0 +1,130 @@
+package com.hsbc.transaction_demo.controller;
+
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.ImportResultDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.service.reactive.ReactiveAccountService;
+import com.hsbc.transaction_demo.service.reactive.ReactiveTransactionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+
+/**
+ * Reactive counterpart of {@link AccountController}: same paths, DTOs and status codes, served
+ * when the application runs on the reactive stack. List endpoints additionally stream every
+ * element as NDJSON when the client accepts {@code application/x-ndjson}.
+ */
+@RestController
+@RequestMapping("/api/accounts")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Tag(name = "Account API", description = "Account Management API")
+public class ReactiveAccountController {
+    private final ReactiveAccountService service;
+    private final ReactiveTransactionService transactionService;
+
+    @PostMapping
+    @Operation(summary = "Create new account")
+    public Mono<ResponseEntity<AccountDTO>> createAccount(@Valid @RequestBody AccountDTO account) {
+        return service.createAccount(account).map(created -> ResponseEntity.status(201).body(created));
+    }
+
+    @PostMapping(value = "/import", consumes = "application/x-ndjson")
+    @Operation(summary = "Import accounts from newline-delimited JSON, one account per line")
+    public Mono<ResponseEntity<ImportResultDTO>> importAccounts(@RequestBody Flux<DataBuffer> body) {
+        return service.importAccounts(body).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{accountNumber}")
+    @Operation(summary = "Get account by account number")
+    public Mono<ResponseEntity<AccountDTO>> getAccount(@PathVariable String accountNumber) {
+        return service.getAccount(accountNumber)
+                .map(ResponseEntity::ok)
+                .onErrorResume(AccountException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    @GetMapping
+    @Operation(summary = "Get all accounts with pagination")
+    public Mono<ResponseEntity<Page<AccountDTO>>> getAllAccounts(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "accountNumber") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDirection) {
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(direction, sortBy));
+        return service.getAllAccounts(pageRequest).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all accounts in account number order as newline-delimited JSON")
+    public Flux<AccountDTO> streamAccounts() {
+        return service.streamAccounts();
+    }
+
+    @GetMapping("/{accountNumber}/transactions")
+    @Operation(summary = "Get account transaction history with cursor pagination")
+    public Mono<ResponseEntity<CursorPageDTO<TransactionDTO>>> getAccountTransactions(
+            @PathVariable String accountNumber,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return service.accountExists(accountNumber).flatMap(exists -> exists
+                ? transactionService.getAccountTransactions(accountNumber, cursor, size).map(ResponseEntity::ok)
+                : Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    @GetMapping(value = "/{accountNumber}/transactions", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream the account's whole transaction history, newest first, as newline-delimited JSON")
+    public Mono<ResponseEntity<Flux<TransactionDTO>>> streamAccountTransactions(@PathVariable String accountNumber) {
+        return service.accountExists(accountNumber).map(exists -> exists
+                ? ResponseEntity.ok(transactionService.streamAccountTransactions(accountNumber))
+                : ResponseEntity.notFound().build());
+    }
+
+    @PutMapping("/{accountNumber}")
+    @Operation(summary = "Update account")
+    public Mono<ResponseEntity<AccountDTO>> updateAccount(
+            @PathVariable String accountNumber,
+            @Valid @RequestBody AccountDTO account) {
+        return service.updateAccount(accountNumber, account)
+                .map(ResponseEntity::ok)
+                .onErrorResume(AccountException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    @DeleteMapping("/{accountNumber}")
+    @Operation(summary = "Delete account")
+    public Mono<ResponseEntity<Void>> deleteAccount(@PathVariable String accountNumber) {
+        return service.deleteAccount(accountNumber)
+                .then(Mono.just(ResponseEntity.noContent().<Void>build()))
+                .onErrorResume(AccountException.class, e -> Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    @PatchMapping("/{accountNumber}/balance")
+    @Operation(summary = "Update account balance")
+    public Mono<ResponseEntity<AccountDTO>> updateBalance(
+            @PathVariable String accountNumber,
+            @RequestBody BigDecimal balance) {
+        if (balance.compareTo(BigDecimal.ZERO) < 0 || balance.stripTrailingZeros().scale() > Money.SCALE) {
+            return Mono.just(ResponseEntity.badRequest().build());
+        }
+        return service.updateBalance(accountNumber, balance)
+                .map(ResponseEntity::ok)
+                .onErrorResume(AccountException.class, e -> Mono.just(ResponseEntity.notFound().build()))
+                .onErrorResume(IllegalArgumentException.class, e -> Mono.just(ResponseEntity.badRequest().build()));
+    }
+}
@@ -0,0 +1,97 @@
+package com.hsbc.transaction_demo.controller;
+
+import com.hsbc.transaction_demo.dto.BatchTransferRequestDTO;
+import com.hsbc.transaction_demo.dto.BatchTransferResultDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.service.reactive.ReactiveTransactionService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Reactive counterpart of {@link TransactionController}, see {@link ReactiveAccountController}.
+ */
+@RestController
+@RequestMapping("/api/transactions")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+@Tag(name = "Transaction API", description = "Transaction Management API")
+public class ReactiveTransactionController {
+    private final ReactiveTransactionService service;
+
+    @PostMapping
+    @Operation(summary = "Create new transaction; a retry with the same Idempotency-Key returns the original transaction")
+    public Mono<ResponseEntity<TransactionDTO>> createTransaction(
+            @Valid @RequestBody TransactionDTO transaction,
+            @RequestHeader(value = TransactionController.IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return service.createTransaction(transaction, idempotencyKey).map(ResponseEntity::ok);
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Create a batch of transactions, all-or-nothing when atomic is set")
+    public Mono<ResponseEntity<BatchTransferResultDTO>> createTransactions(
+            @Valid @RequestBody BatchTransferRequestDTO batch) {
+        return service.createTransactions(batch.getTransactions(), batch.isAtomic()).map(ResponseEntity::ok);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Get transaction by ID")
+    public Mono<ResponseEntity<TransactionDTO>> getTransaction(@PathVariable UUID id) {
+        return service.getTransaction(id).map(ResponseEntity::ok);
+    }
+
+    @GetMapping
+    @Operation(summary = "Get all transactions with pagination")
+    public Mono<ResponseEntity<Page<TransactionDTO>>> getAllTransactions(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "timestamp") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDirection) {
+        Sort.Direction direction = Sort.Direction.fromString(sortDirection);
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(direction, sortBy));
+        return service.getAllTransactions(pageRequest).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(params = "cursor")
+    @Operation(summary = "Get transactions with keyset pagination, pass an empty cursor for the first page")
+    public Mono<ResponseEntity<CursorPageDTO<TransactionDTO>>> getTransactionsAfter(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "desc") String sortDirection) {
+        boolean newestFirst = Sort.Direction.fromString(sortDirection).isDescending();
+        return service.getTransactions(cursor, size, newestFirst).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(params = "!cursor", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream all transactions in timestamp order as newline-delimited JSON")
+    public Flux<TransactionDTO> streamTransactions(@RequestParam(defaultValue = "desc") String sortDirection) {
+        return service.streamTransactions(Sort.Direction.fromString(sortDirection).isDescending());
+    }
+
+    @PutMapping("/{id}")
+    @Operation(summary = "Update transaction")
+    public Mono<ResponseEntity<TransactionDTO>> updateTransaction(
+            @PathVariable UUID id,
+            @Valid @RequestBody TransactionDTO transaction) {
+        return service.updateTransaction(id, transaction).map(ResponseEntity::ok);
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete transaction")
+    public Mono<ResponseEntity<Void>> deleteTransaction(@PathVariable UUID id) {
+        return service.deleteTransaction(id).then(Mono.just(ResponseEntity.noContent().build()));
+    }
+}
@@ -1,37 +1,66 @@
 package com.hsbc.transaction_demo.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.dto.BatchTransferRequestDTO;
+import com.hsbc.transaction_demo.dto.BatchTransferResultDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.Tagged;
 import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.model.TransactionStatus;
 import com.hsbc.transaction_demo.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/transactions")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequiredArgsConstructor
 @Tag(name = "Transaction API", description = "Transaction Management API")
 public class TransactionController {
+    static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+
     private final TransactionService service;
+    private final ObjectMapper mapper;
 
     @PostMapping
-    @Operation(summary = "Create new transaction")
-    public ResponseEntity<TransactionDTO> createTransaction(@Valid @RequestBody TransactionDTO transaction) {
-        return ResponseEntity.ok(service.createTransaction(transaction));
+    @Operation(summary = "Create new transaction; a retry with the same Idempotency-Key returns the original transaction")
+    public ResponseEntity<TransactionDTO> createTransaction(
+            @Valid @RequestBody TransactionDTO transaction,
+            @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        return ResponseEntity.ok(service.createTransaction(transaction, idempotencyKey));
+    }
+
+    @PostMapping("/batch")
+    @Operation(summary = "Create a batch of transactions, all-or-nothing when atomic is set")
+    public ResponseEntity<BatchTransferResultDTO> createTransactions(@Valid @RequestBody BatchTransferRequestDTO batch) {
+        return ResponseEntity.ok(service.createTransactions(batch.getTransactions(), batch.isAtomic()));
     }
 
     @GetMapping("/{id}")
-    @Operation(summary = "Get transaction by ID")
-    public ResponseEntity<TransactionDTO> getTransaction(@PathVariable UUID id) {
-        return ResponseEntity.ok(service.getTransaction(id));
+    @Operation(summary = "Get transaction by ID, 304 if the ETag in If-None-Match still matches")
+    public ResponseEntity<TransactionDTO> getTransaction(@PathVariable UUID id, WebRequest request) {
+        Tagged<TransactionDTO> transaction = service.getTaggedTransaction(id);
+        if (request.checkNotModified(transaction.eTag())) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(transaction.eTag()).body(transaction.body().get());
     }
 
     @GetMapping
@@ -46,6 +75,36 @@ public class TransactionController {
         return ResponseEntity.ok(service.getAllTransactions(pageRequest));
     }
 
+    @GetMapping(params = "cursor")
+    @Operation(summary = "Get transactions with keyset pagination, pass an empty cursor for the first page")
+    public ResponseEntity<CursorPageDTO<TransactionDTO>> getTransactionsAfter(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "desc") String sortDirection) {
+        boolean newestFirst = Sort.Direction.fromString(sortDirection).isDescending();
+        return ResponseEntity.ok(service.getTransactions(cursor, size, newestFirst));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Export transactions as newline-delimited JSON, filtered by account, time range [from, to) and status")
+    public ResponseEntity<Void> exportTransactions(
+            @RequestParam(required = false) String accountNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) TransactionStatus status,
+            @RequestParam(defaultValue = "desc") String sortDirection,
+            HttpServletResponse response) throws IOException {
+        boolean newestFirst = Sort.Direction.fromString(sortDirection).isDescending();
+        // Checked before the first line goes out, while the status can still change
+        if (from != null && to != null && !from.isBefore(to)) {
+            return ResponseEntity.badRequest().build();
+        }
+        try (NdjsonWriter out = new NdjsonWriter(mapper, response)) {
+            service.exportTransactions(accountNumber, from, to, status, newestFirst, out::accept);
+        }
+        return null;
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Update transaction")
     public ResponseEntity<TransactionDTO> updateTransaction(
@@ -0,0 +1,27 @@
+package com.hsbc.transaction_demo.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferRequestDTO {
+    public static final int MAX_TRANSACTIONS = 1000;
+
+    @NotEmpty(message = "Batch must contain at least one transaction")
+    @Size(max = MAX_TRANSACTIONS, message = "Batch cannot contain more than " + MAX_TRANSACTIONS + " transactions")
+    @Valid
+    private List<TransactionDTO> transactions;
+
+    // All-or-nothing when true, otherwise every transaction succeeds or fails on its own
+    private boolean atomic;
+}
@@ -0,0 +1,34 @@
+package com.hsbc.transaction_demo.dto;
+
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResultDTO {
+    private boolean atomic;
+    private int succeeded;
+    // Transfers left in doubt, recorded as pending transactions that complete on their own
+    private int pending;
+    private int failed;
+    private List<Item> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+        // Position of the transaction in the submitted batch
+        private int index;
+        private TransactionStatus status;
+        private TransactionDTO transaction;
+        private String error;
+    }
+}
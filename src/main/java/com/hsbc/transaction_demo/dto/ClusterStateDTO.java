@@ -0,0 +1,21 @@
+package com.hsbc.transaction_demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ClusterStateDTO {
+    private String self;
+    private List<String> nodes;
+    // Accounts stored on this node
+    private long accounts;
+    // Accounts handed to other nodes by the membership change that produced this state
+    private long moved;
+}
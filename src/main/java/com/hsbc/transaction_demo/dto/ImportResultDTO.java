@@ -0,0 +1,30 @@
+package com.hsbc.transaction_demo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportResultDTO {
+    private long imported;
+    private long failed;
+    private long elapsedMillis;
+    private long accountsPerSecond;
+    // The first failures only, see failed for the total
+    private List<LineError> errors;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineError {
+        private long line;
+        private String error;
+    }
+}
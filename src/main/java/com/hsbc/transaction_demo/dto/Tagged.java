@@ -0,0 +1,25 @@
+package com.hsbc.transaction_demo.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Supplier;
+
+/**
+ * A response body together with the strong entity tag of the state it shows. The body is
+ * only built when asked for, so a conditional GET whose tag still matches costs a lookup.
+ *
+ * @param eTag unquoted entity tag, changes whenever the entity does
+ */
+public record Tagged<T>(String eTag, Supplier<T> body) {
+
+    /**
+     * Tags an entity by its version and creation time. The version alone repeats when an
+     * entity is deleted and created again under the same key; the creation time tells the two
+     * apart.
+     */
+    public static <T> Tagged<T> of(long version, LocalDateTime created, Supplier<T> body) {
+        long createdNanos = created == null ? 0
+                : created.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + created.getNano();
+        return new Tagged<>(Long.toHexString(version) + "-" + Long.toHexString(createdNanos), body);
+    }
+}
@@ -0,0 +1,21 @@
+package com.hsbc.transaction_demo.exception;
+
+/**
+ * The account now belongs to another node of the cluster, which has it or is about to get it.
+ * The request changed nothing here and can be sent to {@link #getOwner()} instead.
+ */
+public class AccountMovedException extends TransactionException {
+    private final String owner;
+
+    public AccountMovedException(String owner, String message) {
+        super(Reason.UNAVAILABLE, message);
+        this.owner = owner;
+    }
+
+    /**
+     * @return the base URL of the node owning the account
+     */
+    public String getOwner() {
+        return owner;
+    }
+}
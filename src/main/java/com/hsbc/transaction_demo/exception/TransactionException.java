@@ -1,7 +1,32 @@
 package com.hsbc.transaction_demo.exception;
 
 public class TransactionException extends RuntimeException {
+
+    /** Why a transaction was rejected, counted per value in the rejection metrics */
+    public enum Reason {
+        INVALID_REQUEST,
+        INVALID_AMOUNT,
+        SAME_ACCOUNT,
+        ACCOUNT_NOT_FOUND,
+        INSUFFICIENT_BALANCE,
+        BALANCE_OVERFLOW,
+        DUPLICATE,
+        IDEMPOTENCY_KEY_REUSED,
+        UNAVAILABLE
+    }
+
+    private final Reason reason;
+
     public TransactionException(String message) {
+        this(Reason.INVALID_REQUEST, message);
+    }
+
+    public TransactionException(Reason reason, String message) {
         super(message);
+        this.reason = reason;
+    }
+
+    public Reason getReason() {
+        return reason;
     }
-} 
\ No newline at end of file
+}
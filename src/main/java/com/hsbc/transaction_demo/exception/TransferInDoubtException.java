@@ -0,0 +1,24 @@
+package com.hsbc.transaction_demo.exception;
+
+import java.util.UUID;
+
+/**
+ * The source of a transfer was debited but whether the target was credited is not known yet.
+ * Nothing is to be undone by the caller: the transfer is recorded as a pending transaction
+ * that is completed, or failed and refunded, once the outcome is known.
+ */
+public class TransferInDoubtException extends TransactionException {
+    private final UUID transactionId;
+
+    public TransferInDoubtException(UUID transactionId, String message) {
+        super(Reason.UNAVAILABLE, message);
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * @return the pending transaction that tracks the transfer
+     */
+    public UUID getTransactionId() {
+        return transactionId;
+    }
+}
@@ -0,0 +1,535 @@
+package com.hsbc.transaction_demo.journal;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * {@link Journal} backed by numbered segment files of {@code [length][crc32c][payload]}
+ * frames. Appends only copy the encoded frame into an in-memory buffer; a background flusher
+ * swaps that buffer out, writes it with one {@link FileChannel#write} and one
+ * {@link FileChannel#force}, and so commits every writer that appended in the meantime as a
+ * group.
+ *
+ * <ul>
+ *   <li>{@link Durability#SYNC}: {@link #sync()} waits for the fsync covering the caller's
+ *       records. {@code commitDelay} lets the flusher linger to batch more writers per fsync,
+ *       trading latency for throughput.</li>
+ *   <li>{@link Durability#ASYNC}: {@link #sync()} returns at once and the flusher forces the
+ *       file every {@code flushInterval}, so a crash can lose that window of changes.</li>
+ * </ul>
+ *
+ * Appends are spread over several buffers, lanes, each with its own lock, so that writers of
+ * different accounts do not queue on one lock. A record's lane follows from its account number
+ * or transaction id (transfer id for cross-node credits); every change of one entity goes through the same lane and keeps its
+ * order, while changes of different entities may be written in another order than they were
+ * appended. Group markers have a lane of their own that the flusher swaps out first and writes
+ * last, so a {@link JournalRecord.GroupCommitted} never lands in the file before a record of
+ * its group.
+ *
+ * <p>{@link #rotate()} starts a new segment so that a snapshot can make the older ones obsolete.
+ * On open, a torn or corrupt tail left by a crash in the newest segment is truncated away.
+ */
+public class FileJournal implements Journal, AutoCloseable {
+    private static final int HEADER_BYTES = 8;
+    private static final Pattern SEGMENT_NAME = Pattern.compile("journal-(\\d+)\\.log");
+
+    public enum Durability {
+        SYNC,
+        ASYNC
+    }
+
+    private final Path directory;
+    private final Durability durability;
+    private final long commitDelayNanos;
+    private final long flushIntervalNanos;
+
+    // Records appended but not yet handed to the flusher, and how many went into this lane so far
+    private static final class Lane {
+        final ReentrantLock lock = new ReentrantLock();
+        ByteBuffer pending = ByteBuffer.allocate(1 << 14);
+        ByteBuffer writing = ByteBuffer.allocate(1 << 14);
+        volatile long appended;
+    }
+
+    // Guards the counters below and the flusher's conditions
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushNeeded = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    // Held while bytes go to disk, so a rotation never interleaves with a flush
+    private final ReentrantLock ioLock = new ReentrantLock();
+
+    // Entity lanes first, the group marker lane last
+    private final Lane[] lanes;
+    private final long[] durable;
+    private int syncWaiters;
+    private volatile IOException failure;
+    private volatile boolean closed;
+    private long segment;
+    private FileChannel channel;
+    private final Thread flusher;
+
+    public FileJournal(Path directory, Durability durability, long commitDelayMicros, long flushIntervalMillis)
+            throws IOException {
+        this(directory, durability, commitDelayMicros, flushIntervalMillis,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    FileJournal(Path directory, Durability durability, long commitDelayMicros, long flushIntervalMillis,
+                int entityLanes) throws IOException {
+        this.lanes = new Lane[entityLanes + 1];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new Lane();
+        }
+        this.durable = new long[lanes.length];
+        this.directory = directory;
+        this.durability = durability;
+        this.commitDelayNanos = TimeUnit.MICROSECONDS.toNanos(commitDelayMicros);
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        Files.createDirectories(directory);
+
+        List<Long> segments = segments();
+        this.segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        this.channel = open(segment);
+        long validLength = read(channel, channel.size(), null);
+        if (validLength < channel.size()) {
+            channel.truncate(validLength);
+        }
+        channel.position(validLength);
+
+        this.flusher = new Thread(this::flushLoop, "journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    @Override
+    public void append(JournalRecord record) {
+        JournalGroup group = JournalGroup.current();
+        byte[] payload = JournalCodec.encode(group == null ? record : new JournalRecord.Grouped(group.id(), record));
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        Lane lane = lanes[laneOf(record)];
+        boolean full;
+        lane.lock.lock();
+        try {
+            checkOpen();
+            ensureCapacity(lane, HEADER_BYTES + payload.length);
+            lane.pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            lane.appended++;
+            full = lane.pending.position() >= lane.pending.capacity() / 2;
+        } finally {
+            lane.lock.unlock();
+        }
+        if (durability == Durability.ASYNC && full) {
+            lock.lock();
+            try {
+                flushNeeded.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public JournalGroup begin() {
+        if (JournalGroup.current() != null) {
+            return null;
+        }
+        // Random rather than counted, so that groups of earlier runs never share an id
+        JournalGroup group = new JournalGroup(ThreadLocalRandom.current().nextLong());
+        JournalGroup.enter(group);
+        return group;
+    }
+
+    @Override
+    public void commit(JournalGroup group) {
+        if (group != null) {
+            JournalGroup.enter(null);
+            append(new JournalRecord.GroupCommitted(group.id()));
+        }
+    }
+
+    @Override
+    public void sync() {
+        if (durability == Durability.ASYNC) {
+            return;
+        }
+        // Whatever lanes the caller appended to, their counts are at least its own records
+        long[] target = new long[lanes.length];
+        for (int i = 0; i < lanes.length; i++) {
+            target[i] = lanes[i].appended;
+        }
+        lock.lock();
+        try {
+            if (isDurable(target)) {
+                return;
+            }
+            syncWaiters++;
+            try {
+                flushNeeded.signal();
+                while (!isDurable(target)) {
+                    if (failure != null) {
+                        throw new UncheckedIOException("Journal write failed: " + directory, failure);
+                    }
+                    flushed.awaitUninterruptibly();
+                }
+            } finally {
+                syncWaiters--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void replay(Consumer<JournalRecord> handler) {
+        replay(0, handler);
+    }
+
+    /**
+     * Replays every segment numbered {@code fromSegment} or later, oldest first.
+     */
+    public long replay(long fromSegment, Consumer<JournalRecord> handler) {
+        long[] records = new long[1];
+        Consumer<JournalRecord> counting = record -> {
+            handler.accept(record);
+            records[0]++;
+        };
+        try {
+            for (long id : segments()) {
+                if (id < fromSegment) {
+                    continue;
+                }
+                try (FileChannel segmentChannel = FileChannel.open(segmentPath(id), StandardOpenOption.READ)) {
+                    read(segmentChannel, segmentChannel.size(), counting);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records[0];
+    }
+
+    /**
+     * Makes everything appended so far durable in the current segment and continues in a new
+     * one. Returns the new segment number: every record appended before this call lives in a
+     * lower-numbered segment.
+     */
+    public long rotate() throws IOException {
+        ioLock.lock();
+        try {
+            checkOpen();
+            long[] batchEnd = swapLanes();
+            writeLanes(channel);
+            channel.force(false);
+            FileChannel next = open(segment + 1);
+
+            lock.lock();
+            try {
+                channel.close();
+                channel = next;
+                segment++;
+                markDurable(batchEnd);
+                return segment;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes segments made obsolete by a snapshot that covers everything before {@code segmentId}.
+     */
+    public void deleteSegmentsBefore(long segmentId) throws IOException {
+        for (long id : segments()) {
+            if (id < segmentId) {
+                Files.deleteIfExists(segmentPath(id));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            flushNeeded.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private List<Long> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("journal-%010d.log", id));
+    }
+
+    private FileChannel open(long id) throws IOException {
+        return FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Walks the frames of a segment up to {@code end}, decoding them for {@code handler} when
+     * one is given, and returns the length of the intact prefix.
+     */
+    private static long read(FileChannel segmentChannel, long end, Consumer<JournalRecord> handler)
+            throws IOException {
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position + HEADER_BYTES <= end) {
+            header.clear();
+            segmentChannel.read(header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length <= 0 || position + HEADER_BYTES + length > end) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            segmentChannel.read(ByteBuffer.wrap(payload), position + HEADER_BYTES);
+            CRC32C crc = new CRC32C();
+            crc.update(payload);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            if (handler != null) {
+                handler.accept(JournalCodec.decode(new DataInputStream(new ByteArrayInputStream(payload))));
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    private int laneOf(JournalRecord record) {
+        return switch (record) {
+            case JournalRecord.AccountSaved saved -> entityLane(saved.account().getAccountNumber());
+            case JournalRecord.AccountDeleted deleted -> entityLane(deleted.accountNumber());
+            case JournalRecord.TransactionSaved saved -> entityLane(saved.transaction().getId());
+            case JournalRecord.TransactionDeleted deleted -> entityLane(deleted.id());
+            case JournalRecord.CreditPending pending -> entityLane(pending.transferId());
+            case JournalRecord.CreditSettled settled -> entityLane(settled.transferId());
+            case JournalRecord.CreditApplied applied -> entityLane(applied.transferId());
+            case JournalRecord.CreditForgotten forgotten -> entityLane(forgotten.transferId());
+            case JournalRecord.AccountsHandedOff handoff -> entityLane(handoff.handoffId());
+            case JournalRecord.HandoffAcknowledged acknowledged -> entityLane(acknowledged.handoffId());
+            case JournalRecord.HandoffReceived received -> entityLane(received.handoffId());
+            case JournalRecord.HandoffForgotten forgotten -> entityLane(forgotten.handoffId());
+            case JournalRecord.Grouped grouped -> laneOf(grouped.record());
+            case JournalRecord.GroupCommitted committed -> lanes.length - 1;
+            case JournalRecord.GroupDiscarded discarded -> lanes.length - 1;
+        };
+    }
+
+    private int entityLane(Object key) {
+        int h = key.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), lanes.length - 1);
+    }
+
+    private static void ensureCapacity(Lane lane, int bytes) {
+        ByteBuffer pending = lane.pending;
+        if (pending.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+            pending.flip();
+            larger.put(pending);
+            lane.pending = larger;
+        }
+    }
+
+    private void checkOpen() {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal write failed: " + directory, failure);
+        }
+        if (closed) {
+            throw new IllegalStateException("Journal is closed: " + directory);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            lock.lock();
+            try {
+                awaitFlushTrigger();
+            } finally {
+                lock.unlock();
+            }
+            if (closed && !hasPending()) {
+                return;
+            }
+            flush();
+            if (failure != null) {
+                return;
+            }
+        }
+    }
+
+    private void flush() {
+        ioLock.lock();
+        try {
+            if (!hasPending()) {
+                return;
+            }
+            long[] batchEnd = swapLanes();
+            FileChannel target;
+            lock.lock();
+            try {
+                target = channel;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                writeLanes(target);
+                target.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                    flushed.signalAll();
+                } else {
+                    markDurable(batchEnd);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private boolean hasPending() {
+        for (Lane lane : lanes) {
+            lane.lock.lock();
+            try {
+                if (lane.pending.position() > 0) {
+                    return true;
+                }
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Hands every lane's pending records to the flusher, the marker lane first: a marker taken
+     * now was appended after the records of its group, which are then taken now as well.
+     * Called with the I/O lock held.
+     *
+     * @return each lane's record count covered by this batch
+     */
+    private long[] swapLanes() {
+        long[] batchEnd = new long[lanes.length];
+        for (int i = lanes.length - 1; i >= 0; i--) {
+            Lane lane = lanes[i];
+            lane.lock.lock();
+            try {
+                ByteBuffer swap = lane.writing;
+                lane.writing = lane.pending;
+                lane.pending = swap;
+                lane.pending.clear();
+                batchEnd[i] = lane.appended;
+            } finally {
+                lane.lock.unlock();
+            }
+        }
+        return batchEnd;
+    }
+
+    // Writes the swapped out lanes in index order, so the markers come after their groups
+    private void writeLanes(FileChannel target) throws IOException {
+        try {
+            for (Lane lane : lanes) {
+                lane.writing.flip();
+                while (lane.writing.hasRemaining()) {
+                    target.write(lane.writing);
+                }
+            }
+        } finally {
+            for (Lane lane : lanes) {
+                lane.writing.clear();
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void markDurable(long[] batchEnd) {
+        for (int i = 0; i < durable.length; i++) {
+            durable[i] = Math.max(durable[i], batchEnd[i]);
+        }
+        flushed.signalAll();
+    }
+
+    // Called with the lock held
+    private boolean isDurable(long[] target) {
+        for (int i = 0; i < durable.length; i++) {
+            if (durable[i] < target[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Called with the lock held; returns when the pending records should be written out
+    private void awaitFlushTrigger() {
+        try {
+            if (durability == Durability.SYNC) {
+                while (syncWaiters == 0 && !closed) {
+                    flushNeeded.await();
+                }
+                if (commitDelayNanos > 0 && !closed) {
+                    // Give more writers the chance to join this group commit
+                    flushNeeded.awaitNanos(commitDelayNanos);
+                }
+            } else if (!closed) {
+                flushNeeded.awaitNanos(flushIntervalNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.hsbc.transaction_demo.journal;
+
+import java.util.function.Consumer;
+
+/**
+ * Append-only log of repository changes. Repositories {@link #append} while they hold the
+ * per-key lock of the change, so the log order matches the order changes became visible;
+ * services call {@link #sync} once their operation is complete, outside any lock, so that
+ * concurrent callers can share one flush.
+ */
+public interface Journal {
+
+    /** Journal used when persistence is disabled: nothing is written or replayed. */
+    Journal NONE = new Journal() {
+        @Override
+        public void append(JournalRecord record) {
+        }
+
+        @Override
+        public JournalGroup begin() {
+            return null;
+        }
+
+        @Override
+        public void commit(JournalGroup group) {
+        }
+
+        @Override
+        public void sync() {
+        }
+
+        @Override
+        public void replay(Consumer<JournalRecord> handler) {
+        }
+    };
+
+    void append(JournalRecord record);
+
+    /**
+     * Opens a {@link JournalGroup} on the calling thread: whatever it appends until
+     * {@link #commit} belongs to the group, and a crash before the commit makes recovery drop
+     * the whole group. A thread already in a group stays in it and gets null.
+     */
+    JournalGroup begin();
+
+    /**
+     * Closes a group returned by {@link #begin}, null included. Call it in a finally block:
+     * whatever the group changed in memory by then, even if it failed halfway, is what
+     * recovery has to restore.
+     */
+    void commit(JournalGroup group);
+
+    /**
+     * Returns once every record appended before this call is as durable as the configured
+     * durability mode promises.
+     */
+    void sync();
+
+    /** Feeds every intact record, oldest first, to {@code handler}. */
+    void replay(Consumer<JournalRecord> handler);
+}
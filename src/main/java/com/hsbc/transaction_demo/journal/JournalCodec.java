@@ -0,0 +1,302 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary encoding of journal records. Every nullable field is preceded by a
+ * presence flag; decimals are written as scale plus unscaled bytes and timestamps as
+ * epoch second plus nanos, so nothing goes through text formatting.
+ */
+public final class JournalCodec {
+    // Type 1 held accounts with a decimal balance; still decoded so older journals replay
+    private static final byte LEGACY_ACCOUNT_SAVED = 1;
+    private static final byte ACCOUNT_SAVED = 5;
+    private static final byte ACCOUNT_DELETED = 2;
+    // Type 3 held transactions without a version; still decoded so older journals replay
+    private static final byte LEGACY_TRANSACTION_SAVED = 3;
+    private static final byte TRANSACTION_SAVED = 6;
+    private static final byte TRANSACTION_DELETED = 4;
+    private static final byte GROUPED = 7;
+    private static final byte GROUP_COMMITTED = 8;
+    private static final byte GROUP_DISCARDED = 9;
+    private static final byte CREDIT_PENDING = 10;
+    private static final byte CREDIT_SETTLED = 11;
+    private static final byte CREDIT_APPLIED = 12;
+    private static final byte ACCOUNTS_HANDED_OFF = 13;
+    private static final byte HANDOFF_ACKNOWLEDGED = 14;
+    private static final byte HANDOFF_RECEIVED = 15;
+    private static final byte CREDIT_FORGOTTEN = 16;
+    private static final byte HANDOFF_FORGOTTEN = 17;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private JournalCodec() {
+    }
+
+    public static byte[] encode(JournalRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(out, record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void write(DataOutput out, JournalRecord record) throws IOException {
+        switch (record) {
+            case JournalRecord.AccountSaved saved -> {
+                out.writeByte(ACCOUNT_SAVED);
+                writeAccount(out, saved.account());
+            }
+            case JournalRecord.AccountDeleted deleted -> {
+                out.writeByte(ACCOUNT_DELETED);
+                out.writeUTF(deleted.accountNumber());
+            }
+            case JournalRecord.TransactionSaved saved -> {
+                out.writeByte(TRANSACTION_SAVED);
+                writeTransaction(out, saved.transaction());
+            }
+            case JournalRecord.TransactionDeleted deleted -> {
+                out.writeByte(TRANSACTION_DELETED);
+                writeUuid(out, deleted.id());
+            }
+            case JournalRecord.Grouped grouped -> {
+                out.writeByte(GROUPED);
+                out.writeLong(grouped.group());
+                write(out, grouped.record());
+            }
+            case JournalRecord.GroupCommitted committed -> {
+                out.writeByte(GROUP_COMMITTED);
+                out.writeLong(committed.group());
+            }
+            case JournalRecord.GroupDiscarded discarded -> {
+                out.writeByte(GROUP_DISCARDED);
+                out.writeLong(discarded.group());
+            }
+            case JournalRecord.CreditPending pending -> {
+                out.writeByte(CREDIT_PENDING);
+                writeUuid(out, pending.transferId());
+                out.writeUTF(pending.node());
+                out.writeUTF(pending.sourceAccountNumber());
+                out.writeUTF(pending.targetAccountNumber());
+                out.writeLong(pending.amount());
+            }
+            case JournalRecord.CreditSettled settled -> {
+                out.writeByte(CREDIT_SETTLED);
+                writeUuid(out, settled.transferId());
+            }
+            case JournalRecord.CreditApplied applied -> {
+                out.writeByte(CREDIT_APPLIED);
+                writeUuid(out, applied.transferId());
+            }
+            case JournalRecord.CreditForgotten forgotten -> {
+                out.writeByte(CREDIT_FORGOTTEN);
+                writeUuid(out, forgotten.transferId());
+            }
+            case JournalRecord.AccountsHandedOff handoff -> {
+                out.writeByte(ACCOUNTS_HANDED_OFF);
+                writeUuid(out, handoff.handoffId());
+                out.writeUTF(handoff.node());
+                out.writeInt(handoff.accounts().size());
+                for (Account account : handoff.accounts()) {
+                    writeAccount(out, account);
+                }
+            }
+            case JournalRecord.HandoffAcknowledged acknowledged -> {
+                out.writeByte(HANDOFF_ACKNOWLEDGED);
+                writeUuid(out, acknowledged.handoffId());
+            }
+            case JournalRecord.HandoffReceived received -> {
+                out.writeByte(HANDOFF_RECEIVED);
+                writeUuid(out, received.handoffId());
+            }
+            case JournalRecord.HandoffForgotten forgotten -> {
+                out.writeByte(HANDOFF_FORGOTTEN);
+                writeUuid(out, forgotten.handoffId());
+            }
+        }
+    }
+
+    public static JournalRecord decode(DataInput in) throws IOException {
+        byte type = in.readByte();
+        return switch (type) {
+            case ACCOUNT_SAVED -> new JournalRecord.AccountSaved(readAccount(in));
+            case LEGACY_ACCOUNT_SAVED -> new JournalRecord.AccountSaved(readLegacyAccount(in));
+            case ACCOUNT_DELETED -> new JournalRecord.AccountDeleted(in.readUTF());
+            case TRANSACTION_SAVED -> new JournalRecord.TransactionSaved(readTransaction(in));
+            case LEGACY_TRANSACTION_SAVED -> new JournalRecord.TransactionSaved(readLegacyTransaction(in));
+            case TRANSACTION_DELETED -> new JournalRecord.TransactionDeleted(readUuid(in));
+            case GROUPED -> new JournalRecord.Grouped(in.readLong(), decode(in));
+            case GROUP_COMMITTED -> new JournalRecord.GroupCommitted(in.readLong());
+            case GROUP_DISCARDED -> new JournalRecord.GroupDiscarded(in.readLong());
+            case CREDIT_PENDING -> new JournalRecord.CreditPending(readUuid(in), in.readUTF(), in.readUTF(),
+                    in.readUTF(), in.readLong());
+            case CREDIT_SETTLED -> new JournalRecord.CreditSettled(readUuid(in));
+            case CREDIT_APPLIED -> new JournalRecord.CreditApplied(readUuid(in));
+            case CREDIT_FORGOTTEN -> new JournalRecord.CreditForgotten(readUuid(in));
+            case ACCOUNTS_HANDED_OFF -> readHandoff(in);
+            case HANDOFF_ACKNOWLEDGED -> new JournalRecord.HandoffAcknowledged(readUuid(in));
+            case HANDOFF_RECEIVED -> new JournalRecord.HandoffReceived(readUuid(in));
+            case HANDOFF_FORGOTTEN -> new JournalRecord.HandoffForgotten(readUuid(in));
+            default -> throw new IOException("Unknown journal record type: " + type);
+        };
+    }
+
+    private static JournalRecord.AccountsHandedOff readHandoff(DataInput in) throws IOException {
+        UUID handoffId = readUuid(in);
+        String node = in.readUTF();
+        int count = in.readInt();
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(readAccount(in));
+        }
+        return new JournalRecord.AccountsHandedOff(handoffId, node, accounts);
+    }
+
+    public static void writeAccount(DataOutput out, Account account) throws IOException {
+        out.writeUTF(account.getAccountNumber());
+        writeNullableString(out, account.getUsername());
+        out.writeLong(account.getBalance());
+        writeTimestamp(out, account.getCreatedAt());
+        out.writeLong(account.getVersion());
+        out.writeBoolean(account.getId() != null);
+        if (account.getId() != null) {
+            out.writeLong(account.getId());
+        }
+    }
+
+    public static Account readAccount(DataInput in) throws IOException {
+        return Account.builder()
+                .accountNumber(in.readUTF())
+                .username(readNullableString(in))
+                .balance(in.readLong())
+                .createdAt(readTimestamp(in))
+                .version(in.readLong())
+                .id(in.readBoolean() ? in.readLong() : null)
+                .build();
+    }
+
+    /**
+     * Reads an account written before balances were kept in minor units.
+     */
+    public static Account readLegacyAccount(DataInput in) throws IOException {
+        return Account.builder()
+                .accountNumber(in.readUTF())
+                .username(readNullableString(in))
+                .balance(Money.toMinorUnits(readDecimal(in)))
+                .createdAt(readTimestamp(in))
+                .version(in.readLong())
+                .id(in.readBoolean() ? in.readLong() : null)
+                .build();
+    }
+
+    public static void writeTransaction(DataOutput out, Transaction transaction) throws IOException {
+        writeUuid(out, transaction.getId());
+        writeNullableString(out, transaction.getAccountNumber());
+        writeNullableString(out, transaction.getTargetAccountNumber());
+        writeDecimal(out, transaction.getAmount());
+        writeNullableString(out, transaction.getDescription());
+        writeTimestamp(out, transaction.getTimestamp());
+        out.writeByte(transaction.getStatus() == null ? -1 : transaction.getStatus().ordinal());
+        out.writeLong(transaction.getVersion());
+    }
+
+    public static Transaction readTransaction(DataInput in) throws IOException {
+        Transaction transaction = readLegacyTransaction(in);
+        transaction.setVersion(in.readLong());
+        return transaction;
+    }
+
+    /**
+     * Reads a transaction written before transactions carried a version; it comes back as
+     * version 0.
+     */
+    public static Transaction readLegacyTransaction(DataInput in) throws IOException {
+        UUID id = readUuid(in);
+        String accountNumber = readNullableString(in);
+        String targetAccountNumber = readNullableString(in);
+        BigDecimal amount = readDecimal(in);
+        String description = readNullableString(in);
+        LocalDateTime timestamp = readTimestamp(in);
+        byte status = in.readByte();
+        return Transaction.builder()
+                .id(id)
+                .accountNumber(accountNumber)
+                .targetAccountNumber(targetAccountNumber)
+                .amount(amount)
+                .description(description)
+                .timestamp(timestamp)
+                .status(status < 0 ? null : STATUSES[status])
+                .build();
+    }
+
+    private static void writeUuid(DataOutput out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDecimal(DataOutput out, BigDecimal value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            out.writeInt(value.scale());
+            out.writeShort(unscaled.length);
+            out.write(unscaled);
+        }
+    }
+
+    private static BigDecimal readDecimal(DataInput in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        int scale = in.readInt();
+        byte[] unscaled = new byte[in.readUnsignedShort()];
+        in.readFully(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    private static void writeTimestamp(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readTimestamp(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+    }
+}
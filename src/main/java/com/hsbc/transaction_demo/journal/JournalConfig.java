@@ -0,0 +1,36 @@
+package com.hsbc.transaction_demo.journal;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+@Configuration
+public class JournalConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "false", matchIfMissing = true)
+    public Journal journal() {
+        return Journal.NONE;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+    public FileJournal fileJournal(@Value("${transaction.journal.directory:data}") String directory,
+                                   @Value("${transaction.journal.durability:sync}") String durability,
+                                   @Value("${transaction.journal.commit-delay-micros:0}") long commitDelayMicros,
+                                   @Value("${transaction.journal.flush-interval-ms:10}") long flushIntervalMillis)
+            throws IOException {
+        return new FileJournal(Path.of(directory), FileJournal.Durability.valueOf(durability.toUpperCase()),
+                commitDelayMicros, flushIntervalMillis);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+    public SnapshotStore snapshotStore(@Value("${transaction.journal.directory:data}") String directory) {
+        return new SnapshotStore(Path.of(directory));
+    }
+}
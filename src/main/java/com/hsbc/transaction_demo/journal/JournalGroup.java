@@ -0,0 +1,66 @@
+package com.hsbc.transaction_demo.journal;
+
+import java.util.function.Supplier;
+
+/**
+ * Records that recovery applies all together or not at all, such as the debit, the credit and
+ * the transaction record of one transfer. Everything a thread appends while it runs in a group
+ * belongs to that group; a transfer engine that hands work to its own threads carries the
+ * caller's group over with {@link #current()} and {@link #runIn}.
+ */
+public final class JournalGroup {
+    private static final ThreadLocal<JournalGroup> CURRENT = new ThreadLocal<>();
+
+    private final long id;
+
+    JournalGroup(long id) {
+        this.id = id;
+    }
+
+    long id() {
+        return id;
+    }
+
+    /**
+     * @return the group of the calling thread, or null outside any group
+     */
+    public static JournalGroup current() {
+        return CURRENT.get();
+    }
+
+    static void enter(JournalGroup group) {
+        CURRENT.set(group);
+    }
+
+    /**
+     * Runs {@code command} in {@code group}, or outside any group when it is null, then puts
+     * back the calling thread's own group.
+     */
+    public static void runIn(JournalGroup group, Runnable command) {
+        runIn(group, () -> {
+            command.run();
+            return null;
+        });
+    }
+
+    public static <T> T runIn(JournalGroup group, Supplier<T> command) {
+        JournalGroup outer = CURRENT.get();
+        if (outer == group) {
+            return command.get();
+        }
+        CURRENT.set(group);
+        try {
+            return command.get();
+        } finally {
+            CURRENT.set(outer);
+        }
+    }
+
+    /**
+     * Wraps {@code command} to run in the calling thread's group on whichever thread runs it.
+     */
+    public static Runnable carry(Runnable command) {
+        JournalGroup group = CURRENT.get();
+        return group == null ? command : () -> runIn(group, command);
+    }
+}
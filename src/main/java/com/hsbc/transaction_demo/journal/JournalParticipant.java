@@ -0,0 +1,25 @@
+package com.hsbc.transaction_demo.journal;
+
+import java.util.stream.Stream;
+
+/**
+ * State kept outside the repositories that journals its changes with records of its own, such
+ * as the credits a cluster node has in flight. Recovery hands it those records in journal
+ * order; snapshots carry {@link #snapshotRecords()}, since the segments holding the original
+ * records are deleted once a snapshot covers them.
+ */
+public interface JournalParticipant {
+
+    /**
+     * Applies a recovered record.
+     *
+     * @return false if the record is not one of this participant's
+     */
+    boolean restore(JournalRecord record);
+
+    /**
+     * Records that rebuild the current state when restored in order, produced while the
+     * snapshot is written.
+     */
+    Stream<JournalRecord> snapshotRecords();
+}
@@ -0,0 +1,71 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Transaction;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * One logged repository change. Replaying the records of a journal in order rebuilds
+ * the repositories exactly as they were when the last record was written.
+ */
+public sealed interface JournalRecord {
+
+    record AccountSaved(Account account) implements JournalRecord {
+    }
+
+    record AccountDeleted(String accountNumber) implements JournalRecord {
+    }
+
+    record TransactionSaved(Transaction transaction) implements JournalRecord {
+    }
+
+    record TransactionDeleted(UUID id) implements JournalRecord {
+    }
+
+    /** A change made within a {@link JournalGroup}, only replayed once the group is committed */
+    record Grouped(long group, JournalRecord record) implements JournalRecord {
+    }
+
+    /** Every change of the group has been appended */
+    record GroupCommitted(long group) implements JournalRecord {
+    }
+
+    /** Written by recovery for a group a crash left uncommitted, so later replays drop it at once */
+    record GroupDiscarded(long group) implements JournalRecord {
+    }
+
+    /** The source of a cross-node transfer was debited and the credit on {@code node} is outstanding */
+    record CreditPending(UUID transferId, String node, String sourceAccountNumber, String targetAccountNumber,
+                         long amount) implements JournalRecord {
+    }
+
+    /** The outstanding credit was applied or refused, and the source refunded if it was refused */
+    record CreditSettled(UUID transferId) implements JournalRecord {
+    }
+
+    /** This node applied the credit of a transfer coordinated by another node */
+    record CreditApplied(UUID transferId) implements JournalRecord {
+    }
+
+    /** The coordinator settled the applied credit and will not send it again */
+    record CreditForgotten(UUID transferId) implements JournalRecord {
+    }
+
+    /** The accounts were removed here and are being handed over to their new owner {@code node} */
+    record AccountsHandedOff(UUID handoffId, String node, List<Account> accounts) implements JournalRecord {
+    }
+
+    /** The new owner stored the accounts of the handoff */
+    record HandoffAcknowledged(UUID handoffId) implements JournalRecord {
+    }
+
+    /** This node stored the accounts of a handoff from another node */
+    record HandoffReceived(UUID handoffId) implements JournalRecord {
+    }
+
+    /** The sender recorded the acknowledgement of the stored handoff and will not send it again */
+    record HandoffForgotten(UUID handoffId) implements JournalRecord {
+    }
+}
@@ -0,0 +1,211 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Rebuilds the repositories while the context starts, i.e. before the web server accepts its
+ * first request: the latest snapshot is streamed in first, then only the journal written
+ * after it is replayed. The duplicate index is then refilled from the recovered transactions.
+ *
+ * <p>Records of a {@link JournalGroup} are held back, together with everything appended after
+ * them, until the group is committed, so replay order stays the order of the journal. Groups
+ * still open at the end of the journal were cut off by a crash: their records are dropped and
+ * a {@link JournalRecord.GroupDiscarded} is appended for each, so later recoveries do not have to
+ * hold the rest of the journal back for them.
+ *
+ * <p>Records of {@link JournalParticipant}s are handed to them in the same order, those kept
+ * in the snapshot first.
+ */
+@Slf4j
+@Component
+public class JournalRecovery {
+    private final Journal journal;
+    private final Optional<SnapshotStore> snapshots;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final DuplicateTransactionIndex duplicateIndex;
+    private final List<JournalParticipant> participants;
+
+    @Getter
+    private RecoveryReport report;
+
+    // Groups appended but not yet committed at the replay position, and what was read since the
+    // oldest of them began
+    private final Set<Long> open = new HashSet<>();
+    private final Set<Long> discarded = new HashSet<>();
+    private final List<JournalRecord> held = new ArrayList<>();
+
+    public JournalRecovery(Journal journal, Optional<SnapshotStore> snapshots, AccountRepository accountRepository,
+                           TransactionRepository transactionRepository, DuplicateTransactionIndex duplicateIndex) {
+        this(journal, snapshots, accountRepository, transactionRepository, duplicateIndex, List.of());
+    }
+
+    @Autowired
+    public JournalRecovery(Journal journal, Optional<SnapshotStore> snapshots, AccountRepository accountRepository,
+                           TransactionRepository transactionRepository, DuplicateTransactionIndex duplicateIndex,
+                           ObjectProvider<JournalParticipant> participants) {
+        this(journal, snapshots, accountRepository, transactionRepository, duplicateIndex,
+                participants.orderedStream().toList());
+    }
+
+    public JournalRecovery(Journal journal, Optional<SnapshotStore> snapshots, AccountRepository accountRepository,
+                           TransactionRepository transactionRepository, DuplicateTransactionIndex duplicateIndex,
+                           List<JournalParticipant> participants) {
+        this.journal = journal;
+        this.snapshots = snapshots;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.duplicateIndex = duplicateIndex;
+        this.participants = participants;
+    }
+
+    @PostConstruct
+    public void recover() {
+        long start = System.nanoTime();
+        SnapshotStore.Loaded loaded = loadSnapshot().orElse(null);
+        long loadedAt = System.nanoTime();
+
+        long[] records = new long[1];
+        if (loaded != null && journal instanceof FileJournal fileJournal) {
+            records[0] = fileJournal.replay(loaded.replayFrom(), this::apply);
+        } else {
+            journal.replay(record -> {
+                apply(record);
+                records[0]++;
+            });
+        }
+        discardOpenGroups();
+        duplicateIndex.rebuild(transactionRepository);
+        long end = System.nanoTime();
+
+        report = new RecoveryReport(
+                loaded == null ? 0 : loaded.accounts(),
+                loaded == null ? 0 : loaded.transactions(),
+                records[0],
+                (loadedAt - start) / 1_000_000,
+                (end - loadedAt) / 1_000_000);
+        if (loaded != null || records[0] > 0) {
+            log.info("Recovered {} accounts and {} transactions from snapshot in {} ms, replayed {} journal records in {} ms, total {} ms",
+                    report.snapshotAccounts(), report.snapshotTransactions(), report.snapshotMillis(),
+                    report.journalRecords(), report.replayMillis(), report.totalMillis());
+        }
+    }
+
+    private Optional<SnapshotStore.Loaded> loadSnapshot() {
+        if (snapshots.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return snapshots.get().loadLatest(accountRepository::restore, transactionRepository::restore,
+                    this::restore);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot load snapshot", e);
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.Grouped grouped -> {
+                open.add(grouped.group());
+                held.add(grouped);
+            }
+            case JournalRecord.GroupCommitted committed -> close(committed.group(), false);
+            case JournalRecord.GroupDiscarded dropped -> close(dropped.group(), true);
+            default -> {
+                if (open.isEmpty()) {
+                    restore(record);
+                } else {
+                    held.add(record);
+                }
+            }
+        }
+    }
+
+    private void close(long group, boolean discard) {
+        // A group whose records went to an older segment than the replay started from closes nothing
+        if (!open.remove(group)) {
+            return;
+        }
+        if (discard) {
+            discarded.add(group);
+        }
+        if (open.isEmpty()) {
+            release();
+        }
+    }
+
+    private void release() {
+        for (JournalRecord record : held) {
+            if (!(record instanceof JournalRecord.Grouped grouped)) {
+                restore(record);
+            } else if (!discarded.contains(grouped.group())) {
+                restore(grouped.record());
+            }
+        }
+        held.clear();
+        discarded.clear();
+    }
+
+    private void discardOpenGroups() {
+        if (open.isEmpty()) {
+            return;
+        }
+        log.warn("Dropping {} journal groups left uncommitted by a crash", open.size());
+        List<Long> cutOff = List.copyOf(open);
+        discarded.addAll(cutOff);
+        open.clear();
+        release();
+        for (long group : cutOff) {
+            journal.append(new JournalRecord.GroupDiscarded(group));
+        }
+        journal.sync();
+    }
+
+    private void restore(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.AccountSaved saved -> accountRepository.restore(saved.account());
+            case JournalRecord.AccountDeleted deleted -> accountRepository.restoreDeleted(deleted.accountNumber());
+            case JournalRecord.TransactionSaved saved -> transactionRepository.restore(saved.transaction());
+            case JournalRecord.TransactionDeleted deleted -> transactionRepository.restoreDeleted(deleted.id());
+            case JournalRecord.Grouped grouped -> restore(grouped.record());
+            case JournalRecord.GroupCommitted committed -> {
+            }
+            case JournalRecord.GroupDiscarded dropped -> {
+            }
+            case JournalRecord.CreditPending pending -> restoreParticipant(pending);
+            case JournalRecord.CreditSettled settled -> restoreParticipant(settled);
+            case JournalRecord.CreditApplied applied -> restoreParticipant(applied);
+            case JournalRecord.CreditForgotten forgotten -> restoreParticipant(forgotten);
+            case JournalRecord.AccountsHandedOff handoff -> restoreParticipant(handoff);
+            case JournalRecord.HandoffAcknowledged acknowledged -> restoreParticipant(acknowledged);
+            case JournalRecord.HandoffReceived received -> restoreParticipant(received);
+            case JournalRecord.HandoffForgotten forgotten -> restoreParticipant(forgotten);
+        }
+    }
+
+    private void restoreParticipant(JournalRecord record) {
+        for (JournalParticipant participant : participants) {
+            if (participant.restore(record)) {
+                return;
+            }
+        }
+        // Journaled by a feature that is switched off now, such as clustering
+        log.debug("No participant restores {}", record);
+    }
+}
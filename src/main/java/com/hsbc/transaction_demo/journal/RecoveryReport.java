@@ -0,0 +1,15 @@
+package com.hsbc.transaction_demo.journal;
+
+/**
+ * What startup recovery loaded and how long each phase took.
+ */
+public record RecoveryReport(long snapshotAccounts,
+                             long snapshotTransactions,
+                             long journalRecords,
+                             long snapshotMillis,
+                             long replayMillis) {
+
+    public long totalMillis() {
+        return snapshotMillis + replayMillis;
+    }
+}
@@ -0,0 +1,194 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Transaction;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Point-in-time copies of the repositories in the {@link JournalCodec} binary format, written
+ * and read as one sequential stream:
+ * {@code [magic][format][replayFrom][entity]*[end][crc32c]}, where an entity is an account, a
+ * transaction or a record of a {@link JournalParticipant}.
+ *
+ * <p>{@code replayFrom} is the first journal segment recovery must replay on top of the
+ * snapshot. Files are written to a temporary name, forced and atomically renamed, so a crash
+ * mid-write never leaves a half snapshot behind.
+ */
+public class SnapshotStore {
+    private static final int MAGIC = 0x54445350; // "TDSP"
+    // Format 1 stored decimal balances, format 2 minor units, format 3 adds transaction versions,
+    // format 4 participant records
+    private static final byte DECIMAL_BALANCE_FORMAT = 1;
+    private static final byte UNVERSIONED_TRANSACTION_FORMAT = 2;
+    private static final byte PARTICIPANTLESS_FORMAT = 3;
+    private static final byte FORMAT = 4;
+    private static final byte END = 0;
+    private static final byte ACCOUNT = 1;
+    private static final byte TRANSACTION = 2;
+    private static final byte RECORD = 3;
+    private static final int BUFFER_BYTES = 1 << 20;
+    private static final Pattern SNAPSHOT_NAME = Pattern.compile("snapshot-(\\d+)\\.bin");
+
+    private final Path directory;
+
+    public record Loaded(long replayFrom, long accounts, long transactions) {
+    }
+
+    public SnapshotStore(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Writes the entities in the order the iterables return them, pulling them one at a time,
+     * so the iterables can page through the repositories instead of copying them.
+     */
+    public Path write(long replayFrom, Iterable<Account> accounts, Iterable<Transaction> transactions)
+            throws IOException {
+        return write(replayFrom, accounts, transactions, List.of());
+    }
+
+    public Path write(long replayFrom, Iterable<Account> accounts, Iterable<Transaction> transactions,
+                      Iterable<JournalRecord> records) throws IOException {
+        Files.createDirectories(directory);
+        Path target = directory.resolve(String.format("snapshot-%010d.bin", replayFrom));
+        Path temp = directory.resolve(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        try (OutputStream file = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     new CheckedOutputStream(file, crc), BUFFER_BYTES))) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT);
+            out.writeLong(replayFrom);
+            for (Account account : accounts) {
+                out.writeByte(ACCOUNT);
+                JournalCodec.writeAccount(out, account);
+            }
+            for (Transaction transaction : transactions) {
+                out.writeByte(TRANSACTION);
+                JournalCodec.writeTransaction(out, transaction);
+            }
+            for (JournalRecord record : records) {
+                out.writeByte(RECORD);
+                JournalCodec.write(out, record);
+            }
+            out.writeByte(END);
+            out.flush();
+            // The checksum covers everything above and goes straight to the file
+            new DataOutputStream(file).writeInt((int) crc.getValue());
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        return Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Streams the newest snapshot into the given consumers.
+     *
+     * @throws IOException if the snapshot is unreadable or fails its checksum
+     */
+    public Optional<Loaded> loadLatest(Consumer<Account> accounts, Consumer<Transaction> transactions)
+            throws IOException {
+        return loadLatest(accounts, transactions, record -> {
+        });
+    }
+
+    public Optional<Loaded> loadLatest(Consumer<Account> accounts, Consumer<Transaction> transactions,
+                                       Consumer<JournalRecord> records) throws IOException {
+        List<Long> snapshots = snapshots();
+        if (snapshots.isEmpty()) {
+            return Optional.empty();
+        }
+        Path path = snapshotPath(snapshots.get(snapshots.size() - 1));
+        CRC32C crc = new CRC32C();
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(path), BUFFER_BYTES);
+             DataInputStream in = new DataInputStream(new CheckedInputStream(file, crc))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a snapshot: " + path);
+            }
+            byte format = in.readByte();
+            if (format != FORMAT && format != PARTICIPANTLESS_FORMAT && format != UNVERSIONED_TRANSACTION_FORMAT
+                    && format != DECIMAL_BALANCE_FORMAT) {
+                throw new IOException("Unsupported snapshot format " + format + ": " + path);
+            }
+            long replayFrom = in.readLong();
+            long accountCount = 0;
+            long transactionCount = 0;
+            for (byte type = in.readByte(); type != END; type = in.readByte()) {
+                switch (type) {
+                    case ACCOUNT -> {
+                        accounts.accept(format == DECIMAL_BALANCE_FORMAT ? JournalCodec.readLegacyAccount(in)
+                                : JournalCodec.readAccount(in));
+                        accountCount++;
+                    }
+                    case TRANSACTION -> {
+                        transactions.accept(format >= PARTICIPANTLESS_FORMAT ? JournalCodec.readTransaction(in)
+                                : JournalCodec.readLegacyTransaction(in));
+                        transactionCount++;
+                    }
+                    case RECORD -> records.accept(JournalCodec.decode(in));
+                    default -> throw new IOException("Unknown snapshot entry type " + type + " in " + path);
+                }
+            }
+            int expected = (int) crc.getValue();
+            if (new DataInputStream(file).readInt() != expected) {
+                throw new IOException("Snapshot checksum mismatch: " + path);
+            }
+            return Optional.of(new Loaded(replayFrom, accountCount, transactionCount));
+        }
+    }
+
+    /**
+     * Deletes snapshots older than the one for {@code replayFrom}, plus leftovers of interrupted writes.
+     */
+    public void deleteBefore(long replayFrom) throws IOException {
+        for (long id : snapshots()) {
+            if (id < replayFrom) {
+                Files.deleteIfExists(snapshotPath(id));
+            }
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(".bin.tmp")).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private List<Long> snapshots() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SNAPSHOT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path snapshotPath(long replayFrom) {
+        return directory.resolve(String.format("snapshot-%010d.bin", replayFrom));
+    }
+}
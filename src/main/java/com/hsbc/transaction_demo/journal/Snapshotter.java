@@ -0,0 +1,157 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.TransactionCursor;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Periodically snapshots the repositories on a background thread so that recovery only has to
+ * replay the journal written since. Writers are never paused: the journal is rotated first and
+ * the maps are then read while they keep changing. Such a fuzzy snapshot may miss changes that
+ * were still in flight during the rotation, so recovery also replays the segment just closed;
+ * re-applying a record the snapshot already contains is harmless since every record carries
+ * the full entity state.
+ *
+ * <p>The repositories are walked one keyset page at a time, so a snapshot holds neither a copy
+ * of the whole store on the heap nor a store lock (the off-heap store's read lock) for longer
+ * than one page.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+public class Snapshotter {
+    private static final int PAGE_SIZE = 1000;
+
+    private final FileJournal journal;
+    private final SnapshotStore store;
+    private final AccountRepository accountRepository;
+    private final TransactionRepository transactionRepository;
+    private final List<JournalParticipant> participants;
+    private final long intervalSeconds;
+    // Not a monitor: snapshot() does file I/O and may be called from a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "snapshotter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Snapshotter(FileJournal journal, SnapshotStore store, AccountRepository accountRepository,
+                       TransactionRepository transactionRepository, long intervalSeconds) {
+        this(journal, store, accountRepository, transactionRepository, List.of(), intervalSeconds);
+    }
+
+    @Autowired
+    public Snapshotter(FileJournal journal, SnapshotStore store, AccountRepository accountRepository,
+                       TransactionRepository transactionRepository, ObjectProvider<JournalParticipant> participants,
+                       @Value("${transaction.snapshot.interval-seconds:300}") long intervalSeconds) {
+        this(journal, store, accountRepository, transactionRepository, participants.orderedStream().toList(),
+                intervalSeconds);
+    }
+
+    Snapshotter(FileJournal journal, SnapshotStore store, AccountRepository accountRepository,
+                TransactionRepository transactionRepository, List<JournalParticipant> participants,
+                long intervalSeconds) {
+        this.journal = journal;
+        this.store = store;
+        this.accountRepository = accountRepository;
+        this.transactionRepository = transactionRepository;
+        this.participants = participants;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (intervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::snapshotQuietly, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Writes a snapshot and drops the segments and snapshots it makes obsolete.
+     */
+    public Path snapshot() throws IOException {
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            long current = journal.rotate();
+            long replayFrom = current - 1;
+            Path path = store.write(replayFrom,
+                    pages(accountRepository::findAllAfter, Account::getAccountNumber),
+                    pages((after, limit) -> transactionRepository.findAll(after, limit, true), TransactionCursor::of),
+                    () -> participants.stream().flatMap(JournalParticipant::snapshotRecords).iterator());
+            journal.deleteSegmentsBefore(replayFrom);
+            store.deleteBefore(replayFrom);
+            log.info("Wrote snapshot {} in {} ms", path.getFileName(), (System.nanoTime() - start) / 1_000_000);
+            return path;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A last snapshot on a clean shutdown leaves (almost) nothing to replay on the next start.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        snapshotQuietly();
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Snapshot failed, the journal keeps every change until the next one succeeds", e);
+        }
+    }
+
+    /**
+     * Iterates a keyset-paged view, fetching the next page only once the previous one is used up.
+     */
+    static <T, K> Iterable<T> pages(BiFunction<K, Integer, List<T>> pageAfter, Function<T, K> keyOf) {
+        return () -> new Iterator<>() {
+            private List<T> page = pageAfter.apply(null, PAGE_SIZE);
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == page.size() && page.size() == PAGE_SIZE) {
+                    page = pageAfter.apply(keyOf.apply(page.get(PAGE_SIZE - 1)), PAGE_SIZE);
+                    next = 0;
+                }
+                return next < page.size();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.get(next++);
+            }
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.hsbc.transaction_demo.metrics;
+
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters on the transfer and lookup paths. Every meter is registered up front and held in a
+ * field or in an array indexed by enum ordinal, so recording is a few atomic updates: no tag
+ * lookup and no allocation per call. Callers pass elapsed {@link System#nanoTime} deltas.
+ */
+@Component
+public class LedgerMetrics {
+
+    /** Records nothing; for services and engines built outside Spring. */
+    public static final LedgerMetrics NONE = new LedgerMetrics(disabledRegistry());
+
+    public enum Phase {
+        VALIDATE,
+        DUPLICATE_CHECK,
+        BALANCE_UPDATE,
+        // Storing the transaction and waiting for the journal flush
+        SAVE
+    }
+
+    private static final Duration SHORTEST = Duration.ofNanos(1_000);
+    private static final Duration LONGEST = Duration.ofSeconds(10);
+
+    private final Timer[] phases = new Timer[Phase.values().length];
+    private final Counter[] rejections = new Counter[Reason.values().length];
+    private final Timer lockWait;
+    private final Timer accountLookup;
+    private final Timer transactionLookup;
+
+    public LedgerMetrics(MeterRegistry registry) {
+        for (Phase phase : Phase.values()) {
+            phases[phase.ordinal()] = Timer.builder("ledger.transfer.phase")
+                    .description("Time spent in each phase of a single transfer")
+                    .tag("phase", tagValue(phase))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(SHORTEST)
+                    .maximumExpectedValue(LONGEST)
+                    .register(registry);
+        }
+        for (Reason reason : Reason.values()) {
+            rejections[reason.ordinal()] = Counter.builder("ledger.transfer.rejected")
+                    .description("Transfers rejected, by reason")
+                    .tag("reason", tagValue(reason))
+                    .register(registry);
+        }
+        lockWait = Timer.builder("ledger.transfer.lock.wait")
+                .description("Time transfers waited for a contended account lock stripe")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(SHORTEST)
+                .maximumExpectedValue(LONGEST)
+                .register(registry);
+        accountLookup = Timer.builder("ledger.lookup")
+                .description("Single account and transaction lookups")
+                .tag("entity", "account")
+                .register(registry);
+        transactionLookup = Timer.builder("ledger.lookup")
+                .description("Single account and transaction lookups")
+                .tag("entity", "transaction")
+                .register(registry);
+    }
+
+    public void phase(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void rejected(Reason reason) {
+        rejections[reason.ordinal()].increment();
+    }
+
+    /** Only called for acquisitions that had to wait, so the count is the number of contended ones. */
+    public void lockWait(long nanos) {
+        lockWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void accountLookup(long nanos) {
+        accountLookup.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void transactionLookup(long nanos) {
+        transactionLookup.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String tagValue(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static MeterRegistry disabledRegistry() {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        // Denied meters are registered as no-op implementations
+        registry.config().meterFilter(MeterFilter.deny());
+        return registry;
+    }
+}
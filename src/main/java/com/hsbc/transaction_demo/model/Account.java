@@ -5,17 +5,17 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Account {
     private Long id;
     private String accountNumber;
     private String username;
-    private BigDecimal balance;
+    private long balance;              // Minor units (cents), see Money
     private LocalDateTime createdAt;
+    private long version;              // Bumped on every write, used for optimistic updates
 } 
\ No newline at end of file
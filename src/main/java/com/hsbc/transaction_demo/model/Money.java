@@ -0,0 +1,27 @@
+package com.hsbc.transaction_demo.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Fixed-point amounts in minor units (cents). The ledger keeps balances as plain {@code long}s
+ * so debits and credits are primitive, overflow-checked arithmetic; {@link BigDecimal} is only
+ * used at the API boundary.
+ */
+public final class Money {
+    public static final int SCALE = 2;
+
+    private Money() {
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has more than {@link #SCALE} decimal places
+     *                             or does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount) {
+        return amount.movePointRight(SCALE).longValueExact();
+    }
+
+    public static BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+}
@@ -10,7 +10,7 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class Transaction {
@@ -21,4 +21,5 @@ public class Transaction {
     private String description;
     private LocalDateTime timestamp;
     private TransactionStatus status;
+    private long version;              // Bumped on every update while the transaction is pending
 } 
\ No newline at end of file
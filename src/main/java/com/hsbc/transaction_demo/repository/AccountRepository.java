@@ -1,35 +1,331 @@
 package com.hsbc.transaction_demo.repository;
 
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.journal.JournalRecord;
 import com.hsbc.transaction_demo.model.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Repository
 public class AccountRepository {
-    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Account> accounts;
+
+    // Serializes writers of the same account, so index entries never go stale and the journal
+    // sees the changes of one account in the order they were applied
+    private final StripedLocks locks = new StripedLocks(1024);
+
+    private final SortIndex<String> byAccountNumber = new SortIndex<>(Account::getAccountNumber);
+
+    // Ordered views used for sorted pagination, keyed by the sortable property name
+    private final Map<String, SortIndex<?>> sortIndexes;
+
+    // The same indexes as an array, so reindexing on every write needs no iterator
+    private final SortIndex<?>[] allIndexes;
+
+    private final Journal journal;
+
+    public AccountRepository() {
+        this(Journal.NONE);
+    }
+
+    public AccountRepository(Journal journal) {
+        this(journal, 16, false);
+    }
+
+    /**
+     * @param initialCapacity expected number of accounts; sizing the map up front avoids
+     *                        repeated rehashing while millions of accounts are imported
+     * @param balanceIndex    whether pages can be sorted by balance. The balance index is the
+     *                        only one every transfer changes, with a skip list removal and
+     *                        insertion per account, which costs more than the rest of the transfer
+     */
+    @Autowired
+    public AccountRepository(Journal journal,
+                             @Value("${transaction.accounts.initial-capacity:16}") int initialCapacity,
+                             @Value("${transaction.accounts.balance-index:false}") boolean balanceIndex) {
+        this.journal = journal;
+        this.accounts = new ConcurrentHashMap<>(initialCapacity);
+        Map<String, SortIndex<?>> indexes = new HashMap<>();
+        indexes.put("accountNumber", byAccountNumber);
+        indexes.put("username", new SortIndex<>(Account::getUsername));
+        indexes.put("createdAt", new SortIndex<>(Account::getCreatedAt));
+        if (balanceIndex) {
+            indexes.put("balance", new SortIndex<>(Account::getBalance));
+        }
+        this.sortIndexes = Map.copyOf(indexes);
+        this.allIndexes = sortIndexes.values().toArray(new SortIndex<?>[0]);
+    }
 
     public Account save(Account account) {
-        accounts.put(account.getAccountNumber(), account);
+        store(account, true);
         return account;
     }
 
+    /**
+     * Bulk insert path: adds every account whose number is not taken yet, without a separate
+     * existence lookup per account. The caller syncs the journal once for the whole batch.
+     *
+     * @return the account numbers that already existed and were left untouched
+     */
+    public List<String> insertAll(Collection<Account> batch) {
+        List<String> existing = new ArrayList<>();
+        for (Account account : batch) {
+            ReentrantLock lock = locks.of(account.getAccountNumber());
+            lock.lock();
+            try {
+                if (accounts.containsKey(account.getAccountNumber())) {
+                    existing.add(account.getAccountNumber());
+                    continue;
+                }
+                reindex(null, account);
+                accounts.put(account.getAccountNumber(), account);
+                journal.append(new JournalRecord.AccountSaved(account));
+            } finally {
+                lock.unlock();
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Puts a recovered account back without journaling it again.
+     */
+    public void restore(Account account) {
+        store(account, false);
+    }
+
+    public void restoreDeleted(String accountNumber) {
+        remove(accountNumber, false);
+    }
+
     public Optional<Account> findByAccountNumber(String accountNumber) {
-        return Optional.ofNullable(accounts.get(accountNumber));
+        return Optional.ofNullable(getByAccountNumber(accountNumber));
+    }
+
+    /**
+     * Same lookup as {@link #findByAccountNumber} for the transfer path, without wrapping the
+     * result.
+     *
+     * @return the account, or null if there is none
+     */
+    public Account getByAccountNumber(String accountNumber) {
+        return accounts.get(accountNumber);
     }
 
     public List<Account> findAll() {
         return accounts.values().stream().collect(Collectors.toList());
     }
 
+    public boolean isSortable(String property) {
+        return sortIndexes.containsKey(property);
+    }
+
+    /**
+     * Serves a page by walking the index of the first sort order (account number when unsorted),
+     * touching only the skipped and returned entries instead of copying every account.
+     *
+     * @throws IllegalArgumentException if the sort property is not {@linkplain #isSortable sortable}
+     */
+    public Page<Account> findAll(Pageable pageable) {
+        Sort.Order order = pageable.getSort().stream().findFirst().orElse(Sort.Order.asc("accountNumber"));
+        SortIndex<?> index = sortIndexes.get(order.getProperty());
+        if (index == null) {
+            throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+        }
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        return new PageImpl<>(index.page(order.isAscending(), offset, limit), pageable, accounts.size());
+    }
+
+    /**
+     * Keyset page in account number order: up to {@code limit} accounts numbered after
+     * {@code afterAccountNumber}, or from the first account when it is null.
+     */
+    public List<Account> findAllAfter(String afterAccountNumber, int limit) {
+        return byAccountNumber.after(afterAccountNumber, afterAccountNumber, limit);
+    }
+
+    /**
+     * Replaces the stored account only if it is still {@code expected}, i.e. no other
+     * writer has replaced or removed it in the meantime.
+     */
+    public boolean replace(Account expected, Account updated) {
+        ReentrantLock lock = locks.of(expected.getAccountNumber());
+        lock.lock();
+        try {
+            Account current = accounts.get(expected.getAccountNumber());
+            if (current == null || !current.equals(expected)) {
+                return false;
+            }
+            reindex(current, updated);
+            accounts.put(updated.getAccountNumber(), updated);
+            journal.append(new JournalRecord.AccountSaved(updated));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void delete(Account account) {
-        accounts.remove(account.getAccountNumber());
+        remove(account.getAccountNumber(), true);
+    }
+
+    /**
+     * Deletes the account and returns it as it was at that moment, so no write made in between
+     * is lost to a caller that moves it elsewhere.
+     *
+     * @return the removed account, or null if there was none
+     */
+    public Account removeByAccountNumber(String accountNumber) {
+        return remove(accountNumber, true);
+    }
+
+    public long count() {
+        return accounts.size();
     }
 
     public boolean existsByAccountNumber(String accountNumber) {
         return accounts.containsKey(accountNumber);
     }
-} 
\ No newline at end of file
+
+    private void store(Account account, boolean log) {
+        ReentrantLock lock = locks.of(account.getAccountNumber());
+        lock.lock();
+        try {
+            reindex(accounts.get(account.getAccountNumber()), account);
+            accounts.put(account.getAccountNumber(), account);
+            if (log) {
+                journal.append(new JournalRecord.AccountSaved(account));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Account remove(String accountNumber, boolean log) {
+        ReentrantLock lock = locks.of(accountNumber);
+        lock.lock();
+        try {
+            Account current = accounts.get(accountNumber);
+            if (current == null) {
+                return null;
+            }
+            reindex(current, null);
+            accounts.remove(accountNumber);
+            if (log) {
+                journal.append(new JournalRecord.AccountDeleted(accountNumber));
+            }
+            return current;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reindex(Account previous, Account current) {
+        for (SortIndex<?> index : allIndexes) {
+            index.replace(previous, current);
+        }
+    }
+
+    /**
+     * Concurrent ordered set of (property value, account number) pairs. Entries are
+     * checked against the live account while paging, so a reader racing a writer
+     * skips the outgoing entry instead of returning an outdated row.
+     */
+    private final class SortIndex<V extends Comparable<? super V>> {
+        private final Function<Account, V> property;
+        private final Comparator<Entry<V>> order;
+        private final ConcurrentSkipListSet<Entry<V>> entries;
+
+        private record Entry<V>(V value, String accountNumber) {
+        }
+
+        SortIndex(Function<Account, V> property) {
+            this.property = property;
+            // Written out rather than chained, this runs a few dozen times per index update
+            this.order = (a, b) -> {
+                V x = a.value();
+                V y = b.value();
+                int byValue = x == y ? 0 : x == null ? -1 : y == null ? 1 : x.compareTo(y);
+                return byValue != 0 ? byValue : a.accountNumber().compareTo(b.accountNumber());
+            };
+            this.entries = new ConcurrentSkipListSet<>(order);
+        }
+
+        void replace(Account previous, Account current) {
+            V before = previous == null ? null : property.apply(previous);
+            V after = current == null ? null : property.apply(current);
+            // A write usually changes one property; the other indexes return here without
+            // building entries
+            if (previous != null && current != null
+                    && previous.getAccountNumber().equals(current.getAccountNumber())
+                    && (before == after || before != null && after != null && before.compareTo(after) == 0)) {
+                return;
+            }
+            Entry<V> outgoing = previous == null ? null : new Entry<>(before, previous.getAccountNumber());
+            Entry<V> incoming = current == null ? null : new Entry<>(after, current.getAccountNumber());
+            if (incoming != null) {
+                entries.add(incoming);
+            }
+            if (outgoing != null) {
+                entries.remove(outgoing);
+            }
+        }
+
+        List<Account> page(boolean ascending, long offset, int limit) {
+            return collect(ascending ? entries : entries.descendingSet(), offset, limit);
+        }
+
+        /**
+         * Entries strictly after the position of ({@code value}, {@code accountNumber}),
+         * from the start when the account number is null.
+         */
+        List<Account> after(V value, String accountNumber, int limit) {
+            return collect(accountNumber == null ? entries : entries.tailSet(new Entry<>(value, accountNumber), false),
+                    0, limit);
+        }
+
+        private List<Account> collect(NavigableSet<Entry<V>> view, long offset, int limit) {
+            List<Account> content = new ArrayList<>(Math.min(limit, 64));
+            long skipped = 0;
+            for (Entry<V> entry : view) {
+                if (content.size() >= limit) {
+                    break;
+                }
+                Account account = accounts.get(entry.accountNumber());
+                if (account == null || order.compare(entry, entryOf(account)) != 0) {
+                    continue;
+                }
+                if (skipped < offset) {
+                    skipped++;
+                } else {
+                    content.add(account);
+                }
+            }
+            return content;
+        }
+
+        private Entry<V> entryOf(Account account) {
+            return new Entry<>(property.apply(account), account.getAccountNumber());
+        }
+    }
+}
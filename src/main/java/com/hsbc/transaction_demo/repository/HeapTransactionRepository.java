@@ -0,0 +1,235 @@
+package com.hsbc.transaction_demo.repository;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.journal.JournalRecord;
+import com.hsbc.transaction_demo.model.Transaction;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Default backend: entities live on the heap, indexed by id and by time-ordered
+ * skip lists of {@link TransactionCursor}s.
+ */
+@Repository
+@ConditionalOnProperty(name = "transaction.store", havingValue = "heap", matchIfMissing = true)
+public class HeapTransactionRepository implements TransactionRepository {
+    private final ConcurrentHashMap<UUID, Transaction> transactions = new ConcurrentHashMap<>();
+
+    // Every transaction, newest first
+    private final ConcurrentSkipListSet<TransactionCursor> timeline = new ConcurrentSkipListSet<>();
+
+    // Per-account history (as source or target), newest first
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<TransactionCursor>> byAccount = new ConcurrentHashMap<>();
+
+    // What each transaction is currently indexed under, so re-saving a modified entity can unindex the old keys
+    private final ConcurrentHashMap<UUID, IndexKey> indexKeys = new ConcurrentHashMap<>();
+
+    // Serializes saves/deletes of the same id so the indexes and the journal stay in step
+    private final StripedLocks locks = new StripedLocks(1024);
+
+    private record IndexKey(String accountNumber, String targetAccountNumber, TransactionCursor position) {
+        static IndexKey of(Transaction transaction) {
+            return new IndexKey(transaction.getAccountNumber(), transaction.getTargetAccountNumber(),
+                    TransactionCursor.of(transaction));
+        }
+    }
+
+    private final Journal journal;
+
+    public HeapTransactionRepository() {
+        this(Journal.NONE);
+    }
+
+    @Autowired
+    public HeapTransactionRepository(Journal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        if (transaction.getId() == null) {
+            transaction.setId(UUID.randomUUID());
+        }
+        store(transaction, true);
+        return transaction;
+    }
+
+    @Override
+    public boolean replace(Transaction expected, Transaction updated) {
+        ReentrantLock lock = locks.of(expected.getId());
+        lock.lock();
+        try {
+            Transaction current = transactions.get(expected.getId());
+            if (current == null || !current.equals(expected)) {
+                return false;
+            }
+            // Reentrant, store takes the same stripe again
+            store(updated, true);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void restore(Transaction transaction) {
+        store(transaction, false);
+    }
+
+    @Override
+    public void restoreDeleted(UUID id) {
+        remove(id, false);
+    }
+
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        return Optional.ofNullable(transactions.get(id));
+    }
+
+    @Override
+    public List<Transaction> findAll() {
+        return transactions.values().stream().collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<Transaction> findAll(Pageable pageable) {
+        Sort.Order order = pageable.getSort().getOrderFor("timestamp");
+        boolean newestFirst = order == null || order.isDescending();
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        List<Transaction> content = collect(newestFirst ? timeline : timeline.descendingSet(), offset, limit);
+        return new PageImpl<>(content, pageable, transactions.size());
+    }
+
+    @Override
+    public List<Transaction> findAll(TransactionCursor after, int limit, boolean newestFirst) {
+        NavigableSet<TransactionCursor> view = newestFirst ? timeline : timeline.descendingSet();
+        return collect(after == null ? view : view.tailSet(after, false), 0, limit);
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        remove(id, true);
+    }
+
+    @Override
+    public long count() {
+        return transactions.size();
+    }
+
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber) {
+        return findByAccountNumber(accountNumber, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int limit,
+                                                 boolean newestFirst) {
+        NavigableSet<TransactionCursor> history = byAccount.get(accountNumber);
+        if (history == null) {
+            return new ArrayList<>();
+        }
+        NavigableSet<TransactionCursor> view = newestFirst ? history : history.descendingSet();
+        return collect(after == null ? view : view.tailSet(after, false), 0, limit);
+    }
+
+    private List<Transaction> collect(NavigableSet<TransactionCursor> view, long offset, int limit) {
+        List<Transaction> result = new ArrayList<>(Math.min(limit, 64));
+        long skipped = 0;
+        for (TransactionCursor position : view) {
+            if (result.size() >= limit) {
+                break;
+            }
+            Transaction transaction = transactions.get(position.id());
+            if (transaction == null) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(transaction);
+            }
+        }
+        return result;
+    }
+
+    private void store(Transaction transaction, boolean log) {
+        IndexKey key = IndexKey.of(transaction);
+        ReentrantLock lock = locks.of(transaction.getId());
+        lock.lock();
+        try {
+            IndexKey previous = indexKeys.put(transaction.getId(), key);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(key);
+            transactions.put(transaction.getId(), transaction);
+            if (log) {
+                journal.append(new JournalRecord.TransactionSaved(transaction));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(UUID id, boolean log) {
+        ReentrantLock lock = locks.of(id);
+        lock.lock();
+        try {
+            IndexKey previous = indexKeys.remove(id);
+            if (previous == null) {
+                return;
+            }
+            unindex(previous);
+            transactions.remove(id);
+            if (log) {
+                journal.append(new JournalRecord.TransactionDeleted(id));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void index(IndexKey key) {
+        timeline.add(key.position());
+        add(key.accountNumber(), key.position());
+        add(key.targetAccountNumber(), key.position());
+    }
+
+    private void unindex(IndexKey key) {
+        timeline.remove(key.position());
+        remove(key.accountNumber(), key.position());
+        remove(key.targetAccountNumber(), key.position());
+    }
+
+    private void add(String accountNumber, TransactionCursor position) {
+        if (accountNumber != null) {
+            byAccount.computeIfAbsent(accountNumber, k -> new ConcurrentSkipListSet<>()).add(position);
+        }
+    }
+
+    private void remove(String accountNumber, TransactionCursor position) {
+        if (accountNumber == null) {
+            return;
+        }
+        ConcurrentSkipListSet<TransactionCursor> history = byAccount.get(accountNumber);
+        if (history != null) {
+            history.remove(position);
+        }
+    }
+}
@@ -0,0 +1,649 @@
+package com.hsbc.transaction_demo.repository;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.journal.JournalRecord;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Backend that keeps every transaction as a fixed-width 64 byte record in direct buffers,
+ * outside the garbage-collected heap. The heap only holds primitive arrays: an open-addressing
+ * id-to-slot table, the time-ordered slot lists and a dictionary of account numbers, so the
+ * collector has a handful of large objects to trace instead of several small ones per row.
+ * Entities are materialized only when returned.
+ *
+ * <p>Descriptions go to an append-only text area; the bytes of a replaced or deleted
+ * description are not reclaimed. Record slots of deleted transactions are reused. Slot
+ * lists are ordered oldest first, so the usual insert of a new transaction is an append.
+ * Readers share a read lock, writers take the write lock. Direct memory is bounded by
+ * {@code -XX:MaxDirectMemorySize}.
+ */
+@Repository
+@ConditionalOnProperty(name = "transaction.store", havingValue = "off-heap")
+public class OffHeapTransactionRepository implements TransactionRepository {
+    static final int RECORD_BYTES = 64;
+    private static final int RECORDS_PER_CHUNK = 1 << 16;
+    private static final int TEXT_CHUNK_BYTES = 1 << 22;
+
+    // Record layout
+    private static final int ID_MOST = 0;
+    private static final int ID_LEAST = 8;
+    private static final int SOURCE = 16;
+    private static final int TARGET = 20;
+    private static final int AMOUNT = 24;
+    private static final int SECONDS = 32;
+    private static final int NANOS = 40;
+    private static final int DESCRIPTION_LENGTH = 44;
+    private static final int DESCRIPTION_OFFSET = 48;
+    private static final int AMOUNT_SCALE = 56;
+    private static final int STATUS = 57;
+    private static final int FLAGS = 58;
+    // Only pending transactions are ever updated, so an int is plenty
+    private static final int VERSION = 60;
+
+    private static final byte NO_AMOUNT = 1;
+    private static final byte NO_TIMESTAMP = 2;
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<ByteBuffer> records = new ArrayList<>();
+    private final List<ByteBuffer> text = new ArrayList<>();
+    private long textEnd;
+    private int slotCount;
+    private final IntList freeSlots = new IntList();
+
+    private final IdIndex ids = new IdIndex();
+    private final IntList timeline = new IntList();
+    private final Map<Integer, IntList> byAccount = new HashMap<>();
+    private final Map<String, Integer> accountRefs = new HashMap<>();
+    private final List<String> accountNumbers = new ArrayList<>();
+
+    private final Journal journal;
+
+    public OffHeapTransactionRepository() {
+        this(Journal.NONE);
+    }
+
+    @Autowired
+    public OffHeapTransactionRepository(Journal journal) {
+        this.journal = journal;
+    }
+
+    @Override
+    public Transaction save(Transaction transaction) {
+        if (transaction.getId() == null) {
+            transaction.setId(UUID.randomUUID());
+        }
+        store(transaction, true);
+        return transaction;
+    }
+
+    @Override
+    public boolean replace(Transaction expected, Transaction updated) {
+        UUID id = expected.getId();
+        lock.writeLock().lock();
+        try {
+            int slot = ids.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot < 0 || !read(slot).equals(expected)) {
+                return false;
+            }
+            // Reentrant, store takes the write lock again
+            store(updated, true);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void restore(Transaction transaction) {
+        store(transaction, false);
+    }
+
+    @Override
+    public void restoreDeleted(UUID id) {
+        remove(id, false);
+    }
+
+    @Override
+    public Optional<Transaction> findById(UUID id) {
+        lock.readLock().lock();
+        try {
+            int slot = ids.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAll() {
+        lock.readLock().lock();
+        try {
+            List<Transaction> result = new ArrayList<>(timeline.size);
+            for (int i = 0; i < timeline.size; i++) {
+                result.add(read(timeline.values[i]));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Page<Transaction> findAll(Pageable pageable) {
+        Sort.Order order = pageable.getSort().getOrderFor("timestamp");
+        boolean newestFirst = order == null || order.isDescending();
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        int limit = pageable.isPaged() ? pageable.getPageSize() : Integer.MAX_VALUE;
+        lock.readLock().lock();
+        try {
+            List<Transaction> content = collect(timeline, null, newestFirst, offset, limit);
+            return new PageImpl<>(content, pageable, timeline.size);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Transaction> findAll(TransactionCursor after, int limit, boolean newestFirst) {
+        lock.readLock().lock();
+        try {
+            return collect(timeline, after, newestFirst, 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(UUID id) {
+        remove(id, true);
+    }
+
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber) {
+        return findByAccountNumber(accountNumber, null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int limit,
+                                                 boolean newestFirst) {
+        lock.readLock().lock();
+        try {
+            Integer ref = accountRefs.get(accountNumber);
+            IntList history = ref == null ? null : byAccount.get(ref);
+            if (history == null) {
+                return new ArrayList<>();
+            }
+            return collect(history, after, newestFirst, 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long count() {
+        lock.readLock().lock();
+        try {
+            return timeline.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Direct memory reserved for records and descriptions.
+     */
+    public long offHeapBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) records.size() * RECORDS_PER_CHUNK * RECORD_BYTES + (long) text.size() * TEXT_CHUNK_BYTES;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void store(Transaction transaction, boolean log) {
+        UUID id = transaction.getId();
+        lock.writeLock().lock();
+        try {
+            int slot = ids.get(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot >= 0) {
+                unindex(slot);
+            } else {
+                slot = allocateSlot();
+                ids.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), slot);
+            }
+            write(slot, transaction);
+            index(slot);
+            if (log) {
+                journal.append(new JournalRecord.TransactionSaved(transaction));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(UUID id, boolean log) {
+        lock.writeLock().lock();
+        try {
+            int slot = ids.remove(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            if (slot < 0) {
+                return;
+            }
+            unindex(slot);
+            freeSlots.add(slot);
+            if (log) {
+                journal.append(new JournalRecord.TransactionDeleted(id));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeSlots.size > 0) {
+            return freeSlots.values[--freeSlots.size];
+        }
+        if (slotCount == records.size() * RECORDS_PER_CHUNK) {
+            records.add(ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_BYTES));
+        }
+        return slotCount++;
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return records.get(slot / RECORDS_PER_CHUNK);
+    }
+
+    private static int base(int slot) {
+        return (slot % RECORDS_PER_CHUNK) * RECORD_BYTES;
+    }
+
+    private void write(int slot, Transaction transaction) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        byte flags = 0;
+        chunk.putLong(base + ID_MOST, transaction.getId().getMostSignificantBits());
+        chunk.putLong(base + ID_LEAST, transaction.getId().getLeastSignificantBits());
+        chunk.putInt(base + SOURCE, accountRef(transaction.getAccountNumber()));
+        chunk.putInt(base + TARGET, accountRef(transaction.getTargetAccountNumber()));
+
+        BigDecimal amount = transaction.getAmount();
+        if (amount == null) {
+            flags |= NO_AMOUNT;
+        } else {
+            if (amount.scale() < Byte.MIN_VALUE || amount.scale() > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Amount scale out of range: " + amount);
+            }
+            // Throws if the amount needs more than 64 bits, which no realistic transfer does
+            chunk.putLong(base + AMOUNT, amount.unscaledValue().longValueExact());
+            chunk.put(base + AMOUNT_SCALE, (byte) amount.scale());
+        }
+
+        LocalDateTime timestamp = transaction.getTimestamp();
+        if (timestamp == null) {
+            flags |= NO_TIMESTAMP;
+        } else {
+            chunk.putLong(base + SECONDS, timestamp.toEpochSecond(ZoneOffset.UTC));
+            chunk.putInt(base + NANOS, timestamp.getNano());
+        }
+
+        String description = transaction.getDescription();
+        if (description == null) {
+            chunk.putInt(base + DESCRIPTION_LENGTH, -1);
+        } else {
+            byte[] bytes = description.getBytes(StandardCharsets.UTF_8);
+            chunk.putInt(base + DESCRIPTION_LENGTH, bytes.length);
+            chunk.putLong(base + DESCRIPTION_OFFSET, appendText(bytes));
+        }
+
+        chunk.put(base + STATUS, (byte) (transaction.getStatus() == null ? -1 : transaction.getStatus().ordinal()));
+        chunk.put(base + FLAGS, flags);
+        chunk.putInt(base + VERSION, Math.toIntExact(transaction.getVersion()));
+    }
+
+    private Transaction read(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        byte flags = chunk.get(base + FLAGS);
+        byte status = chunk.get(base + STATUS);
+        int descriptionLength = chunk.getInt(base + DESCRIPTION_LENGTH);
+        return Transaction.builder()
+                .id(new UUID(chunk.getLong(base + ID_MOST), chunk.getLong(base + ID_LEAST)))
+                .accountNumber(accountNumber(chunk.getInt(base + SOURCE)))
+                .targetAccountNumber(accountNumber(chunk.getInt(base + TARGET)))
+                .amount((flags & NO_AMOUNT) != 0 ? null : new BigDecimal(
+                        BigInteger.valueOf(chunk.getLong(base + AMOUNT)), chunk.get(base + AMOUNT_SCALE)))
+                .timestamp((flags & NO_TIMESTAMP) != 0 ? null : LocalDateTime.ofEpochSecond(
+                        chunk.getLong(base + SECONDS), chunk.getInt(base + NANOS), ZoneOffset.UTC))
+                .description(descriptionLength < 0 ? null
+                        : readText(chunk.getLong(base + DESCRIPTION_OFFSET), descriptionLength))
+                .status(status < 0 ? null : STATUSES[status])
+                .version(chunk.getInt(base + VERSION))
+                .build();
+    }
+
+    private long appendText(byte[] bytes) {
+        if (bytes.length > TEXT_CHUNK_BYTES) {
+            throw new IllegalArgumentException("Description too long: " + bytes.length + " bytes");
+        }
+        // A description never straddles two chunks
+        if (textEnd + bytes.length > (long) text.size() * TEXT_CHUNK_BYTES) {
+            textEnd = (long) text.size() * TEXT_CHUNK_BYTES;
+            text.add(ByteBuffer.allocateDirect(TEXT_CHUNK_BYTES));
+        }
+        long offset = textEnd;
+        if (bytes.length == 0) {
+            return offset;
+        }
+        text.get((int) (offset / TEXT_CHUNK_BYTES)).put((int) (offset % TEXT_CHUNK_BYTES), bytes);
+        textEnd += bytes.length;
+        return offset;
+    }
+
+    private String readText(long offset, int length) {
+        if (length == 0) {
+            return "";
+        }
+        byte[] bytes = new byte[length];
+        text.get((int) (offset / TEXT_CHUNK_BYTES)).get((int) (offset % TEXT_CHUNK_BYTES), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int accountRef(String accountNumber) {
+        if (accountNumber == null) {
+            return -1;
+        }
+        return accountRefs.computeIfAbsent(accountNumber, key -> {
+            accountNumbers.add(key);
+            return accountNumbers.size() - 1;
+        });
+    }
+
+    private String accountNumber(int ref) {
+        return ref < 0 ? null : accountNumbers.get(ref);
+    }
+
+    private void index(int slot) {
+        insertOrdered(timeline, slot);
+        ByteBuffer chunk = chunk(slot);
+        int source = chunk.getInt(base(slot) + SOURCE);
+        int target = chunk.getInt(base(slot) + TARGET);
+        if (source >= 0) {
+            insertOrdered(byAccount.computeIfAbsent(source, ref -> new IntList()), slot);
+        }
+        if (target >= 0 && target != source) {
+            insertOrdered(byAccount.computeIfAbsent(target, ref -> new IntList()), slot);
+        }
+    }
+
+    private void unindex(int slot) {
+        removeOrdered(timeline, slot);
+        ByteBuffer chunk = chunk(slot);
+        int source = chunk.getInt(base(slot) + SOURCE);
+        int target = chunk.getInt(base(slot) + TARGET);
+        if (source >= 0) {
+            removeOrdered(byAccount.get(source), slot);
+        }
+        if (target >= 0 && target != source) {
+            removeOrdered(byAccount.get(target), slot);
+        }
+    }
+
+    /**
+     * Compares a stored record with a cursor position in {@link TransactionCursor} order:
+     * negative when the record comes first, i.e. is newer.
+     */
+    private int compare(int slot, boolean hasTimestamp, long seconds, int nanos, long idMost, long idLeast) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        boolean slotHasTimestamp = (chunk.get(base + FLAGS) & NO_TIMESTAMP) == 0;
+        int result;
+        if (slotHasTimestamp != hasTimestamp) {
+            // Transactions without a timestamp sort last
+            result = slotHasTimestamp ? -1 : 1;
+        } else if (!hasTimestamp) {
+            result = 0;
+        } else {
+            result = Long.compare(seconds, chunk.getLong(base + SECONDS));
+            if (result == 0) {
+                result = Integer.compare(nanos, chunk.getInt(base + NANOS));
+            }
+        }
+        if (result == 0) {
+            result = Long.compare(chunk.getLong(base + ID_MOST), idMost);
+        }
+        if (result == 0) {
+            result = Long.compare(chunk.getLong(base + ID_LEAST), idLeast);
+        }
+        return result;
+    }
+
+    private int compare(int slot, int other) {
+        ByteBuffer chunk = chunk(other);
+        int base = base(other);
+        boolean hasTimestamp = (chunk.get(base + FLAGS) & NO_TIMESTAMP) == 0;
+        return compare(slot, hasTimestamp, chunk.getLong(base + SECONDS), chunk.getInt(base + NANOS),
+                chunk.getLong(base + ID_MOST), chunk.getLong(base + ID_LEAST));
+    }
+
+    private int compare(int slot, TransactionCursor cursor) {
+        LocalDateTime timestamp = cursor.timestamp();
+        return compare(slot, timestamp != null, timestamp == null ? 0 : timestamp.toEpochSecond(ZoneOffset.UTC),
+                timestamp == null ? 0 : timestamp.getNano(),
+                cursor.id().getMostSignificantBits(), cursor.id().getLeastSignificantBits());
+    }
+
+    // Lists hold slots from last to first in cursor order: oldest first, newest at the end
+
+    private void insertOrdered(IntList list, int slot) {
+        int low = 0;
+        int high = list.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(list.values[mid], slot) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        list.insert(low, slot);
+    }
+
+    private void removeOrdered(IntList list, int slot) {
+        int low = 0;
+        int high = list.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(list.values[mid], slot) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        if (low < list.size && list.values[low] == slot) {
+            list.removeAt(low);
+        }
+    }
+
+    // Number of entries that come after the cursor in cursor order
+    private int countAfter(IntList list, TransactionCursor cursor) {
+        int low = 0;
+        int high = list.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(list.values[mid], cursor) > 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private List<Transaction> collect(IntList list, TransactionCursor after, boolean newestFirst,
+                                      long offset, int limit) {
+        List<Transaction> result = new ArrayList<>(Math.min(limit, 64));
+        if (newestFirst) {
+            int from = after == null ? list.size : countAfter(list, after);
+            for (long i = from - 1 - offset; i >= 0 && result.size() < limit; i--) {
+                result.add(read(list.values[(int) i]));
+            }
+        } else {
+            int from = 0;
+            if (after != null) {
+                from = countAfter(list, after);
+                // Skip the cursor's own entry, if it still exists
+                if (from < list.size && compare(list.values[from], after) == 0) {
+                    from++;
+                }
+            }
+            for (long i = from + offset; i < list.size && result.size() < limit; i++) {
+                result.add(read(list.values[(int) i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Growable int array.
+     */
+    private static final class IntList {
+        int[] values = new int[8];
+        int size;
+
+        void add(int value) {
+            insert(size, value);
+        }
+
+        void insert(int index, int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+        }
+
+        void removeAt(int index) {
+            System.arraycopy(values, index + 1, values, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Open-addressing hash table from a 128-bit id to a slot, with linear probing and
+     * tombstones for removed entries.
+     */
+    private static final class IdIndex {
+        private static final int EMPTY = -1;
+        private static final int REMOVED = -2;
+
+        private long[] most = new long[16];
+        private long[] least = new long[16];
+        private int[] slots = filled(16);
+        private int used;
+
+        private static int[] filled(int capacity) {
+            int[] array = new int[capacity];
+            Arrays.fill(array, EMPTY);
+            return array;
+        }
+
+        private int position(long idMost, long idLeast) {
+            long h = idMost ^ idLeast;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h & (slots.length - 1);
+        }
+
+        int get(long idMost, long idLeast) {
+            for (int i = position(idMost, idLeast); ; i = (i + 1) & (slots.length - 1)) {
+                if (slots[i] == EMPTY) {
+                    return -1;
+                }
+                if (slots[i] >= 0 && most[i] == idMost && least[i] == idLeast) {
+                    return slots[i];
+                }
+            }
+        }
+
+        void put(long idMost, long idLeast, int slot) {
+            if ((used + 1) * 4L > slots.length * 3L) {
+                resize();
+            }
+            int i = position(idMost, idLeast);
+            while (slots[i] >= 0) {
+                i = (i + 1) & (slots.length - 1);
+            }
+            if (slots[i] == EMPTY) {
+                used++;
+            }
+            most[i] = idMost;
+            least[i] = idLeast;
+            slots[i] = slot;
+        }
+
+        int remove(long idMost, long idLeast) {
+            for (int i = position(idMost, idLeast); ; i = (i + 1) & (slots.length - 1)) {
+                if (slots[i] == EMPTY) {
+                    return -1;
+                }
+                if (slots[i] >= 0 && most[i] == idMost && least[i] == idLeast) {
+                    int slot = slots[i];
+                    slots[i] = REMOVED;
+                    return slot;
+                }
+            }
+        }
+
+        private void resize() {
+            long[] oldMost = most;
+            long[] oldLeast = least;
+            int[] oldSlots = slots;
+            int live = 0;
+            for (int slot : oldSlots) {
+                if (slot >= 0) {
+                    live++;
+                }
+            }
+            // Rebuilding also drops the tombstones, so only grow when live entries need it
+            int capacity = oldSlots.length;
+            while ((live + 1) * 2L > capacity) {
+                capacity <<= 1;
+            }
+            most = new long[capacity];
+            least = new long[capacity];
+            slots = filled(capacity);
+            used = 0;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] >= 0) {
+                    put(oldMost[i], oldLeast[i], oldSlots[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.hsbc.transaction_demo.repository;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed array of locks that keys hash onto, serializing the writers of one key. Used instead of
+ * {@code ConcurrentHashMap.compute()}, which runs its function inside a monitor: a virtual thread
+ * that blocks there (e.g. on the journal lock) would pin its carrier thread.
+ */
+final class StripedLocks {
+    private final ReentrantLock[] locks;
+
+    StripedLocks(int size) {
+        this.locks = new ReentrantLock[Integer.highestOneBit(size)];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    ReentrantLock of(Object key) {
+        int hash = key.hashCode();
+        return locks[(hash ^ (hash >>> 16)) & (locks.length - 1)];
+    }
+}
@@ -0,0 +1,48 @@
+package com.hsbc.transaction_demo.repository;
+
+import com.hsbc.transaction_demo.model.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Position of a transaction in the time-ordered indexes (newest first, ties broken by id).
+ * Also serves as the keyset cursor handed out to clients in its opaque, encoded form.
+ */
+public record TransactionCursor(LocalDateTime timestamp, UUID id) implements Comparable<TransactionCursor> {
+    private static final Comparator<TransactionCursor> NEWEST_FIRST = Comparator
+            .comparing(TransactionCursor::timestamp, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(TransactionCursor::id);
+
+    public static TransactionCursor of(Transaction transaction) {
+        return new TransactionCursor(transaction.getTimestamp(), transaction.getId());
+    }
+
+    @Override
+    public int compareTo(TransactionCursor other) {
+        return NEWEST_FIRST.compare(this, other);
+    }
+
+    public String encode() {
+        String raw = (timestamp == null ? "" : timestamp.toString()) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code cursor} was not produced by {@link #encode()}
+     */
+    public static TransactionCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf('|');
+            String timestamp = raw.substring(0, separator);
+            return new TransactionCursor(timestamp.isEmpty() ? null : LocalDateTime.parse(timestamp),
+                    UUID.fromString(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+    }
+}
@@ -2,52 +2,70 @@ package com.hsbc.transaction_demo.repository;
 
 import com.hsbc.transaction_demo.model.Transaction;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
-import org.springframework.stereotype.Repository;
 
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
-
-@Repository
-public class TransactionRepository {
-    private final ConcurrentHashMap<UUID, Transaction> transactions = new ConcurrentHashMap<>();
-
-    public Transaction save(Transaction transaction) {
-        if (transaction.getId() == null) {
-            transaction.setId(UUID.randomUUID());
-        }
-        transactions.put(transaction.getId(), transaction);
-        return transaction;
-    }
 
-    public Optional<Transaction> findById(UUID id) {
-        return Optional.ofNullable(transactions.get(id));
-    }
+/**
+ * Transaction storage. Backends only differ in where the rows live, selected with the
+ * {@code transaction.store} property: {@code heap} (default) or {@code off-heap}.
+ */
+public interface TransactionRepository {
 
-    public List<Transaction> findAll() {
-        return transactions.values().stream().collect(Collectors.toList());
-    }
+    /**
+     * Stores the transaction, assigning a random id first if it has none.
+     */
+    Transaction save(Transaction transaction);
 
-    public Page<Transaction> findAll(Pageable pageable) {
-        List<Transaction> allTransactions = findAll();
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), allTransactions.size());
-        
-        List<Transaction> pageContent = allTransactions.subList(start, end);
-        return new PageImpl<>(pageContent, pageable, allTransactions.size());
-    }
+    /**
+     * Replaces the stored transaction only if it is still {@code expected}, i.e. no other
+     * writer has replaced or removed it in the meantime.
+     */
+    boolean replace(Transaction expected, Transaction updated);
 
-    public void deleteById(UUID id) {
-        transactions.remove(id);
-    }
+    /**
+     * Puts a recovered transaction back without journaling it again.
+     */
+    void restore(Transaction transaction);
+
+    void restoreDeleted(UUID id);
+
+    Optional<Transaction> findById(UUID id);
 
-    public List<Transaction> findByAccountNumber(String accountNumber) {
-        return transactions.values().stream()
-                .filter(t -> t.getAccountNumber().equals(accountNumber))
-                .collect(Collectors.toList());
+    List<Transaction> findAll();
+
+    /**
+     * Offset page over the timeline, newest first unless the pageable asks for ascending timestamps.
+     */
+    Page<Transaction> findAll(Pageable pageable);
+
+    /**
+     * Up to {@code limit} transactions strictly after {@code after} in timeline order, or from
+     * the start when {@code after} is null. Rows inserted meanwhile never shift a later page.
+     */
+    List<Transaction> findAll(TransactionCursor after, int limit, boolean newestFirst);
+
+    void deleteById(UUID id);
+
+    /**
+     * All transactions where the account is either source or target, newest first.
+     */
+    List<Transaction> findByAccountNumber(String accountNumber);
+
+    /**
+     * Up to {@code limit} transactions of the account strictly after {@code after} in
+     * newest-first order, or from the newest one when {@code after} is null.
+     */
+    default List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int limit) {
+        return findByAccountNumber(accountNumber, after, limit, true);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Keyset page over the account's history in either timeline direction.
+     */
+    List<Transaction> findByAccountNumber(String accountNumber, TransactionCursor after, int limit, boolean newestFirst);
+
+    long count();
+}
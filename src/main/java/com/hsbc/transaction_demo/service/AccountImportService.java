@@ -0,0 +1,151 @@
+package com.hsbc.transaction_demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.ImportResultDTO;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Imports accounts from newline-delimited JSON, one {@link AccountDTO} per line. The body is
+ * read line by line and inserted in chunks through {@link AccountRepository#insertAll}, so
+ * memory use does not depend on the size of the upload and the journal is flushed once per
+ * chunk instead of once per account.
+ */
+@Service
+public class AccountImportService {
+    static final int CHUNK_SIZE = 1000;
+    static final int MAX_REPORTED_ERRORS = 100;
+
+    private final AccountRepository repository;
+    private final Journal journal;
+    private final Validator validator;
+    private final ObjectReader reader;
+
+    public AccountImportService(AccountRepository repository, Journal journal, Validator validator,
+                                ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.journal = journal;
+        this.validator = validator;
+        this.reader = objectMapper.readerFor(AccountDTO.class);
+    }
+
+    public ImportResultDTO importAccounts(InputStream body) throws IOException {
+        long start = System.nanoTime();
+        Result result = new Result();
+        List<Account> chunk = new ArrayList<>(CHUNK_SIZE);
+        // Line number of each pending account, to report accounts that already exist
+        Map<String, Long> lines = new HashMap<>();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+        long lineNumber = 0;
+        String line;
+        LocalDateTime now = LocalDateTime.now();
+        while ((line = in.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            AccountDTO dto;
+            try {
+                dto = reader.readValue(line);
+            } catch (JsonProcessingException e) {
+                result.fail(lineNumber, "Invalid JSON: " + e.getOriginalMessage());
+                continue;
+            }
+            String error = validate(dto);
+            if (error != null) {
+                result.fail(lineNumber, error);
+                continue;
+            }
+            long balance;
+            try {
+                balance = Money.toMinorUnits(dto.getBalance());
+            } catch (ArithmeticException e) {
+                result.fail(lineNumber, "balance: Balance must have at most " + Money.SCALE + " decimal places");
+                continue;
+            }
+            if (lines.putIfAbsent(dto.getAccountNumber(), lineNumber) != null) {
+                result.fail(lineNumber, "Account already exists: " + dto.getAccountNumber());
+                continue;
+            }
+            chunk.add(Account.builder()
+                    .accountNumber(dto.getAccountNumber())
+                    .username(dto.getUsername())
+                    .balance(balance)
+                    .createdAt(now)
+                    .build());
+            if (chunk.size() == CHUNK_SIZE) {
+                flush(chunk, lines, result);
+            }
+        }
+        flush(chunk, lines, result);
+
+        long elapsedNanos = System.nanoTime() - start;
+        return ImportResultDTO.builder()
+                .imported(result.imported)
+                .failed(result.failed)
+                .elapsedMillis(elapsedNanos / 1_000_000)
+                .accountsPerSecond(elapsedNanos == 0 ? 0 : result.imported * 1_000_000_000L / elapsedNanos)
+                .errors(result.errors)
+                .build();
+    }
+
+    private String validate(AccountDTO dto) {
+        Set<ConstraintViolation<AccountDTO>> violations = validator.validate(dto);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private void flush(List<Account> chunk, Map<String, Long> lines, Result result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<String> existing = repository.insertAll(chunk);
+        journal.sync();
+        for (String accountNumber : existing) {
+            result.fail(lines.get(accountNumber), "Account already exists: " + accountNumber);
+        }
+        result.imported += chunk.size() - existing.size();
+        chunk.clear();
+        lines.clear();
+    }
+
+    private static final class Result {
+        long imported;
+        long failed;
+        final List<ImportResultDTO.LineError> errors = new ArrayList<>();
+
+        void fail(long line, String error) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportResultDTO.LineError(line, error));
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.hsbc.transaction_demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.model.Account;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Serialized JSON of recently read accounts, so reading an unchanged account again is a map
+ * lookup instead of a DTO conversion and a Jackson pass. An entry belongs to the stored
+ * {@link Account} instance it was rendered from. Stored accounts are never mutated: a save or
+ * balance update swaps in a copy with its version bumped and a delete removes the account, so
+ * after any write the entry no longer matches and the next read renders it again.
+ *
+ * <p>Memory is bounded by {@code maxBytes}, counting the JSON plus a fixed overhead per entry.
+ * Once over the bound, entries are evicted in the order they were rendered. With
+ * {@link Eviction#CLOCK} an entry that was read since it was last looked at gets a second
+ * chance instead, which keeps hot accounts cached without any locking on the read path.
+ */
+@Component
+public class AccountJsonCache {
+
+    public enum Eviction {
+        // Second chance for entries read since they were last considered, approximating LRU
+        CLOCK,
+        // Strictly oldest rendered first
+        FIFO
+    }
+
+    // Map node, entry, key and queue node next to the JSON itself
+    static final int ENTRY_OVERHEAD = 160;
+
+    private static final class Entry {
+        final String accountNumber;
+        final Account source;
+        final SerializedString json;
+        final long weight;
+        volatile boolean referenced;
+
+        Entry(Account source, SerializedString json) {
+            this.accountNumber = source.getAccountNumber();
+            this.source = source;
+            this.json = json;
+            // Held both as a String and as UTF-8 bytes, one byte per character for ASCII
+            this.weight = ENTRY_OVERHEAD + 2L * json.charLength();
+        }
+    }
+
+    private final ObjectMapper mapper;
+    private final long maxBytes;
+    private final Eviction eviction;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Every rendered entry in render order, including ones since replaced or invalidated;
+    // weight covers all of them, since the queue keeps their JSON reachable until polled
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicLong weight = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxBytes upper bound on the memory held by cached JSON; 0 disables caching
+     */
+    @Autowired
+    public AccountJsonCache(ObjectMapper mapper,
+                            @Value("${transaction.accounts.json-cache.max-bytes:67108864}") long maxBytes,
+                            @Value("${transaction.accounts.json-cache.eviction:clock}") String eviction) {
+        this(mapper, maxBytes, Eviction.valueOf(eviction.toUpperCase()));
+    }
+
+    public AccountJsonCache(ObjectMapper mapper, long maxBytes, Eviction eviction) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxBytes);
+        }
+        this.mapper = mapper;
+        this.maxBytes = maxBytes;
+        this.eviction = eviction;
+    }
+
+    /**
+     * Returns the JSON of {@code view.apply(account)}, rendering it only if the cache holds
+     * nothing for this exact account instance. The returned string caches its UTF-8 bytes;
+     * callers must not modify them.
+     */
+    public SerializedString get(Account account, Function<Account, ?> view) {
+        Entry entry = entries.get(account.getAccountNumber());
+        if (entry != null && entry.source == account) {
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            hits.increment();
+            return entry.json;
+        }
+        misses.increment();
+        SerializedString json = render(view.apply(account));
+        if (maxBytes > 0) {
+            store(new Entry(account, json));
+        }
+        return json;
+    }
+
+    /**
+     * Drops the entry of a deleted account right away instead of leaving it to eviction.
+     */
+    public void invalidate(String accountNumber) {
+        entries.remove(accountNumber);
+    }
+
+    public long weight() {
+        return weight.get();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    private SerializedString render(Object value) {
+        try {
+            SerializedString json = new SerializedString(mapper.writeValueAsString(value));
+            json.asUnquotedUTF8();
+            return json;
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void store(Entry entry) {
+        // Racing renders of different versions may overwrite each other; a loser is never
+        // served, since its source is not the stored account
+        entries.put(entry.accountNumber, entry);
+        queue.offer(entry);
+        if (weight.addAndGet(entry.weight) > maxBytes) {
+            evict();
+        }
+    }
+
+    private void evict() {
+        // At most one round of second chances, so readers marking entries as fast as they are
+        // cleared cannot keep this loop going
+        int chances = entries.size();
+        while (weight.get() > maxBytes) {
+            Entry oldest = queue.poll();
+            if (oldest == null) {
+                return;
+            }
+            boolean live = entries.get(oldest.accountNumber) == oldest;
+            if (live && eviction == Eviction.CLOCK && oldest.referenced && chances-- > 0) {
+                oldest.referenced = false;
+                queue.offer(oldest);
+                continue;
+            }
+            if (live) {
+                entries.remove(oldest.accountNumber, oldest);
+            }
+            weight.addAndGet(-oldest.weight);
+        }
+    }
+}
@@ -1,25 +1,40 @@
 package com.hsbc.transaction_demo.service;
 
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.Tagged;
 import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
 import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
 import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class AccountService {
+    static final int EXPORT_PAGE_SIZE = 1000;
+    // Offset pages walk every entry before the offset; deeper reads go through keyset pages
+    static final long MAX_PAGE_OFFSET = 10_000;
+
     private final AccountRepository repository;
+    private final TransferEngine transferEngine;
+    private final Journal journal;
+    private final LedgerMetrics metrics;
+    private final AccountJsonCache jsonCache;
 
     @Transactional
     public AccountDTO createAccount(AccountDTO accountDTO) {
@@ -34,26 +49,53 @@ public class AccountService {
         Account account = Account.builder()
                 .accountNumber(accountDTO.getAccountNumber())
                 .username(accountDTO.getUsername())
-                .balance(accountDTO.getBalance())
+                .balance(toMinorUnits(accountDTO.getBalance()))
                 .createdAt(LocalDateTime.now())
                 .build();
 
-        return convertToDTO(repository.save(account));
+        Account saved = repository.save(account);
+        journal.sync();
+        return convertToDTO(saved);
     }
 
     public AccountDTO getAccount(String accountNumber) {
-        return repository.findByAccountNumber(accountNumber)
-                .map(this::convertToDTO)
-                .orElseThrow(() -> new AccountException("Account not found: " + accountNumber));
+        long start = System.nanoTime();
+        try {
+            return repository.findByAccountNumber(accountNumber)
+                    .map(this::convertToDTO)
+                    .orElseThrow(() -> new AccountException("Account not found: " + accountNumber));
+        } finally {
+            metrics.accountLookup(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * JSON body of {@link #getAccount}, served from the {@link AccountJsonCache} while the
+     * account is unchanged, tagged with the account's version for conditional requests.
+     */
+    public Tagged<byte[]> getAccountJson(String accountNumber) {
+        long start = System.nanoTime();
+        try {
+            Account account = repository.getByAccountNumber(accountNumber);
+            if (account == null) {
+                throw new AccountException("Account not found: " + accountNumber);
+            }
+            return Tagged.of(account.getVersion(), account.getCreatedAt(),
+                    () -> jsonCache.get(account, this::convertToDTO).asUnquotedUTF8());
+        } finally {
+            metrics.accountLookup(System.nanoTime() - start);
+        }
+    }
+
+    public boolean accountExists(String accountNumber) {
+        return repository.existsByAccountNumber(accountNumber);
     }
 
     @Transactional
     public AccountDTO updateAccount(String accountNumber, AccountDTO accountDTO) {
-        Account account = repository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new AccountException("Account not found: " + accountNumber));
-
-        account.setUsername(accountDTO.getUsername());
-        return convertToDTO(repository.save(account));
+        Account updated = transferEngine.update(accountNumber, account -> account.setUsername(accountDTO.getUsername()));
+        journal.sync();
+        return convertToDTO(updated);
     }
 
     @Transactional
@@ -62,6 +104,8 @@ public class AccountService {
                 .orElseThrow(() -> new AccountException("Account not found: " + accountNumber));
 
         repository.delete(account);
+        jsonCache.invalidate(accountNumber);
+        journal.sync();
     }
 
     public List<AccountDTO> getAllAccounts() {
@@ -71,17 +115,70 @@ public class AccountService {
     }
 
     public Page<AccountDTO> getAllAccounts(Pageable pageable) {
-        List<Account> accounts = repository.findAll();
-        
-        int start = (int) pageable.getOffset();
-        int end = Math.min((start + pageable.getPageSize()), accounts.size());
-        
-        List<AccountDTO> pageContent = accounts.subList(start, end)
-                .stream()
+        checkPage(pageable);
+        return repository.findAll(pageable).map(this::convertToDTO);
+    }
+
+    /**
+     * Same page as {@link #getAllAccounts(Pageable)} with every account as pre-serialized JSON
+     * from the {@link AccountJsonCache}, written into the response as is.
+     */
+    public Page<RawValue> getAllAccountsJson(Pageable pageable) {
+        checkPage(pageable);
+        return repository.findAll(pageable)
+                .map(account -> new RawValue(jsonCache.get(account, this::convertToDTO)));
+    }
+
+    private void checkPage(Pageable pageable) {
+        if (pageable.isPaged() && pageable.getOffset() > MAX_PAGE_OFFSET) {
+            throw new AccountException("Page offset must be at most " + MAX_PAGE_OFFSET
+                    + "; export the accounts as NDJSON to read further");
+        }
+        for (Sort.Order order : pageable.getSort()) {
+            if (!repository.isSortable(order.getProperty())) {
+                throw new AccountException("Unsupported sort property: " + order.getProperty());
+            }
+        }
+    }
+
+    /**
+     * Keyset page in account number order, starting after {@code afterAccountNumber}
+     * (from the first account when null). Unlike offset pages, deep pages cost the same as the first.
+     */
+    public List<AccountDTO> getAccountsAfter(String afterAccountNumber, int size) {
+        if (size < 1) {
+            throw new AccountException("Page size must be greater than 0");
+        }
+        return repository.findAllAfter(afterAccountNumber, size).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
-        
-        return new PageImpl<>(pageContent, pageable, accounts.size());
+    }
+
+    /**
+     * Feeds every account created within [{@code from}, {@code to}) to {@code sink} in account
+     * number order. A null bound is open. The store is walked one keyset page at a time, so
+     * memory use does not depend on the number of accounts.
+     */
+    public void exportAccounts(LocalDateTime from, LocalDateTime to, Consumer<AccountDTO> sink) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new AccountException("Export range must end after it starts");
+        }
+        String after = null;
+        while (true) {
+            List<Account> page = repository.findAllAfter(after, EXPORT_PAGE_SIZE);
+            for (Account account : page) {
+                LocalDateTime createdAt = account.getCreatedAt();
+                boolean inRange = (from == null || createdAt != null && !createdAt.isBefore(from))
+                        && (to == null || createdAt != null && createdAt.isBefore(to));
+                if (inRange) {
+                    sink.accept(convertToDTO(account));
+                }
+            }
+            if (page.size() < EXPORT_PAGE_SIZE) {
+                return;
+            }
+            after = page.get(page.size() - 1).getAccountNumber();
+        }
     }
 
     @Transactional
@@ -90,18 +187,25 @@ public class AccountService {
             throw new AccountException("Balance cannot be negative");
         }
 
-        Account account = repository.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new AccountException("Account not found: " + accountNumber));
+        long balance = toMinorUnits(newBalance);
+        Account updated = transferEngine.update(accountNumber, account -> account.setBalance(balance));
+        journal.sync();
+        return convertToDTO(updated);
+    }
 
-        account.setBalance(newBalance);
-        return convertToDTO(repository.save(account));
+    private static long toMinorUnits(BigDecimal balance) {
+        try {
+            return Money.toMinorUnits(balance);
+        } catch (ArithmeticException e) {
+            throw new AccountException("Balance must have at most " + Money.SCALE + " decimal places");
+        }
     }
 
     private AccountDTO convertToDTO(Account account) {
         return AccountDTO.builder()
                 .accountNumber(account.getAccountNumber())
                 .username(account.getUsername())
-                .balance(account.getBalance())
+                .balance(Money.toDecimal(account.getBalance()))
                 .createdAt(account.getCreatedAt())
                 .build();
     }
@@ -0,0 +1,145 @@
+package com.hsbc.transaction_demo.service;
+
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.repository.TransactionCursor;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Remembers recent transfers by (source account, amount) in one-minute buckets so that
+ * a duplicate check only looks at the candidate's bucket and its two neighbours instead
+ * of scanning every stored transaction. Buckets older than the previous minute are dropped
+ * as new ones are opened, which keeps memory proportional to the last couple of minutes
+ * of traffic.
+ */
+@Component
+public class DuplicateTransactionIndex {
+    static final long WINDOW_MILLIS = 60_000;
+
+    private record Fingerprint(String accountNumber, BigDecimal amount) {
+        Fingerprint {
+            amount = amount.stripTrailingZeros();
+        }
+    }
+
+    /** Earliest and latest timestamp seen for a fingerprint within one bucket, and how many */
+    private record Window(long first, long last, int count) {
+        Window merge(Window other) {
+            return new Window(Math.min(first, other.first), Math.max(last, other.last), count + other.count);
+        }
+    }
+
+    private final ConcurrentSkipListMap<Long, ConcurrentHashMap<Fingerprint, Window>> buckets =
+            new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns true if a transfer from the same account for the same amount was recorded
+     * less than a minute before or after {@code timestamp}.
+     */
+    public boolean isDuplicate(String accountNumber, BigDecimal amount, LocalDateTime timestamp) {
+        if (accountNumber == null || amount == null || timestamp == null) {
+            return false;
+        }
+        Fingerprint fingerprint = new Fingerprint(accountNumber, amount);
+        long millis = toMillis(timestamp);
+        long bucket = Math.floorDiv(millis, WINDOW_MILLIS);
+
+        // Any two instants in the same bucket are less than a minute apart
+        if (find(bucket, fingerprint) != null) {
+            return true;
+        }
+        Window previous = find(bucket - 1, fingerprint);
+        if (previous != null && millis - previous.last() < WINDOW_MILLIS) {
+            return true;
+        }
+        Window next = find(bucket + 1, fingerprint);
+        return next != null && next.first() - millis < WINDOW_MILLIS;
+    }
+
+    public void record(String accountNumber, BigDecimal amount, LocalDateTime timestamp) {
+        long millis = toMillis(timestamp);
+        long bucket = Math.floorDiv(millis, WINDOW_MILLIS);
+        buckets.computeIfAbsent(bucket, b -> new ConcurrentHashMap<>())
+                .merge(new Fingerprint(accountNumber, amount), new Window(millis, millis, 1), Window::merge);
+
+        // ceilingKey rather than firstEntry, which would copy the entry on every call
+        Long oldest = buckets.ceilingKey(Long.MIN_VALUE);
+        if (oldest != null && oldest < bucket - 1) {
+            buckets.headMap(bucket - 1).clear();
+        }
+    }
+
+    /**
+     * Takes back one {@link #record} of a deleted transfer. The fingerprint is gone once its
+     * last transfer in the bucket is; until then the window keeps its bounds, which may only
+     * report a duplicate that is no longer there, never miss one.
+     */
+    public void forget(String accountNumber, BigDecimal amount, LocalDateTime timestamp) {
+        if (accountNumber == null || amount == null || timestamp == null) {
+            return;
+        }
+        ConcurrentHashMap<Fingerprint, Window> entries = buckets.get(Math.floorDiv(toMillis(timestamp), WINDOW_MILLIS));
+        if (entries != null) {
+            entries.computeIfPresent(new Fingerprint(accountNumber, amount),
+                    (fingerprint, window) -> window.count() == 1 ? null
+                            : new Window(window.first(), window.last(), window.count() - 1));
+        }
+    }
+
+    /**
+     * Records the stored transfers that fall in the buckets {@link #record} would have kept,
+     * oldest first, after the repository was recovered.
+     */
+    public void rebuild(TransactionRepository repository) {
+        List<Transaction> recent = new ArrayList<>();
+        long newestBucket = Long.MIN_VALUE;
+        TransactionCursor cursor = null;
+        page:
+        while (true) {
+            List<Transaction> page = repository.findAll(cursor, 500, true);
+            for (Transaction transaction : page) {
+                // Newest first, so the rest are older or have no timestamp at all
+                if (transaction.getTimestamp() == null) {
+                    break page;
+                }
+                long bucket = Math.floorDiv(toMillis(transaction.getTimestamp()), WINDOW_MILLIS);
+                newestBucket = Math.max(newestBucket, bucket);
+                if (bucket < newestBucket - 1) {
+                    break page;
+                }
+                recent.add(transaction);
+            }
+            if (page.size() < 500) {
+                break;
+            }
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            Transaction transaction = recent.get(i);
+            if (transaction.getAccountNumber() != null && transaction.getAmount() != null) {
+                record(transaction.getAccountNumber(), transaction.getAmount(), transaction.getTimestamp());
+            }
+        }
+    }
+
+    int bucketCount() {
+        return buckets.size();
+    }
+
+    private Window find(long bucket, Fingerprint fingerprint) {
+        ConcurrentHashMap<Fingerprint, Window> entries = buckets.get(bucket);
+        return entries == null ? null : entries.get(fingerprint);
+    }
+
+    private static long toMillis(LocalDateTime timestamp) {
+        return timestamp.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
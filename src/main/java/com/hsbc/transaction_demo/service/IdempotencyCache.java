@@ -0,0 +1,164 @@
+package com.hsbc.transaction_demo.service;
+
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Outcomes of transfers submitted with an idempotency key, so a client that retries after a
+ * timeout gets the original transaction back instead of a second transfer or a duplicate
+ * rejection. The first request with a key runs the transfer; requests with the same key that
+ * arrive while it runs wait for it, and later ones are answered from the map.
+ *
+ * <p>Only completed transfers are kept. A rejected transfer changed nothing, so its key is
+ * released and a retry runs again; requests that were waiting on it get the same rejection.
+ * Entries expire {@code ttl} after the first request and at most {@code maxEntries} are kept,
+ * the oldest going first. Since every entry lives equally long, insertion order is also
+ * expiry order and one queue serves both bounds. The bound should be well above the number of
+ * keys that arrive while one transfer runs, or a key may be dropped before its first request
+ * is done.
+ *
+ * <p>A released entry stays in the queue until it reaches the head, so a run of rejected
+ * transfers would make the queue outgrow the map. Once released entries outnumber the live
+ * ones they are swept out, which keeps the queue within about twice the map and costs each
+ * release a constant amount of work on average.
+ */
+@Component
+public class IdempotencyCache {
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private static final class Entry {
+        final String key;
+        final TransactionDTO request;
+        final long expiresAt;
+        final CompletableFuture<TransactionDTO> outcome = new CompletableFuture<>();
+        volatile boolean released;
+
+        Entry(String key, TransactionDTO request, long expiresAt) {
+            this.key = key;
+            this.request = request;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Entries in insertion order, including ones since released
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    // Released entries queued since the last sweep, roughly; it only decides when to sweep
+    private final AtomicInteger released = new AtomicInteger();
+    private final LongAdder replays = new LongAdder();
+
+    @Autowired
+    public IdempotencyCache(@Value("${transaction.idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${transaction.idempotency.ttl:24h}") Duration ttl) {
+        this(maxEntries, ttl, System::nanoTime);
+    }
+
+    IdempotencyCache(int maxEntries, Duration ttl, LongSupplier nanoTime) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Idempotency cache must hold at least one entry: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Runs {@code transfer} unless {@code key} was seen before, otherwise returns or waits for
+     * the outcome of the request that came first.
+     *
+     * @throws TransactionException if the key is blank or too long, or was first used with a
+     *                              different request
+     */
+    public TransactionDTO execute(String key, TransactionDTO request, Supplier<TransactionDTO> transfer) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new TransactionException("Idempotency key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        long now = nanoTime.getAsLong();
+        Entry entry = new Entry(key, request.toBuilder().build(), now + ttlNanos);
+        Entry existing;
+        while ((existing = entries.putIfAbsent(key, entry)) != null) {
+            if (existing.expiresAt - now > 0) {
+                if (!existing.request.equals(request)) {
+                    throw new TransactionException(Reason.IDEMPOTENCY_KEY_REUSED,
+                            "Idempotency key was already used for a different transaction");
+                }
+                replays.increment();
+                return await(existing);
+            }
+            entries.remove(key, existing);
+        }
+        queue.offer(entry);
+        evict(now);
+
+        try {
+            TransactionDTO result = transfer.get();
+            entry.outcome.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            entries.remove(key, entry);
+            entry.outcome.completeExceptionally(e);
+            release(entry);
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long replays() {
+        return replays.sum();
+    }
+
+    int queued() {
+        return queue.size();
+    }
+
+    private static TransactionDTO await(Entry entry) {
+        try {
+            return entry.outcome.join();
+        } catch (CompletionException e) {
+            // Only unchecked throwables complete an entry exceptionally
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private void release(Entry entry) {
+        entry.released = true;
+        if (released.incrementAndGet() > entries.size()) {
+            // Releases racing with the sweep are counted towards the next one or swept already
+            released.set(0);
+            queue.removeIf(queued -> queued.released);
+        }
+    }
+
+    private void evict(long now) {
+        Entry oldest;
+        while ((oldest = queue.peek()) != null
+                && (oldest.expiresAt - now <= 0 || entries.size() > maxEntries)) {
+            if (queue.remove(oldest)) {
+                entries.remove(oldest.key, oldest);
+            }
+        }
+    }
+}
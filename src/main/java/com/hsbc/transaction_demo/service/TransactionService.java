@@ -1,66 +1,253 @@
 package com.hsbc.transaction_demo.service;
 
-import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.BatchTransferResultDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.Tagged;
 import com.hsbc.transaction_demo.dto.TransactionDTO;
 import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import com.hsbc.transaction_demo.exception.TransferInDoubtException;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.journal.JournalGroup;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics.Phase;
+import com.hsbc.transaction_demo.model.Money;
 import com.hsbc.transaction_demo.model.Transaction;
 import com.hsbc.transaction_demo.model.TransactionStatus;
 import com.hsbc.transaction_demo.model.TransactionType;
+import com.hsbc.transaction_demo.repository.TransactionCursor;
 import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
+    static final int MAX_PAGE_SIZE = 100;
+    static final int EXPORT_PAGE_SIZE = 1000;
+    // Extreme ids: a cursor at a timestamp with one of these sorts before or after every real
+    // transaction of that instant
+    private static final UUID FIRST_ID = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+    private static final UUID LAST_ID = new UUID(Long.MAX_VALUE, Long.MAX_VALUE);
+    private static final String AMOUNT_SCALE_ERROR = "Amount must have at most " + Money.SCALE + " decimal places";
+
     private final TransactionRepository repository;
-    private final AccountService accountService;
+    private final TransferEngine transferEngine;
+    private final DuplicateTransactionIndex duplicateIndex;
+    private final Journal journal;
+    private final LedgerMetrics metrics;
+    private final IdempotencyCache idempotencyCache;
 
     public TransactionDTO createTransaction(TransactionDTO dto) {
-        // Check for duplicate transactions (based on account, amount, type and timestamp)
-        if (isDuplicateTransaction(dto)) {
-            throw new TransactionException("Duplicate transaction detected");
+        try {
+            long start = System.nanoTime();
+            long amount = toMinorUnits(dto.getAmount());
+            long validated = System.nanoTime();
+            metrics.phase(Phase.VALIDATE, validated - start);
+
+            // Check for duplicate transactions (based on account, amount, type and timestamp)
+            if (isDuplicateTransaction(dto)) {
+                throw new TransactionException(Reason.DUPLICATE, "Duplicate transaction detected");
+            }
+            long checked = System.nanoTime();
+            metrics.phase(Phase.DUPLICATE_CHECK, checked - validated);
+
+            // The debit, the credit and the transaction record are recovered together or not at all
+            JournalGroup group = journal.begin();
+            long transferred;
+            Transaction saved;
+            try {
+                UUID inDoubt = null;
+                try {
+                    // Verify both accounts and the source balance, then debit and credit as one step
+                    transferEngine.transfer(dto.getAccountNumber(), dto.getTargetAccountNumber(), amount);
+                } catch (TransferInDoubtException e) {
+                    inDoubt = e.getTransactionId();
+                }
+                transferred = System.nanoTime();
+                metrics.phase(Phase.BALANCE_UPDATE, transferred - checked);
+
+                if (inDoubt != null) {
+                    // The engine recorded the transfer as pending; it completes or fails on its own
+                    saved = describePending(inDoubt, dto.getDescription());
+                } else {
+                    Transaction transaction = convertToEntity(dto);
+                    transaction.setTimestamp(LocalDateTime.now());
+                    transaction.setStatus(TransactionStatus.COMPLETED);
+                    saved = repository.save(transaction);
+                }
+            } finally {
+                journal.commit(group);
+            }
+            // One flush covers the debit, the credit and the transaction record
+            journal.sync();
+            duplicateIndex.record(saved.getAccountNumber(), saved.getAmount(), saved.getTimestamp());
+            metrics.phase(Phase.SAVE, System.nanoTime() - transferred);
+            return convertToDTO(saved);
+        } catch (TransactionException e) {
+            metrics.rejected(e.getReason());
+            throw e;
         }
+    }
 
-        // Verify source account exists and has sufficient balance
-        AccountDTO sourceAccount = accountService.getAccount(dto.getAccountNumber());
-        if (sourceAccount == null) {
-            throw new TransactionException("Source account not found: " + dto.getAccountNumber());
+    /**
+     * {@link #createTransaction(TransactionDTO)}, run at most once per idempotency key: a retry
+     * with the same key gets the transaction the first request created, or waits for it if that
+     * request is still running. A null key disables the check.
+     */
+    public TransactionDTO createTransaction(TransactionDTO dto, String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return createTransaction(dto);
         }
-        
-        // Verify target account exists
-        AccountDTO targetAccount = accountService.getAccount(dto.getTargetAccountNumber());
-        if (targetAccount == null) {
-            throw new TransactionException("Target account not found: " + dto.getTargetAccountNumber());
+        try {
+            return idempotencyCache.execute(idempotencyKey, dto, () -> createTransaction(dto));
+        } catch (TransactionException e) {
+            // Rejections of the transfer itself were counted when it ran
+            if (e.getReason() == Reason.IDEMPOTENCY_KEY_REUSED) {
+                metrics.rejected(e.getReason());
+            }
+            throw e;
         }
+    }
 
-        // Check sufficient balance for debit transactions
-        if (sourceAccount.getBalance().compareTo(dto.getAmount()) < 0) {
-            throw new TransactionException("Insufficient balance in source account");
+    /**
+     * Runs a batch of transfers through one duplicate pass, one engine call (a single ordered
+     * lock acquisition with the striped engine) and one journal flush. Atomic batches are
+     * applied completely or not at all; otherwise each transfer stands on its own.
+     */
+    public BatchTransferResultDTO createTransactions(List<TransactionDTO> dtos, boolean atomic) {
+        String[] errors = new String[dtos.size()];
+        long[] amounts = new long[dtos.size()];
+        // Also catches duplicates between transactions of the same batch
+        DuplicateTransactionIndex seen = new DuplicateTransactionIndex();
+        List<Integer> accepted = new ArrayList<>(dtos.size());
+        UUID[] ids = new UUID[dtos.size()];
+        for (int i = 0; i < dtos.size(); i++) {
+            TransactionDTO dto = dtos.get(i);
+            if (isDuplicateTransaction(dto)
+                    || seen.isDuplicate(dto.getAccountNumber(), dto.getAmount(), dto.getTimestamp())) {
+                errors[i] = "Duplicate transaction detected";
+                continue;
+            }
+            try {
+                amounts[i] = Money.toMinorUnits(dto.getAmount());
+            } catch (ArithmeticException e) {
+                errors[i] = AMOUNT_SCALE_ERROR;
+                continue;
+            }
+            if (dto.getTimestamp() != null) {
+                seen.record(dto.getAccountNumber(), dto.getAmount(), dto.getTimestamp());
+            }
+            // Known before the transfer runs, so that one left in doubt is recorded under it
+            ids[i] = dto.getId() != null ? dto.getId() : UUID.randomUUID();
+            accepted.add(i);
         }
 
-        // Update account balances
-        accountService.updateBalance(sourceAccount.getAccountNumber(), sourceAccount.getBalance().subtract(dto.getAmount()));
-        accountService.updateBalance(targetAccount.getAccountNumber(), targetAccount.getBalance().add(dto.getAmount()));
+        List<BatchTransferResultDTO.Item> results = new ArrayList<>(dtos.size());
+        List<Transaction> saved = new ArrayList<>();
+        int pending = 0;
+        // The balance changes of the batch are recovered together with its transaction records
+        JournalGroup group = journal.begin();
+        try {
+            if (!atomic || accepted.size() == dtos.size()) {
+                List<Transfer> transfers = new ArrayList<>(accepted.size());
+                for (int i : accepted) {
+                    TransactionDTO dto = dtos.get(i);
+                    transfers.add(new Transfer(dto.getAccountNumber(), dto.getTargetAccountNumber(), amounts[i], ids[i]));
+                }
+                List<String> outcomes = transferEngine.transferAll(transfers, atomic);
+                for (int j = 0; j < accepted.size(); j++) {
+                    errors[accepted.get(j)] = outcomes.get(j);
+                }
+            }
 
-        Transaction transaction = convertToEntity(dto);
-        transaction.setTimestamp(LocalDateTime.now());
-        transaction.setStatus(TransactionStatus.COMPLETED);
-        Transaction saved = repository.save(transaction);
-        return convertToDTO(saved);
+            boolean rejected = false;
+            for (String error : errors) {
+                rejected |= error != null && !TransferEngine.IN_DOUBT.equals(error);
+            }
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < dtos.size(); i++) {
+                String error = errors[i];
+                if (TransferEngine.IN_DOUBT.equals(error)) {
+                    pending++;
+                    results.add(BatchTransferResultDTO.Item.builder()
+                            .index(i)
+                            .status(TransactionStatus.PENDING)
+                            .transaction(convertToDTO(describePending(ids[i], dtos.get(i).getDescription())))
+                            .build());
+                    continue;
+                }
+                if (error == null && atomic && rejected) {
+                    error = "Not applied, another transaction in the atomic batch failed";
+                }
+                if (error != null) {
+                    results.add(BatchTransferResultDTO.Item.builder()
+                            .index(i)
+                            .status(TransactionStatus.FAILED)
+                            .error(error)
+                            .build());
+                    continue;
+                }
+                Transaction transaction = convertToEntity(dtos.get(i));
+                transaction.setId(ids[i]);
+                transaction.setTimestamp(now);
+                transaction.setStatus(TransactionStatus.COMPLETED);
+                Transaction stored = repository.save(transaction);
+                saved.add(stored);
+                results.add(BatchTransferResultDTO.Item.builder()
+                        .index(i)
+                        .status(TransactionStatus.COMPLETED)
+                        .transaction(convertToDTO(stored))
+                        .build());
+            }
+        } finally {
+            journal.commit(group);
+        }
+        journal.sync();
+        for (Transaction transaction : saved) {
+            duplicateIndex.record(transaction.getAccountNumber(), transaction.getAmount(), transaction.getTimestamp());
+        }
+
+        return BatchTransferResultDTO.builder()
+                .atomic(atomic)
+                .succeeded(saved.size())
+                .pending(pending)
+                .failed(dtos.size() - saved.size() - pending)
+                .results(results)
+                .build();
     }
 
     public TransactionDTO getTransaction(UUID id) {
-        return repository.findById(id)
-                .map(this::convertToDTO)
-                .orElseThrow(() -> new TransactionException("Transaction not found with id: " + id));
+        return getTaggedTransaction(id).body().get();
+    }
+
+    /**
+     * {@link #getTransaction} tagged with the transaction's version for conditional requests;
+     * the DTO is only built if the caller needs the body.
+     */
+    public Tagged<TransactionDTO> getTaggedTransaction(UUID id) {
+        long start = System.nanoTime();
+        try {
+            Transaction transaction = repository.findById(id)
+                    .orElseThrow(() -> new TransactionException("Transaction not found with id: " + id));
+            return Tagged.of(transaction.getVersion(), transaction.getTimestamp(), () -> convertToDTO(transaction));
+        } finally {
+            metrics.transactionLookup(System.nanoTime() - start);
+        }
     }
 
     public List<TransactionDTO> getAllTransactions() {
@@ -70,43 +257,170 @@ public class TransactionService {
     }
 
     public Page<TransactionDTO> getAllTransactions(Pageable pageable) {
+        for (Sort.Order order : pageable.getSort()) {
+            if (!"timestamp".equals(order.getProperty())) {
+                throw new TransactionException("Unsupported sort property: " + order.getProperty());
+            }
+        }
         return repository.findAll(pageable).map(this::convertToDTO);
     }
 
+    /**
+     * Keyset page over all transactions by timestamp; deep pages cost the same as the first one.
+     */
+    public CursorPageDTO<TransactionDTO> getTransactions(String cursor, int size, boolean newestFirst) {
+        int limit = pageLimit(size);
+        return toCursorPage(repository.findAll(decodeCursor(cursor), limit + 1, newestFirst), limit);
+    }
+
+    /**
+     * Transactions where the account is source or target, newest first, one keyset page at a time.
+     */
+    public CursorPageDTO<TransactionDTO> getAccountTransactions(String accountNumber, String cursor, int size) {
+        int limit = pageLimit(size);
+        List<Transaction> page = repository.findByAccountNumber(accountNumber, decodeCursor(cursor), limit + 1);
+        return toCursorPage(page, limit);
+    }
+
+    /**
+     * Feeds every transaction that matches the filters to {@code sink}, in timestamp order. A
+     * null filter matches everything. The time range is [{@code from}, {@code to}). With an
+     * account, only that account's index is walked, not the whole timeline. The walk starts at
+     * the range boundary, stops once past it, and reads one keyset page at a time, so memory use
+     * does not depend on the size of the store.
+     */
+    public void exportTransactions(String accountNumber, LocalDateTime from, LocalDateTime to,
+                                   TransactionStatus status, boolean newestFirst, Consumer<TransactionDTO> sink) {
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new TransactionException("Export range must end after it starts");
+        }
+        boolean bounded = from != null || to != null;
+        // Newest first, (to, LAST_ID) sorts right after every transaction at to; oldest first,
+        // (from - 1ns, FIRST_ID) sorts right after every transaction before from
+        TransactionCursor cursor = newestFirst
+                ? (to == null ? null : new TransactionCursor(to, LAST_ID))
+                : (from == null ? null : new TransactionCursor(from.minusNanos(1), FIRST_ID));
+        while (true) {
+            List<Transaction> page = accountNumber == null
+                    ? repository.findAll(cursor, EXPORT_PAGE_SIZE, newestFirst)
+                    : repository.findByAccountNumber(accountNumber, cursor, EXPORT_PAGE_SIZE, newestFirst);
+            for (Transaction transaction : page) {
+                LocalDateTime timestamp = transaction.getTimestamp();
+                if (bounded && timestamp == null) {
+                    continue;
+                }
+                boolean before = from != null && timestamp.isBefore(from);
+                boolean after = to != null && !timestamp.isBefore(to);
+                if (newestFirst ? before : after) {
+                    return;
+                }
+                if (!before && !after && (status == null || status == transaction.getStatus())) {
+                    sink.accept(convertToDTO(transaction));
+                }
+            }
+            if (page.size() < EXPORT_PAGE_SIZE) {
+                return;
+            }
+            cursor = TransactionCursor.of(page.get(page.size() - 1));
+        }
+    }
+
+    /**
+     * Changes a transaction that is not completed yet. Concurrent updates are applied one after
+     * the other, each on top of the previous one, so no two of them produce the same version.
+     */
     public TransactionDTO updateTransaction(UUID id, TransactionDTO dto) {
-        Transaction existing = repository.findById(id)
-                .orElseThrow(() -> new TransactionException("Transaction not found with id: " + id));
-        
-        // Check status, if completed then modification is not allowed
-        if (TransactionStatus.COMPLETED == existing.getStatus()) {
-            throw new TransactionException("Cannot modify completed transaction");
+        while (true) {
+            Transaction existing = repository.findById(id)
+                    .orElseThrow(() -> new TransactionException("Transaction not found with id: " + id));
+
+            // Check status, if completed then modification is not allowed
+            if (TransactionStatus.COMPLETED == existing.getStatus()) {
+                throw new TransactionException("Cannot modify completed transaction");
+            }
+
+            // Stored entities are never mutated in place; a snapshot may be serializing them right now
+            Transaction changed = existing.toBuilder()
+                    .accountNumber(dto.getAccountNumber())
+                    .targetAccountNumber(dto.getTargetAccountNumber())
+                    .amount(dto.getAmount())
+                    .description(dto.getDescription())
+                    .version(existing.getVersion() + 1)
+                    .build();
+
+            // Another update got in between: start over from its result
+            if (repository.replace(existing, changed)) {
+                journal.sync();
+                return convertToDTO(changed);
+            }
         }
-        
-        existing.setAccountNumber(dto.getAccountNumber());
-        existing.setTargetAccountNumber(dto.getTargetAccountNumber());
-        existing.setAmount(dto.getAmount());
-        existing.setDescription(dto.getDescription());
-        
-        Transaction updated = repository.save(existing);
-        return convertToDTO(updated);
     }
 
     public void deleteTransaction(UUID id) {
-        if (!repository.findById(id).isPresent()) {
-            throw new TransactionException("Transaction not found with id: " + id);
-        }
+        Transaction existing = repository.findById(id)
+                .orElseThrow(() -> new TransactionException("Transaction not found with id: " + id));
         repository.deleteById(id);
+        journal.sync();
+        duplicateIndex.forget(existing.getAccountNumber(), existing.getAmount(), existing.getTimestamp());
+    }
+
+    // Adds the caller's description to the pending transaction the engine recorded
+    private Transaction describePending(UUID id, String description) {
+        while (true) {
+            Transaction pending = repository.findById(id)
+                    .orElseThrow(() -> new TransactionException("Transaction not found with id: " + id));
+            if (Objects.equals(pending.getDescription(), description)) {
+                return pending;
+            }
+            Transaction described = pending.toBuilder()
+                    .description(description)
+                    .version(pending.getVersion() + 1)
+                    .build();
+            if (repository.replace(pending, described)) {
+                return described;
+            }
+        }
     }
 
     private boolean isDuplicateTransaction(TransactionDTO dto) {
-        return repository.findAll().stream()
-                .anyMatch(t -> 
-                    t.getAccountNumber().equals(dto.getAccountNumber()) &&
-                    t.getAmount().equals(dto.getAmount()) &&
-                    t.getTimestamp() != null &&
-                    dto.getTimestamp() != null &&
-                    Math.abs(t.getTimestamp().getMinute() - dto.getTimestamp().getMinute()) < 1
-                );
+        return duplicateIndex.isDuplicate(dto.getAccountNumber(), dto.getAmount(), dto.getTimestamp());
+    }
+
+    private static long toMinorUnits(BigDecimal amount) {
+        try {
+            return Money.toMinorUnits(amount);
+        } catch (ArithmeticException e) {
+            throw new TransactionException(Reason.INVALID_AMOUNT, AMOUNT_SCALE_ERROR);
+        }
+    }
+
+    private static int pageLimit(int size) {
+        if (size < 1) {
+            throw new TransactionException("Page size must be greater than 0");
+        }
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private static TransactionCursor decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return TransactionCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new TransactionException(e.getMessage());
+        }
+    }
+
+    // page holds up to limit + 1 rows; the extra one only signals that another page exists
+    private CursorPageDTO<TransactionDTO> toCursorPage(List<Transaction> page, int limit) {
+        boolean hasNext = page.size() > limit;
+        List<Transaction> content = hasNext ? page.subList(0, limit) : page;
+        return CursorPageDTO.<TransactionDTO>builder()
+                .content(content.stream().map(this::convertToDTO).collect(Collectors.toList()))
+                .size(limit)
+                .nextCursor(hasNext ? TransactionCursor.of(content.get(limit - 1)).encode() : null)
+                .build();
     }
 
     private Transaction convertToEntity(TransactionDTO dto) {
@@ -0,0 +1,110 @@
+package com.hsbc.transaction_demo.service.reactive;
+
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.ImportResultDTO;
+import com.hsbc.transaction_demo.service.AccountImportService;
+import com.hsbc.transaction_demo.service.AccountService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Non-blocking adapter over {@link AccountService}. Account reads only touch the concurrent
+ * maps and sort indexes of {@code AccountRepository}, which take no lock, and run on the
+ * subscribing event-loop thread; writes may wait for a transfer lock or a journal fsync, so
+ * they run on the blocking scheduler. Transaction reads may block too, see
+ * {@link ReactiveTransactionService}.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequiredArgsConstructor
+public class ReactiveAccountService {
+    static final int STREAM_PAGE_SIZE = 256;
+
+    private final AccountService service;
+    private final AccountImportService importService;
+    private final Scheduler blockingScheduler;
+
+    public Mono<AccountDTO> createAccount(AccountDTO accountDTO) {
+        return Mono.fromCallable(() -> service.createAccount(accountDTO)).subscribeOn(blockingScheduler);
+    }
+
+    /**
+     * Feeds the request body to the blocking importer as it arrives; the importer thread pulls
+     * a few buffers at a time, so the upload is never held in memory as a whole.
+     */
+    public Mono<ImportResultDTO> importAccounts(Flux<DataBuffer> body) {
+        return Mono.fromCallable(() -> {
+            Iterator<DataBuffer> buffers = body.toIterable(16).iterator();
+            InputStream in = new SequenceInputStream(new Enumeration<>() {
+                @Override
+                public boolean hasMoreElements() {
+                    return buffers.hasNext();
+                }
+
+                @Override
+                public InputStream nextElement() {
+                    return buffers.next().asInputStream(true);
+                }
+            });
+            return importService.importAccounts(in);
+        }).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<AccountDTO> getAccount(String accountNumber) {
+        return Mono.fromCallable(() -> service.getAccount(accountNumber));
+    }
+
+    public Mono<Boolean> accountExists(String accountNumber) {
+        return Mono.fromCallable(() -> service.accountExists(accountNumber));
+    }
+
+    public Mono<Page<AccountDTO>> getAllAccounts(Pageable pageable) {
+        return Mono.fromCallable(() -> service.getAllAccounts(pageable));
+    }
+
+    /**
+     * Every account in account number order. Keyset pages are fetched as the subscriber requests
+     * more, at most one page ahead, so a slow client never makes the whole list materialize.
+     */
+    public Flux<AccountDTO> streamAccounts() {
+        return Flux.<List<AccountDTO>, String>generate(() -> "", (after, sink) -> {
+                    List<AccountDTO> page = service.getAccountsAfter(after.isEmpty() ? null : after, STREAM_PAGE_SIZE);
+                    if (page.isEmpty()) {
+                        sink.complete();
+                        return after;
+                    }
+                    sink.next(page);
+                    if (page.size() < STREAM_PAGE_SIZE) {
+                        sink.complete();
+                    }
+                    return page.get(page.size() - 1).getAccountNumber();
+                })
+                .concatMapIterable(page -> page, 1);
+    }
+
+    public Mono<AccountDTO> updateAccount(String accountNumber, AccountDTO accountDTO) {
+        return Mono.fromCallable(() -> service.updateAccount(accountNumber, accountDTO)).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<Void> deleteAccount(String accountNumber) {
+        return Mono.<Void>fromRunnable(() -> service.deleteAccount(accountNumber)).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<AccountDTO> updateBalance(String accountNumber, BigDecimal balance) {
+        return Mono.fromCallable(() -> service.updateBalance(accountNumber, balance)).subscribeOn(blockingScheduler);
+    }
+}
@@ -0,0 +1,103 @@
+package com.hsbc.transaction_demo.service.reactive;
+
+import com.hsbc.transaction_demo.dto.BatchTransferResultDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.service.TransactionService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Non-blocking adapter over {@link TransactionService}, see {@link ReactiveAccountService}.
+ * Reads run on the event loop only with the heap store, whose indexes are read without locks;
+ * the off-heap store serves reads under a read lock that a writer may hold, so with
+ * {@code transaction.store=off-heap} they go to the blocking scheduler as well.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransactionService {
+    static final int STREAM_PAGE_SIZE = 100;
+
+    private final TransactionService service;
+    private final Scheduler blockingScheduler;
+    private final Scheduler readScheduler;
+
+    public ReactiveTransactionService(TransactionService service, Scheduler blockingScheduler,
+                                      @Value("${transaction.store:heap}") String store) {
+        this.service = service;
+        this.blockingScheduler = blockingScheduler;
+        this.readScheduler = "off-heap".equals(store) ? blockingScheduler : Schedulers.immediate();
+    }
+
+    // A retry waiting on the first request with its idempotency key blocks too
+    public Mono<TransactionDTO> createTransaction(TransactionDTO dto, String idempotencyKey) {
+        return Mono.fromCallable(() -> service.createTransaction(dto, idempotencyKey)).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<BatchTransferResultDTO> createTransactions(List<TransactionDTO> dtos, boolean atomic) {
+        return Mono.fromCallable(() -> service.createTransactions(dtos, atomic)).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<TransactionDTO> getTransaction(UUID id) {
+        return Mono.fromCallable(() -> service.getTransaction(id)).subscribeOn(readScheduler);
+    }
+
+    public Mono<Page<TransactionDTO>> getAllTransactions(Pageable pageable) {
+        return Mono.fromCallable(() -> service.getAllTransactions(pageable)).subscribeOn(readScheduler);
+    }
+
+    public Mono<CursorPageDTO<TransactionDTO>> getTransactions(String cursor, int size, boolean newestFirst) {
+        return Mono.fromCallable(() -> service.getTransactions(cursor, size, newestFirst)).subscribeOn(readScheduler);
+    }
+
+    public Mono<CursorPageDTO<TransactionDTO>> getAccountTransactions(String accountNumber, String cursor, int size) {
+        return Mono.fromCallable(() -> service.getAccountTransactions(accountNumber, cursor, size)).subscribeOn(readScheduler);
+    }
+
+    /**
+     * Every transaction in timestamp order, fetched one keyset page per subscriber request.
+     */
+    public Flux<TransactionDTO> streamTransactions(boolean newestFirst) {
+        return pages(cursor -> service.getTransactions(cursor, STREAM_PAGE_SIZE, newestFirst));
+    }
+
+    /**
+     * The account's whole history, newest first, fetched one keyset page per subscriber request.
+     */
+    public Flux<TransactionDTO> streamAccountTransactions(String accountNumber) {
+        return pages(cursor -> service.getAccountTransactions(accountNumber, cursor, STREAM_PAGE_SIZE));
+    }
+
+    public Mono<TransactionDTO> updateTransaction(UUID id, TransactionDTO dto) {
+        return Mono.fromCallable(() -> service.updateTransaction(id, dto)).subscribeOn(blockingScheduler);
+    }
+
+    public Mono<Void> deleteTransaction(UUID id) {
+        return Mono.<Void>fromRunnable(() -> service.deleteTransaction(id)).subscribeOn(blockingScheduler);
+    }
+
+    private Flux<TransactionDTO> pages(Function<String, CursorPageDTO<TransactionDTO>> fetch) {
+        return Flux.<List<TransactionDTO>, String>generate(() -> "", (cursor, sink) -> {
+                    CursorPageDTO<TransactionDTO> page = fetch.apply(cursor);
+                    sink.next(page.getContent());
+                    if (page.getNextCursor() == null) {
+                        sink.complete();
+                        return cursor;
+                    }
+                    return page.getNextCursor();
+                })
+                .subscribeOn(readScheduler)
+                .concatMapIterable(page -> page, 1);
+    }
+}
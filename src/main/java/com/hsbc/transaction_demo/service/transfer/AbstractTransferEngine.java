@@ -0,0 +1,245 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Copy-on-write building blocks shared by the engines. Stored accounts are never mutated
+ * in place: every write builds a copy with {@code version + 1} and swaps it in with
+ * {@link AccountRepository#replace}, so a write based on a stale read always fails.
+ */
+public abstract class AbstractTransferEngine implements TransferEngine {
+    protected final AccountRepository repository;
+
+    protected AbstractTransferEngine(AccountRepository repository) {
+        this.repository = repository;
+    }
+
+    protected static void validate(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        if (amount <= 0) {
+            throw new TransactionException(Reason.INVALID_AMOUNT, "Amount must be greater than 0");
+        }
+        if (sourceAccountNumber.equals(targetAccountNumber)) {
+            throw new TransactionException(Reason.SAME_ACCOUNT, "Source and target accounts must be different");
+        }
+    }
+
+    protected Account findSource(String accountNumber) {
+        Account account = repository.getByAccountNumber(accountNumber);
+        if (account == null) {
+            throw sourceNotFound(accountNumber);
+        }
+        return account;
+    }
+
+    protected Account findTarget(String accountNumber) {
+        Account account = repository.getByAccountNumber(accountNumber);
+        if (account == null) {
+            throw targetNotFound(accountNumber);
+        }
+        return account;
+    }
+
+    /**
+     * Reads the account, derives the next state from it and stores that state, retrying
+     * from a fresh read whenever another writer got in between.
+     */
+    protected Account compareAndUpdate(String accountNumber, UnaryOperator<Account> change,
+                                       Supplier<? extends RuntimeException> notFound) {
+        while (true) {
+            Account current = repository.getByAccountNumber(accountNumber);
+            if (current == null) {
+                throw notFound.get();
+            }
+            Account updated = change.apply(current.toBuilder().version(current.getVersion() + 1).build());
+            if (repository.replace(current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    // debit and credit run on every transfer, so unlike compareAndUpdate they avoid lambdas and
+    // builders: a successful attempt creates the new account and what the repository stores
+    protected Account debit(String accountNumber, long amount) {
+        while (true) {
+            Account current = findSource(accountNumber);
+            if (current.getBalance() < amount) {
+                throw new TransactionException(Reason.INSUFFICIENT_BALANCE, "Insufficient balance in source account");
+            }
+            Account updated = nextVersion(current, current.getBalance() - amount);
+            if (repository.replace(current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    protected Account credit(String accountNumber, long amount) {
+        while (true) {
+            Account current = findTarget(accountNumber);
+            Account updated = nextVersion(current, addExact(current.getBalance(), amount));
+            if (repository.replace(current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    private static Account nextVersion(Account account, long balance) {
+        return new Account(account.getId(), account.getAccountNumber(), account.getUsername(), balance,
+                account.getCreatedAt(), account.getVersion() + 1);
+    }
+
+    private static TransactionException sourceNotFound(String accountNumber) {
+        return new TransactionException(Reason.ACCOUNT_NOT_FOUND, "Source account not found: " + accountNumber);
+    }
+
+    private static TransactionException targetNotFound(String accountNumber) {
+        return new TransactionException(Reason.ACCOUNT_NOT_FOUND, "Target account not found: " + accountNumber);
+    }
+
+    /**
+     * Debits the source and credits the target. If the target disappears between the two
+     * steps (a concurrent delete) the debit is reverted before the failure is reported.
+     */
+    protected void debitThenCredit(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        debit(sourceAccountNumber, amount);
+        try {
+            credit(targetAccountNumber, amount);
+        } catch (TransactionException e) {
+            compareAndUpdate(sourceAccountNumber, account -> {
+                account.setBalance(account.getBalance() + amount);
+                return account;
+            }, () -> e);
+            throw e;
+        }
+    }
+
+    private static long addExact(long balance, long amount) {
+        try {
+            return Math.addExact(balance, amount);
+        } catch (ArithmeticException e) {
+            throw new TransactionException(Reason.BALANCE_OVERFLOW, "Target account balance would overflow");
+        }
+    }
+
+    protected Account updateAccount(String accountNumber, Consumer<Account> mutation) {
+        return compareAndUpdate(accountNumber, account -> {
+            mutation.accept(account);
+            return account;
+        }, () -> new AccountException("Account not found: " + accountNumber));
+    }
+
+    /**
+     * Batch body shared by the engines, run once they have excluded other writers as far as
+     * their strategy allows.
+     */
+    protected List<String> applyAll(List<Transfer> transfers, boolean atomic) {
+        return atomic ? applyAtomically(transfers) : applyEach(transfers);
+    }
+
+    private List<String> applyEach(List<Transfer> transfers) {
+        List<String> errors = new ArrayList<>(transfers.size());
+        for (Transfer transfer : transfers) {
+            try {
+                validate(transfer.sourceAccountNumber(), transfer.targetAccountNumber(), transfer.amount());
+                findSource(transfer.sourceAccountNumber());
+                findTarget(transfer.targetAccountNumber());
+                debitThenCredit(transfer.sourceAccountNumber(), transfer.targetAccountNumber(), transfer.amount());
+                errors.add(null);
+            } catch (TransactionException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * Dry-runs the batch in order against a private view of the balances, so every failing
+     * transfer is found before anything is written, then applies only the net change of each
+     * account, debits first. If a change fails anyway (another writer got in, which only the
+     * optimistic engine allows, or an account was deleted) every change already made is
+     * undone and the whole batch is reported as failed.
+     */
+    private List<String> applyAtomically(List<Transfer> transfers) {
+        Map<String, Long> balances = new HashMap<>();
+        Map<String, Long> changes = new LinkedHashMap<>();
+        List<String> errors = new ArrayList<>(transfers.size());
+        boolean rejected = false;
+        for (Transfer transfer : transfers) {
+            try {
+                String source = transfer.sourceAccountNumber();
+                String target = transfer.targetAccountNumber();
+                long amount = transfer.amount();
+                validate(source, target, amount);
+                long sourceBalance = balances.computeIfAbsent(source, n -> findSource(n).getBalance());
+                long targetBalance = balances.computeIfAbsent(target, n -> findTarget(n).getBalance());
+                if (sourceBalance < amount) {
+                    throw new TransactionException(Reason.INSUFFICIENT_BALANCE, "Insufficient balance in source account");
+                }
+                long credited = addExact(targetBalance, amount);
+                balances.put(source, sourceBalance - amount);
+                balances.put(target, credited);
+                changes.merge(source, -amount, Long::sum);
+                changes.merge(target, amount, Long::sum);
+                errors.add(null);
+            } catch (TransactionException e) {
+                errors.add(e.getMessage());
+                rejected = true;
+            }
+        }
+        if (rejected) {
+            return errors;
+        }
+
+        List<Map.Entry<String, Long>> applied = new ArrayList<>(changes.size());
+        try {
+            for (Map.Entry<String, Long> change : changes.entrySet()) {
+                if (change.getValue() < 0) {
+                    debit(change.getKey(), -change.getValue());
+                    applied.add(change);
+                }
+            }
+            // A credit can still fail if the account was deleted or credited close to overflow meanwhile
+            for (Map.Entry<String, Long> change : changes.entrySet()) {
+                if (change.getValue() > 0) {
+                    credit(change.getKey(), change.getValue());
+                    applied.add(change);
+                }
+            }
+        } catch (TransactionException e) {
+            for (int i = applied.size() - 1; i >= 0; i--) {
+                revert(applied.get(i).getKey(), applied.get(i).getValue(), e);
+            }
+            return new ArrayList<>(Collections.nCopies(transfers.size(), e.getMessage()));
+        }
+        return errors;
+    }
+
+    /**
+     * Takes back a net change of an atomic batch. Balance checks do not apply: the account
+     * only gets back to where the batch found it. An account deleted meanwhile cannot be
+     * reverted, which is recorded on {@code cause}.
+     */
+    private void revert(String accountNumber, long change, TransactionException cause) {
+        try {
+            compareAndUpdate(accountNumber, account -> {
+                account.setBalance(account.getBalance() - change);
+                return account;
+            }, () -> new AccountException("Account not found: " + accountNumber));
+        } catch (AccountException e) {
+            cause.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Optimistic engine: each account is updated with a versioned compare-and-set that is retried
+ * on conflict. {@link AccountRepository#replace} checks the version under the account's stripe
+ * lock, held only for the check and the store, never while the new balance is computed. The
+ * debit and the credit are two separate swaps, so a reader may briefly see the money in
+ * flight, but no update is ever lost and a failed credit reverts the debit. Suits workloads
+ * where conflicts on the same account are rare.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.transfer.strategy", havingValue = "optimistic")
+public class OptimisticTransferEngine extends AbstractTransferEngine {
+
+    public OptimisticTransferEngine(AccountRepository repository) {
+        super(repository);
+    }
+
+    @Override
+    public void transfer(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        validate(sourceAccountNumber, targetAccountNumber, amount);
+        findSource(sourceAccountNumber);
+        findTarget(targetAccountNumber);
+        debitThenCredit(sourceAccountNumber, targetAccountNumber, amount);
+    }
+
+    @Override
+    public List<String> transferAll(List<Transfer> transfers, boolean atomic) {
+        return applyAll(transfers, atomic);
+    }
+
+    @Override
+    public Account update(String accountNumber, Consumer<Account> mutation) {
+        return updateAccount(accountNumber, mutation);
+    }
+}
@@ -0,0 +1,326 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import com.hsbc.transaction_demo.journal.JournalGroup;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Partitions write ownership of the accounts over a fixed number of shards, each drained by
+ * its own worker thread: an account number hashes to one shard and only that shard's worker
+ * writes the account. A transfer between two accounts of the same shard, and every
+ * {@link #update}, runs start to finish on the owner, so its compare-and-replace never loses to
+ * another writer and never retries.
+ *
+ * <p>The shards still share what lies below the engine. The {@link AccountRepository} takes a
+ * striped lock per write, which two shards contend for only when their accounts hash to the
+ * same stripe; its sort indexes are skip lists common to all shards, updated without locks;
+ * and the journal serializes appends per lane, keyed by account number, so shards writing
+ * different accounts mostly go through different lanes but share the flusher and its fsync.
+ *
+ * <p>A transfer across shards runs in two fixed phases: the source shard checks and debits the
+ * source, then hands the credit to the target shard; if the credit fails the target shard hands
+ * a refund back to the source shard before the caller is answered. Neither worker ever waits on
+ * the other, so shards cannot deadlock. Between the phases the amount is in flight and a reader
+ * summing balances sees it missing.
+ *
+ * <p>A batch touching several shards holds off all of them: the caller queues a barrier on each,
+ * waits until every worker has reached it and then runs the batch itself. Barriers are queued
+ * under one lock, so every shard sees them in the same order.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.transfer.strategy", havingValue = "sharded")
+public class ShardedTransferEngine extends AbstractTransferEngine {
+    private static final int SPINS_BEFORE_PARK = 256;
+
+    private final Shard[] shards;
+    // Serializes queueing barriers and shutting down
+    private final ReentrantLock barrierLock = new ReentrantLock();
+    private volatile boolean running = true;
+    private volatile boolean terminated;
+
+    private final class Shard {
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        final Thread worker;
+        volatile boolean parked;
+
+        Shard(int index) {
+            this.worker = new Thread(this::drain, "ledger-shard-" + index);
+            worker.setDaemon(true);
+        }
+
+        void execute(Runnable command) {
+            // The worker journals the command's changes in the group of whoever queued it
+            queue.offer(JournalGroup.carry(command));
+            if (parked) {
+                LockSupport.unpark(worker);
+            }
+        }
+
+        <T> CompletableFuture<T> submit(Supplier<T> command) {
+            if (!running) {
+                throw new TransactionException(Reason.UNAVAILABLE, "Ledger shards are shut down");
+            }
+            CompletableFuture<T> completion = new CompletableFuture<>();
+            execute(() -> {
+                try {
+                    completion.complete(command.get());
+                } catch (RuntimeException e) {
+                    completion.completeExceptionally(e);
+                }
+            });
+            return completion;
+        }
+
+        private void drain() {
+            int idle = 0;
+            while (true) {
+                Runnable command = queue.poll();
+                if (command != null) {
+                    command.run();
+                    idle = 0;
+                    continue;
+                }
+                if (!running) {
+                    return;
+                }
+                if (++idle < SPINS_BEFORE_PARK) {
+                    Thread.onSpinWait();
+                    continue;
+                }
+                parked = true;
+                if (queue.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                parked = false;
+            }
+        }
+    }
+
+    /**
+     * @param shardCount 0 for one shard per available processor
+     */
+    public ShardedTransferEngine(AccountRepository repository,
+                                 @Value("${transaction.transfer.shards:0}") int shardCount) {
+        super(repository);
+        if (shardCount < 0) {
+            throw new IllegalArgumentException("Shard count must not be negative: " + shardCount);
+        }
+        int size = shardCount == 0 ? Runtime.getRuntime().availableProcessors() : shardCount;
+        this.shards = new Shard[size];
+        for (int i = 0; i < size; i++) {
+            shards[i] = new Shard(i);
+        }
+        for (Shard shard : shards) {
+            shard.worker.start();
+        }
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    /**
+     * The shard owning the account.
+     */
+    public int shardOf(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    @Override
+    public void transfer(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        validate(sourceAccountNumber, targetAccountNumber, amount);
+        Shard source = shards[shardOf(sourceAccountNumber)];
+        Shard target = shards[shardOf(targetAccountNumber)];
+        if (source == target) {
+            await(source.submit(() -> {
+                findSource(sourceAccountNumber);
+                findTarget(targetAccountNumber);
+                debitThenCredit(sourceAccountNumber, targetAccountNumber, amount);
+                return null;
+            }));
+            return;
+        }
+
+        CompletableFuture<Void> completion = source.submit(() -> {
+            findSource(sourceAccountNumber);
+            findTarget(targetAccountNumber);
+            debit(sourceAccountNumber, amount);
+            return null;
+        }).thenCompose(debited -> creditOnTarget(source, target, sourceAccountNumber, targetAccountNumber, amount));
+        await(completion);
+    }
+
+    /**
+     * Second phase of a cross-shard transfer, queued by the source worker once it has debited
+     * the source. Completes exceptionally only after a failed credit has been refunded.
+     */
+    private CompletableFuture<Void> creditOnTarget(Shard source, Shard target, String sourceAccountNumber,
+                                                   String targetAccountNumber, long amount) {
+        CompletableFuture<Void> completion = new CompletableFuture<>();
+        target.execute(() -> {
+            try {
+                credit(targetAccountNumber, amount);
+                completion.complete(null);
+            } catch (TransactionException e) {
+                source.execute(() -> {
+                    try {
+                        compareAndUpdate(sourceAccountNumber, account -> {
+                            account.setBalance(account.getBalance() + amount);
+                            return account;
+                        }, () -> e);
+                    } catch (RuntimeException refundFailure) {
+                        // The source was deleted meanwhile, compareAndUpdate then rethrows e itself
+                        if (refundFailure != e) {
+                            e.addSuppressed(refundFailure);
+                        }
+                    }
+                    completion.completeExceptionally(e);
+                });
+            } catch (RuntimeException e) {
+                completion.completeExceptionally(e);
+            }
+        });
+        return completion;
+    }
+
+    /**
+     * A batch within one shard runs on its worker; one spanning several shards runs on the
+     * calling thread once all of them are held at a barrier.
+     */
+    @Override
+    public List<String> transferAll(List<Transfer> transfers, boolean atomic) {
+        TreeSet<Integer> involved = new TreeSet<>();
+        for (Transfer transfer : transfers) {
+            if (transfer.sourceAccountNumber() != null) {
+                involved.add(shardOf(transfer.sourceAccountNumber()));
+            }
+            if (transfer.targetAccountNumber() != null) {
+                involved.add(shardOf(transfer.targetAccountNumber()));
+            }
+        }
+        if (involved.size() <= 1) {
+            Shard shard = shards[involved.isEmpty() ? 0 : involved.first()];
+            return await(shard.submit(() -> applyAll(transfers, atomic)));
+        }
+
+        CountDownLatch arrived = new CountDownLatch(involved.size());
+        CountDownLatch released = new CountDownLatch(1);
+        barrierLock.lock();
+        try {
+            if (!running) {
+                throw new TransactionException(Reason.UNAVAILABLE, "Ledger shards are shut down");
+            }
+            for (int index : involved) {
+                shards[index].execute(() -> {
+                    arrived.countDown();
+                    awaitUninterruptibly(released);
+                });
+            }
+        } finally {
+            barrierLock.unlock();
+        }
+        try {
+            // Barriers queued before shutdown are always reached, workers only stop on an empty queue
+            awaitUninterruptibly(arrived);
+            return applyAll(transfers, atomic);
+        } finally {
+            released.countDown();
+        }
+    }
+
+    @Override
+    public Account update(String accountNumber, Consumer<Account> mutation) {
+        return await(shards[shardOf(accountNumber)].submit(() -> updateAccount(accountNumber, mutation)));
+    }
+
+    /**
+     * Lets the workers finish what is queued, then runs on the calling thread whatever they
+     * handed each other after stopping, so no cross-shard transfer is left half done.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        barrierLock.lock();
+        try {
+            running = false;
+        } finally {
+            barrierLock.unlock();
+        }
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.worker);
+        }
+        for (Shard shard : shards) {
+            shard.worker.join();
+        }
+        boolean drained;
+        do {
+            drained = true;
+            for (Shard shard : shards) {
+                Runnable command;
+                while ((command = shard.queue.poll()) != null) {
+                    command.run();
+                    drained = false;
+                }
+            }
+        } while (!drained);
+        terminated = true;
+    }
+
+    private <T> T await(CompletableFuture<T> completion) {
+        try {
+            while (true) {
+                try {
+                    return completion.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Commands queued after shutdown drained the shards would otherwise never complete
+                    if (terminated && !completion.isDone()) {
+                        throw new TransactionException(Reason.UNAVAILABLE, "Ledger shards are shut down");
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException(Reason.UNAVAILABLE, "Interrupted while waiting for a ledger shard");
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import com.hsbc.transaction_demo.journal.JournalGroup;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Sequences every balance mutation through a ring buffer drained by one writer thread.
+ * Callers claim a slot, publish their command and wait on its completion handle; the
+ * writer applies whatever has been published in one batch and releases the slots with
+ * a single volatile write. Because the writer is the only thread touching balances,
+ * hot accounts cause no lock or CAS contention at all.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.transfer.strategy", havingValue = "single-writer")
+public class SingleWriterTransferEngine extends AbstractTransferEngine {
+    private static final int MAX_BATCH = 1024;
+    private static final int SPINS_BEFORE_PARK = 256;
+
+    private static final class Slot {
+        volatile long sequence = -1;
+        String sourceAccountNumber;
+        String targetAccountNumber;
+        long amount;
+        Consumer<Account> mutation;
+        List<Transfer> batch;
+        boolean atomic;
+        // The publisher's journal group, which the writer journals the command's changes in
+        JournalGroup group;
+        CompletableFuture<Object> completion;
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    public SingleWriterTransferEngine(AccountRepository repository,
+                                      @Value("${transaction.transfer.ring-buffer-size:65536}") int bufferSize) {
+        super(repository);
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("Ring buffer size must be a power of two: " + bufferSize);
+        }
+        this.slots = new Slot[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            slots[i] = new Slot();
+        }
+        this.mask = bufferSize - 1;
+        this.writer = new Thread(this::drain, "ledger-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void transfer(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        validate(sourceAccountNumber, targetAccountNumber, amount);
+        await(publish(sourceAccountNumber, targetAccountNumber, amount, null, null, false));
+    }
+
+    /**
+     * The whole batch occupies one slot, so it is applied by the writer without interleaving.
+     */
+    @Override
+    public List<String> transferAll(List<Transfer> transfers, boolean atomic) {
+        return await(publish(null, null, 0, null, transfers, atomic));
+    }
+
+    @Override
+    public Account update(String accountNumber, Consumer<Account> mutation) {
+        return await(publish(accountNumber, null, 0, mutation, null, false));
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    private CompletableFuture<Object> publish(String accountNumber, String targetAccountNumber, long amount,
+                                              Consumer<Account> mutation, List<Transfer> batch, boolean atomic) {
+        if (!running) {
+            throw new TransactionException(Reason.UNAVAILABLE, "Ledger writer is shut down");
+        }
+        long sequence = claimed.getAndIncrement();
+        int spins = 0;
+        // Wait for the writer to free the slot this sequence wraps onto
+        while (sequence - slots.length >= consumed) {
+            if (!running) {
+                throw new TransactionException(Reason.UNAVAILABLE, "Ledger writer is shut down");
+            }
+            if (++spins < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                LockSupport.parkNanos(1_000);
+            }
+        }
+        CompletableFuture<Object> completion = new CompletableFuture<>();
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.sourceAccountNumber = accountNumber;
+        slot.targetAccountNumber = targetAccountNumber;
+        slot.amount = amount;
+        slot.mutation = mutation;
+        slot.batch = batch;
+        slot.atomic = atomic;
+        slot.group = JournalGroup.current();
+        slot.completion = completion;
+        slot.sequence = sequence;
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+        return completion;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T await(CompletableFuture<Object> completion) {
+        try {
+            while (true) {
+                try {
+                    return (T) completion.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Commands published after the writer exited would otherwise never complete
+                    if (!writer.isAlive() && !completion.isDone()) {
+                        throw new TransactionException(Reason.UNAVAILABLE, "Ledger writer is shut down");
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransactionException(Reason.UNAVAILABLE, "Interrupted while waiting for the ledger writer");
+        }
+    }
+
+    private void drain() {
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            int processed = 0;
+            Slot slot;
+            while (processed < MAX_BATCH && (slot = slots[(int) (next & mask)]).sequence == next) {
+                if (slot.group == null) {
+                    apply(slot);
+                } else {
+                    Slot published = slot;
+                    JournalGroup.runIn(slot.group, () -> apply(published));
+                }
+                next++;
+                processed++;
+            }
+            if (processed > 0) {
+                consumed = next;
+                idle = 0;
+                continue;
+            }
+            if (!running) {
+                return;
+            }
+            if (++idle < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+                continue;
+            }
+            writerParked = true;
+            if (slots[(int) (next & mask)].sequence != next && running) {
+                LockSupport.park(this);
+            }
+            writerParked = false;
+        }
+    }
+
+    private void apply(Slot slot) {
+        CompletableFuture<Object> completion = slot.completion;
+        try {
+            if (slot.batch != null) {
+                completion.complete(applyAll(slot.batch, slot.atomic));
+            } else if (slot.mutation != null) {
+                completion.complete(updateAccount(slot.sourceAccountNumber, slot.mutation));
+            } else {
+                findSource(slot.sourceAccountNumber);
+                findTarget(slot.targetAccountNumber);
+                debitThenCredit(slot.sourceAccountNumber, slot.targetAccountNumber, slot.amount);
+                completion.complete(null);
+            }
+        } catch (RuntimeException e) {
+            completion.completeExceptionally(e);
+        } finally {
+            slot.sourceAccountNumber = null;
+            slot.targetAccountNumber = null;
+            slot.mutation = null;
+            slot.batch = null;
+            slot.group = null;
+            slot.completion = null;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Pessimistic engine: account numbers hash onto a fixed array of locks and a transfer holds
+ * the stripes of both accounts while it runs. Stripes are always taken in ascending index
+ * order, so two transfers in opposite directions cannot deadlock.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.transfer.strategy", havingValue = "striped", matchIfMissing = true)
+public class StripedLockTransferEngine extends AbstractTransferEngine {
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final LedgerMetrics metrics;
+
+    public StripedLockTransferEngine(AccountRepository repository, int stripeCount) {
+        this(repository, stripeCount, LedgerMetrics.NONE);
+    }
+
+    @Autowired
+    public StripedLockTransferEngine(AccountRepository repository,
+                                     @Value("${transaction.transfer.lock-stripes:1024}") int stripeCount,
+                                     LedgerMetrics metrics) {
+        super(repository);
+        this.metrics = metrics;
+        if (stripeCount < 1) {
+            throw new IllegalArgumentException("Lock stripe count must be positive: " + stripeCount);
+        }
+        int size = Integer.highestOneBit(stripeCount);
+        if (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    @Override
+    public void transfer(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        validate(sourceAccountNumber, targetAccountNumber, amount);
+        int sourceStripe = stripeFor(sourceAccountNumber);
+        int targetStripe = stripeFor(targetAccountNumber);
+        ReentrantLock first = stripes[Math.min(sourceStripe, targetStripe)];
+        ReentrantLock second = stripes[Math.max(sourceStripe, targetStripe)];
+
+        acquire(first);
+        try {
+            if (second != first) {
+                acquire(second);
+            }
+            try {
+                findSource(sourceAccountNumber);
+                findTarget(targetAccountNumber);
+                debitThenCredit(sourceAccountNumber, targetAccountNumber, amount);
+            } finally {
+                if (second != first) {
+                    second.unlock();
+                }
+            }
+        } finally {
+            first.unlock();
+        }
+    }
+
+    /**
+     * Takes the stripes of every account in the batch in one ascending pass, so the whole
+     * batch runs under a single acquisition instead of one per transfer.
+     */
+    @Override
+    public List<String> transferAll(List<Transfer> transfers, boolean atomic) {
+        TreeSet<Integer> needed = new TreeSet<>();
+        for (Transfer transfer : transfers) {
+            if (transfer.sourceAccountNumber() != null) {
+                needed.add(stripeFor(transfer.sourceAccountNumber()));
+            }
+            if (transfer.targetAccountNumber() != null) {
+                needed.add(stripeFor(transfer.targetAccountNumber()));
+            }
+        }
+        int locked = 0;
+        int[] order = needed.stream().mapToInt(Integer::intValue).toArray();
+        try {
+            for (int stripe : order) {
+                acquire(stripes[stripe]);
+                locked++;
+            }
+            return applyAll(transfers, atomic);
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                stripes[order[i]].unlock();
+            }
+        }
+    }
+
+    @Override
+    public Account update(String accountNumber, Consumer<Account> mutation) {
+        ReentrantLock lock = stripes[stripeFor(accountNumber)];
+        acquire(lock);
+        try {
+            return updateAccount(accountNumber, mutation);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Locks the stripe, timing the wait only when it is held by someone else, so uncontended
+     * acquisitions pay nothing extra.
+     */
+    private void acquire(ReentrantLock lock) {
+        if (lock.tryLock()) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.lock();
+        metrics.lockWait(System.nanoTime() - start);
+    }
+
+    private int stripeFor(String accountNumber) {
+        int h = accountNumber.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
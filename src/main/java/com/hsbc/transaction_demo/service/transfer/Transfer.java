@@ -0,0 +1,15 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import java.util.UUID;
+
+/**
+ * One movement of money between two accounts, as submitted in a batch. The amount is in minor units.
+ *
+ * @param transactionId the transaction the transfer will be recorded as, or null if not known yet
+ */
+public record Transfer(String sourceAccountNumber, String targetAccountNumber, long amount, UUID transactionId) {
+
+    public Transfer(String sourceAccountNumber, String targetAccountNumber, long amount) {
+        this(sourceAccountNumber, targetAccountNumber, amount, null);
+    }
+}
@@ -0,0 +1,49 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.model.Account;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Applies balance mutations to stored accounts without losing concurrent updates.
+ * Implementations only differ in how writers touching the same accounts are coordinated,
+ * selected with the {@code transaction.transfer.strategy} property.
+ */
+public interface TransferEngine {
+
+    /**
+     * Outcome of a batch transfer that debited the source while the credit is not confirmed
+     * yet; it is recorded as a pending transaction with the transfer's
+     * {@link Transfer#transactionId() id}.
+     */
+    String IN_DOUBT = "Transfer is in doubt, it completes or is refunded once the target's node answers";
+
+    /**
+     * Debits {@code amount}, in minor units, from the source account and credits it to the target account.
+     *
+     * @throws com.hsbc.transaction_demo.exception.TransactionException if an account does not exist
+     *         or the source balance is insufficient; in that case neither account is changed
+     * @throws com.hsbc.transaction_demo.exception.TransferInDoubtException if the source was
+     *         debited but the credit could not be confirmed yet
+     */
+    void transfer(String sourceAccountNumber, String targetAccountNumber, long amount);
+
+    /**
+     * Applies the transfers in order while holding off every other writer of the accounts
+     * involved, at the cost of one coordination step for the whole batch.
+     *
+     * @param atomic when true either every transfer is applied or none is; otherwise each
+     *               transfer succeeds or fails on its own
+     * @return for each transfer, in order, null if it was applied, {@link #IN_DOUBT}, or the
+     *         reason it was not applied
+     */
+    List<String> transferAll(List<Transfer> transfers, boolean atomic);
+
+    /**
+     * Applies {@code mutation} to a copy of the account and stores the copy with a bumped version.
+     *
+     * @throws com.hsbc.transaction_demo.exception.AccountException if the account does not exist
+     */
+    Account update(String accountNumber, Consumer<Account> mutation);
+}
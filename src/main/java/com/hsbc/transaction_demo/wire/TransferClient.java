@@ -0,0 +1,100 @@
+package com.hsbc.transaction_demo.wire;
+
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blocking client for {@link TransferServer}. {@link #submit} pipelines a list of transfers:
+ * up to {@link TransferServer#MAX_BATCH} requests go out in one write before their responses
+ * are read, so the server can run them as one batch. Not thread safe; use one client per
+ * feeder thread.
+ */
+public class TransferClient implements AutoCloseable {
+    static final int WINDOW = TransferServer.MAX_BATCH;
+
+    private final SocketChannel channel;
+    private final ByteBuffer out = ByteBuffer.allocate(WINDOW * WireProtocol.REQUEST_FRAME);
+    private final ByteBuffer in = ByteBuffer.allocate(64 * 1024);
+    private long nextId;
+
+    private TransferClient(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public static TransferClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        return new TransferClient(channel);
+    }
+
+    /**
+     * Submits one transfer of {@code amount} minor units and waits for its outcome.
+     */
+    public WireProtocol.Response transfer(String sourceAccountNumber, String targetAccountNumber, long amount)
+            throws IOException {
+        return submit(List.of(new Transfer(sourceAccountNumber, targetAccountNumber, amount))).get(0);
+    }
+
+    /**
+     * Submits the transfers and returns their outcomes in the same order. Each transfer stands
+     * on its own, as in a non-atomic batch.
+     *
+     * @throws IllegalArgumentException if an account number cannot be encoded, before
+     *                                  anything of its window is sent
+     */
+    public List<WireProtocol.Response> submit(List<Transfer> transfers) throws IOException {
+        List<WireProtocol.Response> responses = new ArrayList<>(transfers.size());
+        for (int from = 0; from < transfers.size(); from += WINDOW) {
+            int to = Math.min(from + WINDOW, transfers.size());
+            long firstId = nextId;
+            out.clear();
+            try {
+                for (int i = from; i < to; i++) {
+                    WireProtocol.writeRequest(out, nextId++, transfers.get(i));
+                }
+            } catch (IllegalArgumentException e) {
+                nextId = firstId;
+                throw e;
+            }
+            out.flip();
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            for (long id = firstId; id < nextId; id++) {
+                WireProtocol.Response response = readResponse();
+                if (response.id() != id) {
+                    throw new IOException("Expected response to request " + id + " but got " + response.id());
+                }
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
+    private WireProtocol.Response readResponse() throws IOException {
+        in.flip();
+        while (WireProtocol.frameLength(in) == -1 || in.remaining() < WireProtocol.frameLength(in)) {
+            in.compact();
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+            in.flip();
+        }
+        WireProtocol.Response response = WireProtocol.readResponse(in);
+        in.compact();
+        return response;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
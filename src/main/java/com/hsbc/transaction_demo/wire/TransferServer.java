@@ -0,0 +1,327 @@
+package com.hsbc.transaction_demo.wire;
+
+import com.hsbc.transaction_demo.dto.BatchTransferResultDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.service.TransactionService;
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Accepts transfers in the binary {@link WireProtocol} for feeders that submit at a rate where
+ * HTTP and JSON parsing would dominate. One selector thread does all socket I/O. Whatever
+ * requests a read brings in, up to {@link #MAX_BATCH}, go to a worker as one non-atomic
+ * {@link TransactionService#createTransactions} call, so they share one engine call and one
+ * journal flush, and their responses go back in one write.
+ *
+ * <p>A connection has at most one batch in flight: it is not read again until the responses
+ * of its batch are written. A client that keeps sending therefore fills its socket buffer and
+ * blocks instead of piling up requests here, and responses keep request order.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.wire.enabled", havingValue = "true")
+public class TransferServer {
+    static final int MAX_BATCH = 1000;
+    private static final int READ_BUFFER = MAX_BATCH * WireProtocol.REQUEST_FRAME;
+
+    private final TransactionService service;
+    private final String host;
+    private final int port;
+    private final ExecutorService workers;
+    // Connections whose batch is done, waiting for the selector thread to write the responses
+    private final Queue<Connection> completed = new ConcurrentLinkedQueue<>();
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    private final class Connection {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER);
+        ByteBuffer out;
+
+        Connection(SocketChannel channel) throws IOException {
+            this.channel = channel;
+            this.key = channel.register(selector, SelectionKey.OP_READ, this);
+        }
+    }
+
+    /**
+     * @param port 0 binds any free port, see {@link #port()}
+     */
+    public TransferServer(TransactionService service,
+                          @Value("${transaction.wire.host:localhost}") String host,
+                          @Value("${transaction.wire.port:9091}") int port,
+                          @Value("${transaction.threads:platform}") String threads) {
+        this.service = service;
+        this.host = host;
+        this.port = port;
+        // Workers block on engine locks and journal flushes, never the selector thread
+        this.workers = "virtual".equals(threads)
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+                    Thread thread = new Thread(runnable, "wire-worker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Binds only once the application is ready, after journal recovery has restored the
+     * ledger.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.bind(new InetSocketAddress(host, port));
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "wire-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Accepting binary transfers on {}", server.getLocalAddress());
+    }
+
+    /**
+     * The bound port, or -1 before {@link #start()}.
+     */
+    public int port() {
+        return server == null ? -1 : server.socket().getLocalPort();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException, InterruptedException {
+        if (selectorThread != null) {
+            running = false;
+            selector.wakeup();
+            selectorThread.join();
+        }
+        workers.shutdown();
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                for (SelectionKey key : selector.selectedKeys()) {
+                    handle(key);
+                }
+                selector.selectedKeys().clear();
+                Connection connection;
+                while ((connection = completed.poll()) != null) {
+                    write(connection);
+                }
+            }
+        } catch (IOException e) {
+            log.error("Binary transfer listener stopped", e);
+        } finally {
+            // Also closes the server channel, which is registered too
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.debug("Failed to close selector", e);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        try {
+            if (key.isReadable()) {
+                read((Connection) key.attachment());
+            } else if (key.isWritable()) {
+                write((Connection) key.attachment());
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Closing binary transfer connection", e);
+            close(key);
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel = null;
+        try {
+            channel = server.accept();
+            if (channel != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                new Connection(channel);
+            }
+        } catch (IOException e) {
+            // Keep listening, e.g. when out of file descriptors for a moment
+            log.warn("Failed to accept binary transfer connection", e);
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(connection.key);
+            return;
+        }
+        dispatch(connection);
+    }
+
+    /**
+     * Hands the complete requests buffered so far to a worker, or waits for more input if there
+     * are none.
+     */
+    private void dispatch(Connection connection) {
+        ByteBuffer in = connection.in.flip();
+        List<WireProtocol.Request> requests = new ArrayList<>();
+        while (requests.size() < MAX_BATCH) {
+            int length = WireProtocol.frameLength(in);
+            if (length == -1) {
+                break;
+            }
+            // Checked before waiting for the rest, a bad length could otherwise never complete
+            if (length != WireProtocol.REQUEST_FRAME) {
+                throw new IllegalStateException("Unexpected request frame length " + length);
+            }
+            if (in.remaining() < length) {
+                break;
+            }
+            requests.add(WireProtocol.readRequest(in));
+        }
+        in.compact();
+        if (requests.isEmpty()) {
+            connection.key.interestOps(SelectionKey.OP_READ);
+            return;
+        }
+        connection.key.interestOps(0);
+        workers.execute(() -> {
+            boolean replied = false;
+            try {
+                connection.out = process(requests);
+                completed.offer(connection);
+                replied = true;
+            } catch (RuntimeException e) {
+                log.error("Could not encode binary transfer responses", e);
+            } finally {
+                // Without a reply the client would wait forever, so it loses the connection instead
+                if (!replied) {
+                    close(connection.key);
+                }
+                selector.wakeup();
+            }
+        });
+    }
+
+    private void write(Connection connection) {
+        if (!connection.key.isValid()) {
+            return;
+        }
+        try {
+            connection.channel.write(connection.out);
+            if (connection.out.hasRemaining()) {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+            connection.out = null;
+            // More than one batch may have arrived in a single read
+            dispatch(connection);
+        } catch (IOException | RuntimeException e) {
+            log.debug("Closing binary transfer connection", e);
+            close(connection.key);
+        }
+    }
+
+    /**
+     * Runs the requests as one non-atomic batch and encodes their responses in request order.
+     */
+    ByteBuffer process(List<WireProtocol.Request> requests) {
+        List<TransactionDTO> dtos = new ArrayList<>(requests.size());
+        for (WireProtocol.Request request : requests) {
+            Transfer transfer = request.transfer();
+            dtos.add(TransactionDTO.builder()
+                    .accountNumber(transfer.sourceAccountNumber())
+                    .targetAccountNumber(transfer.targetAccountNumber())
+                    .amount(Money.toDecimal(transfer.amount()))
+                    .build());
+        }
+        List<BatchTransferResultDTO.Item> results;
+        try {
+            results = service.createTransactions(dtos, false).getResults();
+        } catch (RuntimeException e) {
+            // E.g. the journal flush failed; the transfers may or may not survive a restart
+            log.warn("Binary transfer batch failed", e);
+            String error = e.getMessage() == null ? "Internal error" : e.getMessage();
+            ByteBuffer out = ByteBuffer.allocate(requests.size() * WireProtocol.responseLength(error));
+            for (WireProtocol.Request request : requests) {
+                WireProtocol.writeFailed(out, request.id(), error);
+            }
+            return out.flip();
+        }
+        String[] errors = new String[results.size()];
+        int capacity = 0;
+        for (int i = 0; i < results.size(); i++) {
+            BatchTransferResultDTO.Item result = results.get(i);
+            if (result.getStatus() == TransactionStatus.FAILED) {
+                errors[i] = result.getError() == null ? "Transfer failed" : result.getError();
+            }
+            capacity += WireProtocol.responseLength(errors[i]);
+        }
+        ByteBuffer out = ByteBuffer.allocate(capacity);
+        for (int i = 0; i < requests.size(); i++) {
+            BatchTransferResultDTO.Item result = results.get(i);
+            long id = requests.get(i).id();
+            switch (result.getStatus()) {
+                case COMPLETED -> WireProtocol.writeCompleted(out, id, result.getTransaction().getId());
+                case PENDING -> WireProtocol.writePending(out, id, result.getTransaction().getId());
+                default -> WireProtocol.writeFailed(out, id, errors[i]);
+            }
+        }
+        return out.flip();
+    }
+
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            log.debug("Failed to close binary transfer connection", e);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.hsbc.transaction_demo.wire;
+
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Frames of the binary transfer protocol. Every frame starts with its length as an int,
+ * counting the bytes after it; all numbers are big-endian.
+ *
+ * <pre>
+ * request, always {@link #REQUEST_LENGTH} bytes after the length
+ *   long     request id, echoed in the response
+ *   long     amount in minor units
+ *   byte[20] source account number, ASCII, zero padded
+ *   byte[20] target account number, ASCII, zero padded
+ *
+ * response
+ *   long     request id
+ *   byte     {@link #COMPLETED}, {@link #FAILED} or {@link #PENDING}
+ *   long     transaction id, most significant bits (0 when failed)
+ *   long     transaction id, least significant bits (0 when failed)
+ *   short    length of the error message, 0 unless failed
+ *   byte[]   error message, UTF-8
+ * </pre>
+ *
+ * A pending transfer debited the source but its credit is not confirmed yet, as with a target
+ * account on a cluster node that did not answer; its transaction completes or fails later.
+ * A client may send any number of requests without waiting; responses come back in request
+ * order.
+ */
+public final class WireProtocol {
+    public static final int ACCOUNT_NUMBER_LENGTH = 20;
+    public static final int REQUEST_LENGTH = 8 + 8 + 2 * ACCOUNT_NUMBER_LENGTH;
+    public static final int REQUEST_FRAME = 4 + REQUEST_LENGTH;
+
+    public static final byte COMPLETED = 0;
+    public static final byte FAILED = 1;
+    public static final byte PENDING = 2;
+
+    static final int RESPONSE_HEADER = 8 + 1 + 16 + 2;
+    // Longer messages are cut, so every response frame fits a small buffer
+    static final int MAX_ERROR_LENGTH = 1024;
+    public static final int MAX_RESPONSE_FRAME = 4 + RESPONSE_HEADER + MAX_ERROR_LENGTH;
+
+    /** A decoded request */
+    public record Request(long id, Transfer transfer) {
+    }
+
+    /** A decoded response; {@code error} is set exactly when the transfer failed */
+    public record Response(long id, byte status, UUID transactionId, String error) {
+        public boolean completed() {
+            return status == COMPLETED;
+        }
+
+        public boolean pending() {
+            return status == PENDING;
+        }
+    }
+
+    private WireProtocol() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if an account number is not ASCII, contains NUL or is longer than
+     *                                  {@link #ACCOUNT_NUMBER_LENGTH}
+     */
+    public static void writeRequest(ByteBuffer out, long id, Transfer transfer) {
+        out.putInt(REQUEST_LENGTH);
+        out.putLong(id);
+        out.putLong(transfer.amount());
+        writeAccountNumber(out, transfer.sourceAccountNumber());
+        writeAccountNumber(out, transfer.targetAccountNumber());
+    }
+
+    /**
+     * Reads the request at the buffer's position, which must hold a whole frame.
+     *
+     * @throws IllegalStateException if the frame length is not the request length
+     */
+    public static Request readRequest(ByteBuffer in) {
+        int length = in.getInt();
+        if (length != REQUEST_LENGTH) {
+            throw new IllegalStateException("Unexpected request length " + length);
+        }
+        long id = in.getLong();
+        long amount = in.getLong();
+        String source = readAccountNumber(in);
+        String target = readAccountNumber(in);
+        return new Request(id, new Transfer(source, target, amount));
+    }
+
+    public static void writeCompleted(ByteBuffer out, long id, UUID transactionId) {
+        writeAccepted(out, id, COMPLETED, transactionId);
+    }
+
+    public static void writePending(ByteBuffer out, long id, UUID transactionId) {
+        writeAccepted(out, id, PENDING, transactionId);
+    }
+
+    private static void writeAccepted(ByteBuffer out, long id, byte status, UUID transactionId) {
+        out.putInt(RESPONSE_HEADER);
+        out.putLong(id);
+        out.put(status);
+        out.putLong(transactionId.getMostSignificantBits());
+        out.putLong(transactionId.getLeastSignificantBits());
+        out.putShort((short) 0);
+    }
+
+    public static void writeFailed(ByteBuffer out, long id, String error) {
+        byte[] message = error.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(message.length, MAX_ERROR_LENGTH);
+        out.putInt(RESPONSE_HEADER + length);
+        out.putLong(id);
+        out.put(FAILED);
+        out.putLong(0);
+        out.putLong(0);
+        out.putShort((short) length);
+        out.put(message, 0, length);
+    }
+
+    /**
+     * Upper bound on the frame length of a response with this error, or of a completed or
+     * pending one when {@code error} is null.
+     */
+    public static int responseLength(String error) {
+        // UTF-8 takes at most three bytes per char
+        return 4 + RESPONSE_HEADER + (error == null ? 0 : Math.min(3 * error.length(), MAX_ERROR_LENGTH));
+    }
+
+    /**
+     * Length of the whole frame starting at the buffer's position, or -1 if not even its
+     * length has arrived yet.
+     */
+    public static int frameLength(ByteBuffer in) {
+        return in.remaining() < 4 ? -1 : 4 + in.getInt(in.position());
+    }
+
+    /**
+     * Reads the response at the buffer's position, which must hold a whole frame.
+     */
+    public static Response readResponse(ByteBuffer in) {
+        in.getInt();
+        long id = in.getLong();
+        byte status = in.get();
+        UUID transactionId = new UUID(in.getLong(), in.getLong());
+        byte[] message = new byte[in.getShort()];
+        in.get(message);
+        if (status == FAILED) {
+            return new Response(id, status, null, new String(message, StandardCharsets.UTF_8));
+        }
+        return new Response(id, status, transactionId, null);
+    }
+
+    private static void writeAccountNumber(ByteBuffer out, String accountNumber) {
+        int length = accountNumber.length();
+        if (length > ACCOUNT_NUMBER_LENGTH) {
+            throw new IllegalArgumentException("Account number longer than " + ACCOUNT_NUMBER_LENGTH
+                    + " characters: " + accountNumber);
+        }
+        for (int i = 0; i < ACCOUNT_NUMBER_LENGTH; i++) {
+            char c = i < length ? accountNumber.charAt(i) : 0;
+            // A NUL would end the number early on the other side
+            if (c > 127 || c == 0 && i < length) {
+                throw new IllegalArgumentException("Account number is not ASCII or contains NUL: " + accountNumber);
+            }
+            out.put((byte) c);
+        }
+    }
+
+    private static String readAccountNumber(ByteBuffer in) {
+        byte[] bytes = new byte[ACCOUNT_NUMBER_LENGTH];
+        in.get(bytes);
+        int length = 0;
+        while (length < ACCOUNT_NUMBER_LENGTH && bytes[length] != 0) {
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+}
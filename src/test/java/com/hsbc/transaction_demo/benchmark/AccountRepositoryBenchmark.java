@@ -0,0 +1,79 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the {@link AccountRepository} operations behind the account API:
+ * lookup, overwrite, offset pagination deep into the sort index and keyset pagination.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="AccountRepositoryBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccountRepositoryBenchmark {
+    private static final int ACCOUNTS = 100_000;
+    private static final int PAGE_SIZE = 20;
+
+    private AccountRepository repository;
+    private Account[] accounts;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = new AccountRepository(Journal.NONE, 16, true);
+        accounts = new Account[ACCOUNTS];
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = Account.builder()
+                    .accountNumber(String.format("%010d", i))
+                    .username("User " + i)
+                    .balance(1_000_00L + i)
+                    .createdAt(createdAt.plusSeconds(i))
+                    .build();
+            repository.save(accounts[i]);
+        }
+    }
+
+    private static int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(ACCOUNTS);
+    }
+
+    @Benchmark
+    public Optional<Account> findByAccountNumber() {
+        return repository.findByAccountNumber(accounts[randomIndex()].getAccountNumber());
+    }
+
+    @Benchmark
+    public Account save() {
+        Account current = accounts[randomIndex()];
+        return repository.save(current.toBuilder().balance(current.getBalance() + 1).build());
+    }
+
+    @Benchmark
+    public Page<Account> findAllPageByBalance() {
+        int page = randomIndex() / PAGE_SIZE;
+        return repository.findAll(PageRequest.of(page, PAGE_SIZE, Sort.by(Sort.Direction.DESC, "balance")));
+    }
+
+    @Benchmark
+    public List<Account> findAllAfter() {
+        return repository.findAllAfter(accounts[randomIndex()].getAccountNumber(), PAGE_SIZE);
+    }
+}
@@ -0,0 +1,125 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.service.AccountJsonCache;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON encoding of the API's DTOs with an {@link ObjectMapper} configured like Spring Boot's
+ * (Java time module, ISO dates): single account and transaction responses, a 20 item cursor
+ * page, and decoding a transfer request body. {@code writeAccountCached} is the same account
+ * response served from the {@link AccountJsonCache}, as {@code GET /api/accounts/{number}} does
+ * while the account is unchanged.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="DtoSerializationBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DtoSerializationBenchmark {
+    private static final int PAGE_SIZE = 20;
+
+    private ObjectWriter writer;
+    private ObjectReader transactionReader;
+    private AccountDTO account;
+    private AccountJsonCache accountCache;
+    private Account storedAccount;
+    private TransactionDTO transaction;
+    private CursorPageDTO<TransactionDTO> page;
+    private byte[] transferRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        writer = mapper.writer();
+        transactionReader = mapper.readerFor(TransactionDTO.class);
+
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_789);
+        account = AccountDTO.builder()
+                .accountNumber("0000000001")
+                .username("User 1")
+                .balance(new BigDecimal("1234.56"))
+                .createdAt(now)
+                .build();
+        accountCache = new AccountJsonCache(mapper, 1 << 20, AccountJsonCache.Eviction.CLOCK);
+        storedAccount = Account.builder()
+                .accountNumber(account.getAccountNumber())
+                .username(account.getUsername())
+                .balance(Money.toMinorUnits(account.getBalance()))
+                .createdAt(now)
+                .build();
+        transaction = TransactionDTO.builder()
+                .id(UUID.randomUUID())
+                .accountNumber("0000000001")
+                .targetAccountNumber("0000000002")
+                .amount(new BigDecimal("25.50"))
+                .description("Transfer")
+                .timestamp(now)
+                .status(TransactionStatus.COMPLETED)
+                .build();
+        List<TransactionDTO> content = new ArrayList<>(PAGE_SIZE);
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            content.add(transaction.toBuilder().id(UUID.randomUUID()).timestamp(now.plusSeconds(i)).build());
+        }
+        page = CursorPageDTO.<TransactionDTO>builder()
+                .content(content)
+                .size(PAGE_SIZE)
+                .nextCursor("MjAyNC0wMS0wMVQxMjowMDoxOXwwMDAwMDAwMC0wMDAwLTAwMDAtMDAwMC0wMDAwMDAwMDAwMDA")
+                .build();
+        transferRequest = writer.writeValueAsBytes(TransactionDTO.builder()
+                .accountNumber("0000000001")
+                .targetAccountNumber("0000000002")
+                .amount(new BigDecimal("25.50"))
+                .description("Transfer")
+                .build());
+    }
+
+    @Benchmark
+    public byte[] writeAccount() throws Exception {
+        return writer.writeValueAsBytes(account);
+    }
+
+    @Benchmark
+    public byte[] writeAccountCached() {
+        return accountCache.get(storedAccount, stored -> account).asUnquotedUTF8();
+    }
+
+    @Benchmark
+    public byte[] writeTransaction() throws Exception {
+        return writer.writeValueAsBytes(transaction);
+    }
+
+    @Benchmark
+    public byte[] writeTransactionPage() throws Exception {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public TransactionDTO readTransferRequest() throws Exception {
+        return transactionReader.readValue(transferRequest);
+    }
+}
@@ -0,0 +1,84 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The duplicate check run before every transfer, against {@code transactions} transfers
+ * recorded within the last two minutes. Both a hit and a miss should stay flat as the store
+ * grows; a cost that scales with {@code transactions} means the check has gone back to
+ * scanning history.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="DuplicateCheckBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class DuplicateCheckBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final int WINDOW_MILLIS = 120_000;
+    private static final int PROBES = 4096;
+
+    @Param({"1000", "100000", "1000000"})
+    public int transactions;
+
+    private DuplicateTransactionIndex index;
+    private String[] probeAccounts;
+    private BigDecimal[] probeAmounts;
+    private LocalDateTime[] probeTimestamps;
+    private BigDecimal missingAmount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = new DuplicateTransactionIndex();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        probeAccounts = new String[PROBES];
+        probeAmounts = new BigDecimal[PROBES];
+        probeTimestamps = new LocalDateTime[PROBES];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] probed = new int[PROBES];
+        for (int p = 0; p < PROBES; p++) {
+            probed[p] = random.nextInt(transactions);
+        }
+        for (int i = 0; i < transactions; i++) {
+            // Every (account, amount) pair is unique, so only the probed transfer can match
+            String accountNumber = String.format("%010d", i % ACCOUNTS);
+            BigDecimal amount = BigDecimal.valueOf(i / ACCOUNTS + 1, 2);
+            LocalDateTime timestamp = start.plusNanos((i % WINDOW_MILLIS) * 1_000_000L);
+            index.record(accountNumber, amount, timestamp);
+        }
+        for (int p = 0; p < PROBES; p++) {
+            int i = probed[p];
+            probeAccounts[p] = String.format("%010d", i % ACCOUNTS);
+            probeAmounts[p] = BigDecimal.valueOf(i / ACCOUNTS + 1, 2);
+            probeTimestamps[p] = start.plusNanos((i % WINDOW_MILLIS) * 1_000_000L).plusSeconds(30);
+        }
+        missingAmount = BigDecimal.valueOf(transactions / ACCOUNTS + 2, 2);
+    }
+
+    private static int randomProbe() {
+        return ThreadLocalRandom.current().nextInt(PROBES);
+    }
+
+    @Benchmark
+    public boolean hit() {
+        int p = randomProbe();
+        return index.isDuplicate(probeAccounts[p], probeAmounts[p], probeTimestamps[p]);
+    }
+
+    @Benchmark
+    public boolean miss() {
+        int p = randomProbe();
+        return index.isDuplicate(probeAccounts[p], missingAmount, probeTimestamps[p]);
+    }
+}
@@ -0,0 +1,68 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.model.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The debit/credit step of a transfer on {@link BigDecimal} balances, as the ledger used to
+ * store them, versus the {@code long} minor units it stores now. The GC profiler output shows
+ * the allocation difference per operation:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="LedgerArithmeticBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LedgerArithmeticBenchmark {
+    private static final int ACCOUNTS = 1024;
+
+    private BigDecimal[] decimalBalances;
+    private long[] minorBalances;
+    private BigDecimal decimalAmount;
+    private long minorAmount;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        decimalBalances = new BigDecimal[ACCOUNTS];
+        minorBalances = new long[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            decimalBalances[i] = new BigDecimal("1000000.00");
+            minorBalances[i] = Money.toMinorUnits(decimalBalances[i]);
+        }
+        decimalAmount = new BigDecimal("0.01");
+        minorAmount = Money.toMinorUnits(decimalAmount);
+    }
+
+    @Benchmark
+    public boolean bigDecimal() {
+        int source = next++ & (ACCOUNTS - 1);
+        int target = (source + 1) & (ACCOUNTS - 1);
+        if (decimalBalances[source].compareTo(decimalAmount) < 0) {
+            return false;
+        }
+        decimalBalances[source] = decimalBalances[source].subtract(decimalAmount);
+        decimalBalances[target] = decimalBalances[target].add(decimalAmount);
+        return true;
+    }
+
+    @Benchmark
+    public boolean minorUnits() {
+        int source = next++ & (ACCOUNTS - 1);
+        int target = (source + 1) & (ACCOUNTS - 1);
+        if (minorBalances[source] < minorAmount) {
+            return false;
+        }
+        minorBalances[source] -= minorAmount;
+        minorBalances[target] = Math.addExact(minorBalances[target], minorAmount);
+        return true;
+    }
+}
@@ -0,0 +1,365 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hsbc.transaction_demo.TransactionDemoApplication;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Self-contained load test: boots the application on a random local port, seeds accounts
+ * through the NDJSON import, then runs a read/write mix from virtual-thread clients for a
+ * warm-up and a measured phase. Reads fetch an account, writes transfer 0.01 between two
+ * accounts; {@code hot-share} of all picks go to the first {@code hot-accounts} accounts.
+ *
+ * <p>Latencies go into HdrHistograms per operation. With {@code rate} set, every client sends
+ * on a fixed schedule and latency is measured from the scheduled send time, so a stalled server
+ * shows up in the tail instead of just slowing the clients down (coordinated omission).
+ *
+ * <p>Results are written as JSON ({@code out}) plus one {@code .hgrm} percentile distribution
+ * per operation next to it. When {@code baseline} exists, the run fails (exit code 1) if
+ * throughput drops or p99/p99.9 latency grows by more than {@code tolerance} against it, or
+ * if any request failed. {@code update-baseline=true} stores the run as the new baseline.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.hsbc.transaction_demo.benchmark.LoadHarness \
+ *     -Djmh.args="clients=32 duration=30 reads=0.8 hot-share=0.5 --transaction.store=off-heap"
+ * </pre>
+ * Arguments are {@code key=value} settings (see {@link Settings#parse}); arguments starting
+ * with {@code --} are passed on to the application. Client and server share the JVM and the
+ * machine, so compare runs from the same machine only.
+ */
+public class LoadHarness {
+    private static final String READ = "read";
+    private static final String WRITE = "write";
+    private static final String ALL = "all";
+
+    record Settings(int accounts, int clients, int warmupSeconds, int durationSeconds, double reads,
+                    int hotAccounts, double hotShare, int rate, Path out, Path baseline, double tolerance,
+                    boolean updateBaseline, List<String> appArgs) {
+
+        static Settings parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            List<String> appArgs = new ArrayList<>();
+            for (String arg : args) {
+                if (arg.startsWith("--")) {
+                    appArgs.add(arg);
+                    continue;
+                }
+                int separator = arg.indexOf('=');
+                if (separator < 1) {
+                    throw new IllegalArgumentException("Expected key=value but got: " + arg);
+                }
+                values.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+            Settings settings = new Settings(
+                    Integer.parseInt(take(values, "accounts", "10000")),
+                    Integer.parseInt(take(values, "clients", "32")),
+                    Integer.parseInt(take(values, "warmup", "10")),
+                    Integer.parseInt(take(values, "duration", "30")),
+                    Double.parseDouble(take(values, "reads", "0.8")),
+                    Integer.parseInt(take(values, "hot-accounts", "10")),
+                    Double.parseDouble(take(values, "hot-share", "0.5")),
+                    Integer.parseInt(take(values, "rate", "0")),
+                    Path.of(take(values, "out", "target/load/result.json")),
+                    Path.of(take(values, "baseline", "testplan/load_baseline.json")),
+                    Double.parseDouble(take(values, "tolerance", "0.3")),
+                    Boolean.parseBoolean(take(values, "update-baseline", "false")),
+                    List.copyOf(appArgs));
+            if (!values.isEmpty()) {
+                throw new IllegalArgumentException("Unknown settings: " + values.keySet());
+            }
+            if (settings.accounts < 2 || settings.hotAccounts < 1 || settings.hotAccounts > settings.accounts) {
+                throw new IllegalArgumentException("Need at least 2 accounts, and between 1 and accounts hot accounts");
+            }
+            return settings;
+        }
+
+        private static String take(Map<String, String> values, String key, String defaultValue) {
+            String value = values.remove(key);
+            return value != null ? value : defaultValue;
+        }
+
+        /** The settings that define the workload; a baseline only applies to the same ones */
+        Map<String, Object> workload() {
+            Map<String, Object> workload = new LinkedHashMap<>();
+            workload.put("accounts", accounts);
+            workload.put("clients", clients);
+            workload.put("warmupSeconds", warmupSeconds);
+            workload.put("durationSeconds", durationSeconds);
+            workload.put("reads", reads);
+            workload.put("hotAccounts", hotAccounts);
+            workload.put("hotShare", hotShare);
+            workload.put("rate", rate);
+            workload.put("appArgs", appArgs);
+            return workload;
+        }
+    }
+
+    record OperationResult(long count, long errors, double throughput, double meanMillis, double p50Millis,
+                           double p90Millis, double p99Millis, double p999Millis, double maxMillis) {
+
+        static OperationResult of(Histogram histogram, long errors, double seconds) {
+            return new OperationResult(histogram.getTotalCount(), errors, histogram.getTotalCount() / seconds,
+                    histogram.getMean() / 1000, millis(histogram, 50), millis(histogram, 90),
+                    millis(histogram, 99), millis(histogram, 99.9), histogram.getMaxValue() / 1000.0);
+        }
+
+        private static double millis(Histogram histogram, double percentile) {
+            return histogram.getValueAtPercentile(percentile) / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throughput=%.0f req/s mean=%.2f ms p50=%.2f ms p90=%.2f ms "
+                            + "p99=%.2f ms p99.9=%.2f ms max=%.2f ms",
+                    count, errors, throughput, meanMillis, p50Millis, p90Millis, p99Millis, p999Millis, maxMillis);
+        }
+    }
+
+    record Report(Map<String, Object> workload, double seconds, Map<String, OperationResult> operations) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(args);
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+        Report report;
+        Map<String, Histogram> histograms;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TransactionDemoApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=warn")
+                .run(settings.appArgs().toArray(String[]::new))) {
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+            Workload workload = new Workload(client, baseUrl, settings);
+            workload.seed();
+            System.out.printf("seeded %d accounts on %s, warming up for %d s%n",
+                    settings.accounts(), baseUrl, settings.warmupSeconds());
+            workload.run(Duration.ofSeconds(settings.warmupSeconds()));
+            System.out.printf("measuring for %d s%n", settings.durationSeconds());
+            Phase phase = workload.run(Duration.ofSeconds(settings.durationSeconds()));
+            histograms = phase.histograms();
+            report = phase.report(settings);
+        }
+
+        report.operations().forEach((operation, result) -> System.out.printf("%-5s %s%n", operation, result));
+        write(mapper, settings.out(), report, histograms);
+        System.out.println("results written to " + settings.out());
+
+        if (settings.updateBaseline()) {
+            Files.createDirectories(settings.baseline().toAbsolutePath().getParent());
+            mapper.writeValue(settings.baseline().toFile(), report);
+            System.out.println("baseline updated: " + settings.baseline());
+            return;
+        }
+        List<String> regressions = new ArrayList<>();
+        report.operations().forEach((operation, result) -> {
+            if (result.errors() > 0) {
+                regressions.add("%s: %d requests failed".formatted(operation, result.errors()));
+            }
+        });
+        if (Files.exists(settings.baseline())) {
+            Report baseline = mapper.readValue(settings.baseline().toFile(), Report.class);
+            regressions.addAll(compare(baseline, report, settings.tolerance()));
+        } else {
+            System.out.println("no baseline at " + settings.baseline() + ", run with update-baseline=true to store one");
+        }
+        if (!regressions.isEmpty()) {
+            regressions.forEach(regression -> System.out.println("REGRESSION " + regression));
+            System.exit(1);
+        }
+    }
+
+    static List<String> compare(Report baseline, Report current, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        if (!baseline.workload().equals(current.workload())) {
+            regressions.add("baseline was recorded with a different workload " + baseline.workload());
+            return regressions;
+        }
+        baseline.operations().forEach((operation, expected) -> {
+            OperationResult actual = current.operations().get(operation);
+            if (actual.throughput() < expected.throughput() * (1 - tolerance)) {
+                regressions.add("%s throughput %.0f req/s, baseline %.0f req/s"
+                        .formatted(operation, actual.throughput(), expected.throughput()));
+            }
+            if (actual.p99Millis() > expected.p99Millis() * (1 + tolerance)) {
+                regressions.add("%s p99 %.2f ms, baseline %.2f ms"
+                        .formatted(operation, actual.p99Millis(), expected.p99Millis()));
+            }
+            if (actual.p999Millis() > expected.p999Millis() * (1 + tolerance)) {
+                regressions.add("%s p99.9 %.2f ms, baseline %.2f ms"
+                        .formatted(operation, actual.p999Millis(), expected.p999Millis()));
+            }
+        });
+        return regressions;
+    }
+
+    private static void write(ObjectMapper mapper, Path out, Report report, Map<String, Histogram> histograms)
+            throws IOException {
+        Path directory = out.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        mapper.writeValue(out.toFile(), report);
+        String prefix = out.getFileName().toString().replaceFirst("\\.json$", "");
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream stream = new PrintStream(
+                    Files.newOutputStream(directory.resolve(prefix + "-" + entry.getKey() + ".hgrm")))) {
+                // Recorded in microseconds, written in milliseconds
+                entry.getValue().outputPercentileDistribution(stream, 1000.0);
+            }
+        }
+    }
+
+    private record Phase(Map<String, Histogram> histograms, Map<String, AtomicLong> errors, double seconds) {
+        Report report(Settings settings) {
+            Map<String, OperationResult> operations = new LinkedHashMap<>();
+            histograms.forEach((operation, histogram) -> operations.put(operation,
+                    OperationResult.of(histogram, errors.get(operation).get(), seconds)));
+            return new Report(settings.workload(), seconds, operations);
+        }
+    }
+
+    private static final class Workload {
+        private final HttpClient client;
+        private final String baseUrl;
+        private final Settings settings;
+        private final String[] accountNumbers;
+
+        Workload(HttpClient client, String baseUrl, Settings settings) {
+            this.client = client;
+            this.baseUrl = baseUrl;
+            this.settings = settings;
+            this.accountNumbers = IntStream.range(0, settings.accounts())
+                    .mapToObj("LOAD-%08d"::formatted)
+                    .toArray(String[]::new);
+        }
+
+        void seed() throws Exception {
+            String body = Arrays.stream(accountNumbers)
+                    .map("{\"accountNumber\":\"%s\",\"username\":\"load\",\"balance\":\"1000000000.00\"}"::formatted)
+                    .collect(Collectors.joining("\n"));
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts/import"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("Seeding accounts failed: " + response.body());
+            }
+        }
+
+        Phase run(Duration duration) throws InterruptedException {
+            Map<String, Histogram> histograms = new LinkedHashMap<>();
+            Map<String, AtomicLong> errors = new LinkedHashMap<>();
+            for (String operation : List.of(READ, WRITE, ALL)) {
+                histograms.put(operation, new ConcurrentHistogram(3));
+                errors.put(operation, new AtomicLong());
+            }
+            long start = System.nanoTime();
+            long deadline = start + duration.toNanos();
+            // Each client owns an equal share of the target rate, staggered across one interval
+            long interval = settings.rate() > 0 ? 1_000_000_000L * settings.clients() / settings.rate() : 0;
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < settings.clients(); i++) {
+                    long first = start + interval * i / settings.clients();
+                    executor.execute(() -> client(first, interval, deadline, histograms, errors));
+                }
+            }
+            return new Phase(histograms, errors, (System.nanoTime() - start) / 1e9);
+        }
+
+        private void client(long first, long interval, long deadline,
+                            Map<String, Histogram> histograms, Map<String, AtomicLong> errors) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long scheduled = first;
+            while (true) {
+                long sent;
+                if (interval > 0) {
+                    for (long wait = scheduled - System.nanoTime(); wait > 0; wait = scheduled - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    sent = scheduled;
+                    scheduled += interval;
+                } else {
+                    sent = System.nanoTime();
+                }
+                if (sent >= deadline) {
+                    return;
+                }
+                String operation = random.nextDouble() < settings.reads() ? READ : WRITE;
+                boolean ok = send(operation == READ ? read(random) : write(random));
+                long micros = Math.max(1, (System.nanoTime() - sent) / 1000);
+                histograms.get(operation).recordValue(micros);
+                histograms.get(ALL).recordValue(micros);
+                if (!ok) {
+                    errors.get(operation).incrementAndGet();
+                    errors.get(ALL).incrementAndGet();
+                }
+            }
+        }
+
+        private boolean send(HttpRequest request) {
+            try {
+                return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() < 400;
+            } catch (IOException e) {
+                return false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        private int pick(ThreadLocalRandom random) {
+            if (random.nextDouble() < settings.hotShare()) {
+                return random.nextInt(settings.hotAccounts());
+            }
+            return random.nextInt(accountNumbers.length);
+        }
+
+        private HttpRequest read(ThreadLocalRandom random) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts/" + accountNumbers[pick(random)]))
+                    .GET()
+                    .build();
+        }
+
+        private HttpRequest write(ThreadLocalRandom random) {
+            int source = pick(random);
+            int target = pick(random);
+            if (source == target) {
+                target = (target + 1) % accountNumbers.length;
+            }
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/transactions"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("""
+                            {"accountNumber": "%s", "targetAccountNumber": "%s", "amount": "0.01"}"""
+                            .formatted(accountNumbers[source], accountNumbers[target])))
+                    .build();
+        }
+    }
+}
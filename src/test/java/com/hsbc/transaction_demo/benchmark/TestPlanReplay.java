@@ -0,0 +1,131 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Replays the two thread groups of {@code testplan/Transaction_Test_Plan.jmx} against a running
+ * instance without JMeter: 800 users creating one account each, then 2000 users listing
+ * accounts, every group ramped up over one second. Each user runs on its own virtual thread so
+ * the client is not the bottleneck. Prints throughput and latency percentiles per scenario:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.hsbc.transaction_demo.benchmark.TestPlanReplay \
+ *     -Djmh.args="http://localhost:8080 5"
+ * </pre>
+ * The second argument is the number of rounds; the first one is treated as warm-up.
+ */
+public class TestPlanReplay {
+    private static final int WRITERS = 800;
+    private static final int READERS = 2000;
+    private static final Duration RAMP_UP = Duration.ofSeconds(1);
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+        long run = System.currentTimeMillis();
+
+        List<Result> writes = new ArrayList<>();
+        List<Result> reads = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            int current = round;
+            Result write = replay(client, WRITERS, user -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("""
+                            {"accountNumber": "ACC-%d-%d-%d", "username": "test_user", "balance": "1000.00"}"""
+                            .formatted(run, current, user)))
+                    .build());
+            Result read = replay(client, READERS, user -> HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts"))
+                    .header("Content-Type", "application/json")
+                    .GET()
+                    .build());
+            System.out.printf("round %d%s%n  write %s%n  read  %s%n", round, round == 0 ? " (warm-up)" : "", write, read);
+            if (round > 0) {
+                writes.add(write);
+                reads.add(read);
+            }
+        }
+        if (!writes.isEmpty()) {
+            System.out.printf("median of %d rounds%n  write %s%n  read  %s%n",
+                    writes.size(), median(writes), median(reads));
+        }
+    }
+
+    private static Result replay(HttpClient client, int users, IntFunction<HttpRequest> request) throws Exception {
+        long[] latencies = new long[users];
+        int errors = 0;
+        long start = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Boolean>> futures = new ArrayList<>(users);
+            for (int i = 0; i < users; i++) {
+                int user = i;
+                long delay = RAMP_UP.toNanos() * user / users;
+                futures.add(executor.submit(() -> {
+                    TimeUnit.NANOSECONDS.sleep(start + delay - System.nanoTime());
+                    long sent = System.nanoTime();
+                    try {
+                        int status = client.send(request.apply(user), HttpResponse.BodyHandlers.discarding()).statusCode();
+                        return status < 400;
+                    } catch (Exception e) {
+                        return false;
+                    } finally {
+                        latencies[user] = System.nanoTime() - sent;
+                    }
+                }));
+            }
+            for (Future<Boolean> future : futures) {
+                if (!future.get()) {
+                    errors++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Arrays.sort(latencies);
+        return new Result(users, errors, users * 1e9 / elapsed,
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                latencies[users - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+
+    private static Result median(List<Result> results) {
+        return new Result(results.get(0).requests(),
+                (int) medianOf(results, Result::errors),
+                medianOf(results, Result::throughput),
+                medianOf(results, Result::p50), medianOf(results, Result::p90),
+                medianOf(results, Result::p99), medianOf(results, Result::max));
+    }
+
+    private static double medianOf(List<Result> results, ToDoubleFunction<Result> metric) {
+        double[] values = results.stream().mapToDouble(metric).sorted().toArray();
+        return values[values.length / 2];
+    }
+
+    private record Result(int requests, int errors, double throughput, double p50, double p90, double p99,
+                          double max) {
+        @Override
+        public String toString() {
+            return String.format("requests=%d errors=%d throughput=%.0f req/s p50=%.1f ms p90=%.1f ms p99=%.1f ms max=%.1f ms",
+                    requests, errors, throughput, p50, p90, p99, max);
+        }
+    }
+}
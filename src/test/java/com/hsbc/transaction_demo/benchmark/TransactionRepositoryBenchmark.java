@@ -0,0 +1,94 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.OffHeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionCursor;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded cost of the {@link TransactionRepository} operations behind the transaction
+ * API, for both stores. Timings and {@code gc.alloc.rate.norm} show what the off-heap store
+ * pays for decoding records back into {@link Transaction} objects on every read.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TransactionRepositoryBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionRepositoryBenchmark {
+    private static final int TRANSACTIONS = 100_000;
+    private static final int ACCOUNTS = 1_000;
+    private static final int PAGE_SIZE = 20;
+
+    @Param({"heap", "off-heap"})
+    public String store;
+
+    private TransactionRepository repository;
+    private Transaction[] transactions;
+    private String[] accountNumbers;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        repository = "heap".equals(store) ? new HeapTransactionRepository() : new OffHeapTransactionRepository();
+        accountNumbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountNumbers[i] = String.format("%010d", i);
+        }
+        transactions = new Transaction[TRANSACTIONS];
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        for (int i = 0; i < TRANSACTIONS; i++) {
+            transactions[i] = repository.save(Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .accountNumber(accountNumbers[i % ACCOUNTS])
+                    .targetAccountNumber(accountNumbers[(i + 1) % ACCOUNTS])
+                    .amount(BigDecimal.valueOf(100 + i % 1000, 2))
+                    .description("Transfer " + i)
+                    .timestamp(start.plusNanos(i * 1_000_000L))
+                    .status(TransactionStatus.COMPLETED)
+                    .build());
+        }
+    }
+
+    private static int randomIndex() {
+        return ThreadLocalRandom.current().nextInt(TRANSACTIONS);
+    }
+
+    @Benchmark
+    public Optional<Transaction> findById() {
+        return repository.findById(transactions[randomIndex()].getId());
+    }
+
+    @Benchmark
+    public Transaction save() {
+        Transaction current = transactions[randomIndex()];
+        return repository.save(current.toBuilder().status(TransactionStatus.COMPLETED).build());
+    }
+
+    @Benchmark
+    public List<Transaction> findAllAfter() {
+        TransactionCursor cursor = TransactionCursor.of(transactions[randomIndex()]);
+        return repository.findAll(cursor, PAGE_SIZE, true);
+    }
+
+    @Benchmark
+    public List<Transaction> findByAccountNumberNewest() {
+        String accountNumber = accountNumbers[ThreadLocalRandom.current().nextInt(ACCOUNTS)];
+        return repository.findByAccountNumber(accountNumber, null, PAGE_SIZE);
+    }
+}
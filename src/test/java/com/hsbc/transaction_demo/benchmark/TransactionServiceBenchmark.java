@@ -0,0 +1,108 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import com.hsbc.transaction_demo.service.IdempotencyCache;
+import com.hsbc.transaction_demo.service.TransactionService;
+import com.hsbc.transaction_demo.service.transfer.StripedLockTransferEngine;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link TransactionService#createTransaction} with the default wiring (striped
+ * transfer engine, heap store, no journal) as writer threads grow. With {@code accounts=8}
+ * nearly every transfer collides on the same stripes; with 10 000 they rarely do. The requests
+ * carry no timestamp, as the JMeter plan sends them, so the duplicate check returns early;
+ * {@link DuplicateCheckBenchmark} covers the lookup itself. {@code metrics=prometheus} records
+ * into a Prometheus registry as the application does; {@code gc.alloc.rate.norm} should match
+ * {@code metrics=none}. {@code TransferAllocationBudgetTest} fails the build when the
+ * single-threaded figure goes over its budget.
+ *
+ * <p>Stores are recreated every iteration so the heap does not fill up with transactions.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TransactionServiceBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class TransactionServiceBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Param({"10000", "8"})
+    public int accounts;
+
+    @Param({"none", "prometheus"})
+    public String metrics;
+
+    private TransactionService service;
+    private String[] accountNumbers;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        AccountRepository accountRepository = new AccountRepository();
+        accountNumbers = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            accountNumbers[i] = String.format("%010d", i);
+            accountRepository.save(Account.builder()
+                    .accountNumber(accountNumbers[i])
+                    .username("User " + i)
+                    .balance(1_000_000_000_00L)
+                    .build());
+        }
+        LedgerMetrics ledgerMetrics = "none".equals(metrics)
+                ? LedgerMetrics.NONE
+                : new LedgerMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        service = new TransactionService(
+                new HeapTransactionRepository(),
+                new StripedLockTransferEngine(accountRepository, 1024, ledgerMetrics),
+                new DuplicateTransactionIndex(),
+                Journal.NONE,
+                ledgerMetrics,
+                new IdempotencyCache(1_000, Duration.ofMinutes(1)));
+    }
+
+    private TransactionDTO transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(accounts);
+        int target = (source + 1 + random.nextInt(accounts - 1)) % accounts;
+        return service.createTransaction(TransactionDTO.builder()
+                .accountNumber(accountNumbers[source])
+                .targetAccountNumber(accountNumbers[target])
+                .amount(AMOUNT)
+                .build());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TransactionDTO threads01() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public TransactionDTO threads04() {
+        return transfer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public TransactionDTO threads16() {
+        return transfer();
+    }
+}
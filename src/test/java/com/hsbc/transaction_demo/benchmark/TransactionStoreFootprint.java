@@ -0,0 +1,71 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.OffHeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Loads synthetic transactions into one store and reports the heap retained after a full GC
+ * plus the direct memory it reserved. Run each store in its own JVM so the numbers do not mix:
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.hsbc.transaction_demo.benchmark.TransactionStoreFootprint \
+ *     -Dbenchmark.jvm.args="-Xmx8g -XX:MaxDirectMemorySize=4g" -Djmh.args="off-heap 10000000"
+ * </pre>
+ */
+public class TransactionStoreFootprint {
+    private static final int ACCOUNTS = 100_000;
+
+    public static void main(String[] args) {
+        String store = args.length > 0 ? args[0] : "heap";
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        long baseline = usedHeap();
+        TransactionRepository repository = store.equals("off-heap")
+                ? new OffHeapTransactionRepository() : new HeapTransactionRepository();
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+        long began = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            repository.save(Transaction.builder()
+                    .id(UUID.randomUUID())
+                    .accountNumber("ACC" + (i % ACCOUNTS))
+                    .targetAccountNumber("ACC" + ((i * 7 + 1) % ACCOUNTS))
+                    .amount(BigDecimal.valueOf(i % 100_000 + 1, 2))
+                    .timestamp(start.plusNanos(i * 1_000_000L))
+                    .description("Invoice " + i)
+                    .status(TransactionStatus.COMPLETED)
+                    .build());
+        }
+        long loadMillis = (System.nanoTime() - began) / 1_000_000;
+
+        long heap = usedHeap() - baseline;
+        long direct = directMemory();
+        System.out.printf("store=%s transactions=%d load=%d ms%n", store, count, loadMillis);
+        System.out.printf("heap=%d MB direct=%d MB total=%d MB (%d bytes/transaction)%n",
+                heap >> 20, direct >> 20, (heap + direct) >> 20, (heap + direct) / count);
+        // Keep the store reachable until it has been measured
+        System.out.println("sample=" + repository.findAll(null, 1, true));
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemory() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+}
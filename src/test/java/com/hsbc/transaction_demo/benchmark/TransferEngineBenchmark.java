@@ -0,0 +1,122 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.service.transfer.OptimisticTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.ShardedTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.SingleWriterTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.StripedLockTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput per strategy as the number of writer threads grows.
+ * The {@code uniform} workload spreads transfers over all accounts, {@code skewed}
+ * sends 90% of them between a handful of hot accounts. {@code balanceIndex=false} shows what
+ * keeping the balance sort index up to date costs the transfer path.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TransferEngineBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransferEngineBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final int HOT_ACCOUNTS = 8;
+    private static final long AMOUNT = 1;
+
+    @Param({"striped", "optimistic", "single-writer", "sharded"})
+    public String strategy;
+
+    @Param({"uniform", "skewed"})
+    public String workload;
+
+    // Whether every transfer also moves both accounts in the balance sort index
+    @Param({"true", "false"})
+    public boolean balanceIndex;
+
+    private TransferEngine engine;
+    private String[] accountNumbers;
+    private boolean skewed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        AccountRepository repository = new AccountRepository(Journal.NONE, ACCOUNTS, balanceIndex);
+        accountNumbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountNumbers[i] = String.format("%010d", i);
+            repository.save(Account.builder()
+                    .accountNumber(accountNumbers[i])
+                    .username("User " + i)
+                    .balance(1_000_000_000_00L)
+                    .build());
+        }
+        engine = switch (strategy) {
+            case "striped" -> new StripedLockTransferEngine(repository, 1024);
+            case "optimistic" -> new OptimisticTransferEngine(repository);
+            case "sharded" -> new ShardedTransferEngine(repository, 0);
+            default -> new SingleWriterTransferEngine(repository, 65536);
+        };
+        skewed = "skewed".equals(workload);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (engine instanceof SingleWriterTransferEngine singleWriter) {
+            singleWriter.shutdown();
+        }
+        if (engine instanceof ShardedTransferEngine sharded) {
+            sharded.shutdown();
+        }
+    }
+
+    private int pick(ThreadLocalRandom random) {
+        if (skewed && random.nextInt(10) != 0) {
+            return random.nextInt(HOT_ACCOUNTS);
+        }
+        return random.nextInt(ACCOUNTS);
+    }
+
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = pick(random);
+        int target = pick(random);
+        if (source == target) {
+            target = (target + 1) % ACCOUNTS;
+        }
+        engine.transfer(accountNumbers[source], accountNumbers[target], AMOUNT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void threads01() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void threads04() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void threads16() {
+        transfer();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void threads64() {
+        transfer();
+    }
+}
@@ -0,0 +1,165 @@
+package com.hsbc.transaction_demo.benchmark;
+
+import com.hsbc.transaction_demo.TransactionDemoApplication;
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+import com.hsbc.transaction_demo.wire.TransferClient;
+import com.hsbc.transaction_demo.wire.TransferServer;
+import com.hsbc.transaction_demo.wire.WireProtocol;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The same 0.01 transfers submitted over REST (one JSON request per transfer, or
+ * {@value #BATCH} per call to the batch endpoint) and over the binary {@link TransferServer}
+ * (one round trip per transfer, or {@value #BATCH} pipelined). Client and server share the
+ * JVM and run from several threads; scores are transfers per second. Every benchmark boots
+ * its own application with the default wiring plus the binary listener on a free port.
+ *
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="TransferProtocolBenchmark"
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@Threads(8)
+@State(Scope.Benchmark)
+public class TransferProtocolBenchmark {
+    private static final int ACCOUNTS = 10_000;
+    private static final int BATCH = 100;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient http;
+    private URI transactions;
+    private URI batches;
+    private int wirePort;
+    private String[] accountNumbers;
+
+    @State(Scope.Thread)
+    public static class Feeder {
+        TransferClient client;
+
+        @Setup(Level.Trial)
+        public void connect(TransferProtocolBenchmark benchmark) throws IOException {
+            client = TransferClient.connect("localhost", benchmark.wirePort);
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws IOException {
+            client.close();
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = new SpringApplicationBuilder(TransactionDemoApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=warn")
+                // As arguments, since default properties lose to application.properties
+                .run("--transaction.wire.enabled=true", "--transaction.wire.port=0");
+        String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        transactions = URI.create(baseUrl + "/api/transactions");
+        batches = URI.create(baseUrl + "/api/transactions/batch");
+        wirePort = context.getBean(TransferServer.class).port();
+        http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        accountNumbers = IntStream.range(0, ACCOUNTS)
+                .mapToObj("%010d"::formatted)
+                .toArray(String[]::new);
+        String body = Arrays.stream(accountNumbers)
+                .map("{\"accountNumber\":\"%s\",\"username\":\"bench\",\"balance\":\"1000000000.00\"}"::formatted)
+                .collect(Collectors.joining("\n"));
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/accounts/import"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Seeding accounts failed: " + response.body());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        http.close();
+        context.close();
+    }
+
+    private Transfer randomTransfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int source = random.nextInt(ACCOUNTS);
+        int target = (source + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return new Transfer(accountNumbers[source], accountNumbers[target], 1);
+    }
+
+    private static String json(Transfer transfer) {
+        return """
+                {"accountNumber":"%s","targetAccountNumber":"%s","amount":"0.01"}"""
+                .formatted(transfer.sourceAccountNumber(), transfer.targetAccountNumber());
+    }
+
+    private String post(URI uri, String body) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Transfer failed: " + response.body());
+        }
+        return response.body();
+    }
+
+    @Benchmark
+    public String rest() throws Exception {
+        return post(transactions, json(randomTransfer()));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public String restBatch() throws Exception {
+        List<String> items = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            items.add(json(randomTransfer()));
+        }
+        return post(batches, "{\"atomic\":false,\"transactions\":[" + String.join(",", items) + "]}");
+    }
+
+    @Benchmark
+    public WireProtocol.Response wire(Feeder feeder) throws IOException {
+        Transfer transfer = randomTransfer();
+        return check(feeder.client.transfer(transfer.sourceAccountNumber(), transfer.targetAccountNumber(), 1));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<WireProtocol.Response> wirePipelined(Feeder feeder) throws IOException {
+        List<Transfer> transfers = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            transfers.add(randomTransfer());
+        }
+        List<WireProtocol.Response> responses = feeder.client.submit(transfers);
+        responses.forEach(TransferProtocolBenchmark::check);
+        return responses;
+    }
+
+    private static WireProtocol.Response check(WireProtocol.Response response) {
+        if (!response.completed()) {
+            throw new IllegalStateException("Transfer failed: " + response.error());
+        }
+        return response;
+    }
+}
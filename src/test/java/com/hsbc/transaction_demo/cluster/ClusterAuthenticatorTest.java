@@ -0,0 +1,79 @@
+package com.hsbc.transaction_demo.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterAuthenticatorTest {
+    private static final List<String> NODES = List.of("http://a:8080", "http://b:8080");
+    private static final URI CREDITS = URI.create("http://b:8080/internal/cluster/credits");
+    private static final byte[] BODY = "{\"amount\":100}".getBytes(StandardCharsets.UTF_8);
+    private static final Duration VALIDITY = Duration.ofMinutes(5);
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    private final ClusterAuthenticator sender = authenticator("http://a:8080", "secret", CLOCK);
+    private final ClusterAuthenticator receiver = authenticator("http://b:8080", "secret", CLOCK);
+
+    private static ClusterAuthenticator authenticator(String self, String secret, Clock clock) {
+        return new ClusterAuthenticator(new ClusterMembership(self, NODES, 16), secret, VALIDITY, clock);
+    }
+
+    private static boolean verify(ClusterAuthenticator authenticator, Map<String, String> headers, String method,
+                                  String pathAndQuery, byte[] body) {
+        return authenticator.verify(method, pathAndQuery, headers.get(ClusterClient.FORWARDED_HEADER),
+                headers.get(ClusterAuthenticator.TIMESTAMP_HEADER), headers.get(ClusterAuthenticator.NONCE_HEADER),
+                headers.get(ClusterAuthenticator.SIGNATURE_HEADER), body);
+    }
+
+    @Test
+    void verify_SignedByMember_AcceptedOnce() {
+        Map<String, String> headers = sender.sign("POST", CREDITS, BODY);
+
+        assertTrue(verify(receiver, headers, "POST", CREDITS.getRawPath(), BODY));
+        assertFalse(verify(receiver, headers, "POST", CREDITS.getRawPath(), BODY));
+    }
+
+    @Test
+    void verify_TamperedRequest_Rejected() {
+        Map<String, String> headers = sender.sign("POST", CREDITS, BODY);
+
+        assertFalse(verify(receiver, headers, "POST", CREDITS.getRawPath(),
+                "{\"amount\":999}".getBytes(StandardCharsets.UTF_8)));
+        assertFalse(verify(receiver, headers, "PUT", CREDITS.getRawPath(), BODY));
+        assertFalse(verify(receiver, headers, "POST", "/internal/cluster/accounts", BODY));
+        assertFalse(verify(authenticator("http://b:8080", "other", CLOCK), headers, "POST", CREDITS.getRawPath(), BODY));
+    }
+
+    @Test
+    void verify_Stale_Rejected() {
+        Map<String, String> headers = sender.sign("POST", CREDITS, BODY);
+        Clock later = Clock.offset(CLOCK, VALIDITY.plusSeconds(1));
+
+        assertFalse(verify(authenticator("http://b:8080", "secret", later), headers, "POST", CREDITS.getRawPath(), BODY));
+    }
+
+    @Test
+    void verify_UnknownSender_Rejected() {
+        ClusterAuthenticator stranger = new ClusterAuthenticator(
+                new ClusterMembership("http://x:8080", List.of("http://x:8080"), 16), "secret", VALIDITY, CLOCK);
+
+        assertFalse(verify(receiver, stranger.sign("POST", CREDITS, BODY), "POST", CREDITS.getRawPath(), BODY));
+    }
+
+    @Test
+    void isOperator_OnlyWithTheSecret() {
+        assertTrue(receiver.isOperator("Bearer secret"));
+        assertFalse(receiver.isOperator("Bearer other"));
+        assertFalse(receiver.isOperator("secret"));
+        assertFalse(receiver.isOperator(null));
+    }
+}
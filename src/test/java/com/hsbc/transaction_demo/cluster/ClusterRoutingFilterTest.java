@@ -0,0 +1,49 @@
+package com.hsbc.transaction_demo.cluster;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterRoutingFilterTest {
+
+    @Test
+    void cachedBody_ReadListener_ReadsWholeBodyThenCompletes() throws IOException {
+        byte[] body = "{\"accountNumber\":\"A\"}".getBytes(StandardCharsets.UTF_8);
+        ServletInputStream in = new ClusterRoutingFilter.CachedBodyRequest(new MockHttpServletRequest(), body)
+                .getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> events = new ArrayList<>();
+
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                events.add("data");
+                while (in.isReady() && !in.isFinished()) {
+                    read.write(in.read());
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("done");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add("error");
+            }
+        });
+
+        assertEquals(List.of("data", "done"), events);
+        assertArrayEquals(body, read.toByteArray());
+    }
+}
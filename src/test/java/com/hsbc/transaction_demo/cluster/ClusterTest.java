@@ -0,0 +1,390 @@
+package com.hsbc.transaction_demo.cluster;
+
+import com.hsbc.transaction_demo.TransactionDemoApplication;
+import com.hsbc.transaction_demo.journal.JournalRecord;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs real nodes on localhost, each a separate application context with its own port and
+ * in-memory ledger.
+ */
+class ClusterTest {
+    private static final int ACCOUNTS = 40;
+    private static final String SECRET = "cluster-test-secret";
+
+    private final Map<String, ConfigurableApplicationContext> nodes = new LinkedHashMap<>();
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private String first;
+    private String second;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        first = "http://localhost:" + freePort();
+        second = "http://localhost:" + freePort();
+        start(first, List.of(first, second));
+        start(second, List.of(first, second));
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodes.values().forEach(ConfigurableApplicationContext::close);
+        http.close();
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void start(String node, List<String> members) {
+        nodes.put(node, new SpringApplicationBuilder(TransactionDemoApplication.class)
+                .properties("spring.main.banner-mode=off", "logging.level.root=warn")
+                // As arguments, since default properties lose to application.properties
+                .run("--server.port=" + URI.create(node).getPort(),
+                        "--transaction.cluster.enabled=true",
+                        "--transaction.cluster.self=" + node,
+                        "--transaction.cluster.nodes=" + String.join(",", members),
+                        "--transaction.cluster.timeout=500ms",
+                        "--transaction.cluster.retry-interval=100ms",
+                        "--transaction.cluster.secret=" + SECRET,
+                        // Owners forget settled ids twice this long after
+                        "--transaction.cluster.signature-validity=1s"));
+    }
+
+    private AccountRepository repository(String node) {
+        return nodes.get(node).getBean(AccountRepository.class);
+    }
+
+    private ClusterRebalancer rebalancer(String node) {
+        return nodes.get(node).getBean(ClusterRebalancer.class);
+    }
+
+    private String ownerOf(String node, String accountNumber) {
+        return nodes.get(node).getBean(ClusterMembership.class).ownerOf(accountNumber);
+    }
+
+    // Calls to /internal/cluster go as the operator
+    private HttpResponse<String> send(String method, String uri, String body) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(uri));
+        if (uri.contains("/internal/cluster")) {
+            request.header("Authorization", "Bearer " + SECRET);
+        }
+        return send(request, method, body);
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request, String method, String body) throws Exception {
+        return http.send(request
+                .header("Content-Type", "application/json")
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private List<String> createAccounts(String via) throws Exception {
+        List<String> accountNumbers = new ArrayList<>();
+        for (int i = 0; i < ACCOUNTS; i++) {
+            String accountNumber = "%010d".formatted(i);
+            HttpResponse<String> response = send("POST", via + "/api/accounts", """
+                    {"accountNumber":"%s","username":"User %d","balance":"100.00"}""".formatted(accountNumber, i));
+            assertEquals(201, response.statusCode(), response.body());
+            accountNumbers.add(accountNumber);
+        }
+        return accountNumbers;
+    }
+
+    private String accountOwnedBy(String node, List<String> accountNumbers) {
+        return accountNumbers.stream().filter(n -> ownerOf(first, n).equals(node)).findFirst().orElseThrow();
+    }
+
+    private long totalBalance() {
+        return nodes.keySet().stream()
+                .mapToLong(node -> repository(node).findAll().stream().mapToLong(a -> a.getBalance()).sum())
+                .sum();
+    }
+
+    @Test
+    void accounts_AreStoredOnTheirOwner_AndReachableThroughAnyNode() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+
+        for (String accountNumber : accountNumbers) {
+            String owner = ownerOf(first, accountNumber);
+            assertEquals(owner, ownerOf(second, accountNumber));
+            for (String node : nodes.keySet()) {
+                assertEquals(node.equals(owner), repository(node).existsByAccountNumber(accountNumber));
+                HttpResponse<String> response = send("GET", node + "/api/accounts/" + accountNumber, null);
+                assertEquals(200, response.statusCode());
+                assertEquals(owner, response.headers().firstValue(ClusterRoutingFilter.NODE_HEADER).orElseThrow());
+            }
+        }
+        // Both nodes own a share
+        assertTrue(repository(first).count() > 0 && repository(second).count() > 0);
+    }
+
+    @Test
+    void transfer_AcrossNodes_DebitsOnOneAndCreditsOnTheOther() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String source = accountOwnedBy(first, accountNumbers);
+        String target = accountOwnedBy(second, accountNumbers);
+
+        // Sent to the node that does not own the source, so it is forwarded first
+        HttpResponse<String> response = send("POST", second + "/api/transactions", """
+                {"accountNumber":"%s","targetAccountNumber":"%s","amount":"30.00"}""".formatted(source, target));
+
+        assertEquals(200, response.statusCode(), response.body());
+        assertEquals(70_00, repository(first).getByAccountNumber(source).getBalance());
+        assertEquals(130_00, repository(second).getByAccountNumber(target).getBalance());
+        assertEquals(ACCOUNTS * 100_00L, totalBalance());
+    }
+
+    @Test
+    void transfer_TargetMissingOnItsNode_RefundsSource() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String source = accountOwnedBy(first, accountNumbers);
+        String missing = "MISSING-0";
+        for (int i = 1; !ownerOf(first, missing).equals(second); i++) {
+            missing = "MISSING-" + i;
+        }
+
+        HttpResponse<String> response = send("POST", first + "/api/transactions", """
+                {"accountNumber":"%s","targetAccountNumber":"%s","amount":"30.00"}""".formatted(source, missing));
+
+        assertEquals(404, response.statusCode());
+        assertEquals(100_00, repository(first).getByAccountNumber(source).getBalance());
+        assertEquals(ACCOUNTS * 100_00L, totalBalance());
+    }
+
+    @Test
+    void transfer_TargetNodeDown_IsPendingUntilItsNodeAnswers() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String source = accountOwnedBy(first, accountNumbers);
+        String target = accountOwnedBy(second, accountNumbers);
+        nodes.remove(second).close();
+
+        HttpResponse<String> response = send("POST", first + "/api/transactions", """
+                {"accountNumber":"%s","targetAccountNumber":"%s","amount":"30.00"}""".formatted(source, target));
+
+        assertEquals(200, response.statusCode(), response.body());
+        assertTrue(response.body().contains("\"status\":\"PENDING\""), response.body());
+        // Debited, and the credit stays queued until the node answers
+        assertEquals(70_00, repository(first).getByAccountNumber(source).getBalance());
+        Thread.sleep(300);
+        assertEquals(1, nodes.get(first).getBean(ClusterTransferEngine.class).inDoubtCount());
+
+        // Back with an empty ledger, so it refuses the credit and the source gets the amount back
+        start(second, List.of(first, second));
+        Transaction transaction = nodes.get(first).getBean(TransactionRepository.class).findAll().getFirst();
+        for (int i = 0; i < 100 && transaction.getStatus() == TransactionStatus.PENDING; i++) {
+            Thread.sleep(100);
+            transaction = nodes.get(first).getBean(TransactionRepository.class).findAll().getFirst();
+        }
+        assertEquals(TransactionStatus.FAILED, transaction.getStatus());
+        assertEquals(100_00, repository(first).getByAccountNumber(source).getBalance());
+        assertEquals(0, nodes.get(first).getBean(ClusterTransferEngine.class).inDoubtCount());
+    }
+
+    @Test
+    void credit_MissingAccountRightAfterMembersChanged_IsNotRefused() throws Exception {
+        String missing = "MISSING-0";
+        for (int i = 1; !ownerOf(first, missing).equals(second); i++) {
+            missing = "MISSING-" + i;
+        }
+        String credit = """
+                {"transferId":"%s","accountNumber":"%s","amount":100}""";
+
+        assertEquals(409, send("POST", second + "/internal/cluster/credits",
+                credit.formatted(UUID.randomUUID(), missing)).statusCode());
+        assertEquals(200, send("PUT", second + "/internal/cluster/members",
+                "[\"%s\",\"%s\"]".formatted(first, second)).statusCode());
+
+        // A handoff may still bring the account, so the coordinator is told to ask again
+        assertEquals(503, send("POST", second + "/internal/cluster/credits",
+                credit.formatted(UUID.randomUUID(), missing)).statusCode());
+    }
+
+    @Test
+    void credit_SentToTheAccountsOldOwner_FollowsItToTheNewOne() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String source = accountOwnedBy(first, accountNumbers);
+        String target = accountOwnedBy(second, accountNumbers);
+        UUID transferId = UUID.randomUUID();
+        ClusterTransferEngine engine = nodes.get(first).getBean(ClusterTransferEngine.class);
+
+        // As if the target belonged to the first node when the credit was first sent
+        engine.restore(new JournalRecord.CreditPending(transferId, first, source, target, 30_00));
+        for (int i = 0; i < 100 && engine.inDoubtCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, engine.inDoubtCount());
+        assertEquals(130_00, repository(second).getByAccountNumber(target).getBalance());
+        assertEquals(TransactionStatus.COMPLETED,
+                nodes.get(first).getBean(TransactionRepository.class).findById(transferId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void addingNode_MovesAccountsToTheirNewOwner() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String third = "http://localhost:" + freePort();
+        List<String> members = List.of(first, second, third);
+        start(third, members);
+
+        HttpResponse<String> response = send("PUT", first + "/internal/cluster/members",
+                "[\"%s\",\"%s\",\"%s\"]".formatted(first, second, third));
+
+        assertEquals(200, response.statusCode(), response.body());
+        for (String node : nodes.keySet()) {
+            assertEquals(members.stream().sorted().toList(),
+                    nodes.get(node).getBean(ClusterMembership.class).nodes());
+        }
+        for (String accountNumber : accountNumbers) {
+            String owner = ownerOf(third, accountNumber);
+            for (String node : nodes.keySet()) {
+                assertEquals(node.equals(owner), repository(node).existsByAccountNumber(accountNumber),
+                        accountNumber + " on " + node);
+            }
+            assertEquals(200, send("GET", second + "/api/accounts/" + accountNumber, null).statusCode());
+        }
+        assertTrue(repository(third).count() > 0);
+        assertEquals(ACCOUNTS * 100_00L, totalBalance());
+    }
+
+    @Test
+    void transfer_AcrossNodes_OwnerForgetsTheTransferIdOnceSettled() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String source = accountOwnedBy(first, accountNumbers);
+        String target = accountOwnedBy(second, accountNumbers);
+        ClusterTransferEngine owner = nodes.get(second).getBean(ClusterTransferEngine.class);
+
+        assertEquals(200, send("POST", first + "/api/transactions", """
+                {"accountNumber":"%s","targetAccountNumber":"%s","amount":"30.00"}""".formatted(source, target))
+                .statusCode());
+        assertEquals(1, owner.appliedCount());
+        for (int i = 0; i < 100 && owner.appliedCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, owner.appliedCount());
+        assertEquals(130_00, repository(second).getByAccountNumber(target).getBalance());
+    }
+
+    @Test
+    void addingNode_NewOwnerForgetsTheHandoffsOnceAcknowledged() throws Exception {
+        createAccounts(first);
+        String third = "http://localhost:" + freePort();
+        start(third, List.of(first, second, third));
+
+        assertEquals(200, send("PUT", first + "/internal/cluster/members",
+                "[\"%s\",\"%s\",\"%s\"]".formatted(first, second, third)).statusCode());
+        assertTrue(rebalancer(third).receivedCount() > 0);
+        for (int i = 0; i < 100 && rebalancer(third).receivedCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, rebalancer(third).receivedCount());
+        assertEquals(ACCOUNTS * 100_00L, totalBalance());
+    }
+
+    @Test
+    void addingNode_NewOwnerDown_HandsAccountsOverOnceItIsUp() throws Exception {
+        List<String> accountNumbers = createAccounts(first);
+        String third = "http://localhost:" + freePort();
+        List<String> members = List.of(first, second, third);
+
+        HttpResponse<String> response = send("PUT", first + "/internal/cluster/members",
+                "[\"%s\",\"%s\",\"%s\"]".formatted(first, second, third));
+
+        assertEquals(200, response.statusCode(), response.body());
+        assertTrue(rebalancer(first).pendingHandoffs() + rebalancer(second).pendingHandoffs() > 0);
+        start(third, members);
+        for (int i = 0; i < 100 && rebalancer(first).pendingHandoffs() + rebalancer(second).pendingHandoffs() > 0; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(0, rebalancer(first).pendingHandoffs() + rebalancer(second).pendingHandoffs());
+        for (String accountNumber : accountNumbers) {
+            assertTrue(repository(ownerOf(first, accountNumber)).existsByAccountNumber(accountNumber), accountNumber);
+        }
+        assertEquals(ACCOUNTS * 100_00L, totalBalance());
+    }
+
+    @Test
+    void receiveAccounts_SameHandoffTwice_KeepsChangesMadeInBetween() throws Exception {
+        String accountNumber = createAccounts(first).getFirst();
+        String owner = ownerOf(first, accountNumber);
+        Account account = repository(owner).getByAccountNumber(accountNumber);
+        ClusterClient.Handoff handoff = new ClusterClient.Handoff(UUID.randomUUID().toString(),
+                List.of(account.toBuilder().balance(1_00).build()));
+
+        rebalancer(owner).receiveAccounts(handoff);
+        assertEquals(200, send("PATCH", owner + "/api/accounts/" + accountNumber + "/balance", "5.00").statusCode());
+        rebalancer(owner).receiveAccounts(handoff);
+
+        assertEquals(5_00, repository(owner).getByAccountNumber(accountNumber).getBalance());
+    }
+
+    @Test
+    void credit_Unauthenticated_IsRejectedAndLeavesBalance() throws Exception {
+        String accountNumber = createAccounts(first).getFirst();
+        String owner = ownerOf(first, accountNumber);
+        String credit = """
+                {"transferId":"%s","accountNumber":"%s","amount":100}""".formatted(UUID.randomUUID(), accountNumber);
+
+        assertEquals(401, send(HttpRequest.newBuilder(URI.create(owner + "/internal/cluster/credits")),
+                "POST", credit).statusCode());
+        assertEquals(401, send(HttpRequest.newBuilder(URI.create(owner + "/internal/cluster/credits"))
+                .header("Authorization", "Bearer wrong-secret"), "POST", credit).statusCode());
+
+        assertEquals(100_00, repository(owner).getByAccountNumber(accountNumber).getBalance());
+    }
+
+    @Test
+    void forwardedHeader_Spoofed_IsRejected() throws Exception {
+        String accountNumber = createAccounts(first).getFirst();
+        String owner = ownerOf(first, accountNumber);
+        String other = owner.equals(first) ? second : first;
+
+        HttpResponse<String> response = send(HttpRequest.newBuilder(URI.create(owner + "/api/accounts/" + accountNumber + "/balance"))
+                .header(ClusterClient.FORWARDED_HEADER, other), "PATCH", "5.00");
+
+        assertEquals(401, response.statusCode(), response.body());
+        assertEquals(100_00, repository(owner).getByAccountNumber(accountNumber).getBalance());
+    }
+
+    @Test
+    void signedCall_Replayed_IsRejected() throws Exception {
+        String accountNumber = createAccounts(first).getFirst();
+        String owner = ownerOf(first, accountNumber);
+        String other = owner.equals(first) ? second : first;
+        URI uri = URI.create(owner + "/api/accounts/" + accountNumber);
+        Map<String, String> signature = nodes.get(other).getBean(ClusterAuthenticator.class).sign("GET", uri, new byte[0]);
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri);
+        signature.forEach(request::header);
+        assertEquals(200, send(request, "GET", null).statusCode());
+        HttpRequest.Builder replay = HttpRequest.newBuilder(uri);
+        signature.forEach(replay::header);
+        assertEquals(401, send(replay, "GET", null).statusCode());
+    }
+}
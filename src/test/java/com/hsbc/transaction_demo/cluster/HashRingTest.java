@@ -0,0 +1,67 @@
+package com.hsbc.transaction_demo.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashRingTest {
+    private static final List<String> NODES = List.of("http://a:8080", "http://b:8080", "http://c:8080");
+    private static final int KEYS = 30_000;
+
+    private static String key(int i) {
+        return "%010d".formatted(i);
+    }
+
+    @Test
+    void ownerOf_SameOnEveryRingWithTheSameNodes() {
+        HashRing ring = new HashRing(NODES, 160);
+        HashRing reordered = new HashRing(List.of(NODES.get(2), NODES.get(0), NODES.get(1)), 160);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.ownerOf(key(i)), reordered.ownerOf(key(i)));
+        }
+        assertEquals(NODES, reordered.nodes());
+    }
+
+    @Test
+    void ownerOf_SpreadsKeysEvenly() {
+        HashRing ring = new HashRing(NODES, 160);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.ownerOf(key(i)), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2, counts.toString());
+        }
+    }
+
+    @Test
+    void addingNode_OnlyMovesKeysToTheNewNode() {
+        HashRing before = new HashRing(NODES, 160);
+        HashRing after = new HashRing(List.of(NODES.get(0), NODES.get(1), NODES.get(2), "http://d:8080"), 160);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String previous = before.ownerOf(key(i));
+            String current = after.ownerOf(key(i));
+            if (!previous.equals(current)) {
+                assertEquals("http://d:8080", current);
+                moved++;
+            }
+        }
+        // About a quarter of the keys, not a reshuffle
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "moved " + moved);
+    }
+
+    @Test
+    void constructor_RejectsNoNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 160));
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(NODES, 0));
+    }
+}
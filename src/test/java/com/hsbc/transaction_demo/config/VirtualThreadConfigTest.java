@@ -0,0 +1,102 @@
+package com.hsbc.transaction_demo.config;
+
+import com.hsbc.transaction_demo.journal.FileJournal;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.transfer.StripedLockTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.catalina.connector.Connector;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "transaction.threads=virtual")
+class VirtualThreadConfigTest {
+
+    @Autowired
+    private ServletWebServerApplicationContext context;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tomcat_RunsRequestsOnVirtualThreads() throws Exception {
+        Connector connector = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector();
+        Executor executor = connector.getProtocolHandler().getExecutor();
+
+        CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+        executor.execute(() -> virtual.complete(Thread.currentThread().isVirtual()));
+
+        assertTrue(virtual.get());
+    }
+
+    /**
+     * Contended transfers with a synchronously flushed journal block on locks and on fsync all
+     * the time; none of that may happen while a virtual thread is pinned to its carrier.
+     * With a single carrier, pinning shows up as a deadlock rather than an event, hence the timeout.
+     */
+    @Test
+    @Timeout(60)
+    void transferPath_DoesNotPinCarrierThreads() throws Exception {
+        Path recordingFile = directory.resolve("pinning.jfr");
+        try (Recording recording = new Recording();
+             FileJournal journal = new FileJournal(directory.resolve("journal"), FileJournal.Durability.SYNC, 0, 10)) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO);
+            recording.start();
+
+            AccountRepository accounts = new AccountRepository(journal);
+            TransactionRepository transactions = new HeapTransactionRepository(journal);
+            TransferEngine engine = new StripedLockTransferEngine(accounts, 4);
+            for (int i = 0; i < 8; i++) {
+                accounts.save(Account.builder().accountNumber("A" + i).username("User").balance(1_000_000_00).build());
+            }
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < 2_000; i++) {
+                    int n = i;
+                    futures.add(executor.submit(() -> {
+                        engine.transfer("A" + n % 8, "A" + (n + 1) % 8, 1_00);
+                        transactions.save(Transaction.builder().accountNumber("A" + n % 8).build());
+                        journal.sync();
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            }
+
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<String> pinned = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getEventType().getName().equals("jdk.VirtualThreadPinned"))
+                .map(RecordedEvent::toString)
+                .toList();
+        assertEquals(List.of(), pinned);
+    }
+}
@@ -1,9 +1,16 @@
 package com.hsbc.transaction_demo.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
 import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.ImportResultDTO;
+import com.hsbc.transaction_demo.dto.Tagged;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
 import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.service.AccountImportService;
 import com.hsbc.transaction_demo.service.AccountService;
+import com.hsbc.transaction_demo.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,11 +21,17 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -32,6 +45,12 @@ class AccountControllerTest {
     @MockBean
     private AccountService accountService;
 
+    @MockBean
+    private TransactionService transactionService;
+
+    @MockBean
+    private AccountImportService importService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -75,18 +94,44 @@ class AccountControllerTest {
 
     @Test
     void getAccount_ExistingId_ReturnsAccount() throws Exception {
-        when(accountService.getAccount("1234567890")).thenReturn(testAccount);
+        byte[] json = objectMapper.writeValueAsBytes(testAccount);
+        when(accountService.getAccountJson("1234567890")).thenReturn(new Tagged<>("3-18cc", () -> json));
 
         mockMvc.perform(get("/api/accounts/1234567890"))
                 .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", "\"3-18cc\""))
                 .andExpect(jsonPath("$.accountNumber").value("1234567890"))
                 .andExpect(jsonPath("$.username").value("Test User"))
                 .andExpect(jsonPath("$.balance").value("1000.00"));
     }
 
+    @Test
+    void getAccount_MatchingIfNoneMatch_ReturnsNotModifiedWithoutBody() throws Exception {
+        when(accountService.getAccountJson("1234567890")).thenReturn(new Tagged<>("3-18cc", () -> {
+            throw new AssertionError("body rendered for a 304");
+        }));
+
+        mockMvc.perform(get("/api/accounts/1234567890").header("If-None-Match", "\"3-18cc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"3-18cc\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getAccount_StaleIfNoneMatch_ReturnsAccount() throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(testAccount);
+        when(accountService.getAccountJson("1234567890")).thenReturn(new Tagged<>("4-18cc", () -> json));
+
+        mockMvc.perform(get("/api/accounts/1234567890").header("If-None-Match", "\"3-18cc\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"4-18cc\""))
+                .andExpect(jsonPath("$.balance").value("1000.00"));
+    }
+
     @Test
     void getAccount_NonExistingId_ReturnsNotFound() throws Exception {
-        when(accountService.getAccount("9999999999"))
+        when(accountService.getAccountJson("9999999999"))
                 .thenThrow(new AccountException("Account not found"));
 
         mockMvc.perform(get("/api/accounts/9999999999"))
@@ -101,8 +146,10 @@ class AccountControllerTest {
                 .balance(new BigDecimal("2000.00"))
                 .build();
 
-        List<AccountDTO> accounts = Arrays.asList(testAccount, anotherAccount);
-        when(accountService.getAllAccounts(any(PageRequest.class)))
+        List<RawValue> accounts = Arrays.asList(
+                new RawValue(objectMapper.writeValueAsString(testAccount)),
+                new RawValue(objectMapper.writeValueAsString(anotherAccount)));
+        when(accountService.getAllAccountsJson(any(PageRequest.class)))
                 .thenReturn(new PageImpl<>(accounts));
 
         mockMvc.perform(get("/api/accounts"))
@@ -119,6 +166,27 @@ class AccountControllerTest {
                 .andExpect(jsonPath("$.number").exists());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportAccounts_Ndjson_StreamsOneAccountPerLine() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        doAnswer(invocation -> {
+            Consumer<AccountDTO> sink = invocation.getArgument(2);
+            sink.accept(testAccount);
+            return null;
+        }).when(accountService).exportAccounts(eq(from), isNull(), any(Consumer.class));
+
+        String body = mockMvc.perform(get("/api/accounts")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("from", "2024-01-01T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertEquals(objectMapper.writeValueAsString(testAccount) + "\n", body);
+        verify(accountService, never()).getAllAccountsJson(any(PageRequest.class));
+    }
+
     @Test
     void updateAccount_ValidInput_ReturnsUpdatedAccount() throws Exception {
         when(accountService.updateAccount(any(), any())).thenReturn(testAccount);
@@ -182,4 +250,52 @@ class AccountControllerTest {
                 .content("-100.00"))
                 .andExpect(status().isBadRequest());
     }
-} 
\ No newline at end of file
+
+    @Test
+    void getAccountTransactions_ExistingAccount_ReturnsCursorPage() throws Exception {
+        TransactionDTO transaction = TransactionDTO.builder()
+                .accountNumber("0987654321")
+                .targetAccountNumber("1234567890")
+                .amount(new BigDecimal("100.00"))
+                .build();
+        when(accountService.accountExists("1234567890")).thenReturn(true);
+        when(transactionService.getAccountTransactions("1234567890", "abc", 1))
+                .thenReturn(CursorPageDTO.<TransactionDTO>builder()
+                        .content(List.of(transaction))
+                        .size(1)
+                        .nextCursor("def")
+                        .build());
+
+        mockMvc.perform(get("/api/accounts/1234567890/transactions")
+                .param("cursor", "abc")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(1))
+                .andExpect(jsonPath("$.content[0].targetAccountNumber").value("1234567890"))
+                .andExpect(jsonPath("$.size").value(1))
+                .andExpect(jsonPath("$.nextCursor").value("def"));
+    }
+
+    @Test
+    void getAccountTransactions_NonExistingAccount_ReturnsNotFound() throws Exception {
+        when(accountService.accountExists("9999999999")).thenReturn(false);
+
+        mockMvc.perform(get("/api/accounts/9999999999/transactions"))
+                .andExpect(status().isNotFound());
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void importAccounts_NdjsonBody_ReturnsSummary() throws Exception {
+        when(importService.importAccounts(any(InputStream.class)))
+                .thenReturn(ImportResultDTO.builder().imported(2).failed(0).errors(List.of()).build());
+
+        mockMvc.perform(post("/api/accounts/import")
+                .contentType("application/x-ndjson")
+                .content("{\"accountNumber\":\"1\",\"username\":\"a\",\"balance\":\"1\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2));
+
+        verify(importService).importAccounts(any(InputStream.class));
+    }
+}
@@ -0,0 +1,142 @@
+package com.hsbc.transaction_demo.controller;
+
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.netty.NettyWebServer;
+import org.springframework.boot.web.reactive.context.ReactiveWebServerApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the application on the reactive stack and exercises the reactive controllers end to end
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.main.web-application-type=reactive")
+class ReactiveApiTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Autowired
+    private ReactiveWebServerApplicationContext context;
+
+    private void createAccount(String accountNumber, String balance) {
+        client.post().uri("/api/accounts")
+                .bodyValue(AccountDTO.builder()
+                        .accountNumber(accountNumber)
+                        .username("User " + accountNumber)
+                        .balance(new BigDecimal(balance))
+                        .build())
+                .exchange()
+                .expectStatus().isCreated();
+    }
+
+    @Test
+    void servesOnNetty() {
+        assertInstanceOf(NettyWebServer.class, context.getWebServer());
+    }
+
+    @Test
+    void account_CreateGetAndMissing() {
+        createAccount("R-1", "100.00");
+
+        client.get().uri("/api/accounts/R-1").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.balance").isEqualTo("100.00");
+        client.get().uri("/api/accounts/R-missing").exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void createAccount_Invalid_ReturnsFieldErrors() {
+        client.post().uri("/api/accounts")
+                .bodyValue(AccountDTO.builder().username("User").balance(BigDecimal.TEN).build())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody().jsonPath("$.accountNumber").isEqualTo("Account number cannot be empty");
+    }
+
+    @Test
+    void importThenStream_ReturnsEveryAccountInOrder() {
+        String body = IntStream.range(0, 600)
+                .mapToObj(i -> "{\"accountNumber\":\"S-%04d\",\"username\":\"User\",\"balance\":\"1.00\"}".formatted(i))
+                .collect(Collectors.joining("\n"));
+        client.post().uri("/api/accounts/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.imported").isEqualTo(600);
+
+        List<String> streamed = client.get().uri("/api/accounts")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(AccountDTO.class).getResponseBody()
+                .map(AccountDTO::getAccountNumber)
+                .filter(accountNumber -> accountNumber.startsWith("S-"))
+                .collectList()
+                .block();
+
+        assertEquals(IntStream.range(0, 600).mapToObj("S-%04d"::formatted).toList(), streamed);
+    }
+
+    @Test
+    void listAccounts_WithoutNdjson_ReturnsPage() {
+        createAccount("P-1", "1.00");
+
+        client.get().uri("/api/accounts?size=1").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.content.length()").isEqualTo(1);
+    }
+
+    @Test
+    void transfer_ThenStreamAccountHistory() {
+        createAccount("T-1", "100.00");
+        createAccount("T-2", "0.01");
+
+        client.post().uri("/api/transactions")
+                .bodyValue(TransactionDTO.builder()
+                        .accountNumber("T-1")
+                        .targetAccountNumber("T-2")
+                        .amount(new BigDecimal("25.50"))
+                        .build())
+                .exchange()
+                .expectStatus().isOk();
+        client.post().uri("/api/transactions")
+                .bodyValue(TransactionDTO.builder()
+                        .accountNumber("T-1")
+                        .targetAccountNumber("T-2")
+                        .amount(new BigDecimal("1000.00"))
+                        .build())
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        List<TransactionDTO> history = client.get().uri("/api/accounts/T-2/transactions")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(TransactionDTO.class).getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(1, history.size());
+        assertEquals(0, new BigDecimal("25.50").compareTo(history.get(0).getAmount()));
+        client.get().uri("/api/accounts/T-1").exchange()
+                .expectBody().jsonPath("$.balance").isEqualTo("74.50");
+        client.get().uri("/api/accounts/T-missing/transactions")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+}
@@ -1,7 +1,12 @@
 package com.hsbc.transaction_demo.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.dto.BatchTransferRequestDTO;
+import com.hsbc.transaction_demo.dto.BatchTransferResultDTO;
+import com.hsbc.transaction_demo.dto.CursorPageDTO;
+import com.hsbc.transaction_demo.dto.Tagged;
 import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.exception.TransactionException;
 import com.hsbc.transaction_demo.model.TransactionStatus;
 import com.hsbc.transaction_demo.service.TransactionService;
 import org.junit.jupiter.api.BeforeEach;
@@ -19,8 +24,13 @@ import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -64,7 +74,7 @@ class TransactionControllerTest {
     // Happy path tests
     @Test
     void createTransaction_ValidInput_ReturnsCreatedTransaction() throws Exception {
-        when(transactionService.createTransaction(any(TransactionDTO.class)))
+        when(transactionService.createTransaction(any(TransactionDTO.class), isNull()))
                 .thenReturn(testTransaction);
 
         mockMvc.perform(post("/api/transactions")
@@ -76,7 +86,34 @@ class TransactionControllerTest {
                 .andExpect(jsonPath("$.targetAccountNumber").value("0987654321"))
                 .andExpect(jsonPath("$.amount").value(100.0));
 
-        verify(transactionService).createTransaction(any(TransactionDTO.class));
+        verify(transactionService).createTransaction(any(TransactionDTO.class), isNull());
+    }
+
+    @Test
+    void createTransaction_IdempotencyKey_PassedToService() throws Exception {
+        when(transactionService.createTransaction(any(TransactionDTO.class), eq("retry-1")))
+                .thenReturn(testTransaction);
+
+        mockMvc.perform(post("/api/transactions")
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testTransaction)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(testId.toString()));
+    }
+
+    @Test
+    void createTransaction_IdempotencyKeyReused_ReturnsUnprocessableEntity() throws Exception {
+        when(transactionService.createTransaction(any(TransactionDTO.class), eq("retry-1")))
+                .thenThrow(new TransactionException(TransactionException.Reason.IDEMPOTENCY_KEY_REUSED,
+                        "Idempotency key was already used for a different transaction"));
+
+        mockMvc.perform(post("/api/transactions")
+                .header("Idempotency-Key", "retry-1")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(testTransaction)))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.message").value("Idempotency key was already used for a different transaction"));
     }
 
     // Validation tests
@@ -94,10 +131,32 @@ class TransactionControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void getTransaction_ReturnsETag() throws Exception {
+        when(transactionService.getTaggedTransaction(testId)).thenReturn(new Tagged<>("2-abc", () -> testTransaction));
+
+        mockMvc.perform(get("/api/transactions/{id}", testId))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2-abc\""))
+                .andExpect(jsonPath("$.id").value(testId.toString()));
+    }
+
+    @Test
+    void getTransaction_MatchingIfNoneMatch_ReturnsNotModifiedWithoutBody() throws Exception {
+        when(transactionService.getTaggedTransaction(testId)).thenReturn(new Tagged<>("2-abc", () -> {
+            throw new AssertionError("body built for a 304");
+        }));
+
+        mockMvc.perform(get("/api/transactions/{id}", testId).header("If-None-Match", "\"2-abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"2-abc\""))
+                .andExpect(content().string(""));
+    }
+
     // Error handling tests
     @Test
     void getTransaction_NonExistingId_ReturnsNotFound() throws Exception {
-        when(transactionService.getTransaction(any(UUID.class)))
+        when(transactionService.getTaggedTransaction(any(UUID.class)))
                 .thenThrow(new RuntimeException("Transaction not found"));
 
         mockMvc.perform(get("/api/transactions/{id}", UUID.randomUUID()))
@@ -132,6 +191,103 @@ class TransactionControllerTest {
         verify(transactionService).getAllTransactions(any(PageRequest.class));
     }
 
+    @Test
+    void getTransactionsAfter_CursorParam_ReturnsKeysetPage() throws Exception {
+        when(transactionService.getTransactions("", 1, true))
+                .thenReturn(CursorPageDTO.<TransactionDTO>builder()
+                        .content(List.of(testTransaction))
+                        .size(1)
+                        .nextCursor("next")
+                        .build());
+
+        mockMvc.perform(get("/api/transactions")
+                .param("cursor", "")
+                .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(testId.toString()))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+
+        verify(transactionService, never()).getAllTransactions(any(PageRequest.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportTransactions_Ndjson_StreamsOneTransactionPerLine() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2024, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 2, 1, 0, 0);
+        doAnswer(invocation -> {
+            Consumer<TransactionDTO> sink = invocation.getArgument(5);
+            sink.accept(testTransaction);
+            sink.accept(testTransaction);
+            return null;
+        }).when(transactionService).exportTransactions(eq("1234567890"), eq(from), eq(to),
+                eq(TransactionStatus.COMPLETED), eq(false), any(Consumer.class));
+
+        String body = mockMvc.perform(get("/api/transactions")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("accountNumber", "1234567890")
+                        .param("from", "2024-01-01T00:00:00")
+                        .param("to", "2024-02-01T00:00:00")
+                        .param("status", "COMPLETED")
+                        .param("sortDirection", "asc"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(testId.toString(), objectMapper.readTree(lines[0]).get("id").asText());
+        assertTrue(body.endsWith("\n"));
+        verify(transactionService, never()).getAllTransactions(any(PageRequest.class));
+    }
+
+    @Test
+    void exportTransactions_EmptyRange_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/transactions")
+                        .accept(MediaType.APPLICATION_NDJSON)
+                        .param("from", "2024-02-01T00:00:00")
+                        .param("to", "2024-01-01T00:00:00"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(transactionService);
+    }
+
+    @Test
+    void createTransactions_ValidBatch_ReturnsPerItemResults() throws Exception {
+        BatchTransferRequestDTO batch = new BatchTransferRequestDTO(List.of(testTransaction), true);
+        when(transactionService.createTransactions(anyList(), eq(true)))
+                .thenReturn(BatchTransferResultDTO.builder()
+                        .atomic(true)
+                        .succeeded(1)
+                        .results(List.of(BatchTransferResultDTO.Item.builder()
+                                .index(0)
+                                .status(TransactionStatus.COMPLETED)
+                                .transaction(testTransaction)
+                                .build()))
+                        .build());
+
+        mockMvc.perform(post("/api/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(1))
+                .andExpect(jsonPath("$.results[0].transaction.id").value(testId.toString()));
+    }
+
+    @Test
+    void createTransactions_InvalidItem_ReturnsBadRequest() throws Exception {
+        TransactionDTO invalid = testTransaction.toBuilder().amount(new BigDecimal("-1")).build();
+        BatchTransferRequestDTO batch = new BatchTransferRequestDTO(List.of(testTransaction, invalid), false);
+
+        mockMvc.perform(post("/api/transactions/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['transactions[1].amount']").value("Amount must be greater than 0"));
+
+        verify(transactionService, never()).createTransactions(anyList(), anyBoolean());
+    }
+
     // Update operation tests
     @Test
     void updateTransaction_ValidInput_ReturnsUpdatedTransaction() throws Exception {
@@ -0,0 +1,296 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private static Account account(String accountNumber, String balance) {
+        return Account.builder()
+                .accountNumber(accountNumber)
+                .username("User " + accountNumber)
+                .balance(Money.toMinorUnits(new BigDecimal(balance)))
+                .createdAt(LocalDateTime.of(2024, 1, 1, 10, 0, 0, 123456789))
+                .version(3)
+                .build();
+    }
+
+    private static List<JournalRecord> replay(FileJournal journal) {
+        List<JournalRecord> records = new ArrayList<>();
+        journal.replay(records::add);
+        return records;
+    }
+
+    @Test
+    void replay_AfterReopen_ReturnsRecordsOfEachEntityInOrder() throws IOException {
+        Transaction transaction = Transaction.builder()
+                .id(UUID.randomUUID())
+                .accountNumber("A")
+                .targetAccountNumber("B")
+                .amount(new BigDecimal("12.34"))
+                .timestamp(LocalDateTime.of(2024, 1, 1, 10, 0, 0))
+                .status(TransactionStatus.COMPLETED)
+                .version(1)
+                .build();
+
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10, 4)) {
+            journal.append(new JournalRecord.AccountSaved(account("A", "100.00")));
+            journal.append(new JournalRecord.TransactionSaved(transaction));
+            journal.append(new JournalRecord.AccountDeleted("A"));
+            journal.append(new JournalRecord.TransactionDeleted(transaction.getId()));
+            journal.sync();
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            List<JournalRecord> records = replay(reopened);
+            assertEquals(4, records.size());
+            // Different entities may go through different lanes and interleave differently
+            assertEquals(List.of(
+                    new JournalRecord.AccountSaved(account("A", "100.00")),
+                    new JournalRecord.AccountDeleted("A")), records.stream()
+                    .filter(record -> record instanceof JournalRecord.AccountSaved
+                            || record instanceof JournalRecord.AccountDeleted)
+                    .toList());
+            assertEquals(List.of(
+                    new JournalRecord.TransactionSaved(transaction),
+                    new JournalRecord.TransactionDeleted(transaction.getId())), records.stream()
+                    .filter(record -> record instanceof JournalRecord.TransactionSaved
+                            || record instanceof JournalRecord.TransactionDeleted)
+                    .toList());
+        }
+    }
+
+    @Test
+    void decode_UnversionedTransactionRecord_ReadsAsVersionZero() throws IOException {
+        Transaction transaction = Transaction.builder()
+                .id(UUID.randomUUID())
+                .accountNumber("A")
+                .targetAccountNumber("B")
+                .amount(new BigDecimal("12.34"))
+                .status(TransactionStatus.PENDING)
+                .build();
+        // Same layout as before versions: the old type byte and no trailing version
+        byte[] current = JournalCodec.encode(new JournalRecord.TransactionSaved(transaction));
+        byte[] legacy = Arrays.copyOf(current, current.length - Long.BYTES);
+        legacy[0] = 3;
+
+        JournalRecord decoded = JournalCodec.decode(new DataInputStream(new ByteArrayInputStream(legacy)));
+
+        assertEquals(new JournalRecord.TransactionSaved(transaction), decoded);
+    }
+
+    @Test
+    void open_TornTail_IsTruncated() throws IOException {
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            journal.append(new JournalRecord.AccountSaved(account("A", "100.00")));
+            journal.sync();
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("journal-0000000001.log"), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            reopened.append(new JournalRecord.AccountDeleted("A"));
+            reopened.sync();
+            assertEquals(2, replay(reopened).size());
+        }
+    }
+
+    @Test
+    void sync_ConcurrentWriters_AllRecordsDurable() throws Exception {
+        int threads = 8;
+        int recordsPerThread = 200;
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 100, 10)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < recordsPerThread; i++) {
+                            journal.append(new JournalRecord.AccountDeleted(thread + "-" + i));
+                            journal.sync();
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            assertEquals(threads * recordsPerThread, replay(reopened).size());
+        }
+    }
+
+    @Test
+    void sync_GroupsSpreadOverLanes_CommitFollowsTheirRecords() throws Exception {
+        int threads = 8;
+        int groupsPerThread = 100;
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 50, 10, 4)) {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < groupsPerThread; i++) {
+                            JournalGroup group = journal.begin();
+                            journal.append(new JournalRecord.AccountDeleted("debit-" + thread + "-" + i));
+                            journal.append(new JournalRecord.AccountDeleted("credit-" + thread + "-" + i));
+                            journal.commit(group);
+                            journal.sync();
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            Map<Long, Integer> seen = new HashMap<>();
+            int committed = 0;
+            for (JournalRecord record : replay(reopened)) {
+                if (record instanceof JournalRecord.Grouped grouped) {
+                    seen.merge(grouped.group(), 1, Integer::sum);
+                } else if (record instanceof JournalRecord.GroupCommitted commit) {
+                    assertEquals(2, seen.get(commit.group()));
+                    committed++;
+                }
+            }
+            assertEquals(threads * groupsPerThread, committed);
+        }
+    }
+
+    @Test
+    void close_AsyncMode_FlushesPendingRecords() throws IOException {
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.ASYNC, 0, 60_000)) {
+            journal.append(new JournalRecord.AccountDeleted("A"));
+            journal.sync();
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.ASYNC, 0, 10)) {
+            assertEquals(List.of(new JournalRecord.AccountDeleted("A")), replay(reopened));
+        }
+    }
+
+    @Test
+    void recover_RebuildsRepositories() throws IOException {
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            AccountRepository accounts = new AccountRepository(journal);
+            TransactionRepository transactions = new HeapTransactionRepository(journal);
+            Account a = accounts.save(account("A", "100.00"));
+            accounts.save(account("B", "5.00"));
+            accounts.replace(a, a.toBuilder().balance(90_00).version(a.getVersion() + 1).build());
+            accounts.delete(accounts.findByAccountNumber("B").orElseThrow());
+            transactions.save(Transaction.builder().accountNumber("A").targetAccountNumber("B")
+                    .amount(BigDecimal.TEN).timestamp(LocalDateTime.now()).build());
+            journal.sync();
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            AccountRepository accounts = new AccountRepository(reopened);
+            TransactionRepository transactions = new HeapTransactionRepository(reopened);
+            DuplicateTransactionIndex duplicateIndex = new DuplicateTransactionIndex();
+            new JournalRecovery(reopened, Optional.empty(), accounts, transactions, duplicateIndex).recover();
+
+            assertEquals(90_00, accounts.findByAccountNumber("A").orElseThrow().getBalance());
+            assertFalse(accounts.existsByAccountNumber("B"));
+            assertEquals(1, transactions.findByAccountNumber("A").size());
+            assertTrue(duplicateIndex.isDuplicate("A", BigDecimal.TEN, LocalDateTime.now()));
+            assertEquals(5, replay(reopened).size());
+        }
+    }
+
+    @Test
+    void recover_GroupCutOffByCrash_IsDropped() throws IOException {
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            AccountRepository accounts = new AccountRepository(journal);
+            Account a = accounts.save(account("A", "100.00"));
+            Account debited = a.toBuilder().balance(90_00).version(a.getVersion() + 1).build();
+            JournalGroup committed = journal.begin();
+            accounts.replace(a, debited);
+            journal.commit(committed);
+            // A transfer that debited A but crashed before its credit and commit were written
+            JournalGroup.runIn(new JournalGroup(42), () ->
+                    accounts.replace(debited, debited.toBuilder().balance(80_00).version(debited.getVersion() + 1).build()));
+            // Other writers keep appending meanwhile
+            accounts.save(account("C", "7.00"));
+            journal.sync();
+        }
+
+        for (int run = 0; run < 2; run++) {
+            try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+                AccountRepository accounts = new AccountRepository(reopened);
+                new JournalRecovery(reopened, Optional.empty(), accounts, new HeapTransactionRepository(reopened),
+                        new DuplicateTransactionIndex()).recover();
+
+                assertEquals(90_00, accounts.findByAccountNumber("A").orElseThrow().getBalance());
+                assertTrue(accounts.existsByAccountNumber("C"));
+                List<JournalRecord> records = replay(reopened);
+                assertEquals(new JournalRecord.GroupDiscarded(42), records.get(records.size() - 1));
+            }
+        }
+    }
+
+    @Test
+    void rotate_ReplayFromSegment_SkipsOlderSegments() throws IOException {
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            journal.append(new JournalRecord.AccountDeleted("A"));
+            long next = journal.rotate();
+            journal.append(new JournalRecord.AccountDeleted("B"));
+            journal.sync();
+
+            assertEquals(2, next);
+            List<JournalRecord> tail = new ArrayList<>();
+            assertEquals(1, journal.replay(next, tail::add));
+            assertEquals(List.of(new JournalRecord.AccountDeleted("B")), tail);
+
+            journal.deleteSegmentsBefore(next);
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.ASYNC, 0, 10)) {
+            assertEquals(List.of(new JournalRecord.AccountDeleted("B")), replay(reopened));
+        }
+    }
+}
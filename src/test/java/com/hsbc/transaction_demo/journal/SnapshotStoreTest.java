@@ -0,0 +1,170 @@
+package com.hsbc.transaction_demo.journal;
+
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.OffHeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    private static Account account(String accountNumber, String balance) {
+        return Account.builder()
+                .accountNumber(accountNumber)
+                .username("User " + accountNumber)
+                .balance(Money.toMinorUnits(new BigDecimal(balance)))
+                .createdAt(LocalDateTime.of(2024, 1, 1, 10, 0))
+                .build();
+    }
+
+    private static Transaction transaction(String source, String target) {
+        return Transaction.builder()
+                .id(UUID.randomUUID())
+                .accountNumber(source)
+                .targetAccountNumber(target)
+                .amount(new BigDecimal("1.50"))
+                .timestamp(LocalDateTime.of(2024, 1, 1, 11, 0))
+                .status(TransactionStatus.COMPLETED)
+                .version(2)
+                .build();
+    }
+
+    @Test
+    void loadLatest_RoundTripsEntities() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        Transaction transaction = transaction("A", "B");
+        store.write(1, List.of(account("A", "1.00")), List.of());
+        store.write(4, List.of(account("A", "10.00"), account("B", "0")), List.of(transaction));
+
+        List<Account> accounts = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        SnapshotStore.Loaded loaded = store.loadLatest(accounts::add, transactions::add).orElseThrow();
+
+        assertEquals(new SnapshotStore.Loaded(4, 2, 1), loaded);
+        assertEquals(List.of(account("A", "10.00"), account("B", "0")), accounts);
+        assertEquals(List.of(transaction), transactions);
+    }
+
+    @Test
+    void loadLatest_RoundTripsParticipantRecords() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        List<JournalRecord> records = List.of(
+                new JournalRecord.CreditApplied(UUID.randomUUID()),
+                new JournalRecord.CreditPending(UUID.randomUUID(), "http://node-2", "A", "B", 1_50),
+                new JournalRecord.CreditForgotten(UUID.randomUUID()),
+                new JournalRecord.HandoffForgotten(UUID.randomUUID()));
+        store.write(3, List.of(account("A", "10.00")), List.of(), records);
+
+        List<JournalRecord> loaded = new ArrayList<>();
+        store.loadLatest(a -> { }, t -> { }, loaded::add).orElseThrow();
+
+        assertEquals(records, loaded);
+    }
+
+    @Test
+    void loadLatest_NoSnapshot_ReturnsEmpty() throws IOException {
+        assertTrue(new SnapshotStore(directory.resolve("missing")).loadLatest(a -> { }, t -> { }).isEmpty());
+    }
+
+    @Test
+    void loadLatest_CorruptSnapshot_Throws() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        Path path = store.write(1, List.of(account("A", "10.00")), List.of());
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(20);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        assertThrows(IOException.class, () -> store.loadLatest(a -> { }, t -> { }));
+    }
+
+    @Test
+    void snapshot_SeveralPages_WritesEveryEntity() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            AccountRepository accounts = new AccountRepository();
+            TransactionRepository transactions = new OffHeapTransactionRepository();
+            for (int i = 0; i < 2500; i++) {
+                accounts.save(account(String.format("%05d", i), "1.00"));
+                transactions.save(transaction("A", "B"));
+            }
+
+            new Snapshotter(journal, store, accounts, transactions, 0).snapshot();
+        }
+
+        List<Account> accounts = new ArrayList<>();
+        List<Transaction> transactions = new ArrayList<>();
+        store.loadLatest(accounts::add, transactions::add);
+        assertEquals(2500, accounts.size());
+        assertEquals(2500, transactions.stream().map(Transaction::getId).distinct().count());
+    }
+
+    @Test
+    void recover_FromSnapshotAndJournalTail() throws IOException {
+        SnapshotStore store = new SnapshotStore(directory);
+        try (FileJournal journal = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            AccountRepository accounts = new AccountRepository(journal);
+            TransactionRepository transactions = new HeapTransactionRepository(journal);
+            for (int i = 0; i < 3; i++) {
+                journal.rotate();
+                accounts.save(account("A" + i, "100.00"));
+            }
+            transactions.save(transaction("A0", "A1"));
+            journal.sync();
+
+            new Snapshotter(journal, store, accounts, transactions, 0).snapshot();
+
+            accounts.delete(accounts.findByAccountNumber("A0").orElseThrow());
+            accounts.save(account("C", "7.00"));
+            journal.sync();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            // Only the segment closed by the snapshot and the one written after it survive
+            assertEquals(2, files.filter(file -> file.getFileName().toString().startsWith("journal-")).count());
+        }
+
+        try (FileJournal reopened = new FileJournal(directory, FileJournal.Durability.SYNC, 0, 10)) {
+            AccountRepository accounts = new AccountRepository(reopened);
+            TransactionRepository transactions = new HeapTransactionRepository(reopened);
+            JournalRecovery recovery = new JournalRecovery(reopened, Optional.of(store), accounts, transactions,
+                    new DuplicateTransactionIndex());
+            recovery.recover();
+
+            assertFalse(accounts.existsByAccountNumber("A0"));
+            assertTrue(accounts.existsByAccountNumber("A1"));
+            assertTrue(accounts.existsByAccountNumber("A2"));
+            assertTrue(accounts.existsByAccountNumber("C"));
+            assertEquals(1, transactions.findByAccountNumber("A1").size());
+
+            RecoveryReport report = recovery.getReport();
+            assertEquals(3, report.snapshotAccounts());
+            assertEquals(1, report.snapshotTransactions());
+            // The closed segment is replayed again on top of the snapshot, then the two later changes
+            assertEquals(4, report.journalRecords());
+        }
+    }
+}
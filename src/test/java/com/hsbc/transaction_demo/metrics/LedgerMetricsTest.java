@@ -0,0 +1,59 @@
+package com.hsbc.transaction_demo.metrics;
+
+import com.hsbc.transaction_demo.exception.TransactionException.Reason;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LedgerMetricsTest {
+    // values() copies the array on every call
+    private static final LedgerMetrics.Phase[] PHASES = LedgerMetrics.Phase.values();
+    private static final Reason[] REASONS = Reason.values();
+
+    private static void recordAll(LedgerMetrics metrics, int times) {
+        for (int i = 0; i < times; i++) {
+            for (LedgerMetrics.Phase phase : PHASES) {
+                metrics.phase(phase, 1_000 + i);
+            }
+            metrics.rejected(REASONS[i % REASONS.length]);
+            metrics.lockWait(5_000);
+            metrics.accountLookup(200);
+            metrics.transactionLookup(300);
+        }
+    }
+
+    @Test
+    void recording_DoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        LedgerMetrics metrics = new LedgerMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        recordAll(metrics, 20_000);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        recordAll(metrics, 100_000);
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        // 1.1 million recordings; a single allocation per call would be tens of megabytes
+        assertTrue(allocated < 64 * 1024, "allocated " + allocated + " bytes");
+    }
+
+    @Test
+    void scrape_ExposesTransferMeters() {
+        PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        LedgerMetrics metrics = new LedgerMetrics(registry);
+
+        metrics.phase(LedgerMetrics.Phase.BALANCE_UPDATE, 2_000_000);
+        metrics.rejected(Reason.INSUFFICIENT_BALANCE);
+        metrics.rejected(Reason.INSUFFICIENT_BALANCE);
+
+        String scrape = registry.scrape();
+        assertTrue(scrape.contains("ledger_transfer_phase_seconds_count{phase=\"balance_update\",} 1.0"), scrape);
+        assertTrue(scrape.contains("ledger_transfer_phase_seconds_bucket{phase=\"balance_update\",le="), scrape);
+        assertTrue(scrape.contains("ledger_transfer_rejected_total{reason=\"insufficient_balance\",} 2.0"), scrape);
+        assertTrue(scrape.contains("ledger_transfer_rejected_total{reason=\"duplicate\",} 0.0"), scrape);
+    }
+}
@@ -0,0 +1,63 @@
+package com.hsbc.transaction_demo.metrics;
+
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scrapes the metrics endpoint after real requests went through the transfer path
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability
+class PrometheusEndpointTest {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    private void createAccount(String accountNumber, String balance) {
+        ResponseEntity<AccountDTO> response = rest.postForEntity("/api/accounts", AccountDTO.builder()
+                .accountNumber(accountNumber)
+                .username("User " + accountNumber)
+                .balance(new BigDecimal(balance))
+                .build(), AccountDTO.class);
+        assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    }
+
+    private HttpStatus transfer(String amount) {
+        return HttpStatus.valueOf(rest.postForEntity("/api/transactions", TransactionDTO.builder()
+                .accountNumber("M-1")
+                .targetAccountNumber("M-2")
+                .amount(new BigDecimal(amount))
+                .build(), String.class).getStatusCode().value());
+    }
+
+    @Test
+    void prometheus_ReportsTransfersRejectionsAndSizes() {
+        createAccount("M-1", "100.00");
+        createAccount("M-2", "0.01");
+        assertEquals(HttpStatus.OK, transfer("10.00"));
+        assertEquals(HttpStatus.BAD_REQUEST, transfer("1000.00"));
+        rest.getForEntity("/api/accounts/M-1", String.class);
+
+        ResponseEntity<String> scrape = rest.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String body = scrape.getBody();
+        assertNotNull(body);
+        assertTrue(body.contains("ledger_transfer_phase_seconds_count{phase=\"save\",}"), body);
+        assertTrue(body.contains("ledger_transfer_rejected_total{reason=\"insufficient_balance\",} 1.0"), body);
+        assertTrue(body.contains("ledger_lookup_seconds_count{entity=\"account\",}"), body);
+        assertTrue(body.contains("ledger_repository_size{repository=\"accounts\",}"), body);
+        assertTrue(body.contains("ledger_repository_size{repository=\"transactions\",}"), body);
+    }
+}
@@ -0,0 +1,132 @@
+package com.hsbc.transaction_demo.repository;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountRepositoryTest {
+
+    private final AccountRepository repository = new AccountRepository(Journal.NONE, 16, true);
+
+    @BeforeEach
+    void setUp() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+        repository.save(account("0000000003", "Carol", "300.00", start));
+        repository.save(account("0000000001", "Bob", "100.00", start.plusMinutes(1)));
+        repository.save(account("0000000002", "Alice", "200.00", start.plusMinutes(2)));
+    }
+
+    private static Account account(String accountNumber, String username, String balance, LocalDateTime createdAt) {
+        return Account.builder()
+                .accountNumber(accountNumber)
+                .username(username)
+                .balance(Money.toMinorUnits(new BigDecimal(balance)))
+                .createdAt(createdAt)
+                .build();
+    }
+
+    private static List<String> accountNumbers(Page<Account> page) {
+        return page.getContent().stream().map(Account::getAccountNumber).toList();
+    }
+
+    @Test
+    void findAll_SortsByRequestedProperty() {
+        assertEquals(List.of("0000000001", "0000000002", "0000000003"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by("accountNumber")))));
+        assertEquals(List.of("0000000002", "0000000001", "0000000003"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by("username")))));
+        assertEquals(List.of("0000000003", "0000000002", "0000000001"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "balance")))));
+        assertEquals(List.of("0000000002", "0000000001", "0000000003"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by(Sort.Direction.DESC, "createdAt")))));
+    }
+
+    @Test
+    void findAll_SlicesPagesAndReportsTotal() {
+        Page<Account> second = repository.findAll(PageRequest.of(1, 2, Sort.by("accountNumber")));
+
+        assertEquals(List.of("0000000003"), accountNumbers(second));
+        assertEquals(3, second.getTotalElements());
+        assertEquals(2, second.getTotalPages());
+        assertTrue(repository.findAll(PageRequest.of(5, 2, Sort.by("accountNumber"))).getContent().isEmpty());
+    }
+
+    @Test
+    void replace_ReordersBalanceIndex() {
+        Account bob = repository.findByAccountNumber("0000000001").orElseThrow();
+
+        assertTrue(repository.replace(bob, bob.toBuilder().balance(999_00).version(1).build()));
+        assertFalse(repository.replace(bob, bob.toBuilder().balance(0).version(1).build()));
+
+        assertEquals(List.of("0000000002", "0000000003", "0000000001"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by("balance")))));
+    }
+
+    @Test
+    void replace_SameBalance_KeepsIndexEntry() {
+        Account bob = repository.findByAccountNumber("0000000001").orElseThrow();
+
+        repository.replace(bob, bob.toBuilder().balance(100_00).version(1).build());
+
+        assertEquals(3, repository.findAll(PageRequest.of(0, 10, Sort.by("balance"))).getNumberOfElements());
+    }
+
+    @Test
+    void delete_RemovesFromIndexes() {
+        repository.delete(repository.findByAccountNumber("0000000002").orElseThrow());
+
+        assertEquals(List.of("0000000001", "0000000003"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by("username")))));
+    }
+
+    @Test
+    void findAll_UnsupportedProperty_ThrowsException() {
+        assertFalse(repository.isSortable("id"));
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.findAll(PageRequest.of(0, 10, Sort.by("id"))));
+    }
+
+    @Test
+    void findAll_BalanceIndexDisabled_BalanceIsNotSortable() {
+        AccountRepository unindexed = new AccountRepository();
+        unindexed.save(account("0000000001", "Bob", "100.00", LocalDateTime.of(2024, 1, 1, 10, 0)));
+
+        assertFalse(unindexed.isSortable("balance"));
+        assertTrue(unindexed.isSortable("username"));
+        assertThrows(IllegalArgumentException.class,
+                () -> unindexed.findAll(PageRequest.of(0, 10, Sort.by("balance"))));
+    }
+
+    @Test
+    void insertAll_SkipsExistingAccountsAndIndexesNewOnes() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 2, 10, 0, 0);
+        List<String> existing = repository.insertAll(List.of(
+                account("0000000004", "Dave", "50.00", createdAt),
+                account("0000000001", "Mallory", "1.00", createdAt)));
+
+        assertEquals(List.of("0000000001"), existing);
+        assertEquals("Bob", repository.findByAccountNumber("0000000001").orElseThrow().getUsername());
+        assertEquals(List.of("0000000004", "0000000001", "0000000002", "0000000003"),
+                accountNumbers(repository.findAll(PageRequest.of(0, 10, Sort.by("balance")))));
+    }
+
+    @Test
+    void findAllAfter_PagesByAccountNumber() {
+        List<Account> first = repository.findAllAfter(null, 2);
+        List<Account> rest = repository.findAllAfter(first.get(1).getAccountNumber(), 2);
+
+        assertEquals(List.of("0000000001", "0000000002"), first.stream().map(Account::getAccountNumber).toList());
+        assertEquals(List.of("0000000003"), rest.stream().map(Account::getAccountNumber).toList());
+    }
+}
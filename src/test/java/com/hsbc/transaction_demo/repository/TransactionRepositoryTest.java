@@ -0,0 +1,246 @@
+package com.hsbc.transaction_demo.repository;
+
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same scenarios against every transaction store
+ */
+class TransactionRepositoryTest {
+
+    private TransactionRepository repository;
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+
+    private void use(String store) {
+        repository = store.equals("heap") ? new HeapTransactionRepository() : new OffHeapTransactionRepository();
+    }
+
+    private Transaction save(String source, String target, int secondsAfterStart) {
+        return repository.save(Transaction.builder()
+                .accountNumber(source)
+                .targetAccountNumber(target)
+                .amount(new BigDecimal("10.00"))
+                .timestamp(start.plusSeconds(secondsAfterStart))
+                .status(TransactionStatus.COMPLETED)
+                .build());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findByAccountNumber_IncludesIncomingAndOutgoing_NewestFirst(String store) {
+        use(store);
+        Transaction outgoing = save("A", "B", 1);
+        Transaction incoming = save("C", "A", 2);
+        save("B", "C", 3);
+
+        List<Transaction> history = repository.findByAccountNumber("A");
+
+        assertEquals(List.of(incoming, outgoing), history);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void replace_StaleExpected_ChangesNothing(String store) {
+        use(store);
+        Transaction original = save("A", "B", 1);
+        Transaction first = original.toBuilder().description("first").version(1).build();
+        Transaction second = original.toBuilder().description("second").version(1).build();
+
+        assertTrue(repository.replace(original, first));
+        assertFalse(repository.replace(original, second));
+
+        assertEquals(first, repository.findById(original.getId()).orElseThrow());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findByAccountNumber_PagesWithCursor(String store) {
+        use(store);
+        for (int i = 0; i < 5; i++) {
+            save("A", "B", i);
+        }
+
+        List<Transaction> first = repository.findByAccountNumber("A", null, 2);
+        List<Transaction> second = repository.findByAccountNumber("A", TransactionCursor.of(first.get(1)), 2);
+        List<Transaction> last = repository.findByAccountNumber("A", TransactionCursor.of(second.get(1)), 2);
+
+        assertEquals(start.plusSeconds(4), first.get(0).getTimestamp());
+        assertEquals(start.plusSeconds(2), second.get(0).getTimestamp());
+        assertEquals(1, last.size());
+        assertEquals(start, last.get(0).getTimestamp());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findByAccountNumber_OldestFirst_PagesWithCursor(String store) {
+        use(store);
+        for (int i = 0; i < 5; i++) {
+            save("A", "B", i);
+        }
+        save("B", "C", 10);
+
+        List<Transaction> first = repository.findByAccountNumber("A", null, 2, false);
+        List<Transaction> second = repository.findByAccountNumber("A", TransactionCursor.of(first.get(1)), 2, false);
+
+        assertEquals(List.of(start, start.plusSeconds(1)),
+                first.stream().map(Transaction::getTimestamp).toList());
+        assertEquals(List.of(start.plusSeconds(2), start.plusSeconds(3)),
+                second.stream().map(Transaction::getTimestamp).toList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void save_ModifiedAccounts_MovesIndexEntries(String store) {
+        use(store);
+        Transaction transaction = save("A", "B", 0);
+
+        transaction.setTargetAccountNumber("C");
+        repository.save(transaction);
+
+        assertTrue(repository.findByAccountNumber("B").isEmpty());
+        assertEquals(List.of(transaction), repository.findByAccountNumber("C"));
+        assertEquals(List.of(transaction), repository.findByAccountNumber("A"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void deleteById_RemovesIndexEntries(String store) {
+        use(store);
+        Transaction transaction = save("A", "B", 0);
+
+        repository.deleteById(transaction.getId());
+
+        assertTrue(repository.findByAccountNumber("A").isEmpty());
+        assertTrue(repository.findByAccountNumber("B").isEmpty());
+        assertTrue(repository.findById(transaction.getId()).isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void count_TracksSavesAndDeletes(String store) {
+        use(store);
+        Transaction first = save("A", "B", 0);
+        save("A", "C", 1);
+        // Re-saving an existing transaction does not add a row
+        repository.save(first);
+        assertEquals(2, repository.count());
+
+        repository.deleteById(first.getId());
+
+        assertEquals(1, repository.count());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void cursor_EncodeDecode_RoundTrips(String store) {
+        use(store);
+        TransactionCursor cursor = TransactionCursor.of(save("A", "B", 0));
+
+        assertEquals(cursor, TransactionCursor.decode(cursor.encode()));
+        assertThrows(IllegalArgumentException.class, () -> TransactionCursor.decode("not-a-cursor"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findAll_Pageable_HonorsTimestampDirectionAndPastEnd(String store) {
+        use(store);
+        for (int i = 0; i < 3; i++) {
+            save("A", "B", i);
+        }
+
+        Page<Transaction> newest = repository.findAll(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "timestamp")));
+        Page<Transaction> oldest = repository.findAll(PageRequest.of(0, 2, Sort.by(Sort.Direction.ASC, "timestamp")));
+
+        assertEquals(start.plusSeconds(2), newest.getContent().get(0).getTimestamp());
+        assertEquals(start, oldest.getContent().get(0).getTimestamp());
+        assertEquals(3, newest.getTotalElements());
+        assertTrue(repository.findAll(PageRequest.of(10, 2)).getContent().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findAll_Keyset_UnaffectedByNewerInserts(String store) {
+        use(store);
+        for (int i = 0; i < 4; i++) {
+            save("A", "B", i);
+        }
+        List<Transaction> first = repository.findAll(null, 2, true);
+
+        save("C", "D", 100);
+        List<Transaction> second = repository.findAll(TransactionCursor.of(first.get(1)), 2, true);
+
+        assertEquals(List.of(start.plusSeconds(1), start),
+                second.stream().map(Transaction::getTimestamp).toList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findById_ReturnsEqualCopyOfEveryField(String store) {
+        use(store);
+        Transaction full = repository.save(Transaction.builder()
+                .accountNumber("A")
+                .targetAccountNumber("B")
+                .amount(new BigDecimal("1234.50"))
+                .timestamp(start.plusNanos(123_456_789))
+                .description("Rent – März 房租")
+                .status(TransactionStatus.PENDING)
+                .version(3)
+                .build());
+        Transaction empty = repository.save(Transaction.builder().description("").build());
+
+        assertEquals(full, repository.findById(full.getId()).orElseThrow());
+        assertEquals(empty, repository.findById(empty.getId()).orElseThrow());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void findAll_Keyset_OldestFirst(String store) {
+        use(store);
+        for (int i = 0; i < 5; i++) {
+            save("A", "B", i);
+        }
+
+        List<Transaction> first = repository.findAll(null, 2, false);
+        List<Transaction> second = repository.findAll(TransactionCursor.of(first.get(1)), 2, false);
+
+        assertEquals(List.of(start.plusSeconds(2), start.plusSeconds(3)),
+                second.stream().map(Transaction::getTimestamp).toList());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"heap", "off-heap"})
+    void save_AfterDeletes_KeepsOrderAndContents(String store) {
+        use(store);
+        List<Transaction> saved = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            saved.add(save("A", i % 2 == 0 ? "B" : "C", i));
+        }
+        for (int i = 0; i < 200; i += 3) {
+            repository.deleteById(saved.get(i).getId());
+        }
+        for (int i = 200; i < 250; i++) {
+            saved.add(save("A", "B", i - 100));
+        }
+
+        List<Transaction> history = repository.findByAccountNumber("A");
+        List<Transaction> expected = saved.stream()
+                .filter(t -> repository.findById(t.getId()).isPresent())
+                .sorted(Comparator.comparing(TransactionCursor::of))
+                .toList();
+        assertEquals(expected, history);
+        assertEquals(expected.size(), repository.findAll().size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.hsbc.transaction_demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.dto.ImportResultDTO;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AccountImportServiceTest {
+
+    private final AccountRepository repository = new AccountRepository();
+    private final Journal journal = mock(Journal.class);
+    private final AccountImportService service = new AccountImportService(repository, journal,
+            Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper().findAndRegisterModules());
+
+    private ImportResultDTO importLines(String ndjson) throws IOException {
+        return service.importAccounts(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void importAccounts_ReportsInvalidLinesAndImportsTheRest() throws IOException {
+        repository.save(Account.builder().accountNumber("EXISTING").username("Old").balance(1_00)
+                .createdAt(LocalDateTime.now()).build());
+
+        ImportResultDTO result = importLines("""
+                {"accountNumber":"A1","username":"Alice","balance":"10.00"}
+                {"accountNumber":"A2","username":"","balance":"5"}
+                not json
+
+                {"accountNumber":"EXISTING","username":"New","balance":"1"}
+                {"accountNumber":"A1","username":"Again","balance":"1"}
+                {"accountNumber":"A3","username":"Carol","balance":"3"}
+                """);
+
+        assertEquals(2, result.getImported());
+        assertEquals(4, result.getFailed());
+        assertEquals(List.of(2L, 3L, 6L, 5L),
+                result.getErrors().stream().map(ImportResultDTO.LineError::getLine).toList());
+        assertEquals("username: Username cannot be empty", result.getErrors().get(0).getError());
+        assertEquals("Old", repository.findByAccountNumber("EXISTING").orElseThrow().getUsername());
+        assertEquals(10_00, repository.findByAccountNumber("A1").orElseThrow().getBalance());
+        assertTrue(repository.existsByAccountNumber("A3"));
+        verify(journal, times(1)).sync();
+    }
+
+    @Test
+    void importAccounts_LargeInput_FlushesPerChunk() throws IOException {
+        int count = AccountImportService.CHUNK_SIZE * 2 + 1;
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            ndjson.append("{\"accountNumber\":\"").append(i).append("\",\"username\":\"u\",\"balance\":\"1\"}\n");
+        }
+
+        ImportResultDTO result = importLines(ndjson.toString());
+
+        assertEquals(count, result.getImported());
+        assertEquals(0, result.getFailed());
+        assertEquals(count, repository.findAll().size());
+        verify(journal, times(3)).sync();
+    }
+}
@@ -0,0 +1,169 @@
+package com.hsbc.transaction_demo.service;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.service.AccountJsonCache.Eviction;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccountJsonCacheTest {
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final AtomicInteger renders = new AtomicInteger();
+
+    private final Function<Account, AccountDTO> view = account -> {
+        renders.incrementAndGet();
+        return AccountDTO.builder()
+                .accountNumber(account.getAccountNumber())
+                .username(account.getUsername())
+                .balance(Money.toDecimal(account.getBalance()))
+                .createdAt(account.getCreatedAt())
+                .build();
+    };
+
+    private static Account account(String accountNumber, long balance) {
+        return Account.builder()
+                .accountNumber(accountNumber)
+                .username("User " + accountNumber)
+                .balance(balance)
+                .createdAt(LocalDateTime.of(2024, 1, 1, 12, 0))
+                .build();
+    }
+
+    private long entryWeight(AccountJsonCache cache, Account account) {
+        long before = cache.weight();
+        cache.get(account, view);
+        return cache.weight() - before;
+    }
+
+    @Test
+    void get_RendersLikeJackson() throws Exception {
+        AccountJsonCache cache = new AccountJsonCache(mapper, 1 << 20, Eviction.CLOCK);
+        Account account = account("A-1", 1250);
+
+        SerializedString json = cache.get(account, view);
+
+        assertEquals(mapper.writeValueAsString(view.apply(account)), json.getValue());
+        assertTrue(json.getValue().contains("\"balance\":\"12.50\""), json.getValue());
+        assertArrayEquals(json.getValue().getBytes(), json.asUnquotedUTF8());
+    }
+
+    @Test
+    void get_UnchangedAccount_ServesCachedJson() {
+        AccountJsonCache cache = new AccountJsonCache(mapper, 1 << 20, Eviction.CLOCK);
+        Account account = account("A-1", 100);
+
+        SerializedString first = cache.get(account, view);
+        SerializedString second = cache.get(account, view);
+
+        assertSame(first, second);
+        assertEquals(1, renders.get());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void get_ReplacedAccount_RendersAgain() {
+        AccountJsonCache cache = new AccountJsonCache(mapper, 1 << 20, Eviction.CLOCK);
+        Account account = account("A-1", 100);
+        cache.get(account, view);
+
+        Account updated = account.toBuilder().balance(200).version(account.getVersion() + 1).build();
+        SerializedString json = cache.get(updated, view);
+
+        assertEquals(2, renders.get());
+        assertTrue(json.getValue().contains("\"balance\":\"2.00\""), json.getValue());
+    }
+
+    @Test
+    void get_RecreatedAccountWithSameVersion_RendersAgain() {
+        AccountJsonCache cache = new AccountJsonCache(mapper, 1 << 20, Eviction.CLOCK);
+        cache.get(account("A-1", 100), view);
+
+        // Deleted and created again: version 0 both times, but a different stored instance
+        SerializedString json = cache.get(account("A-1", 300), view);
+
+        assertEquals(2, renders.get());
+        assertTrue(json.getValue().contains("\"balance\":\"3.00\""), json.getValue());
+    }
+
+    @Test
+    void invalidate_DropsEntry() {
+        AccountJsonCache cache = new AccountJsonCache(mapper, 1 << 20, Eviction.CLOCK);
+        Account account = account("A-1", 100);
+        cache.get(account, view);
+
+        cache.invalidate("A-1");
+        cache.get(account, view);
+
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void zeroSize_DisablesCaching() {
+        AccountJsonCache cache = new AccountJsonCache(mapper, 0, Eviction.CLOCK);
+        Account account = account("A-1", 100);
+
+        cache.get(account, view);
+        cache.get(account, view);
+
+        assertEquals(2, renders.get());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void weight_StaysWithinBound() {
+        AccountJsonCache probe = new AccountJsonCache(mapper, 1 << 20, Eviction.CLOCK);
+        long maxBytes = 10 * entryWeight(probe, account("A-00000", 100));
+        AccountJsonCache cache = new AccountJsonCache(mapper, maxBytes, Eviction.CLOCK);
+
+        for (int i = 0; i < 1_000; i++) {
+            Account account = account(String.format("A-%05d", i % 50), i);
+            cache.get(account, view);
+            cache.get(account, view);
+            assertTrue(cache.weight() <= maxBytes, "weight " + cache.weight() + " over " + maxBytes);
+        }
+    }
+
+    @Test
+    void clock_KeepsRecentlyReadEntry() {
+        assertEquals(1, rendersOfHotAccount(Eviction.CLOCK));
+    }
+
+    @Test
+    void fifo_EvictsOldestEvenIfRead() {
+        assertEquals(2, rendersOfHotAccount(Eviction.FIFO));
+    }
+
+    // Room for three entries: the hot account is read again while three others go in after it
+    private int rendersOfHotAccount(Eviction eviction) {
+        AccountJsonCache probe = new AccountJsonCache(mapper, 1 << 20, eviction);
+        AccountJsonCache cache = new AccountJsonCache(mapper, 3 * entryWeight(probe, account("HOT1", 100)), eviction);
+        Account hot = account("HOT1", 100);
+        AtomicInteger hotRenders = new AtomicInteger();
+        Function<Account, AccountDTO> counted = account -> {
+            hotRenders.incrementAndGet();
+            return view.apply(account);
+        };
+
+        cache.get(hot, counted);
+        cache.get(hot, counted);
+        cache.get(account("CLD1", 100), view);
+        cache.get(account("CLD2", 100), view);
+        cache.get(account("CLD3", 100), view);
+        cache.get(hot, counted);
+        return hotRenders.get();
+    }
+}
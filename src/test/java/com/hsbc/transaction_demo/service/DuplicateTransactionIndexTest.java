@@ -0,0 +1,72 @@
+package com.hsbc.transaction_demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateTransactionIndexTest {
+
+    private final DuplicateTransactionIndex index = new DuplicateTransactionIndex();
+    private final BigDecimal amount = new BigDecimal("100.00");
+
+    @Test
+    void isDuplicate_WithinAMinuteAcrossHourBoundary_ReturnsTrue() {
+        index.record("1234567890", amount, LocalDateTime.of(2024, 1, 1, 10, 59, 50));
+
+        assertTrue(index.isDuplicate("1234567890", amount, LocalDateTime.of(2024, 1, 1, 11, 0, 20)));
+        assertTrue(index.isDuplicate("1234567890", amount, LocalDateTime.of(2024, 1, 1, 10, 59, 0)));
+    }
+
+    @Test
+    void isDuplicate_SameMinuteOfHourButAnHourApart_ReturnsFalse() {
+        index.record("1234567890", amount, LocalDateTime.of(2024, 1, 1, 10, 5, 0));
+
+        assertFalse(index.isDuplicate("1234567890", amount, LocalDateTime.of(2024, 1, 1, 11, 5, 0)));
+    }
+
+    @Test
+    void isDuplicate_OneMinuteOrMoreApart_ReturnsFalse() {
+        index.record("1234567890", amount, LocalDateTime.of(2024, 1, 1, 10, 0, 30));
+
+        assertFalse(index.isDuplicate("1234567890", amount, LocalDateTime.of(2024, 1, 1, 10, 1, 30)));
+        assertFalse(index.isDuplicate("1234567890", amount, LocalDateTime.of(2024, 1, 1, 9, 59, 30)));
+    }
+
+    @Test
+    void isDuplicate_DifferentAccountOrAmount_ReturnsFalse() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+        index.record("1234567890", amount, now);
+
+        assertFalse(index.isDuplicate("0987654321", amount, now));
+        assertFalse(index.isDuplicate("1234567890", new BigDecimal("100.01"), now));
+        assertTrue(index.isDuplicate("1234567890", new BigDecimal("100"), now));
+        assertFalse(index.isDuplicate("1234567890", amount, null));
+    }
+
+    @Test
+    void record_ExpiresOldBuckets() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+        for (int minute = 0; minute < 60; minute++) {
+            index.record("1234567890", amount, start.plusMinutes(minute));
+        }
+
+        assertTrue(index.bucketCount() <= 2);
+        assertFalse(index.isDuplicate("1234567890", amount, start));
+    }
+
+    @Test
+    void forget_LastTransferOfFingerprint_IsNoLongerDuplicate() {
+        LocalDateTime now = LocalDateTime.of(2024, 1, 1, 10, 0, 0);
+        index.record("1234567890", amount, now);
+        index.record("1234567890", amount, now.plusSeconds(10));
+
+        index.forget("1234567890", amount, now);
+        assertTrue(index.isDuplicate("1234567890", amount, now.plusSeconds(20)));
+
+        index.forget("1234567890", amount, now.plusSeconds(10));
+        assertFalse(index.isDuplicate("1234567890", amount, now.plusSeconds(20)));
+    }
+}
@@ -0,0 +1,149 @@
+package com.hsbc.transaction_demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.transfer.StripedLockTransferEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Exports over real stores holding more rows than one export page, so every walk crosses
+ * page boundaries
+ */
+class ExportTest {
+    private static final int ROWS = 2 * TransactionService.EXPORT_PAGE_SIZE + 500;
+
+    private final LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0);
+    private AccountService accountService;
+    private TransactionService transactionService;
+
+    @BeforeEach
+    void setUp() {
+        AccountRepository accounts = new AccountRepository();
+        TransactionRepository transactions = new HeapTransactionRepository();
+        for (int i = 0; i < ROWS; i++) {
+            accounts.save(Account.builder()
+                    .accountNumber(String.format("%06d", i))
+                    .username("User " + i)
+                    .balance(100)
+                    .createdAt(start.plusMinutes(i))
+                    .build());
+            // Two accounts take turns; every third transaction failed
+            transactions.save(Transaction.builder()
+                    .accountNumber(i % 2 == 0 ? "EVEN" : "ODD")
+                    .targetAccountNumber("SINK")
+                    .amount(new BigDecimal("1.00"))
+                    .timestamp(start.plusMinutes(i))
+                    .status(i % 3 == 0 ? TransactionStatus.FAILED : TransactionStatus.COMPLETED)
+                    .build());
+        }
+        LedgerMetrics metrics = new LedgerMetrics(new SimpleMeterRegistry());
+        StripedLockTransferEngine engine = new StripedLockTransferEngine(accounts, 16, metrics);
+        accountService = new AccountService(accounts, engine, Journal.NONE, metrics,
+                new AccountJsonCache(new ObjectMapper(), 0, AccountJsonCache.Eviction.CLOCK));
+        transactionService = new TransactionService(transactions, engine,
+                new DuplicateTransactionIndex(), Journal.NONE, metrics,
+                new IdempotencyCache(1_000, Duration.ofMinutes(1)));
+    }
+
+    private List<Integer> minutes(List<TransactionDTO> exported) {
+        return exported.stream()
+                .map(t -> (int) Duration.between(start, t.getTimestamp()).toMinutes())
+                .toList();
+    }
+
+    @Test
+    void exportAccounts_NoRange_WritesEveryAccountInOrder() {
+        List<AccountDTO> exported = new ArrayList<>();
+
+        accountService.exportAccounts(null, null, exported::add);
+
+        assertEquals(ROWS, exported.size());
+        assertEquals("000000", exported.get(0).getAccountNumber());
+        assertEquals(String.format("%06d", ROWS - 1), exported.get(ROWS - 1).getAccountNumber());
+    }
+
+    @Test
+    void exportAccounts_Range_IncludesFromExcludesTo() {
+        List<AccountDTO> exported = new ArrayList<>();
+
+        accountService.exportAccounts(start.plusMinutes(999), start.plusMinutes(2001), exported::add);
+
+        assertEquals(1002, exported.size());
+        assertEquals("000999", exported.get(0).getAccountNumber());
+        assertEquals("002000", exported.get(exported.size() - 1).getAccountNumber());
+    }
+
+    @Test
+    void exportAccounts_EmptyRange_Throws() {
+        assertThrows(AccountException.class,
+                () -> accountService.exportAccounts(start, start, a -> fail("nothing to export")));
+    }
+
+    @Test
+    void exportTransactions_NoFilters_WritesEverythingNewestFirst() {
+        List<TransactionDTO> exported = new ArrayList<>();
+
+        transactionService.exportTransactions(null, null, null, null, true, exported::add);
+
+        assertEquals(ROWS, exported.size());
+        assertEquals(ROWS - 1, minutes(exported).get(0));
+        assertEquals(0, minutes(exported).get(ROWS - 1));
+    }
+
+    @Test
+    void exportTransactions_Range_IncludesFromExcludesTo_BothDirections() {
+        List<TransactionDTO> newest = new ArrayList<>();
+        List<TransactionDTO> oldest = new ArrayList<>();
+
+        transactionService.exportTransactions(null, start.plusMinutes(500), start.plusMinutes(1700), null, true, newest::add);
+        transactionService.exportTransactions(null, start.plusMinutes(500), start.plusMinutes(1700), null, false, oldest::add);
+
+        assertEquals(1200, newest.size());
+        assertEquals(1699, minutes(newest).get(0));
+        assertEquals(500, minutes(newest).get(1199));
+        assertEquals(minutes(newest).reversed(), minutes(oldest));
+    }
+
+    @Test
+    void exportTransactions_AccountAndStatus_FiltersDuringWalk() {
+        List<TransactionDTO> exported = new ArrayList<>();
+
+        transactionService.exportTransactions("EVEN", start.plusMinutes(100), null,
+                TransactionStatus.FAILED, false, exported::add);
+
+        // Even minutes divisible by three from 100 on: 102, 108, ...
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 102; i < ROWS; i += 6) {
+            expected.add(i);
+        }
+        assertEquals(expected, minutes(exported));
+        assertTrue(exported.stream().allMatch(t -> t.getAccountNumber().equals("EVEN")));
+    }
+
+    @Test
+    void exportTransactions_EmptyRange_Throws() {
+        assertThrows(TransactionException.class, () -> transactionService.exportTransactions(
+                null, start.plusMinutes(1), start, null, true, t -> fail("nothing to export")));
+    }
+}
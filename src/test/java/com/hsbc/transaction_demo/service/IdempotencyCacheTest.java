@@ -0,0 +1,174 @@
+package com.hsbc.transaction_demo.service;
+
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyCacheTest {
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger transfers = new AtomicInteger();
+
+    private final TransactionDTO request = TransactionDTO.builder()
+            .accountNumber("A")
+            .targetAccountNumber("B")
+            .amount(new BigDecimal("1.00"))
+            .build();
+
+    private final Supplier<TransactionDTO> transfer = () -> {
+        transfers.incrementAndGet();
+        return request.toBuilder().id(UUID.randomUUID()).build();
+    };
+
+    private IdempotencyCache cache(int maxEntries) {
+        return new IdempotencyCache(maxEntries, Duration.ofMinutes(10), now::get);
+    }
+
+    @Test
+    void execute_ConcurrentRetries_TransferOnce() throws Exception {
+        IdempotencyCache cache = cache(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<TransactionDTO> slowTransfer = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return transfer.get();
+        };
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<TransactionDTO> first = executor.submit(() -> cache.execute("key", request, slowTransfer));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            List<Future<TransactionDTO>> retries = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                retries.add(executor.submit(() -> cache.execute("key", request, slowTransfer)));
+            }
+            while (cache.replays() < retries.size()) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (Future<TransactionDTO> retry : retries) {
+                assertSame(first.get(), retry.get());
+            }
+        }
+        assertEquals(1, transfers.get());
+    }
+
+    @Test
+    void execute_FailedTransfer_WaitersSeeSameFailure() throws Exception {
+        IdempotencyCache cache = cache(100);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        TransactionException rejection = new TransactionException("Insufficient balance in source account");
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<TransactionDTO> first = executor.submit(() -> cache.execute("key", request, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw rejection;
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            Future<TransactionDTO> retry = executor.submit(() -> cache.execute("key", request, transfer));
+            while (cache.replays() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertSame(rejection, assertThrows(Exception.class, first::get).getCause());
+            assertSame(rejection, assertThrows(Exception.class, retry::get).getCause());
+        }
+        assertEquals(0, transfers.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void execute_AfterTtl_RunsAgain() {
+        IdempotencyCache cache = cache(100);
+        cache.execute("key", request, transfer);
+
+        now.addAndGet(Duration.ofMinutes(10).toNanos() - 1);
+        cache.execute("key", request, transfer);
+        assertEquals(1, transfers.get());
+
+        now.addAndGet(1);
+        cache.execute("key", request, transfer);
+        assertEquals(2, transfers.get());
+    }
+
+    @Test
+    void execute_OverBound_ForgetsOldestKeys() {
+        IdempotencyCache cache = cache(3);
+        for (int i = 0; i < 10; i++) {
+            cache.execute("key-" + i, request, transfer);
+            assertTrue(cache.size() <= 3, "size " + cache.size());
+        }
+
+        cache.execute("key-9", request, transfer);
+        assertEquals(10, transfers.get());
+        cache.execute("key-0", request, transfer);
+        assertEquals(11, transfers.get());
+    }
+
+    @Test
+    void execute_ExpiredEntries_DroppedByLaterRequests() {
+        IdempotencyCache cache = cache(100);
+        for (int i = 0; i < 10; i++) {
+            cache.execute("key-" + i, request, transfer);
+        }
+
+        now.addAndGet(Duration.ofMinutes(11).toNanos());
+        cache.execute("other", request, transfer);
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void execute_RejectedTransfers_DoNotPileUpInQueue() {
+        IdempotencyCache cache = cache(100);
+        for (int i = 0; i < 10; i++) {
+            cache.execute("key-" + i, request, transfer);
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertThrows(TransactionException.class, () -> cache.execute("rejected", request, () -> {
+                throw new TransactionException("Insufficient balance in source account");
+            }));
+        }
+
+        assertEquals(10, cache.size());
+        assertTrue(cache.queued() <= 2 * cache.size() + 1, "queued " + cache.queued());
+    }
+
+    @Test
+    void execute_InvalidKey_Rejected() {
+        IdempotencyCache cache = cache(100);
+
+        assertThrows(TransactionException.class, () -> cache.execute(" ", request, transfer));
+        assertThrows(TransactionException.class,
+                () -> cache.execute("k".repeat(IdempotencyCache.MAX_KEY_LENGTH + 1), request, transfer));
+        assertEquals(0, transfers.get());
+    }
+}
@@ -1,25 +1,37 @@
 package com.hsbc.transaction_demo.service;
 
-import com.hsbc.transaction_demo.dto.AccountDTO;
 import com.hsbc.transaction_demo.dto.TransactionDTO;
 import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.exception.TransferInDoubtException;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
 import com.hsbc.transaction_demo.model.*;
+import com.hsbc.transaction_demo.repository.TransactionCursor;
 import com.hsbc.transaction_demo.repository.TransactionRepository;
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 /**
@@ -33,16 +45,32 @@ class TransactionServiceTest {
     private TransactionRepository repository;
 
     @Mock
-    private AccountService accountService;
+    private TransferEngine transferEngine;
+
+    @Spy
+    private DuplicateTransactionIndex duplicateIndex = new DuplicateTransactionIndex();
+
+    @Mock
+    private Journal journal;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private LedgerMetrics metrics = new LedgerMetrics(meterRegistry);
+
+    @Spy
+    private IdempotencyCache idempotencyCache = new IdempotencyCache(100, Duration.ofMinutes(1));
 
     @InjectMocks
     private TransactionService service;
 
     private TransactionDTO testTransaction;
-    private AccountDTO sourceAccount;
-    private AccountDTO targetAccount;
     private UUID testId;
 
+    private double rejected(String reason) {
+        return meterRegistry.get("ledger.transfer.rejected").tag("reason", reason).counter().count();
+    }
+
     /**
      * Initialize test data before each test
      */
@@ -58,24 +86,11 @@ class TransactionServiceTest {
                 .timestamp(LocalDateTime.now())
                 .status(TransactionStatus.PENDING)
                 .build();
-
-        sourceAccount = AccountDTO.builder()
-                .accountNumber("1234567890")
-                .balance(new BigDecimal("1000.00"))
-                .build();
-
-        targetAccount = AccountDTO.builder()
-                .accountNumber("0987654321")
-                .balance(new BigDecimal("1000.00"))
-                .build();
     }
 
     // Happy path tests
     @Test
     void createTransaction_Success() {
-        when(accountService.getAccount(testTransaction.getAccountNumber())).thenReturn(sourceAccount);
-        when(accountService.getAccount(testTransaction.getTargetAccountNumber())).thenReturn(targetAccount);
-        when(repository.findAll()).thenReturn(Arrays.asList());
         when(repository.save(any())).thenReturn(Transaction.builder()
                 .id(testId)
                 .accountNumber(testTransaction.getAccountNumber())
@@ -93,8 +108,38 @@ class TransactionServiceTest {
         assertEquals("0987654321", result.getTargetAccountNumber());
         assertEquals(new BigDecimal("100.00"), result.getAmount());
         verify(repository).save(any());
-        verify(accountService).updateBalance(eq("1234567890"), any(BigDecimal.class));
-        verify(accountService).updateBalance(eq("0987654321"), any(BigDecimal.class));
+        verify(transferEngine).transfer("1234567890", "0987654321", 100_00);
+        verify(journal).sync();
+        verify(duplicateIndex).record("1234567890", new BigDecimal("100.00"), testTransaction.getTimestamp());
+        for (String phase : List.of("validate", "duplicate_check", "balance_update", "save")) {
+            assertEquals(1, meterRegistry.get("ledger.transfer.phase").tag("phase", phase).timer().count(), phase);
+        }
+    }
+
+    @Test
+    void createTransaction_InDoubt_ReturnsPendingTransactionWithDescription() {
+        UUID transferId = UUID.randomUUID();
+        Transaction pending = Transaction.builder()
+                .id(transferId)
+                .accountNumber(testTransaction.getAccountNumber())
+                .targetAccountNumber(testTransaction.getTargetAccountNumber())
+                .amount(testTransaction.getAmount())
+                .timestamp(LocalDateTime.now())
+                .status(TransactionStatus.PENDING)
+                .build();
+        doThrow(new TransferInDoubtException(transferId, "Target node did not answer"))
+                .when(transferEngine).transfer("1234567890", "0987654321", 100_00);
+        when(repository.findById(transferId)).thenReturn(Optional.of(pending));
+        when(repository.replace(eq(pending), any())).thenReturn(true);
+
+        TransactionDTO result = service.createTransaction(testTransaction);
+
+        assertEquals(transferId, result.getId());
+        assertEquals(TransactionStatus.PENDING, result.getStatus());
+        assertEquals("Test transaction", result.getDescription());
+        verify(repository, never()).save(any());
+        verify(journal).sync();
+        assertEquals(0, rejected("unavailable"));
     }
 
     @Test
@@ -128,7 +173,7 @@ class TransactionServiceTest {
                 .build();
 
         when(repository.findById(testId)).thenReturn(Optional.of(existingTransaction));
-        when(repository.save(any())).thenReturn(existingTransaction);
+        when(repository.replace(eq(existingTransaction), any())).thenReturn(true);
 
         TransactionDTO result = service.updateTransaction(testId, testTransaction);
 
@@ -136,7 +181,39 @@ class TransactionServiceTest {
         assertEquals(testId, result.getId());
         assertEquals("1234567890", result.getAccountNumber());
         assertEquals("0987654321", result.getTargetAccountNumber());
-        verify(repository).save(any());
+        verify(repository).replace(eq(existingTransaction), argThat(saved -> saved.getVersion() == 1));
+    }
+
+    @Test
+    void updateTransaction_ConcurrentUpdate_AppliesOnTopOfIt() {
+        Transaction stale = Transaction.builder()
+                .id(testId)
+                .status(TransactionStatus.PENDING)
+                .build();
+        Transaction concurrent = stale.toBuilder().description("other").version(1).build();
+        when(repository.findById(testId)).thenReturn(Optional.of(stale)).thenReturn(Optional.of(concurrent));
+        when(repository.replace(eq(stale), any())).thenReturn(false);
+        when(repository.replace(eq(concurrent), any())).thenReturn(true);
+
+        service.updateTransaction(testId, testTransaction);
+
+        verify(repository).replace(eq(concurrent), argThat(saved -> saved.getVersion() == 2));
+    }
+
+    @Test
+    void getTaggedTransaction_TagFollowsVersion() {
+        Transaction pending = Transaction.builder()
+                .id(testId)
+                .timestamp(testTransaction.getTimestamp())
+                .status(TransactionStatus.PENDING)
+                .build();
+        when(repository.findById(testId)).thenReturn(Optional.of(pending)).thenReturn(Optional.of(pending))
+                .thenReturn(Optional.of(pending.toBuilder().version(1).build()));
+
+        String first = service.getTaggedTransaction(testId).eTag();
+
+        assertEquals(first, service.getTaggedTransaction(testId).eTag());
+        assertNotEquals(first, service.getTaggedTransaction(testId).eTag());
     }
 
     @Test
@@ -176,10 +253,55 @@ class TransactionServiceTest {
         assertEquals(testId, result.get(0).getId());
     }
 
+    @Test
+    void createTransaction_SameIdempotencyKey_TransfersOnceAndReplays() {
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        TransactionDTO first = service.createTransaction(testTransaction, "retry-1");
+        // A retry without the key would now be rejected as a duplicate
+        TransactionDTO retry = service.createTransaction(testTransaction.toBuilder().build(), "retry-1");
+
+        assertSame(first, retry);
+        verify(transferEngine, times(1)).transfer("1234567890", "0987654321", 100_00);
+        verify(repository, times(1)).save(any());
+        assertEquals(1, idempotencyCache.replays());
+    }
+
+    @Test
+    void createTransaction_IdempotencyKeyWithDifferentRequest_Rejected() {
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        service.createTransaction(testTransaction, "retry-1");
+
+        TransactionDTO other = testTransaction.toBuilder().amount(new BigDecimal("5.00")).build();
+        TransactionException exception = assertThrows(TransactionException.class,
+                () -> service.createTransaction(other, "retry-1"));
+
+        assertEquals(TransactionException.Reason.IDEMPOTENCY_KEY_REUSED, exception.getReason());
+        assertEquals(1.0, rejected("idempotency_key_reused"));
+        verify(transferEngine, times(1)).transfer(any(), any(), anyLong());
+    }
+
+    @Test
+    void createTransaction_RejectedTransfer_ReleasesIdempotencyKey() {
+        doThrow(new TransactionException(TransactionException.Reason.INSUFFICIENT_BALANCE,
+                "Insufficient balance in source account"))
+                .doNothing()
+                .when(transferEngine).transfer(any(), any(), anyLong());
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertThrows(TransactionException.class, () -> service.createTransaction(testTransaction, "retry-1"));
+        TransactionDTO retry = service.createTransaction(testTransaction, "retry-1");
+
+        assertEquals(TransactionStatus.COMPLETED, retry.getStatus());
+        verify(transferEngine, times(2)).transfer(any(), any(), anyLong());
+        assertEquals(1.0, rejected("insufficient_balance"));
+    }
+
     // Error scenario tests
     @Test
     void createTransaction_SourceAccountNotFound_ThrowsException() {
-        when(accountService.getAccount(testTransaction.getAccountNumber())).thenReturn(null);
+        doThrow(new TransactionException("Source account not found: " + testTransaction.getAccountNumber()))
+                .when(transferEngine).transfer(any(), any(), anyLong());
 
         TransactionException exception = assertThrows(TransactionException.class,
                 () -> service.createTransaction(testTransaction));
@@ -189,8 +311,8 @@ class TransactionServiceTest {
 
     @Test
     void createTransaction_TargetAccountNotFound_ThrowsException() {
-        when(accountService.getAccount(testTransaction.getAccountNumber())).thenReturn(sourceAccount);
-        when(accountService.getAccount(testTransaction.getTargetAccountNumber())).thenReturn(null);
+        doThrow(new TransactionException("Target account not found: " + testTransaction.getTargetAccountNumber()))
+                .when(transferEngine).transfer(any(), any(), anyLong());
 
         TransactionException exception = assertThrows(TransactionException.class,
                 () -> service.createTransaction(testTransaction));
@@ -200,29 +322,49 @@ class TransactionServiceTest {
 
     @Test
     void createTransaction_InsufficientBalance_ThrowsException() {
-        sourceAccount.setBalance(new BigDecimal("50.00")); // Set balance lower than transaction amount
-        when(accountService.getAccount(testTransaction.getAccountNumber())).thenReturn(sourceAccount);
-        when(accountService.getAccount(testTransaction.getTargetAccountNumber())).thenReturn(targetAccount);
+        doThrow(new TransactionException(TransactionException.Reason.INSUFFICIENT_BALANCE,
+                "Insufficient balance in source account"))
+                .when(transferEngine).transfer(any(), any(), anyLong());
 
         TransactionException exception = assertThrows(TransactionException.class,
                 () -> service.createTransaction(testTransaction));
         assertEquals("Insufficient balance in source account", exception.getMessage());
         verify(repository, never()).save(any());
+        assertEquals(1, rejected("insufficient_balance"));
+        assertEquals(0, rejected("duplicate"));
     }
 
     @Test
     void createTransaction_Duplicate_ThrowsException() {
-        when(repository.findAll()).thenReturn(Arrays.asList(Transaction.builder()
-                .accountNumber(testTransaction.getAccountNumber())
-                .targetAccountNumber(testTransaction.getTargetAccountNumber())
-                .amount(testTransaction.getAmount())
-                .timestamp(testTransaction.getTimestamp())
-                .build()));
+        duplicateIndex.record(testTransaction.getAccountNumber(), testTransaction.getAmount(),
+                testTransaction.getTimestamp().minusSeconds(30));
 
         TransactionException exception = assertThrows(TransactionException.class,
                 () -> service.createTransaction(testTransaction));
         assertEquals("Duplicate transaction detected", exception.getMessage());
+        verify(transferEngine, never()).transfer(any(), any(), anyLong());
         verify(repository, never()).save(any());
+        assertEquals(1, rejected("duplicate"));
+    }
+
+    @Test
+    void createTransaction_SubCentAmount_ThrowsException() {
+        testTransaction.setAmount(new BigDecimal("0.005"));
+
+        TransactionException exception = assertThrows(TransactionException.class,
+                () -> service.createTransaction(testTransaction));
+        assertEquals("Amount must have at most 2 decimal places", exception.getMessage());
+        verify(transferEngine, never()).transfer(any(), any(), anyLong());
+    }
+
+    @Test
+    void createTransaction_SameMinuteOfDifferentHour_IsNotDuplicate() {
+        duplicateIndex.record(testTransaction.getAccountNumber(), testTransaction.getAmount(),
+                testTransaction.getTimestamp().minusHours(1));
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+        assertNotNull(service.createTransaction(testTransaction));
+        verify(transferEngine).transfer(any(), any(), anyLong());
     }
 
     @Test
@@ -235,7 +377,7 @@ class TransactionServiceTest {
         TransactionException exception = assertThrows(TransactionException.class,
                 () -> service.updateTransaction(testId, testTransaction));
         assertEquals("Cannot modify completed transaction", exception.getMessage());
-        verify(repository, never()).save(any());
+        verify(repository, never()).replace(any(), any());
     }
 
     @Test
@@ -266,4 +408,73 @@ class TransactionServiceTest {
                 () -> service.getTransaction(testId));
         assertTrue(exception.getMessage().contains("Transaction not found"));
     }
-} 
\ No newline at end of file
+
+    @Test
+    void getAccountTransactions_MoreRowsThanPage_ReturnsNextCursor() {
+        Transaction newer = Transaction.builder()
+                .id(UUID.randomUUID())
+                .accountNumber("1234567890")
+                .targetAccountNumber("0987654321")
+                .amount(new BigDecimal("100.00"))
+                .timestamp(LocalDateTime.of(2024, 1, 1, 10, 0, 1))
+                .build();
+        Transaction older = newer.toBuilder()
+                .id(UUID.randomUUID())
+                .timestamp(LocalDateTime.of(2024, 1, 1, 10, 0, 0))
+                .build();
+        when(repository.findByAccountNumber("1234567890", null, 2)).thenReturn(Arrays.asList(newer, older));
+
+        var page = service.getAccountTransactions("1234567890", null, 1);
+
+        assertEquals(1, page.getContent().size());
+        assertEquals(newer.getId(), page.getContent().get(0).getId());
+        assertEquals(TransactionCursor.of(newer), TransactionCursor.decode(page.getNextCursor()));
+    }
+
+    @Test
+    void getAccountTransactions_InvalidCursor_ThrowsException() {
+        assertThrows(TransactionException.class,
+                () -> service.getAccountTransactions("1234567890", "not-a-cursor", 10));
+    }
+
+    @Test
+    void getAllTransactions_UnsupportedSort_ThrowsException() {
+        assertThrows(TransactionException.class,
+                () -> service.getAllTransactions(PageRequest.of(0, 10, Sort.by("amount"))));
+        verify(repository, never()).findAll(any(PageRequest.class));
+    }
+
+    @Test
+    void createTransactions_BestEffort_ReportsPerItemResults() {
+        TransactionDTO second = testTransaction.toBuilder().amount(new BigDecimal("5.00")).build();
+        when(transferEngine.transferAll(any(), eq(false)))
+                .thenReturn(Arrays.asList(null, "Insufficient balance in source account"));
+        when(repository.save(any(Transaction.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        var result = service.createTransactions(List.of(testTransaction, second), false);
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(1, result.getFailed());
+        assertEquals(TransactionStatus.COMPLETED, result.getResults().get(0).getStatus());
+        assertEquals(TransactionStatus.FAILED, result.getResults().get(1).getStatus());
+        assertEquals("Insufficient balance in source account", result.getResults().get(1).getError());
+        verify(transferEngine).transferAll(List.of(
+                new Transfer("1234567890", "0987654321", 100_00, testId),
+                new Transfer("1234567890", "0987654321", 5_00, testId)), false);
+        verify(repository, times(1)).save(any(Transaction.class));
+        verify(journal, times(1)).sync();
+    }
+
+    @Test
+    void createTransactions_AtomicWithDuplicateInBatch_AppliesNothing() {
+        TransactionDTO copy = testTransaction.toBuilder().id(UUID.randomUUID()).build();
+
+        var result = service.createTransactions(List.of(testTransaction, copy), true);
+
+        assertEquals(0, result.getSucceeded());
+        assertEquals("Duplicate transaction detected", result.getResults().get(1).getError());
+        assertEquals(TransactionStatus.FAILED, result.getResults().get(0).getStatus());
+        verify(transferEngine, never()).transferAll(any(), anyBoolean());
+        verify(repository, never()).save(any(Transaction.class));
+    }
+}
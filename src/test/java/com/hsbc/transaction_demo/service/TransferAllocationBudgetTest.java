@@ -0,0 +1,113 @@
+package com.hsbc.transaction_demo.service;
+
+import com.hsbc.transaction_demo.dto.TransactionDTO;
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.service.transfer.StripedLockTransferEngine;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Regression guard for the bytes one transfer allocates with the default wiring. The budgets
+ * sit about a quarter above what the path allocates today; most of it is what has to be
+ * stored (the new account versions, index nodes, the transaction and its id). Going over
+ * usually means a DTO, Optional, lambda or builder crept back into the hot path.
+ * {@code TransactionServiceBenchmark} reports the same figure as {@code gc.alloc.rate.norm}.
+ */
+class TransferAllocationBudgetTest {
+    private static final long ENGINE_BUDGET = 512;
+    private static final long SERVICE_BUDGET = 1_400;
+
+    private static final int ACCOUNTS = 1_000;
+    private static final int WARMUP = 50_000;
+    private static final int ROUND = 10_000;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private String[] accountNumbers;
+    private StripedLockTransferEngine engine;
+    private TransactionService service;
+
+    @BeforeEach
+    void setUp() {
+        AccountRepository accounts = new AccountRepository();
+        accountNumbers = new String[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accountNumbers[i] = String.format("%010d", i);
+            accounts.save(Account.builder()
+                    .accountNumber(accountNumbers[i])
+                    .username("User " + i)
+                    .balance(1_000_000_000_00L)
+                    .build());
+        }
+        LedgerMetrics metrics = new LedgerMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+        engine = new StripedLockTransferEngine(accounts, 1024, metrics);
+        service = new TransactionService(new HeapTransactionRepository(), engine,
+                new DuplicateTransactionIndex(), Journal.NONE, metrics, new IdempotencyCache(1_000, Duration.ofMinutes(1)));
+    }
+
+    private String source(int i) {
+        return accountNumbers[i % ACCOUNTS];
+    }
+
+    private String target(int i) {
+        return accountNumbers[(i * 7 + 1) % ACCOUNTS];
+    }
+
+    /**
+     * Runs {@code operation} until compiled, then returns the fewest bytes per call seen over a
+     * few rounds; the minimum filters out rounds where a growing map happened to resize.
+     */
+    private long bytesPerCall(IntConsumer operation) {
+        long thread = Thread.currentThread().threadId();
+        for (int i = 0; i < WARMUP; i++) {
+            operation.accept(i);
+        }
+        long fewest = Long.MAX_VALUE;
+        for (int round = 0; round < 5; round++) {
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < ROUND; i++) {
+                operation.accept(i);
+            }
+            fewest = Math.min(fewest, (threads.getThreadAllocatedBytes(thread) - before) / ROUND);
+        }
+        return fewest;
+    }
+
+    @Test
+    void engineTransfer_StaysWithinBudget() {
+        long bytes = bytesPerCall(i -> engine.transfer(source(i), target(i), 1));
+
+        assertTrue(bytes <= ENGINE_BUDGET, bytes + " bytes per transfer, budget " + ENGINE_BUDGET);
+    }
+
+    @Test
+    void createTransaction_StaysWithinBudget() {
+        TransactionDTO[] requests = new TransactionDTO[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            requests[i] = TransactionDTO.builder()
+                    .accountNumber(source(i))
+                    .targetAccountNumber(target(i))
+                    .amount(AMOUNT)
+                    .build();
+        }
+
+        long bytes = bytesPerCall(i -> service.createTransaction(requests[i % ACCOUNTS]));
+
+        System.out.println("SERVICEBYTES " + bytes); assertTrue(bytes <= SERVICE_BUDGET, bytes + " bytes per createTransaction, budget " + SERVICE_BUDGET);
+    }
+}
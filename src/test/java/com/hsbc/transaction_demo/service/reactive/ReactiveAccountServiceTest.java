@@ -0,0 +1,51 @@
+package com.hsbc.transaction_demo.service.reactive;
+
+import com.hsbc.transaction_demo.dto.AccountDTO;
+import com.hsbc.transaction_demo.service.AccountImportService;
+import com.hsbc.transaction_demo.service.AccountService;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+class ReactiveAccountServiceTest {
+
+    private final AccountService accountService = mock(AccountService.class);
+    private final ReactiveAccountService service =
+            new ReactiveAccountService(accountService, mock(AccountImportService.class), Schedulers.immediate());
+
+    private static List<AccountDTO> accounts(int from, int count) {
+        return IntStream.range(from, from + count)
+                .mapToObj(i -> AccountDTO.builder().accountNumber("A%04d".formatted(i)).build())
+                .toList();
+    }
+
+    @Test
+    void streamAccounts_FetchesPagesOnlyAsRequested() {
+        int pageSize = ReactiveAccountService.STREAM_PAGE_SIZE;
+        when(accountService.getAccountsAfter(isNull(), anyInt())).thenReturn(accounts(0, pageSize));
+        when(accountService.getAccountsAfter(eq("A%04d".formatted(pageSize - 1)), anyInt()))
+                .thenReturn(accounts(pageSize, pageSize));
+        when(accountService.getAccountsAfter(eq("A%04d".formatted(2 * pageSize - 1)), anyInt()))
+                .thenReturn(accounts(2 * pageSize, 3));
+
+        StepVerifier.create(service.streamAccounts(), 1)
+                .expectNextCount(1)
+                // At most one page is fetched ahead of the subscriber
+                .then(() -> verify(accountService, atMost(2)).getAccountsAfter(any(), anyInt()))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(2 * pageSize + 2)
+                .verifyComplete();
+
+        // The short last page ends the stream without another query
+        verify(accountService, times(3)).getAccountsAfter(any(), anyInt());
+    }
+}
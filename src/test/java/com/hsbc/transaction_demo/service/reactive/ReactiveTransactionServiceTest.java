@@ -0,0 +1,50 @@
+package com.hsbc.transaction_demo.service.reactive;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import com.hsbc.transaction_demo.service.IdempotencyCache;
+import com.hsbc.transaction_demo.service.TransactionService;
+import com.hsbc.transaction_demo.service.transfer.OptimisticTransferEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.UUID;
+
+class ReactiveTransactionServiceTest {
+
+    private final HeapTransactionRepository transactions = new HeapTransactionRepository();
+    private final TransactionService transactionService = new TransactionService(transactions,
+            new OptimisticTransferEngine(new AccountRepository()), new DuplicateTransactionIndex(), Journal.NONE,
+            LedgerMetrics.NONE, new IdempotencyCache(100, Duration.ofMinutes(1)));
+    private final Scheduler blockingScheduler = Schedulers.newSingle("blocking-test");
+
+    @AfterEach
+    void tearDown() {
+        blockingScheduler.dispose();
+    }
+
+    private StepVerifier.FirstStep<String> readingThread(String store) {
+        UUID id = transactions.save(Transaction.builder().amount(BigDecimal.ONE).build()).getId();
+        ReactiveTransactionService service = new ReactiveTransactionService(transactionService, blockingScheduler, store);
+        return StepVerifier.create(service.getTransaction(id).map(found -> Thread.currentThread().getName()));
+    }
+
+    @Test
+    void getTransaction_HeapStore_RunsOnSubscribingThread() {
+        readingThread("heap").expectNext(Thread.currentThread().getName()).verifyComplete();
+    }
+
+    @Test
+    void getTransaction_OffHeapStore_RunsOnBlockingScheduler() {
+        readingThread("off-heap").expectNext("blocking-test-1").verifyComplete();
+    }
+}
@@ -0,0 +1,332 @@
+package com.hsbc.transaction_demo.service.transfer;
+
+import com.hsbc.transaction_demo.exception.AccountException;
+import com.hsbc.transaction_demo.exception.TransactionException;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same scenarios against every transfer strategy
+ */
+class TransferEngineTest {
+
+    private AccountRepository repository;
+    private TransferEngine engine;
+
+    private TransferEngine engine(String strategy) {
+        repository = new AccountRepository();
+        repository.save(account("A", 1000_00));
+        repository.save(account("B", 1000_00));
+        engine = switch (strategy) {
+            case "striped" -> new StripedLockTransferEngine(repository, 16);
+            case "optimistic" -> new OptimisticTransferEngine(repository);
+            // A and B land on different shards, so the shared scenarios cross shards
+            case "sharded" -> new ShardedTransferEngine(repository, 4);
+            default -> new SingleWriterTransferEngine(repository, 64);
+        };
+        return engine;
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (engine instanceof SingleWriterTransferEngine singleWriter) {
+            singleWriter.shutdown();
+        }
+        if (engine instanceof ShardedTransferEngine sharded) {
+            sharded.shutdown();
+        }
+    }
+
+    private static Account account(String accountNumber, long balance) {
+        return Account.builder()
+                .accountNumber(accountNumber)
+                .username("User " + accountNumber)
+                .balance(balance)
+                .build();
+    }
+
+    private long balanceOf(String accountNumber) {
+        return repository.findByAccountNumber(accountNumber).orElseThrow().getBalance();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transfer_MovesFundsAndBumpsVersions(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        engine.transfer("A", "B", 100_00);
+
+        assertEquals(900_00, balanceOf("A"));
+        assertEquals(1100_00, balanceOf("B"));
+        assertEquals(1, repository.findByAccountNumber("A").orElseThrow().getVersion());
+        assertEquals(1, repository.findByAccountNumber("B").orElseThrow().getVersion());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transfer_InsufficientBalance_LeavesAccountsUnchanged(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        TransactionException exception = assertThrows(TransactionException.class,
+                () -> engine.transfer("A", "B", 1000_01));
+
+        assertEquals("Insufficient balance in source account", exception.getMessage());
+        assertEquals(1000_00, balanceOf("A"));
+        assertEquals(1000_00, balanceOf("B"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transfer_MissingAccounts_ThrowsException(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        assertEquals("Source account not found: X", assertThrows(TransactionException.class,
+                () -> engine.transfer("X", "B", 1)).getMessage());
+        assertEquals("Target account not found: X", assertThrows(TransactionException.class,
+                () -> engine.transfer("A", "X", 1)).getMessage());
+        assertEquals(1000_00, balanceOf("A"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transfer_SameAccount_ThrowsException(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        assertThrows(TransactionException.class, () -> engine.transfer("A", "A", 1));
+        assertEquals(1000_00, balanceOf("A"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void update_AppliesMutationToCopy(String strategy) {
+        TransferEngine engine = engine(strategy);
+        Account before = repository.findByAccountNumber("A").orElseThrow();
+
+        Account updated = engine.update("A", account -> account.setUsername("Renamed"));
+
+        assertEquals("Renamed", updated.getUsername());
+        assertEquals("User A", before.getUsername());
+        assertEquals(before.getVersion() + 1, updated.getVersion());
+        assertThrows(AccountException.class, () -> engine.update("X", account -> account.setUsername("X")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transfer_ConcurrentOppositeDirections_LosesNoUpdates(String strategy) throws Exception {
+        TransferEngine engine = engine(strategy);
+        int threads = 8;
+        int transfersPerThread = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean forward = t % 2 == 0;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < transfersPerThread; i++) {
+                        if (forward) {
+                            engine.transfer("A", "B", 1);
+                        } else {
+                            engine.transfer("B", "A", 1);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1000_00, balanceOf("A"));
+        assertEquals(1000_00, balanceOf("B"));
+        assertEquals(threads * transfersPerThread, repository.findByAccountNumber("A").orElseThrow().getVersion());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transferAll_BestEffort_AppliesValidTransfersInOrder(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        List<String> errors = engine.transferAll(List.of(
+                new Transfer("A", "B", 600_00),
+                new Transfer("A", "B", 600_00),
+                new Transfer("B", "A", 100_00),
+                new Transfer("A", "X", 1)), false);
+
+        assertEquals(Arrays.asList(null, "Insufficient balance in source account", null,
+                "Target account not found: X"), errors);
+        assertEquals(500_00, balanceOf("A"));
+        assertEquals(1500_00, balanceOf("B"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transferAll_Atomic_AppliesNetChanges(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        // B can only afford the second transfer because of the first one
+        List<String> errors = engine.transferAll(List.of(
+                new Transfer("A", "B", 1000_00),
+                new Transfer("B", "A", 2000_00),
+                new Transfer("A", "B", 500_00)), true);
+
+        assertEquals(Arrays.asList(null, null, null), errors);
+        assertEquals(1500_00, balanceOf("A"));
+        assertEquals(500_00, balanceOf("B"));
+        assertEquals(1, repository.findByAccountNumber("A").orElseThrow().getVersion());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"striped", "optimistic", "single-writer", "sharded"})
+    void transferAll_AtomicWithFailure_LeavesAccountsUnchanged(String strategy) {
+        TransferEngine engine = engine(strategy);
+
+        List<String> errors = engine.transferAll(List.of(
+                new Transfer("A", "B", 100_00),
+                new Transfer("B", "A", 1100_01)), true);
+
+        assertEquals(Arrays.asList(null, "Insufficient balance in source account"), errors);
+        assertEquals(1000_00, balanceOf("A"));
+        assertEquals(1000_00, balanceOf("B"));
+        assertEquals(0, repository.findByAccountNumber("A").orElseThrow().getVersion());
+    }
+
+    @Test
+    void transferAll_AtomicCreditFailsAfterDebits_RevertsAppliedChanges() {
+        // Deletes C as soon as A is debited, like a concurrent delete would
+        repository = new AccountRepository() {
+            @Override
+            public boolean replace(Account expected, Account updated) {
+                boolean replaced = super.replace(expected, updated);
+                if (replaced && updated.getAccountNumber().equals("A") && existsByAccountNumber("C")) {
+                    delete(getByAccountNumber("C"));
+                }
+                return replaced;
+            }
+        };
+        repository.save(account("A", 1000_00));
+        repository.save(account("B", 1000_00));
+        repository.save(account("C", 0));
+        engine = new OptimisticTransferEngine(repository);
+
+        List<String> errors = engine.transferAll(List.of(
+                new Transfer("A", "B", 100_00),
+                new Transfer("A", "C", 50_00)), true);
+
+        assertEquals(List.of("Target account not found: C", "Target account not found: C"), errors);
+        assertEquals(1000_00, balanceOf("A"));
+        assertEquals(1000_00, balanceOf("B"));
+    }
+
+    @Test
+    void singleWriter_AfterShutdown_RejectsTransfers() throws InterruptedException {
+        SingleWriterTransferEngine singleWriter = (SingleWriterTransferEngine) engine("single-writer");
+        singleWriter.shutdown();
+
+        assertThrows(TransactionException.class, () -> singleWriter.transfer("A", "B", 1));
+        assertEquals(1000_00, balanceOf("A"));
+    }
+
+    @Test
+    void sharded_SameShard_RunsOnOwner() {
+        ShardedTransferEngine sharded = (ShardedTransferEngine) engine("sharded");
+        repository.save(account("E", 0));
+        assertEquals(sharded.shardOf("A"), sharded.shardOf("E"));
+
+        sharded.transfer("A", "E", 100_00);
+
+        assertEquals(900_00, balanceOf("A"));
+        assertEquals(100_00, balanceOf("E"));
+    }
+
+    @Test
+    void sharded_CrossShardCreditFails_RefundsSource() {
+        ShardedTransferEngine sharded = (ShardedTransferEngine) engine("sharded");
+        repository.save(account("C", Long.MAX_VALUE));
+        assertNotEquals(sharded.shardOf("A"), sharded.shardOf("C"));
+
+        TransactionException exception = assertThrows(TransactionException.class,
+                () -> sharded.transfer("A", "C", 1));
+
+        assertEquals(TransactionException.Reason.BALANCE_OVERFLOW, exception.getReason());
+        assertEquals(1000_00, balanceOf("A"));
+        // Debited on the source shard, then refunded there
+        assertEquals(2, repository.findByAccountNumber("A").orElseThrow().getVersion());
+        assertEquals(Long.MAX_VALUE, balanceOf("C"));
+    }
+
+    @Test
+    void sharded_ConcurrentTransfersAndBatches_ConserveTotal() throws Exception {
+        ShardedTransferEngine sharded = (ShardedTransferEngine) engine("sharded");
+        String[] accountNumbers = new String[16];
+        for (int i = 0; i < accountNumbers.length; i++) {
+            accountNumbers[i] = "N" + i;
+            repository.save(account(accountNumbers[i], 100_00));
+        }
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 2000; i++) {
+                        String source = accountNumbers[random.nextInt(accountNumbers.length)];
+                        String target = accountNumbers[random.nextInt(accountNumbers.length)];
+                        if (source.equals(target)) {
+                            continue;
+                        }
+                        try {
+                            if (i % 50 == 0) {
+                                sharded.transferAll(List.of(new Transfer(source, target, 10_00),
+                                        new Transfer(target, "A", 1)), i % 100 == 0);
+                            } else {
+                                sharded.transfer(source, target, 1 + random.nextInt(10_00));
+                            }
+                        } catch (TransactionException e) {
+                            // Insufficient balance, the accounts stay consistent
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long total = balanceOf("A") + balanceOf("B");
+        for (String accountNumber : accountNumbers) {
+            assertTrue(balanceOf(accountNumber) >= 0);
+            total += balanceOf(accountNumber);
+        }
+        assertEquals(2000_00 + 16 * 100_00, total);
+    }
+
+    @Test
+    void sharded_AfterShutdown_RejectsTransfers() throws InterruptedException {
+        ShardedTransferEngine sharded = (ShardedTransferEngine) engine("sharded");
+        sharded.shutdown();
+
+        assertThrows(TransactionException.class, () -> sharded.transfer("A", "B", 1));
+        assertThrows(TransactionException.class, () -> sharded.transferAll(List.of(new Transfer("A", "B", 1)), true));
+        assertEquals(1000_00, balanceOf("A"));
+    }
+}
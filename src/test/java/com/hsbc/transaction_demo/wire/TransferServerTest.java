@@ -0,0 +1,214 @@
+package com.hsbc.transaction_demo.wire;
+
+import com.hsbc.transaction_demo.journal.Journal;
+import com.hsbc.transaction_demo.metrics.LedgerMetrics;
+import com.hsbc.transaction_demo.model.Account;
+import com.hsbc.transaction_demo.model.Money;
+import com.hsbc.transaction_demo.model.Transaction;
+import com.hsbc.transaction_demo.model.TransactionStatus;
+import com.hsbc.transaction_demo.repository.AccountRepository;
+import com.hsbc.transaction_demo.repository.HeapTransactionRepository;
+import com.hsbc.transaction_demo.service.DuplicateTransactionIndex;
+import com.hsbc.transaction_demo.service.IdempotencyCache;
+import com.hsbc.transaction_demo.service.TransactionService;
+import com.hsbc.transaction_demo.service.transfer.StripedLockTransferEngine;
+import com.hsbc.transaction_demo.service.transfer.Transfer;
+import com.hsbc.transaction_demo.service.transfer.TransferEngine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransferServerTest {
+    private AccountRepository accounts;
+    private HeapTransactionRepository transactions;
+    private TransferServer server;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        accounts = new AccountRepository();
+        for (String accountNumber : List.of("A", "B", "C")) {
+            accounts.save(Account.builder()
+                    .accountNumber(accountNumber)
+                    .username("User " + accountNumber)
+                    .balance(10_000)
+                    .build());
+        }
+        transactions = new HeapTransactionRepository();
+        TransactionService service = new TransactionService(transactions,
+                new StripedLockTransferEngine(accounts, 16, LedgerMetrics.NONE),
+                new DuplicateTransactionIndex(), Journal.NONE, LedgerMetrics.NONE,
+                new IdempotencyCache(1_000, Duration.ofMinutes(1)));
+        server = new TransferServer(service, "localhost", 0, "platform");
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private long balance(String accountNumber) {
+        return accounts.getByAccountNumber(accountNumber).getBalance();
+    }
+
+    @Test
+    void transfer_Completes_ReturnsStoredTransactionId() throws Exception {
+        try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+            WireProtocol.Response response = client.transfer("A", "B", 250);
+
+            assertTrue(response.completed(), response.error());
+            assertTrue(transactions.findById(response.transactionId()).isPresent());
+            assertEquals(9_750, balance("A"));
+            assertEquals(10_250, balance("B"));
+        }
+    }
+
+    @Test
+    void submit_FailuresStandAlone_InRequestOrder() throws Exception {
+        try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+            List<WireProtocol.Response> responses = client.submit(List.of(
+                    new Transfer("A", "B", 100),
+                    new Transfer("A", "MISSING", 100),
+                    new Transfer("B", "C", 1_000_000),
+                    new Transfer("C", "A", 0),
+                    new Transfer("C", "A", 300)));
+
+            assertEquals(List.of(true, false, false, false, true),
+                    responses.stream().map(WireProtocol.Response::completed).toList());
+            assertEquals("Target account not found: MISSING", responses.get(1).error());
+            assertEquals("Insufficient balance in source account", responses.get(2).error());
+            assertNull(responses.get(1).transactionId());
+            assertEquals(10_200, balance("A"));
+            assertEquals(10_100, balance("B"));
+            assertEquals(9_700, balance("C"));
+        }
+    }
+
+    @Test
+    void submit_TransferInDoubt_RepliesPendingWithTransactionId() throws Exception {
+        // Stands in for a cluster engine whose target node did not answer
+        TransferEngine inDoubt = new StripedLockTransferEngine(accounts, 16, LedgerMetrics.NONE) {
+            @Override
+            public List<String> transferAll(List<Transfer> transfers, boolean atomic) {
+                List<String> outcomes = new ArrayList<>();
+                for (Transfer transfer : transfers) {
+                    transactions.save(Transaction.builder()
+                            .id(transfer.transactionId())
+                            .accountNumber(transfer.sourceAccountNumber())
+                            .targetAccountNumber(transfer.targetAccountNumber())
+                            .amount(Money.toDecimal(transfer.amount()))
+                            .status(TransactionStatus.PENDING)
+                            .build());
+                    outcomes.add(TransferEngine.IN_DOUBT);
+                }
+                return outcomes;
+            }
+        };
+        TransferServer pendingServer = new TransferServer(new TransactionService(transactions, inDoubt,
+                new DuplicateTransactionIndex(), Journal.NONE, LedgerMetrics.NONE,
+                new IdempotencyCache(1_000, Duration.ofMinutes(1))), "localhost", 0, "platform");
+        pendingServer.start();
+        try (TransferClient client = TransferClient.connect("localhost", pendingServer.port())) {
+            WireProtocol.Response response = client.transfer("A", "B", 250);
+
+            assertTrue(response.pending());
+            assertNull(response.error());
+            assertEquals(TransactionStatus.PENDING,
+                    transactions.findById(response.transactionId()).orElseThrow().getStatus());
+        } finally {
+            pendingServer.stop();
+        }
+    }
+
+    @Test
+    void submit_MoreThanOneBatch_AppliesEveryTransfer() throws Exception {
+        int count = 2 * TransferServer.MAX_BATCH + 500;
+        List<Transfer> transfers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            transfers.add(i % 2 == 0 ? new Transfer("A", "B", 1) : new Transfer("B", "C", 1));
+        }
+
+        try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+            List<WireProtocol.Response> responses = client.submit(transfers);
+
+            assertEquals(count, responses.size());
+            assertTrue(responses.stream().allMatch(WireProtocol.Response::completed));
+            assertEquals(10_000 - count / 2, balance("A"));
+            assertEquals(10_000 + count / 2, balance("C"));
+            assertEquals(count, transactions.count());
+        }
+    }
+
+    @Test
+    void clientsOnSeparateConnections_AreServedConcurrently() throws Exception {
+        List<Thread> feeders = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            feeders.add(Thread.ofPlatform().start(() -> {
+                try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+                    for (int i = 0; i < 100; i++) {
+                        assertTrue(client.transfer("A", "B", 1).completed());
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Thread feeder : feeders) {
+            feeder.join();
+        }
+
+        assertEquals(List.of(), failures);
+        assertEquals(10_400, balance("B"));
+    }
+
+    @Test
+    void malformedFrame_ClosesConnection() throws Exception {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", server.port()))) {
+            channel.write(ByteBuffer.allocate(8).putInt(3).putInt(0).flip());
+
+            ByteBuffer in = ByteBuffer.allocate(16);
+            assertEquals(-1, channel.read(in));
+        }
+        // The listener itself keeps serving
+        try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+            assertTrue(client.transfer("A", "B", 1).completed());
+        }
+    }
+
+    @Test
+    void submit_AccountNumberTooLong_SendsNothing() throws Exception {
+        try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+            assertThrows(IllegalArgumentException.class, () -> client.submit(List.of(
+                    new Transfer("A", "B", 1),
+                    new Transfer("A", "X".repeat(WireProtocol.ACCOUNT_NUMBER_LENGTH + 1), 1))));
+
+            assertTrue(client.transfer("A", "B", 1).completed());
+            assertEquals(9_999, balance("A"));
+        }
+    }
+
+    @Test
+    void stop_ClosesClientConnections() throws Exception {
+        try (TransferClient client = TransferClient.connect("localhost", server.port())) {
+            client.transfer("A", "B", 1);
+
+            server.stop();
+
+            // Either the write or the read fails, depending on how fast the reset arrives
+            assertThrows(IOException.class, () -> client.transfer("A", "B", 1));
+        }
+    }
+}